@@ -0,0 +1,252 @@
+import java.io.File; // finding the maps to convert
+import java.io.IOException; // file manipulation exception handling
+import java.nio.BufferUnderflowException; // truncated files
+import java.nio.ByteBuffer; // building the binary file
+import java.nio.MappedByteBuffer; // reading the file straight from memory
+import java.nio.channels.FileChannel; // mapping and writing the file
+import java.nio.charset.StandardCharsets; // encoding the name of the map
+import java.nio.file.Path; // location of the map files
+import java.nio.file.StandardOpenOption; // opening the files
+import java.text.ParseException; // reporting malformed map files
+
+/**
+ * Class which reads and writes the compiled binary map format (.dodm).
+ * The file starts with a header:
+ *   magic "DODM", version (int), name length (int), name (UTF-8 bytes), win (int),
+ *   view radius (int), line of sight (byte, 0 or 1),
+ *   rows (int), columns (int), gold tiles (int), exit tiles (int), free tiles (int)
+ * followed by the tiles, row after row, packed 4 to a byte (2 bits each, lowest
+ * bits first), using the tile codes of TileGrid for free, wall, gold and exit.
+ * All the ints are big-endian. Files of version 1, which have no view radius and
+ * line of sight, can still be read, and get the default view.
+ */
+public class BinaryMap {
+
+    public static final String EXTENSION = ".dodm";
+    private static final int MAGIC = 0x444F444D; // "DODM"
+    private static final int VERSION = 2;
+
+    private String name;
+    private int goldToWin;
+    private int viewRadius = MapLoader.DEFAULT_VIEW_RADIUS;
+    private boolean lineOfSight = false;
+    private TileGrid grid;
+    private int goldCount, exitCount, freeCount;
+
+    /**
+     * Constructor which loads a binary map file. The file is mapped into
+     * memory and the tiles are unpacked straight into the grid.
+     * @param file path of the .dodm file
+     * @throws IOException if the file cannot be read
+     * @throws ParseException if the file is not a valid binary map. The error
+                              offset is the position in the file where the problem was found.
+     */
+    public BinaryMap(Path file) throws IOException, ParseException {
+        MappedByteBuffer buffer;
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)){
+            // a single mapping holds at most 2 GB, more than a valid map ever takes
+            if(channel.size() > Integer.MAX_VALUE){
+                throw new ParseException("the file is too large, at " + channel.size() + " bytes", 0);
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        try{
+            if(buffer.getInt() != MAGIC){
+                throw new ParseException("not a binary map file", 0);
+            }
+            int version = buffer.getInt();
+            if(version != 1 && version != VERSION){
+                throw new ParseException("unsupported version " + version, 4);
+            }
+            int nameLength = buffer.getInt();
+            // checked before allocating, so that a corrupt length cannot exhaust the memory
+            if(nameLength < 0 || nameLength > buffer.remaining()){
+                throw new ParseException("invalid name length " + nameLength, buffer.position() - 4);
+            }
+            byte[] nameBytes = new byte[nameLength];
+            buffer.get(nameBytes);
+            name = new String(nameBytes, StandardCharsets.UTF_8);
+            goldToWin = buffer.getInt();
+            if(version >= 2){
+                viewRadius = buffer.getInt();
+                if(viewRadius < 1 || viewRadius > MapLoader.MAX_VIEW_RADIUS){
+                    throw new ParseException("invalid view radius " + viewRadius, buffer.position() - 4);
+                }
+                lineOfSight = buffer.get() != 0;
+            }
+            int rows = buffer.getInt();
+            int columns = buffer.getInt();
+            goldCount = buffer.getInt();
+            exitCount = buffer.getInt();
+            freeCount = buffer.getInt();
+            if(rows < 1 || columns < 1){
+                throw new ParseException("invalid size " + rows + "x" + columns, buffer.position() - 20);
+            }
+            // the tiles must all be there before the grid is allocated
+            long tileBytes = ((long) rows * columns + 3) / 4;
+            if(buffer.remaining() != tileBytes){
+                throw new ParseException("expected " + tileBytes + " bytes of tiles", buffer.position());
+            }
+            grid = new TileGrid(rows, columns);
+            int size = rows * columns;
+            int index = 0;
+            for(int position = buffer.position(); index < size; position++){
+                int packed = buffer.get(position);
+                for(int shift = 0; shift < 8 && index < size; shift += 2){
+                    grid.set(index++, (byte) ((packed >> shift) & 3));
+                }
+            }
+        }
+        catch (BufferUnderflowException | IllegalArgumentException e){
+            throw new ParseException("truncated or corrupt header", buffer.position());
+        }
+    }
+
+    /**
+     * Writes a map in the binary format.
+     * @param file path of the .dodm file to write
+     * @param name name of the map
+     * @param goldToWin amount of gold needed in order to win
+     * @param viewRadius how many tiles are seen in each direction with the "look" command
+     * @param lineOfSight whether walls block the view
+     * @param grid the tiles of the map, which must only be free, wall, gold or exit tiles
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(Path file, String name, int goldToWin, int viewRadius, boolean lineOfSight,
+                             TileGrid grid) throws IOException {
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        int size = grid.getRows() * grid.getColumns();
+        ByteBuffer buffer = ByteBuffer.allocate(45 + nameBytes.length + (size + 3) / 4);
+        int[] counts = new int[4];
+        for(int index = 0; index < size; index++){
+            byte tile = grid.get(index);
+            if(tile > TileGrid.EXIT){
+                throw new IllegalArgumentException("Only free, wall, gold and exit tiles can be stored");
+            }
+            counts[tile]++;
+        }
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(nameBytes.length).put(nameBytes).putInt(goldToWin)
+                .putInt(viewRadius).put((byte) (lineOfSight ? 1 : 0)).putInt(grid.getRows()).putInt(grid.getColumns())
+                .putInt(counts[TileGrid.GOLD]).putInt(counts[TileGrid.EXIT]).putInt(counts[TileGrid.FREE]);
+        for(int index = 0; index < size; index += 4){
+            int packed = 0;
+            for(int offset = 0; offset < 4 && index + offset < size; offset++){
+                packed |= grid.get(index + offset) << (2 * offset);
+            }
+            buffer.put((byte) packed);
+        }
+        buffer.flip();
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)){
+            while(buffer.hasRemaining()){
+                channel.write(buffer);
+            }
+        }
+    }
+
+    /**
+     * Returns the name of the map.
+     * @return name of the map
+     */
+    public String getName(){
+        return name;
+    }
+
+    /**
+     * Returns the amount of gold the player must have in order to win.
+     * @return amount of gold which is necessary for winning
+     */
+    public int getGoldToWin(){
+        return goldToWin;
+    }
+
+    /**
+     * Returns how many tiles are seen in each direction with the "look" command.
+     * @return radius of the view
+     */
+    public int getViewRadius(){
+        return viewRadius;
+    }
+
+    /**
+     * Returns whether walls block the view.
+     * @return true if they do
+     */
+    public boolean hasLineOfSight(){
+        return lineOfSight;
+    }
+
+    /**
+     * Returns the grid of tiles which has been read.
+     * @return the grid of tiles
+     */
+    public TileGrid getGrid(){
+        return grid;
+    }
+
+    /**
+     * Returns the number of gold tiles, as stored in the header.
+     * @return number of gold tiles
+     */
+    public int getGoldCount(){
+        return goldCount;
+    }
+
+    /**
+     * Returns the number of exit tiles, as stored in the header.
+     * @return number of exit tiles
+     */
+    public int getExitCount(){
+        return exitCount;
+    }
+
+    /**
+     * Returns the number of free tiles, as stored in the header.
+     * @return number of free tiles
+     */
+    public int getFreeCount(){
+        return freeCount;
+    }
+
+    /**
+     * Main function, which converts text maps to the binary format, writing each
+     * .dodm file next to its .txt file. Usage: BinaryMap [map files...]
+     * If no files are given, every .txt map in the Maps folder is converted.
+     * A map which cannot be converted is reported, and the others are still converted.
+     */
+    public static void main(String[] args) throws IOException {
+        File[] files;
+        if(args.length > 0){
+            files = new File[args.length];
+            for(int index = 0; index < args.length; index++){
+                files[index] = new File(args[index]);
+            }
+        }
+        else{
+            File directory = new File(BinaryMap.class.getProtectionDomain().
+                    getCodeSource().getLocation().getPath() + "/Maps");
+            files = directory.listFiles((dir, fileName) -> fileName.endsWith(".txt"));
+            if(files == null){
+                files = new File[0];
+            }
+        }
+        for(File file: files){
+            try{
+                MapLoader loader = new MapLoader(file.toPath());
+                String fileName = file.getName();
+                File binaryFile = new File(file.getParentFile(),
+                        fileName.substring(0, fileName.lastIndexOf('.')) + EXTENSION);
+                write(binaryFile.toPath(), loader.getName(), loader.getGoldToWin(),
+                        loader.getViewRadius(), loader.hasLineOfSight(), loader.getGrid());
+                System.out.println(file + " -> " + binaryFile);
+            }
+            catch (ParseException e){
+                System.out.println("Invalid map " + file + " at line " + e.getErrorOffset() + ": " + e.getMessage());
+            }
+            catch (IOException | IllegalArgumentException e){
+                // a file which cannot be read or written, or a map with tiles the format cannot store
+                System.out.println("Cannot convert map " + file + ": " + e.getMessage());
+            }
+        }
+    }
+}
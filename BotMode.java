@@ -0,0 +1,26 @@
+/**
+ * The ways in which the bot can find its way to the player.
+ */
+public enum BotMode {
+    /** The bot only plans inside the 5*5 grid it saw with its last "look" command. */
+    LOCAL,
+    /** The bot plans over the whole map with A*, towards where it last saw the player. */
+    GLOBAL,
+    /** Like GLOBAL, but using jump point search, which is faster on maps with open rooms. */
+    JUMP_POINT,
+    /**
+     * The bot always knows where the player is, and follows a flow field
+     * shared by all the bots of the game, which is computed once per player move.
+     */
+    FLOW_FIELD,
+    /**
+     * Like GLOBAL, but the search is kept from one move to the next with D* Lite,
+     * and only repaired where the moves of the bot and of the player changed it.
+     */
+    D_STAR_LITE,
+    /**
+     * The bot always knows where the player is, and picks its moves with a Monte Carlo
+     * tree search, run on every core for a fixed time, against a model of the player.
+     */
+    MONTE_CARLO
+}
@@ -1,30 +1,167 @@
-import java.util.ArrayList; //used to implement array lists
-import java.util.Random; //used to get random decisions
+import java.nio.ByteBuffer; // snapshots of the bot
+import java.util.Arrays; // copying the planned path
 
 /**
  * Class extends from Player class but has more particular methods.
- * It represents a bot player which looks for the player (randomly)
- * and when found, it chases the player using a path finding algorithm.
+ * It represents a bot player which looks for the player, exploring the parts
+ * of the map it has not seen yet, and when found, it chases the player using
+ * a path finding algorithm.
  */
 public class BotPlayer extends Player {
 
-    private ArrayList<char[]> memoryMap; // 5*5 grid shown when calling look command
+    private View view; // what the bot sees, refilled on every look
+    private GameRandom random; // the game's random numbers, used to get random decisions
+    private TileGrid memoryMap; // grid shown when calling look command, the bot being in its centre
     private int Decision = 1; // counter to alternate between moving and looking
     private boolean PlayerFound = false;
     private int playerRow;
     private int playerColumn;
+    private Lee lee; // shortest paths on the memoryMap, reused from one move to the next
+    private BotMode mode = BotMode.LOCAL;
+    private TileGrid navigationMap; // the whole map, used to plan in the global modes
+    private PathFinder pathFinder;
+    private boolean targetKnown = false; // whether the bot knows where it last saw the player
+    private int targetIndex; // index on the whole map of the tile where the player was last seen
+    private int[] path = new int[0]; // planned path from the bot to the target, in the global modes
+    private int pathLength = 0;
+    private int pathPosition = 0; // position of the bot on the planned path
+    private FlowField flowField; // steps towards the player, in the flow field mode
+    private DStarLite dStarLite; // paths to the target kept up to date between moves, in the D* Lite mode
+    private MonteCarloSearch monteCarlo; // the search shared by the bots, in the Monte Carlo mode
+    private ExploredMap explored; // the tiles the bot has seen, which it explores from
+    private int untilSample = GameMetrics.SAMPLE_INTERVAL; // searches until the next timed one
 
     /**
      * Constructor which calls the super() method
-     * from its parent class.
+     * from its parent class, and sets the bot's view.
+     * @param view View object which is filled when the bot calls the look command
+     * @param random the game's random numbers
      */
-    public BotPlayer() {
+    public BotPlayer(View view, GameRandom random) {
         super();
+        this.view = view;
+        this.random = random;
+    }
+
+    /**
+     * Constructor which copies another bot, for a copy of its game.
+     * @param other the bot being copied
+     * @param flowField the flow field of the copied game, needed by the flow field mode
+     * @param monteCarlo the search of the copied game, needed by the Monte Carlo mode
+     * @param random the random numbers of the copied game
+     */
+    public BotPlayer(BotPlayer other, FlowField flowField, MonteCarloSearch monteCarlo, GameRandom random) {
+        super(other);
+        this.random = random;
+        // the view is refilled on every look, so each bot needs its own
+        view = new View(other.view);
+        memoryMap = other.memoryMap == null ? null : view.getTiles();
+        Decision = other.Decision;
+        PlayerFound = other.PlayerFound;
+        playerRow = other.playerRow;
+        playerColumn = other.playerColumn;
+        // the memory and the D* Lite search are copied rather than created for the mode
+        setSearches(other.mode, other.navigationMap, flowField, monteCarlo);
+        explored = other.explored == null ? null : new ExploredMap(other.explored);
+        dStarLite = other.dStarLite == null ? null : new DStarLite(other.dStarLite);
+        targetKnown = other.targetKnown;
+        targetIndex = other.targetIndex;
+        path = Arrays.copyOf(other.path, other.pathLength);
+        pathLength = other.pathLength;
+        pathPosition = other.pathPosition;
+    }
+
+    /**
+     * Writes the bot to a snapshot: its position, tile and gold as a Player, its decision
+     * counter (int), whether it found the player, knows its target and has looked (a byte of
+     * flags), where it saw the player and its target (ints), its planned path as its length,
+     * its tiles and its position on it (ints), its view, and then its memory of the map and
+     * its D* Lite search, if its mode has them. The shortest paths on its view and the
+     * searches it plans its paths with are worked out again from these when needed.
+     * @param buffer the buffer written to
+     */
+    @Override
+    public void writeState(ByteBuffer buffer){
+        super.writeState(buffer);
+        int flags = (PlayerFound ? 1 : 0) | (targetKnown ? 2 : 0) | (memoryMap != null ? 4 : 0);
+        buffer.putInt(Decision).put((byte) flags);
+        buffer.putInt(playerRow).putInt(playerColumn).putInt(targetIndex);
+        buffer.putInt(pathLength);
+        for(int position = 0; position < pathLength; position++){
+            buffer.putInt(path[position]);
+        }
+        buffer.putInt(pathPosition);
+        view.writeState(buffer);
+        if(explored != null){
+            explored.writeState(buffer);
+        }
+        if(dStarLite != null){
+            dStarLite.writeState(buffer);
+        }
+    }
+
+    /**
+     * Reads the bot from a snapshot written by writeState(), by a bot with the
+     * same mode and view radius on the same map.
+     * @param buffer the buffer read from
+     * @throws IllegalArgumentException if the snapshot does not fit the bot
+     */
+    @Override
+    public void readState(ByteBuffer buffer){
+        super.readState(buffer);
+        Decision = buffer.getInt();
+        int flags = buffer.get();
+        PlayerFound = (flags & 1) != 0;
+        targetKnown = (flags & 2) != 0;
+        memoryMap = (flags & 4) != 0 ? view.getTiles() : null;
+        playerRow = buffer.getInt();
+        playerColumn = buffer.getInt();
+        targetIndex = buffer.getInt();
+        // a bot which moves rather than looks next plans on what it saw in its last look
+        if(Decision < 0 || (Decision % 2 == 0 && memoryMap == null &&
+                mode != BotMode.FLOW_FIELD && mode != BotMode.MONTE_CARLO)){
+            throw new IllegalArgumentException("invalid decision counter " + Decision);
+        }
+        int side = view.getTiles().getRows();
+        if(PlayerFound && (playerRow < 0 || playerColumn < 0 || playerRow >= side || playerColumn >= side)){
+            throw new IllegalArgumentException("the player was seen outside the bot's view");
+        }
+        if(targetKnown && (navigationMap == null || targetIndex < 0 ||
+                targetIndex >= navigationMap.getRows() * navigationMap.getColumns())){
+            throw new IllegalArgumentException("invalid target " + targetIndex);
+        }
+        int length = buffer.getInt();
+        if(length < 0 || length > buffer.remaining() / 4 || (length > 0 && navigationMap == null)){
+            throw new IllegalArgumentException("invalid path length " + length);
+        }
+        if(path.length < length){
+            path = new int[length];
+        }
+        for(int position = 0; position < length; position++){
+            int index = buffer.getInt();
+            if(index < 0 || index >= navigationMap.getRows() * navigationMap.getColumns()){
+                throw new IllegalArgumentException("invalid tile " + index + " on the planned path");
+            }
+            path[position] = index;
+        }
+        int position = buffer.getInt();
+        if(position < 0 || position > length){
+            throw new IllegalArgumentException("invalid position " + position + " on the planned path");
+        }
+        pathLength = length;
+        pathPosition = position;
+        view.readState(buffer);
+        if(explored != null){
+            explored.readState(buffer);
+        }
+        if(dStarLite != null){
+            dStarLite.readState(buffer);
+        }
     }
 
     /**
      * Sets the value of the boolean variable to false
-     * to signal that the player is no longer in the 5*5 grid
+     * to signal that the player is no longer in the grid
      * obtained when calling look.
      */
     public void lostPlayer(){
@@ -34,7 +171,7 @@ public class BotPlayer extends Player {
     /**
      * Sets the value of the boolean variable to true,
      * to signal that the player is in reach and updates
-     * its coordinates from the 5*5 grid
+     * its coordinates from the grid
      * @param row row on which the bot sees the player when
                     calling the look command
      * @param column column on which the bot sees the player
@@ -44,38 +181,101 @@ public class BotPlayer extends Player {
         PlayerFound = true;
         playerRow = row;
         playerColumn = column;
+        if(navigationMap != null){
+            // remember where the player is on the whole map, the bot being in the centre of the grid
+            targetIndex = navigationMap.index(getRow() + row - view.getRadius(), getColumn() + column - view.getRadius());
+            targetKnown = true;
+        }
 
     }
 
     /**
-     * Updates the memoryMap variable with the 5*5 grid obtained
-     * when the bot calls the look command.
-     * @param visibleMap 5*5 grid which is shown to the bot
+     * Updates the memoryMap variable with the grid obtained
+     * when the bot calls the look command, and adds its tiles
+     * to the ones the bot has explored.
+     * @param visibleMap grid which is shown to the bot
                         when calling the look command
      */
-    public void updateMemoryMap(ArrayList<char[]> visibleMap){
+    public void updateMemoryMap(TileGrid visibleMap){
         memoryMap = visibleMap;
+        if(explored != null){
+            explored.record(visibleMap, getRow(), getColumn());
+        }
+    }
+
+    /**
+     * Returns the bot's view, which the look command fills.
+     * @return the View object
+     */
+    public View getView(){
+        return view;
+    }
+
+    /**
+     * Sets the way in which the bot finds its way to the player. The global modes
+     * plan over the whole map, but only towards a position where the bot has
+     * seen the player. Every mode but the flow field remembers the tiles the
+     * bot has seen, to explore the rest of the map.
+     * @param mode the way of finding paths
+     * @param navigationMap the whole map, needed by the global modes and for its size
+     * @param flowField the flow field shared by the bots, needed by the flow field mode
+     * @param monteCarlo the search shared by the bots, needed by the Monte Carlo mode
+     */
+    public void setMode(BotMode mode, TileGrid navigationMap, FlowField flowField, MonteCarloSearch monteCarlo){
+        setSearches(mode, navigationMap, flowField, monteCarlo);
+        this.dStarLite = mode == BotMode.D_STAR_LITE ? new DStarLite(navigationMap) : null;
+        explored = mode == BotMode.FLOW_FIELD || mode == BotMode.MONTE_CARLO || navigationMap == null ? null :
+                new ExploredMap(navigationMap.getRows(), navigationMap.getColumns());
+        targetKnown = false;
+        pathLength = 0;
+    }
+
+    /**
+     * Sets the mode and the searches it shares or holds no state in, but neither
+     * the bot's memory of the map nor its D* Lite search.
+     * @param mode the way of finding paths
+     * @param navigationMap the whole map, needed by the global modes
+     * @param flowField the flow field shared by the bots, needed by the flow field mode
+     * @param monteCarlo the search shared by the bots, needed by the Monte Carlo mode
+     */
+    private void setSearches(BotMode mode, TileGrid navigationMap, FlowField flowField, MonteCarloSearch monteCarlo){
+        this.mode = mode;
+        this.navigationMap = mode == BotMode.LOCAL ? null : navigationMap;
+        this.pathFinder = mode == BotMode.GLOBAL || mode == BotMode.JUMP_POINT ?
+                new PathFinder(mode == BotMode.JUMP_POINT) : null;
+        this.flowField = mode == BotMode.FLOW_FIELD ? flowField : null;
+        this.monteCarlo = mode == BotMode.MONTE_CARLO ? monteCarlo : null;
     }
 
     /**
      * Based on the values of its fields, the bot makes a decision of whether
-     * to call the "look" command or a "move" command*/
-    public String makeDecision(){
+     * to call the "look" command or a "move" command
+     * @return the command, encoded by the Command class*/
+    public int makeDecision(){
+        if(mode == BotMode.FLOW_FIELD){
+            return followFlowField();
+        }
+        if(mode == BotMode.MONTE_CARLO){
+            return searchMove();
+        }
         /*
         * Basic strategy is that after every "move" command, the bot calls a "look" command.
         * Also, first command is always "look".
         */
         if(Decision % 2 == 1){
             Decision++;
-            return "LOOK";
+            return Command.LOOK;
         }
         else{
             Decision++;
+            if(mode != BotMode.LOCAL && targetKnown){
+                return pathToTarget();
+            }
             if(PlayerFound){
                 return pathToPlayer();
             }
             else{
-                return randomMovement();
+                return explore();
             }
         }
     }
@@ -85,7 +285,7 @@ public class BotPlayer extends Player {
      * to find the shortest path to the player's position.
      * @return the first move the bot has to make, from this shortest path
      */
-    private String pathToPlayer()
+    private int pathToPlayer()
     {
         /*
          * coordinates which will be updated, as we backtrack our way
@@ -94,16 +294,28 @@ public class BotPlayer extends Player {
         int leeRow = playerRow;
         int leeColumn = playerColumn;
         int[][] leeMap; // map which contains the minimum number of moves from the center to each point
+        int centre = view.getRadius(); // the bot is in the centre of the grid
+        int last = memoryMap.getRows() - 1; // last row and column of the grid
         /*
-         * create a Lee object, which will generate
+         * create or update the Lee object, which will generate
          * the map of minimum steps to each point from the centre
          * based on grid obtained from the "look" command
          */
-        Lee lee = new Lee(memoryMap);
+        boolean timed = GameMetrics.ENABLED && sample();
+        long start = timed ? System.nanoTime() : 0;
+        if(lee == null){
+            lee = new Lee(memoryMap);
+        }
+        else{
+            lee.update(memoryMap);
+        }
+        if(timed){
+            GameMetrics.PATHFINDING.record(System.nanoTime() - start);
+        }
         leeMap = lee.getLeeMap();
 
-        // Player is in an unreachable position (only apparently)
-        if(leeMap[leeRow][leeColumn] == 26){
+        // Player is in an unreachable position (only apparently, the bot only being told about a player it can reach)
+        if(leeMap[leeRow][leeColumn] == lee.getUnreachable()){
             return randomMovement();
         }
 
@@ -122,13 +334,13 @@ public class BotPlayer extends Player {
                     continue;
                 }
             }
-            if(leeRow < 4){
+            if(leeRow < last){
                 if(leeMap[leeRow + 1][leeColumn] < leeMap[leeRow][leeColumn]){
                     leeRow += 1;
                     continue;
                 }
             }
-            if(leeColumn < 4){
+            if(leeColumn < last){
                 if(leeMap[leeRow][leeColumn + 1] < leeMap[leeRow][leeColumn]){
                     leeColumn += 1;
                 }
@@ -136,50 +348,219 @@ public class BotPlayer extends Player {
         }
 
         // Being 1 step away from the source, we are in one of th 4 possible adjacent positions
-        if(leeRow == 2){
-            if(leeColumn == 3){
-                return "move e";
+        if(leeRow == centre){
+            if(leeColumn == centre + 1){
+                return Command.MOVE_EAST;
             }
-            if(leeColumn == 1){
-                return "move w";
+            if(leeColumn == centre - 1){
+                return Command.MOVE_WEST;
             }
         }
-        if(leeColumn == 2){
-            if(leeRow == 3){
-                return "move s";
+        if(leeColumn == centre){
+            if(leeRow == centre + 1){
+                return Command.MOVE_SOUTH;
             }
-            if(leeRow == 1){
-                return "move n";
+            if(leeRow == centre - 1){
+                return Command.MOVE_NORTH;
             }
         }
 
         return randomMovement(); // if anything went wrong along the way, end the function with a random movement
     }
 
+    /**
+     * Follows a shortest path over the whole map, to the tile where the player was last seen.
+     * The planned path is reused for as long as that tile is still on it.
+     * @return the first move the bot has to make, from this shortest path
+     */
+    private int pathToTarget(){
+        int botIndex = navigationMap.index(getRow(), getColumn());
+        if(botIndex == targetIndex){
+            // the bot got where the player was last seen, without seeing it since
+            targetKnown = false;
+            return explore();
+        }
+        if(dStarLite != null){
+            return stepTowardsTarget(botIndex);
+        }
+        if(!followsPath(botIndex)){
+            boolean timed = GameMetrics.ENABLED && sample();
+            long start = timed ? System.nanoTime() : 0;
+            boolean found = pathFinder.findPath(navigationMap, botIndex, targetIndex);
+            if(timed){
+                GameMetrics.PATHFINDING.record(System.nanoTime() - start);
+            }
+            if(!found){
+                targetKnown = false;
+                return randomMovement();
+            }
+            pathLength = pathFinder.getPathLength();
+            if(path.length < pathLength){
+                path = new int[Math.max(pathLength, path.length * 2)];
+            }
+            for(int position = 0; position < pathLength; position++){
+                path[position] = pathFinder.getPathTile(position);
+            }
+            pathPosition = 0;
+        }
+        return moveTowards(botIndex, path[pathPosition + 1]);
+    }
+
+    /**
+     * Takes the first step of a shortest path to the target, which D* Lite
+     * repairs after the bot and the target moved, instead of planning it again.
+     * @param botIndex index of the tile the bot is on
+     * @return the move command
+     */
+    private int stepTowardsTarget(int botIndex){
+        boolean timed = GameMetrics.ENABLED && sample();
+        long start = timed ? System.nanoTime() : 0;
+        boolean found = dStarLite.update(botIndex, targetIndex);
+        if(timed){
+            GameMetrics.PATHFINDING.record(System.nanoTime() - start);
+        }
+        if(!found){
+            targetKnown = false;
+            return randomMovement();
+        }
+        return moveTowards(botIndex, dStarLite.getNextTile());
+    }
+
+    /**
+     * Heads for the nearest frontier of the tiles the bot has seen. The path to it is
+     * reused for as long as its end is still a frontier. Without a frontier in reach,
+     * or without a memory of the map, the bot moves randomly.
+     * @return the move command
+     */
+    private int explore(){
+        if(explored == null){
+            return randomMovement();
+        }
+        int botIndex = explored.index(getRow(), getColumn());
+        if(!explored.followsPath(botIndex)){
+            boolean timed = GameMetrics.ENABLED && sample();
+            long start = timed ? System.nanoTime() : 0;
+            boolean found = explored.findFrontier(getRow(), getColumn());
+            if(timed){
+                GameMetrics.PATHFINDING.record(System.nanoTime() - start);
+            }
+            if(!found){
+                return randomMovement();
+            }
+        }
+        return moveTowards(botIndex, explored.getNextTile());
+    }
+
+    /**
+     * Takes the step towards the player given by the flow field. This mode does
+     * not need the "look" command, so the bot only looks when it cannot reach the player.
+     * @return the move command, or the "look" command if the player cannot be reached
+     */
+    private int followFlowField(){
+        int botIndex = navigationMap.index(getRow(), getColumn());
+        int nextIndex = flowField.nextStep(botIndex);
+        if(nextIndex == FlowField.NONE){
+            return Command.LOOK;
+        }
+        return moveTowards(botIndex, nextIndex);
+    }
+
+    /**
+     * Takes the move found by the Monte Carlo tree search. Like the flow field mode,
+     * this mode does not need the "look" command, so the bot only looks when it cannot move.
+     * @return the move command, or the "look" command if the bot cannot move
+     */
+    private int searchMove(){
+        int botIndex = navigationMap.index(getRow(), getColumn());
+        int nextIndex = monteCarlo.bestMove(botIndex, random.nextLong());
+        if(nextIndex == MonteCarloSearch.NONE){
+            return Command.LOOK;
+        }
+        return moveTowards(botIndex, nextIndex);
+    }
+
+    /**
+     * Checks if the planned path can still be used, which is when the bot is on it and
+     * the target is further along it. The path is then cut short at the target.
+     * @param botIndex index of the tile the bot is on
+     * @return true if the path can be followed, false if it has to be planned again
+     */
+    private boolean followsPath(int botIndex){
+        // the bot is either where it was, or one step further if its last move succeeded
+        if(pathPosition + 1 < pathLength && path[pathPosition + 1] == botIndex){
+            pathPosition++;
+        }
+        if(pathPosition >= pathLength || path[pathPosition] != botIndex){
+            return false;
+        }
+        for(int position = pathPosition + 1; position < pathLength; position++){
+            if(path[position] == targetIndex){
+                pathLength = position + 1;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the move which takes the bot to an adjacent tile.
+     * @param botIndex index of the tile the bot is on
+     * @param nextIndex index of the adjacent tile
+     * @return the move command
+     */
+    private int moveTowards(int botIndex, int nextIndex){
+        if(nextIndex == botIndex + 1){
+            return Command.MOVE_EAST;
+        }
+        if(nextIndex == botIndex - 1){
+            return Command.MOVE_WEST;
+        }
+        if(nextIndex > botIndex){
+            return Command.MOVE_SOUTH;
+        }
+        return Command.MOVE_NORTH;
+    }
+
+    /**
+     * Counts down to the next path finding search to be timed, when the metrics are enabled.
+     * @return true if this one is to be timed
+     */
+    private boolean sample(){
+        if(--untilSample > 0){
+            return false;
+        }
+        untilSample = GameMetrics.nextGap();
+        return true;
+    }
+
     /**
      * By generating a pseudo-random number, a random movement is being chosen.
      * Until we find a valid move, we will keep generating random decisions.
      * The bot will use its knowledge from the previous "look" command to
      * make sure that its decision will always be a success.
-     * @return the command "move " + the direction*/
-    private String randomMovement(){
-        while(true){
-            String decision = "move ";
-            int direction = new Random().nextInt(1000)%4;
-            char mapCharacter = ' ';
-            // get the tile character on which the bot would land, based on its "random" decision
+     * @return the move command*/
+    private int randomMovement(){
+        int centre = view.getRadius(); // the bot is in the centre of the grid
+        for(int retries = 0; ; retries++){
+            int decision = Command.MOVE_EAST;
+            int direction = random.nextInt(4);
+            byte mapTile = TileGrid.WALL;
+            // get the tile on which the bot would land, based on its "random" decision
             switch (direction){
-                case 0: mapCharacter = memoryMap.get(2)[3];
-                            decision = decision.replace("move ", "move e"); break;
-                case 1: mapCharacter = memoryMap.get(2)[1];
-                            decision = decision.replace("move ", "move w"); break;
-                case 2: mapCharacter = memoryMap.get(1)[2];
-                            decision = decision.replace("move ", "move n"); break;
-                case 3: mapCharacter = memoryMap.get(3)[2];
-                            decision = decision.replace("move ", "move s"); break;
+                case 0: mapTile = memoryMap.get(centre, centre + 1);
+                            decision = Command.MOVE_EAST; break;
+                case 1: mapTile = memoryMap.get(centre, centre - 1);
+                            decision = Command.MOVE_WEST; break;
+                case 2: mapTile = memoryMap.get(centre - 1, centre);
+                            decision = Command.MOVE_NORTH; break;
+                case 3: mapTile = memoryMap.get(centre + 1, centre);
+                            decision = Command.MOVE_SOUTH; break;
             }
             // check if it is valid or not
-            if(mapCharacter != '#'){
+            if(!TileGrid.isBlocking(mapTile)){
+                if(GameMetrics.ENABLED && retries > 0){
+                    GameMetrics.RANDOM_MOVEMENT_RETRIES.add(retries);
+                }
                 return decision;
             }
         }
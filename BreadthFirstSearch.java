@@ -0,0 +1,153 @@
+import java.util.Arrays; // clearing the visited tiles
+
+/**
+ * Class which represents a reusable breadth first search over a TileGrid.
+ * It computes the minimum number of moves from one or more source tiles to
+ * every tile within a maximum distance, moving only through tiles which are
+ * neither walls nor hidden. All its arrays are allocated once, and are only reallocated
+ * when it is used on a larger grid, so a search allocates nothing.
+ */
+public class BreadthFirstSearch {
+
+    public static final int UNREACHED = -1; // distance of the tiles the search did not reach
+    public static final int UNLIMITED = Integer.MAX_VALUE; // maximum distance for an unbounded search
+
+    private TileGrid grid;
+    private int[] queue = new int[0]; // indices of the tiles in the order in which they were reached
+    private int[] distance = new int[0]; // distance to each tile, valid only if visited in this search
+    private int[] visited = new int[0]; // number of the search in which each tile was last reached
+    private int search = 0; // number of the current search
+    private int head, tail; // the queue holds the tiles between these two indices
+
+    /**
+     * Starts a new search over a grid, forgetting the previous one.
+     * @param grid TileGrid object on which the search is run
+     */
+    public void start(TileGrid grid){
+        this.grid = grid;
+        int size = grid.getRows() * grid.getColumns();
+        if(queue.length < size){
+            queue = new int[size];
+            distance = new int[size];
+            visited = new int[size];
+            search = 0;
+        }
+        search++;
+        if(search == Integer.MAX_VALUE){
+            // the numbers of the searches ran out, so every tile is marked as not visited again
+            Arrays.fill(visited, 0);
+            search = 1;
+        }
+        head = 0;
+        tail = 0;
+    }
+
+    /**
+     * Adds a source tile to the search, at distance 0.
+     * Tiles which block movement and tiles which are already sources are ignored.
+     * @param row row coordinate of the source
+     * @param column column coordinate of the source
+     */
+    public void addSource(int row, int column){
+        int index = grid.index(row, column);
+        if(!TileGrid.isBlocking(grid.get(index)) && visited[index] != search){
+            visit(index, 0);
+        }
+    }
+
+    /**
+     * Runs the search from the sources which have been added.
+     * @param maxDistance the search does not go further than this
+                          distance from the sources
+     */
+    public void run(int maxDistance){
+        int columns = grid.getColumns();
+        int size = grid.getRows() * columns;
+        while(head < tail){
+            int index = queue[head++];
+            int nextDistance = distance[index] + 1;
+            if(nextDistance > maxDistance){
+                /*
+                 * tiles are reached in order of distance, so every other tile is further away.
+                 * the tile is left in the queue, so a later run with a larger distance
+                 * carries on from here.
+                 */
+                head--;
+                break;
+            }
+            int column = index % columns;
+            // going through each of the 4 neighbours, if they are inside the grid
+            if(index >= columns){
+                tryVisit(index - columns, nextDistance);
+            }
+            if(column < columns - 1){
+                tryVisit(index + 1, nextDistance);
+            }
+            if(index + columns < size){
+                tryVisit(index + columns, nextDistance);
+            }
+            if(column > 0){
+                tryVisit(index - 1, nextDistance);
+            }
+        }
+    }
+
+    /**
+     * Adds a neighbour to the queue, if it does not block movement and it has not been reached yet.
+     * @param index index of the neighbour
+     * @param tileDistance distance to the neighbour
+     */
+    private void tryVisit(int index, int tileDistance){
+        if(visited[index] != search && !TileGrid.isBlocking(grid.get(index))){
+            visit(index, tileDistance);
+        }
+    }
+
+    /**
+     * Marks a tile as reached and adds it to the queue.
+     * @param index index of the tile
+     * @param tileDistance distance to the tile
+     */
+    private void visit(int index, int tileDistance){
+        visited[index] = search;
+        distance[index] = tileDistance;
+        queue[tail++] = index;
+    }
+
+    /**
+     * Returns the distance from the closest source to a tile.
+     * @param index index of the tile, as returned by TileGrid.index()
+     * @return the distance, or UNREACHED if the search did not reach the tile
+     */
+    public int getDistance(int index){
+        return visited[index] == search ? distance[index] : UNREACHED;
+    }
+
+    /**
+     * Returns the distance from the closest source to a tile.
+     * @param row row coordinate
+     * @param column column coordinate
+     * @return the distance, or UNREACHED if the search did not reach the tile
+     */
+    public int getDistance(int row, int column){
+        return getDistance(grid.index(row, column));
+    }
+
+    /**
+     * Returns the number of tiles reached by the search, including the sources.
+     * @return number of reached tiles
+     */
+    public int getReachedCount(){
+        return tail;
+    }
+
+    /**
+     * Returns a tile reached by the search. Tiles are numbered in the order in
+     * which they were reached, which is also the order of their distances.
+     * @param order number of the tile, from 0 to getReachedCount() - 1
+     * @return index of the tile
+     */
+    public int getReached(int order){
+        return queue[order];
+    }
+}
@@ -0,0 +1,251 @@
+import java.text.ParseException; // reporting malformed map files
+import java.util.Arrays; // filling the parts of the chunks outside the map
+import java.util.concurrent.atomic.AtomicReferenceArray; // publishing the loaded chunks to every thread
+
+/**
+ * Class which represents a map too large to be kept in memory whole. Its tiles are split
+ * into square chunks, which are read from the map file the first time one of their tiles
+ * is needed, and are evicted once the chunks in memory reach a budget, the least recently
+ * used first. Recency is tracked with the clock algorithm, which approximates least recently
+ * used with a flag per chunk instead of a list reordered on every read, so reading a tile of
+ * a chunk in memory takes no lock. Only loading and evicting chunks does.
+ * The grid is read-only and shared by every game played on the map, each game keeping its
+ * own changes (the players, picked up gold) in an OverlayGrid, so evicting a chunk never
+ * loses anything.
+ */
+public class ChunkedGrid extends TileGrid {
+
+    static final int CHUNK_SHIFT = 6;
+    static final int CHUNK_SIZE = 1 << CHUNK_SHIFT; // side of the chunks
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    private static final int MIN_CHUNKS = 64; // fewest chunks kept in memory, whatever the budget
+
+    private final MapLoader source; // the map file, from which the chunks are read
+    private final int chunkRows, chunkColumns; // number of chunks down and across the map
+    private final AtomicReferenceArray<byte[]> chunks; // tiles of each chunk, or null if it is not in memory
+    private final byte[] referenced; // whether each chunk was read since the clock's hand last passed it
+    private final int[] slots; // chunk held by each slot of the cache
+    private int used = 0; // number of slots holding a chunk
+    private int hand = 0; // next slot the clock looks at
+    private final int[] freeCounts, exitCounts, goldCounts; // number of tiles of each kind in each chunk
+    private long loads = 0, evictions = 0;
+
+    /**
+     * Constructor which reads the whole map once, to check it and to count its tiles,
+     * keeping the first chunks in memory until the budget is reached.
+     * @param source MapLoader object which only read the header of the map file
+     * @param budget most bytes of tiles to keep in memory
+     * @throws ParseException if a row is ragged or contains an invalid tile
+     */
+    public ChunkedGrid(MapLoader source, long budget) throws ParseException {
+        super(source.getRows(), source.getColumns(), null);
+        this.source = source;
+        chunkRows = (getRows() + CHUNK_MASK) >> CHUNK_SHIFT;
+        chunkColumns = (getColumns() + CHUNK_MASK) >> CHUNK_SHIFT;
+        int chunkCount = chunkRows * chunkColumns;
+        chunks = new AtomicReferenceArray<>(chunkCount);
+        referenced = new byte[chunkCount];
+        slots = new int[(int) Math.min(chunkCount, Math.max(MIN_CHUNKS, budget / (CHUNK_SIZE * CHUNK_SIZE)))];
+        freeCounts = new int[chunkCount];
+        exitCounts = new int[chunkCount];
+        goldCounts = new int[chunkCount];
+        byte[] tiles = new byte[CHUNK_SIZE * CHUNK_SIZE];
+        for(int chunk = 0; chunk < chunkCount; chunk++){
+            readChunk(chunk, tiles);
+            for(int index = 0; index < tiles.length; index++){
+                switch (tiles[index]){
+                    case FREE: freeCounts[chunk]++; break;
+                    case EXIT: exitCounts[chunk]++; break;
+                    case GOLD: goldCounts[chunk]++; break;
+                    default: break;
+                }
+            }
+            if(used < slots.length){
+                slots[used++] = chunk;
+                chunks.set(chunk, tiles);
+                tiles = new byte[CHUNK_SIZE * CHUNK_SIZE];
+            }
+        }
+        freeze();
+    }
+
+    /**
+     * Reads the tiles of a chunk from the map file. The parts of the chunks
+     * on the last rows and columns which lie outside the map are walls.
+     * @param chunk index of the chunk
+     * @param tiles array which receives the tiles, CHUNK_SIZE per row
+     * @throws ParseException if a row is ragged or contains an invalid tile
+     */
+    private void readChunk(int chunk, byte[] tiles) throws ParseException {
+        int top = (chunk / chunkColumns) << CHUNK_SHIFT;
+        int left = (chunk % chunkColumns) << CHUNK_SHIFT;
+        int height = Math.min(CHUNK_SIZE, getRows() - top);
+        int width = Math.min(CHUNK_SIZE, getColumns() - left);
+        if(height < CHUNK_SIZE || width < CHUNK_SIZE){
+            Arrays.fill(tiles, WALL);
+        }
+        source.readArea(top, left, height, width, tiles, CHUNK_SIZE);
+    }
+
+    /**
+     * Loads a chunk into memory, evicting the first chunk the clock's hand finds
+     * which was not read since the hand last passed it, if the cache is full.
+     * @param chunk index of the chunk
+     * @return the chunk's tiles
+     */
+    private synchronized byte[] load(int chunk){
+        byte[] tiles = chunks.get(chunk);
+        if(tiles != null){
+            return tiles; // another thread loaded it first
+        }
+        // a new array, as other threads may still be reading the one of an evicted chunk
+        tiles = new byte[CHUNK_SIZE * CHUNK_SIZE];
+        try{
+            readChunk(chunk, tiles);
+        }
+        catch (ParseException e){
+            throw new IllegalStateException("The map file changed while it was in use", e);
+        }
+        int slot;
+        if(used < slots.length){
+            slot = used++;
+        }
+        else{
+            while(referenced[slots[hand]] != 0){
+                referenced[slots[hand]] = 0; // a second chance
+                hand = (hand + 1) % slots.length;
+            }
+            slot = hand;
+            hand = (hand + 1) % slots.length;
+            chunks.set(slots[slot], null);
+            evictions++;
+            if(GameMetrics.ENABLED){
+                GameMetrics.CHUNK_EVICTIONS.increment();
+            }
+        }
+        slots[slot] = chunk;
+        referenced[chunk] = 1;
+        chunks.set(chunk, tiles);
+        loads++;
+        if(GameMetrics.ENABLED){
+            GameMetrics.CHUNK_LOADS.increment();
+        }
+        return tiles;
+    }
+
+    /**
+     * Returns the tile at the specified coordinates, loading its chunk if needed.
+     * @param row row coordinate
+     * @param column column coordinate
+     * @return tile code
+     */
+    @Override
+    public byte get(int row, int column) {
+        int chunk = (row >> CHUNK_SHIFT) * chunkColumns + (column >> CHUNK_SHIFT);
+        byte[] tiles = chunks.get(chunk);
+        if(tiles == null){
+            tiles = load(chunk);
+        }
+        else if(referenced[chunk] == 0){
+            referenced[chunk] = 1; // a lost update only costs the chunk its second chance
+        }
+        return tiles[((row & CHUNK_MASK) << CHUNK_SHIFT) | (column & CHUNK_MASK)];
+    }
+
+    /**
+     * Returns the tile at the specified index, loading its chunk if needed.
+     * @param index index of the tile, as returned by index()
+     * @return tile code
+     */
+    @Override
+    public byte get(int index) {
+        int row = index / getColumns();
+        return get(row, index - row * getColumns());
+    }
+
+    /**
+     * Returns a copy of the grid, which can be modified independently.
+     * The copy holds every tile in memory, so it reads every chunk.
+     * @return the copy
+     */
+    @Override
+    public TileGrid copy() {
+        TileGrid copy = new TileGrid(getRows(), getColumns());
+        for(int row = 0; row < getRows(); row++){
+            for(int column = 0; column < getColumns(); column++){
+                copy.set(row, column, get(row, column));
+            }
+        }
+        return copy;
+    }
+
+    /**
+     * Returns the number of chunks of the map.
+     * @return number of chunks
+     */
+    public int getChunkCount(){
+        return freeCounts.length;
+    }
+
+    /**
+     * Returns the number of free tiles, exits or gold tiles in a chunk.
+     * @param chunk index of the chunk
+     * @param tile FREE, EXIT or GOLD
+     * @return number of tiles of that kind
+     */
+    public int countTiles(int chunk, byte tile){
+        switch (tile){
+            case FREE: return freeCounts[chunk];
+            case EXIT: return exitCounts[chunk];
+            case GOLD: return goldCounts[chunk];
+            default: throw new IllegalArgumentException("Only free tiles, exits and gold are counted");
+        }
+    }
+
+    /**
+     * Finds a tile of some kind in a chunk, the tiles being taken row after row.
+     * @param chunk index of the chunk
+     * @param tile kind of tile
+     * @param order number of tiles of that kind before it in the chunk
+     * @return index of the tile on the map
+     */
+    public int findTile(int chunk, byte tile, int order){
+        int top = (chunk / chunkColumns) << CHUNK_SHIFT;
+        int left = (chunk % chunkColumns) << CHUNK_SHIFT;
+        int bottom = Math.min(top + CHUNK_SIZE, getRows());
+        int right = Math.min(left + CHUNK_SIZE, getColumns());
+        for(int row = top; row < bottom; row++){
+            for(int column = left; column < right; column++){
+                if(get(row, column) == tile && order-- == 0){
+                    return index(row, column);
+                }
+            }
+        }
+        throw new IllegalArgumentException("The chunk has no such tile");
+    }
+
+    /**
+     * Returns the number of chunks read from the file since the map was loaded,
+     * the first reading of every chunk excluded.
+     * @return number of loads
+     */
+    public synchronized long getLoadCount(){
+        return loads;
+    }
+
+    /**
+     * Returns the number of chunks evicted from memory.
+     * @return number of evictions
+     */
+    public synchronized long getEvictionCount(){
+        return evictions;
+    }
+
+    /**
+     * Returns the number of chunks in memory.
+     * @return number of chunks
+     */
+    public synchronized int getResidentCount(){
+        return used;
+    }
+}
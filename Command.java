@@ -0,0 +1,198 @@
+/**
+ * Class which encodes the game's commands as ints, so they can be passed around and
+ * dispatched on without creating or comparing strings. The lowest 4 bits of a command
+ * are its opcode, and the 2 bits above them are the direction of a move, so every
+ * command is below 128 and is never allocated when it is boxed as an Integer.
+ * Commands are decoded from text or from raw bytes, ignoring case and allocating nothing.
+ */
+public final class Command {
+
+    // opcodes
+    public static final int INVALID = 0;
+    public static final int HELLO = 1;
+    public static final int GOLD = 2;
+    public static final int LOOK = 3;
+    public static final int PICKUP = 4;
+    public static final int QUIT = 5;
+    public static final int MOVE = 6;
+
+    // directions of a move
+    public static final int NORTH = 0;
+    public static final int EAST = 1;
+    public static final int SOUTH = 2;
+    public static final int WEST = 3;
+
+    // the move commands
+    public static final int MOVE_NORTH = move(NORTH);
+    public static final int MOVE_EAST = move(EAST);
+    public static final int MOVE_SOUTH = move(SOUTH);
+    public static final int MOVE_WEST = move(WEST);
+
+    // change of row and column made by a move in each direction, indexed by the direction
+    private static final int[] ROW_STEPS = {-1, 0, 1, 0};
+    private static final int[] COLUMN_STEPS = {0, 1, 0, -1};
+
+    private static final int MAX_LENGTH = 8; // longest text which fits in a key
+    // every command as text, and its key and encoding at the same position
+    private static final String[] TEXTS = {"hello", "gold", "look", "pickup", "quit",
+                                           "move n", "move e", "move s", "move w"};
+    private static final long[] KEYS = new long[TEXTS.length];
+    private static final int[] COMMANDS = {HELLO, GOLD, LOOK, PICKUP, QUIT,
+                                           MOVE_NORTH, MOVE_EAST, MOVE_SOUTH, MOVE_WEST};
+
+    static {
+        for(int position = 0; position < TEXTS.length; position++){
+            KEYS[position] = key(TEXTS[position]);
+        }
+    }
+
+    /**
+     * Private constructor, as the class only has static methods.
+     */
+    private Command(){
+    }
+
+    /**
+     * Returns the move command in a direction.
+     * @param direction one of NORTH, EAST, SOUTH or WEST
+     * @return the command
+     */
+    public static int move(int direction){
+        return MOVE | direction << 4;
+    }
+
+    /**
+     * Returns the opcode of a command.
+     * @param command the command
+     * @return one of the opcodes
+     */
+    public static int opcode(int command){
+        return command & 0xF;
+    }
+
+    /**
+     * Returns the direction of a move command.
+     * @param command the move command
+     * @return one of NORTH, EAST, SOUTH or WEST
+     */
+    public static int direction(int command){
+        return command >>> 4;
+    }
+
+    /**
+     * Returns the change of row made by a move in a direction.
+     * @param direction one of NORTH, EAST, SOUTH or WEST
+     * @return -1, 0 or 1
+     */
+    public static int rowStep(int direction){
+        return ROW_STEPS[direction];
+    }
+
+    /**
+     * Returns the change of column made by a move in a direction.
+     * @param direction one of NORTH, EAST, SOUTH or WEST
+     * @return -1, 0 or 1
+     */
+    public static int columnStep(int direction){
+        return COLUMN_STEPS[direction];
+    }
+
+    /**
+     * Decodes a command typed as text, such as "MOVE N" or "look".
+     * @param text the command
+     * @return the command, or INVALID if it is not recognized
+     */
+    public static int decode(CharSequence text){
+        int length = text.length();
+        if(length > MAX_LENGTH){
+            return INVALID;
+        }
+        long key = 0;
+        for(int position = 0; position < length; position++){
+            int character = lowerCase(text.charAt(position));
+            if(character == 0){
+                return INVALID;
+            }
+            key = key << 8 | character;
+        }
+        return find(key);
+    }
+
+    /**
+     * Decodes a command from the ASCII bytes of a line, without its line break.
+     * @param bytes array holding the line
+     * @param offset position of the first byte of the line
+     * @param length number of bytes in the line
+     * @return the command, or INVALID if it is not recognized
+     */
+    public static int decode(byte[] bytes, int offset, int length){
+        if(length > MAX_LENGTH){
+            return INVALID;
+        }
+        long key = 0;
+        for(int position = offset; position < offset + length; position++){
+            int character = lowerCase((char) (bytes[position] & 0xFF));
+            if(character == 0){
+                return INVALID;
+            }
+            key = key << 8 | character;
+        }
+        return find(key);
+    }
+
+    /**
+     * Returns the text of a command, in lower case.
+     * @param command the command
+     * @return the text, or "invalid" if it is not a valid command
+     */
+    public static String toString(int command){
+        for(int position = 0; position < COMMANDS.length; position++){
+            if(COMMANDS[position] == command){
+                return TEXTS[position];
+            }
+        }
+        return "invalid";
+    }
+
+    /**
+     * Packs the characters of a command's text into a long, one byte each.
+     * @param text the command's text, in lower case
+     * @return the key
+     */
+    private static long key(String text){
+        long key = 0;
+        for(int position = 0; position < text.length(); position++){
+            key = key << 8 | text.charAt(position);
+        }
+        return key;
+    }
+
+    /**
+     * Returns the command whose text packs into a key.
+     * @param key the packed text
+     * @return the command, or INVALID if no command has this text
+     */
+    private static int find(long key){
+        for(int position = 0; position < KEYS.length; position++){
+            if(KEYS[position] == key){
+                return COMMANDS[position];
+            }
+        }
+        return INVALID;
+    }
+
+    /**
+     * Converts an ASCII character to lower case.
+     * @param character the character
+     * @return the lower case character, or 0 if it cannot be part of a command
+     */
+    private static int lowerCase(char character){
+        if(character >= 'A' && character <= 'Z'){
+            return character + ('a' - 'A');
+        }
+        if(character == 0 || character > 127){
+            return 0;
+        }
+        return character;
+    }
+}
@@ -0,0 +1,218 @@
+import java.util.Arrays; // growing the provisional labels
+
+/**
+ * Class which labels the connected parts of a map. Every tile which is not a wall gets the
+ * number of its component, two tiles being in the same component if one can be reached from
+ * the other, so whether a tile can be reached from another is known in constant time. The
+ * tiles are labelled in a single pass over the rows, each tile joining the labels of the tiles
+ * above it and to its left in a union-find, and a second pass replaces those labels by the
+ * numbers of the components while it counts the tiles, gold and exits of each one.
+ */
+public class ConnectedComponents {
+
+    public static final int NONE = 0; // component of the walls
+
+    private final int[] labels; // component of each tile
+    private int count; // number of components, numbered from 1
+    private int[] sizes, goldCounts, exitCounts; // tiles, gold and exits of each component
+
+    /**
+     * Constructor which labels the components of a grid.
+     * @param grid TileGrid object whose components are labelled
+     */
+    public ConnectedComponents(TileGrid grid){
+        int columns = grid.getColumns();
+        int size = grid.getRows() * columns;
+        labels = new int[size];
+        int[] parent = new int[64]; // the provisional labels, each pointing towards the smallest it was joined to
+        int next = 1;
+        for(int index = 0; index < size; index++){
+            if(TileGrid.isBlocking(grid.get(index))){
+                continue;
+            }
+            int above = index >= columns ? labels[index - columns] : NONE;
+            int left = index % columns > 0 ? labels[index - 1] : NONE;
+            if(above == NONE && left == NONE){
+                if(next == parent.length){
+                    parent = Arrays.copyOf(parent, parent.length * 2);
+                }
+                parent[next] = next;
+                labels[index] = next++;
+            }
+            else if(above == NONE || left == NONE){
+                labels[index] = above | left;
+            }
+            else{
+                labels[index] = union(parent, above, left);
+            }
+        }
+        // every label points to a smaller one, so the root of each label is numbered before it
+        int[] numbers = new int[next];
+        for(int label = 1; label < next; label++){
+            int root = find(parent, label);
+            numbers[label] = root == label ? ++count : numbers[root];
+        }
+        sizes = new int[count + 1];
+        goldCounts = new int[count + 1];
+        exitCounts = new int[count + 1];
+        for(int index = 0; index < size; index++){
+            if(labels[index] == NONE){
+                continue;
+            }
+            int component = numbers[labels[index]];
+            labels[index] = component;
+            sizes[component]++;
+            byte tile = grid.get(index);
+            if(tile == TileGrid.GOLD){
+                goldCounts[component]++;
+            }
+            else if(tile == TileGrid.EXIT){
+                exitCounts[component]++;
+            }
+        }
+    }
+
+    /**
+     * Finds the smallest label a provisional label was joined to, halving the way to it.
+     * @param parent the provisional labels
+     * @param label the label
+     * @return the smallest label it was joined to
+     */
+    private static int find(int[] parent, int label){
+        while(parent[label] != label){
+            parent[label] = parent[parent[label]];
+            label = parent[label];
+        }
+        return label;
+    }
+
+    /**
+     * Joins two provisional labels, the larger root pointing to the smaller one.
+     * @param parent the provisional labels
+     * @param first the first label
+     * @param second the second label
+     * @return the root of both labels
+     */
+    private static int union(int[] parent, int first, int second){
+        first = find(parent, first);
+        second = find(parent, second);
+        if(first < second){
+            parent[second] = first;
+            return first;
+        }
+        parent[first] = second;
+        return second;
+    }
+
+    /**
+     * Finds a tile on the edge of a map through which the player could leave it. Only walls
+     * and exits are allowed on the edge, so that every map is enclosed.
+     * @param grid TileGrid object which is checked
+     * @return index of the first such tile, or -1 if the map is enclosed
+     */
+    public static int findOpening(TileGrid grid){
+        int rows = grid.getRows();
+        int columns = grid.getColumns();
+        for(int row = 0; row < rows; row++){
+            // the whole of the first and last rows, and the ends of the others
+            int step = row == 0 || row == rows - 1 ? 1 : Math.max(1, columns - 1);
+            for(int column = 0; column < columns; column += step){
+                byte tile = grid.get(row, column);
+                if(tile != TileGrid.WALL && tile != TileGrid.EXIT){
+                    return grid.index(row, column);
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the component of a tile.
+     * @param index index of the tile, as returned by TileGrid.index()
+     * @return number of the component, from 1 to getComponentCount(), or NONE for a wall
+     */
+    public int getComponent(int index){
+        return labels[index];
+    }
+
+    /**
+     * Checks whether a tile can be reached from another one.
+     * @param from index of the first tile
+     * @param to index of the second tile
+     * @return true if neither is a wall and they are in the same component
+     */
+    public boolean isConnected(int from, int to){
+        return labels[from] != NONE && labels[from] == labels[to];
+    }
+
+    /**
+     * Checks whether the map can be won from a component, which holds at least
+     * one exit and enough gold.
+     * @param component number of the component
+     * @param goldToWin amount of gold needed in order to win
+     * @return true if it can be won
+     */
+    public boolean canWin(int component, int goldToWin){
+        return component != NONE && exitCounts[component] > 0 && goldCounts[component] >= goldToWin;
+    }
+
+    /**
+     * Checks whether the map can be won from any of its components.
+     * @param goldToWin amount of gold needed in order to win
+     * @return true if it can be won
+     */
+    public boolean isWinnable(int goldToWin){
+        int most = getMostGold();
+        return most >= 0 && most >= goldToWin;
+    }
+
+    /**
+     * Returns the most gold held by a component with an exit, which is the
+     * most gold which can be picked up before leaving the map.
+     * @return amount of gold, or -1 if no component has an exit
+     */
+    public int getMostGold(){
+        int most = -1;
+        for(int component = 1; component <= count; component++){
+            if(exitCounts[component] > 0){
+                most = Math.max(most, goldCounts[component]);
+            }
+        }
+        return most;
+    }
+
+    /**
+     * Returns the number of components.
+     * @return number of components
+     */
+    public int getComponentCount(){
+        return count;
+    }
+
+    /**
+     * Returns the number of tiles of a component.
+     * @param component number of the component
+     * @return number of tiles
+     */
+    public int getSize(int component){
+        return sizes[component];
+    }
+
+    /**
+     * Returns the number of gold tiles of a component.
+     * @param component number of the component
+     * @return number of gold tiles
+     */
+    public int getGoldCount(int component){
+        return goldCounts[component];
+    }
+
+    /**
+     * Returns the number of exits of a component.
+     * @param component number of the component
+     * @return number of exits
+     */
+    public int getExitCount(int component){
+        return exitCounts[component];
+    }
+}
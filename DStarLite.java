@@ -0,0 +1,596 @@
+import java.nio.ByteBuffer; // snapshots of the search
+import java.util.Arrays; // growing the heap and clearing the search numbers
+
+/**
+ * Class which keeps a shortest path from a bot to its target up to date as both of them
+ * move, using D* Lite. The search runs backwards from the target, every tile holding its
+ * distance to it, and is kept from one move to the next instead of being started again.
+ * When the bot moves, only the keys of the waiting tiles change, by an offset which grows
+ * with the distance moved. When the target moves, it is treated as the edge joining it to
+ * a virtual goal moving with it, and when a tile becomes or stops being a wall, its edges
+ * change. Either way, only the tiles whose distances changed, and which lie between the bot
+ * and the target, are repaired. Its arrays hold an entry per tile of the map, are allocated
+ * by the first search and are cleared lazily, by numbering the searches.
+ */
+public class DStarLite {
+
+    private static final int INFINITY = Integer.MAX_VALUE / 4;
+    private static final int NONE = -1;
+    // a target moving further than this starts a new search, which is cheaper than the repair
+    static final int RESET_DISTANCE = 8;
+    private static final int OFFSET_LIMIT = 1 << 28; // keeps the keys within 31 bits
+
+    private final TileGrid grid;
+    private final int rows, columns;
+    private int[] distance; // g: distance to the target, as last computed
+    private int[] lookahead; // rhs: distance to the target through the best neighbour
+    private int[] heapPosition; // position of each tile in the heap, or NONE
+    private int[] valid; // number of the search in which the entries of each tile were last set
+    private int search = 0; // number of the current search
+    private int[] touched = new int[64]; // tiles whose entries were set in the current search
+    private int touchedCount = 0;
+    /*
+     * the heap holds (estimated length << 32 | distance) keys, so the shortest estimates
+     * come first and, among them, the tiles closest to the target. heapTiles holds the
+     * tile index of each key.
+     */
+    private long[] heap = new long[64];
+    private int[] heapTiles = new int[64];
+    private int heapSize = 0;
+    private int start = NONE; // tile the bot is on
+    private int target = NONE;
+    private int lastStart; // tile the bot was on when the offset was last increased
+    private int offset; // km: how far the bot moved since the search was started
+    private long expanded = 0; // number of tiles expanded since the object was created
+
+    /**
+     * Constructor which sets the map on which the paths are found.
+     * @param grid TileGrid object whose walls block the paths
+     */
+    public DStarLite(TileGrid grid){
+        this.grid = grid;
+        rows = grid.getRows();
+        columns = grid.getColumns();
+    }
+
+    /**
+     * Constructor which copies another search, for a copy of its game,
+     * so the copy takes the same steps as the original.
+     * @param other the search being copied
+     */
+    public DStarLite(DStarLite other){
+        grid = other.grid;
+        rows = other.rows;
+        columns = other.columns;
+        if(other.distance != null){
+            distance = other.distance.clone();
+            lookahead = other.lookahead.clone();
+            heapPosition = other.heapPosition.clone();
+            valid = other.valid.clone();
+        }
+        search = other.search;
+        touched = other.touched.clone();
+        touchedCount = other.touchedCount;
+        heap = other.heap.clone();
+        heapTiles = other.heapTiles.clone();
+        heapSize = other.heapSize;
+        start = other.start;
+        target = other.target;
+        lastStart = other.lastStart;
+        offset = other.offset;
+        expanded = other.expanded;
+    }
+
+    /**
+     * Moves the bot and the target, and repairs the shortest paths from the bot to the target.
+     * @param bot index of the tile the bot is on
+     * @param newTarget index of the target
+     * @return true if the target can be reached, false otherwise
+     */
+    public boolean update(int bot, int newTarget){
+        if(target == NONE || manhattan(target, newTarget) > RESET_DISTANCE || offset > OFFSET_LIMIT){
+            restart(bot, newTarget);
+        }
+        else{
+            if(bot != start){
+                offset += manhattan(lastStart, bot);
+                lastStart = bot;
+                start = bot;
+            }
+            if(newTarget != target){
+                int oldTarget = target;
+                target = newTarget;
+                updateTile(newTarget);
+                updateTile(oldTarget);
+            }
+        }
+        computeShortestPaths();
+        // the search stops once the bot's distance through its best neighbour is right
+        return lookahead(start) < INFINITY;
+    }
+
+    /**
+     * Repairs the paths after a tile became a wall or stopped being one.
+     * The next call to update() takes the change into account.
+     * @param index index of the tile which changed
+     */
+    public void tileChanged(int index){
+        if(target == NONE){
+            return;
+        }
+        updateTile(index);
+        int row = index / columns, column = index % columns;
+        if(row > 0){
+            updateTile(index - columns);
+        }
+        if(row < rows - 1){
+            updateTile(index + columns);
+        }
+        if(column > 0){
+            updateTile(index - 1);
+        }
+        if(column < columns - 1){
+            updateTile(index + 1);
+        }
+    }
+
+    /**
+     * Returns the next tile of a shortest path from the bot to the target,
+     * after a successful call to update().
+     * @return index of the neighbour of the bot closest to the target
+     */
+    public int getNextTile(){
+        int best = NONE, bestDistance = INFINITY;
+        int row = start / columns, column = start % columns;
+        if(row > 0 && distance(start - columns) < bestDistance && isOpen(start - columns)){
+            best = start - columns;
+            bestDistance = distance(best);
+        }
+        if(row < rows - 1 && distance(start + columns) < bestDistance && isOpen(start + columns)){
+            best = start + columns;
+            bestDistance = distance(best);
+        }
+        if(column > 0 && distance(start - 1) < bestDistance && isOpen(start - 1)){
+            best = start - 1;
+            bestDistance = distance(best);
+        }
+        if(column < columns - 1 && distance(start + 1) < bestDistance && isOpen(start + 1)){
+            best = start + 1;
+        }
+        return best;
+    }
+
+    /**
+     * Returns the length of the shortest path from the bot to the target, after a call to update().
+     * @return number of moves, or Integer.MAX_VALUE if the target cannot be reached
+     */
+    public int getPathLength(){
+        int length = lookahead(start);
+        return length < INFINITY ? length : Integer.MAX_VALUE;
+    }
+
+    /**
+     * Returns the number of tiles expanded by every search and repair so far.
+     * @return number of expanded tiles
+     */
+    public long getExpandedCount(){
+        return expanded;
+    }
+
+    /**
+     * Forgets the previous search, and starts a new one from the target.
+     * @param bot index of the tile the bot is on
+     * @param newTarget index of the target
+     */
+    private void restart(int bot, int newTarget){
+        newSearch();
+        heapSize = 0;
+        offset = 0;
+        start = bot;
+        lastStart = bot;
+        target = newTarget;
+        updateTile(target);
+    }
+
+    /**
+     * Numbers a new search, in which no tile has been touched yet, allocating
+     * the entries of the tiles the first time.
+     */
+    private void newSearch(){
+        int size = rows * columns;
+        if(distance == null){
+            distance = new int[size];
+            lookahead = new int[size];
+            heapPosition = new int[size];
+            valid = new int[size];
+        }
+        search++;
+        if(search == Integer.MAX_VALUE){
+            // the numbers of the searches ran out, so every tile is marked as not set again
+            Arrays.fill(valid, 0);
+            search = 1;
+        }
+        touchedCount = 0;
+    }
+
+    /**
+     * Writes the search to a snapshot: the bot's tile, the target, the tile the offset was last
+     * increased on and the offset (ints), the number of tiles expanded (long), then the number
+     * of tiles touched by the current search followed by the tile, distance and lookahead of
+     * each of them (ints), and then the size of the heap followed by its keys (long) and
+     * tiles (int) in the order of the heap. Only the tiles the search touched are written,
+     * however large the map is.
+     * @param buffer the buffer written to
+     */
+    public void writeState(ByteBuffer buffer){
+        buffer.putInt(start).putInt(target).putInt(lastStart).putInt(offset).putLong(expanded);
+        buffer.putInt(touchedCount);
+        for(int index = 0; index < touchedCount; index++){
+            int tile = touched[index];
+            buffer.putInt(tile).putInt(distance[tile]).putInt(lookahead[tile]);
+        }
+        buffer.putInt(heapSize);
+        for(int position = 0; position < heapSize; position++){
+            buffer.putLong(heap[position]).putInt(heapTiles[position]);
+        }
+    }
+
+    /**
+     * Reads the search from a snapshot written by writeState(), for the same map. The entries
+     * are set in a new search, so those of the tiles which are not in the snapshot are
+     * cleared lazily, and the search goes on exactly as the one written would have.
+     * @param buffer the buffer read from
+     * @throws IllegalArgumentException if a tile is outside the map
+     */
+    public void readState(ByteBuffer buffer){
+        start = readTile(buffer, true);
+        target = readTile(buffer, true);
+        lastStart = readTile(buffer, true);
+        offset = buffer.getInt();
+        expanded = buffer.getLong();
+        int count = buffer.getInt();
+        if(target != NONE){
+            newSearch();
+        }
+        else if(count == 0){
+            // no search was started, and the next update() starts one
+            touchedCount = 0;
+        }
+        else{
+            throw new IllegalArgumentException("tiles were touched by a search without a target");
+        }
+        for(int index = 0; index < count; index++){
+            int tile = readTile(buffer, false);
+            touch(tile);
+            distance[tile] = buffer.getInt();
+            lookahead[tile] = buffer.getInt();
+        }
+        int size = buffer.getInt();
+        if(size < 0 || size > touchedCount){
+            throw new IllegalArgumentException("invalid heap size " + size);
+        }
+        if(heap.length < size){
+            heap = new long[size];
+            heapTiles = new int[size];
+        }
+        for(int position = 0; position < size; position++){
+            heap[position] = buffer.getLong();
+            int tile = readTile(buffer, false);
+            if(valid[tile] != search){
+                throw new IllegalArgumentException("tile " + tile + " is in the heap but was not touched");
+            }
+            heapTiles[position] = tile;
+            heapPosition[tile] = position;
+        }
+        heapSize = size;
+    }
+
+    /**
+     * Reads the index of a tile from a snapshot, checking that it is on the map.
+     * @param buffer the buffer read from
+     * @param orNone true if NONE is also accepted
+     * @return index of the tile
+     * @throws IllegalArgumentException if the tile is outside the map
+     */
+    private int readTile(ByteBuffer buffer, boolean orNone){
+        int tile = buffer.getInt();
+        if((tile < 0 || tile >= rows * columns) && !(orNone && tile == NONE)){
+            throw new IllegalArgumentException("invalid tile " + tile + " of a search");
+        }
+        return tile;
+    }
+
+    /**
+     * Computes the distances to the target until the bot's distance is right, expanding the
+     * waiting tiles in the order of their keys. A tile whose distance went down passes it on
+     * to its neighbours, and one whose distance went up is first raised to infinity, its
+     * neighbours looking for another way to the target.
+     */
+    private void computeShortestPaths(){
+        while(heapSize > 0 && (heap[0] < key(start) || lookahead(start) > distance(start))){
+            int tile = heapTiles[0];
+            long oldKey = heap[0];
+            long newKey = key(tile);
+            expanded++;
+            if(oldKey < newKey){
+                // the key was computed before the bot moved
+                heap[0] = newKey;
+                siftDown(0);
+            }
+            else if(distance(tile) > lookahead(tile)){
+                distance[tile] = lookahead[tile];
+                remove(tile);
+                int row = tile / columns, column = tile % columns;
+                if(row > 0){
+                    lower(tile - columns, distance[tile] + 1);
+                }
+                if(row < rows - 1){
+                    lower(tile + columns, distance[tile] + 1);
+                }
+                if(column > 0){
+                    lower(tile - 1, distance[tile] + 1);
+                }
+                if(column < columns - 1){
+                    lower(tile + 1, distance[tile] + 1);
+                }
+            }
+            else{
+                int oldDistance = distance(tile);
+                distance[tile] = INFINITY;
+                if(lookahead(tile) == oldDistance){
+                    updateTile(tile);
+                }
+                else{
+                    heapUpdate(tile);
+                }
+                int row = tile / columns, column = tile % columns;
+                if(row > 0){
+                    raise(tile - columns, oldDistance + 1);
+                }
+                if(row < rows - 1){
+                    raise(tile + columns, oldDistance + 1);
+                }
+                if(column > 0){
+                    raise(tile - 1, oldDistance + 1);
+                }
+                if(column < columns - 1){
+                    raise(tile + 1, oldDistance + 1);
+                }
+            }
+        }
+    }
+
+    /**
+     * Lets a neighbour of a tile whose distance went down reach the target through it.
+     * @param tile index of the neighbour
+     * @param through distance of the neighbour through the tile
+     */
+    private void lower(int tile, int through){
+        if(tile != target && isOpen(tile) && through < lookahead(tile)){
+            touch(tile);
+            lookahead[tile] = through;
+            heapUpdate(tile);
+        }
+    }
+
+    /**
+     * Makes a neighbour of a tile whose distance went up look for another way
+     * to the target, if it reached the target through that tile.
+     * @param tile index of the neighbour
+     * @param through distance the neighbour had through the tile
+     */
+    private void raise(int tile, int through){
+        if(tile != target && isOpen(tile) && lookahead(tile) == through){
+            updateTile(tile);
+        }
+    }
+
+    /**
+     * Computes the distance of a tile through its best neighbour again,
+     * and adds it to the heap, or removes it, depending on whether it changed.
+     * @param tile index of the tile
+     */
+    private void updateTile(int tile){
+        touch(tile);
+        if(!isOpen(tile)){
+            lookahead[tile] = INFINITY;
+        }
+        else if(tile == target){
+            lookahead[tile] = 0;
+        }
+        else{
+            int best = INFINITY;
+            int row = tile / columns, column = tile % columns;
+            if(row > 0 && isOpen(tile - columns)){
+                best = Math.min(best, distance(tile - columns) + 1);
+            }
+            if(row < rows - 1 && isOpen(tile + columns)){
+                best = Math.min(best, distance(tile + columns) + 1);
+            }
+            if(column > 0 && isOpen(tile - 1)){
+                best = Math.min(best, distance(tile - 1) + 1);
+            }
+            if(column < columns - 1 && isOpen(tile + 1)){
+                best = Math.min(best, distance(tile + 1) + 1);
+            }
+            lookahead[tile] = Math.min(best, INFINITY);
+        }
+        heapUpdate(tile);
+    }
+
+    /**
+     * Adds a tile to the heap, moves it to its new key or removes it,
+     * depending on whether its two distances differ.
+     * @param tile index of the tile, touched in this search
+     */
+    private void heapUpdate(int tile){
+        boolean waiting = heapPosition[tile] != NONE;
+        if(distance[tile] != lookahead[tile]){
+            long newKey = key(tile);
+            if(!waiting){
+                if(heapSize == heap.length){
+                    heap = Arrays.copyOf(heap, heapSize * 2);
+                    heapTiles = Arrays.copyOf(heapTiles, heapSize * 2);
+                }
+                heap[heapSize] = newKey;
+                heapTiles[heapSize] = tile;
+                heapPosition[tile] = heapSize;
+                siftUp(heapSize++);
+            }
+            else{
+                int position = heapPosition[tile];
+                long oldKey = heap[position];
+                heap[position] = newKey;
+                if(newKey < oldKey){
+                    siftUp(position);
+                }
+                else{
+                    siftDown(position);
+                }
+            }
+        }
+        else if(waiting){
+            remove(tile);
+        }
+    }
+
+    /**
+     * Removes a tile from the heap.
+     * @param tile index of the tile, which is in the heap
+     */
+    private void remove(int tile){
+        int position = heapPosition[tile];
+        heapPosition[tile] = NONE;
+        heapSize--;
+        if(position == heapSize){
+            return;
+        }
+        long oldKey = heap[position];
+        heap[position] = heap[heapSize];
+        heapTiles[position] = heapTiles[heapSize];
+        heapPosition[heapTiles[position]] = position;
+        if(heap[position] < oldKey){
+            siftUp(position);
+        }
+        else{
+            siftDown(position);
+        }
+    }
+
+    /**
+     * Moves a key up the heap until its parent is not larger.
+     * @param position position of the key
+     */
+    private void siftUp(int position){
+        long key = heap[position];
+        int tile = heapTiles[position];
+        while(position > 0){
+            int parent = (position - 1) / 2;
+            if(heap[parent] <= key){
+                break;
+            }
+            heap[position] = heap[parent];
+            heapTiles[position] = heapTiles[parent];
+            heapPosition[heapTiles[position]] = position;
+            position = parent;
+        }
+        heap[position] = key;
+        heapTiles[position] = tile;
+        heapPosition[tile] = position;
+    }
+
+    /**
+     * Moves a key down the heap until its children are not smaller.
+     * @param position position of the key
+     */
+    private void siftDown(int position){
+        long key = heap[position];
+        int tile = heapTiles[position];
+        while(true){
+            int child = 2 * position + 1;
+            if(child >= heapSize){
+                break;
+            }
+            if(child + 1 < heapSize && heap[child + 1] < heap[child]){
+                child++;
+            }
+            if(heap[child] >= key){
+                break;
+            }
+            heap[position] = heap[child];
+            heapTiles[position] = heapTiles[child];
+            heapPosition[heapTiles[position]] = position;
+            position = child;
+        }
+        heap[position] = key;
+        heapTiles[position] = tile;
+        heapPosition[tile] = position;
+    }
+
+    /**
+     * Computes the key of a tile: the length of the shortest path from the bot through
+     * the tile to the target, as far as it is known, and then the tile's distance.
+     * @param tile index of the tile
+     * @return the key
+     */
+    private long key(int tile){
+        int known = Math.min(distance(tile), lookahead(tile));
+        int estimate = Math.min(known + manhattan(start, tile) + offset, INFINITY * 2);
+        return (long) estimate << 32 | known;
+    }
+
+    /**
+     * Sets the entries of a tile for this search, if they were set by an older one.
+     * @param tile index of the tile
+     */
+    private void touch(int tile){
+        if(valid[tile] != search){
+            valid[tile] = search;
+            if(touchedCount == touched.length){
+                touched = Arrays.copyOf(touched, touchedCount * 2);
+            }
+            touched[touchedCount++] = tile;
+            distance[tile] = INFINITY;
+            lookahead[tile] = INFINITY;
+            heapPosition[tile] = NONE;
+        }
+    }
+
+    /**
+     * Returns the distance of a tile to the target, as last computed.
+     * @param tile index of the tile
+     * @return the distance, or INFINITY
+     */
+    private int distance(int tile){
+        return valid[tile] == search ? distance[tile] : INFINITY;
+    }
+
+    /**
+     * Returns the distance of a tile to the target through its best neighbour.
+     * @param tile index of the tile
+     * @return the distance, or INFINITY
+     */
+    private int lookahead(int tile){
+        return valid[tile] == search ? lookahead[tile] : INFINITY;
+    }
+
+    /**
+     * Checks if a tile can be walked on.
+     * @param tile index of the tile
+     * @return true if it is not a wall
+     */
+    private boolean isOpen(int tile){
+        return grid.get(tile) != TileGrid.WALL;
+    }
+
+    /**
+     * Returns the number of moves between two tiles on a map without walls,
+     * which never overestimates the length of a path between them.
+     * @param from index of the first tile
+     * @param to index of the second tile
+     * @return the Manhattan distance
+     */
+    private int manhattan(int from, int to){
+        return Math.abs(from / columns - to / columns) + Math.abs(from % columns - to % columns);
+    }
+}
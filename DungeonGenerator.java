@@ -0,0 +1,549 @@
+import java.io.BufferedOutputStream; // writing the map file in large blocks
+import java.io.File; // the Maps folder
+import java.io.IOException; // failing to write the map file
+import java.io.OutputStream; // writing the map file
+import java.nio.charset.StandardCharsets; // encoding the header
+import java.nio.file.Files; // creating the map file
+import java.nio.file.Path; // location of the map file
+import java.util.concurrent.ForkJoinPool; // generating the chunks on all the cores
+import java.util.concurrent.RecursiveAction; // splitting the chunks between the cores
+
+/**
+ * Class which generates dungeons of any size, made of rooms, caves or mazes, and writes
+ * them in the format of the Maps folder. The map is cut into square chunks which are
+ * generated in parallel, each from its own seed, so the same seed always gives the same
+ * map whatever the number of cores. Every chunk is connected, and is joined to its
+ * neighbours through the walls between them, so every free tile of the map can be reached
+ * from every other one. The gold and the exits are then placed on free tiles, which makes
+ * the map winnable from wherever the player spawns.
+ */
+public class DungeonGenerator {
+
+    /**
+     * The kinds of dungeon the generator can make.
+     */
+    public enum Style {
+        /** Rectangular rooms, found by a binary space partition, and joined by corridors. */
+        ROOMS,
+        /** Caves grown by a cellular automaton. */
+        CAVES,
+        /** A maze of corridors one tile wide. */
+        MAZE
+    }
+
+    static final int CHUNK_SIZE = 128; // side of the chunks, even so that the mazes line up between them
+    static final int MIN_SIZE = 5; // fewest rows and columns of a map, walls included
+    private static final int MIN_LEAF = 10; // smallest side of a part of a chunk which gets its own room
+    private static final int CAVE_FILL_PERCENT = 45; // share of the tiles which start as walls in the caves
+    private static final int CAVE_STEPS = 4; // steps of the cellular automaton
+    private static final int[] ROW_STEPS = {-1, 0, 1, 0}; // north, east, south, west
+    private static final int[] COLUMN_STEPS = {0, 1, 0, -1};
+    // directory which contains all the maps
+    private static final File directory = new File(DungeonGenerator.class.getProtectionDomain().
+                                            getCodeSource().getLocation().getPath() + "/Maps");
+
+    private final Style style;
+    private final int rows, columns;
+    private final long seed;
+    private final int chunkRows, chunkColumns; // number of chunks down and across the map
+    private TileGrid grid;
+    private int[] anchors; // index of a free tile of each chunk, through which it is joined to its neighbours
+
+    /**
+     * Class which generates a range of chunks, splitting it in halves
+     * until a single chunk is left.
+     */
+    private class ChunksTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int first, last; // the chunks from first to last - 1
+
+        /**
+         * Constructor which sets the range of chunks.
+         * @param first index of the first chunk
+         * @param last index after the last chunk
+         */
+        private ChunksTask(int first, int last){
+            this.first = first;
+            this.last = last;
+        }
+
+        /**
+         * Generates the chunk, or splits the chunks into two tasks.
+         */
+        @Override
+        protected void compute(){
+            if(last - first == 1){
+                generateChunk(first);
+                return;
+            }
+            int middle = (first + last) >>> 1;
+            invokeAll(new ChunksTask(first, middle), new ChunksTask(middle, last));
+        }
+    }
+
+    /**
+     * Constructor which sets the kind and the size of the dungeon.
+     * @param style the kind of dungeon
+     * @param rows number of rows, the enclosing walls included
+     * @param columns number of columns, the enclosing walls included
+     * @param seed seed of the random numbers, from which the same map can be generated again
+     */
+    public DungeonGenerator(Style style, int rows, int columns, long seed){
+        if(rows < MIN_SIZE || columns < MIN_SIZE || (long) rows * columns > Integer.MAX_VALUE){
+            throw new IllegalArgumentException("Invalid map size " + rows + "x" + columns);
+        }
+        this.style = style;
+        this.rows = rows;
+        this.columns = columns;
+        this.seed = seed;
+        // the last chunk of a row or column also takes what is left over, so no chunk is a sliver
+        chunkRows = Math.max(1, (rows - 1) / CHUNK_SIZE);
+        chunkColumns = Math.max(1, (columns - 1) / CHUNK_SIZE);
+    }
+
+    /**
+     * Generates the dungeon.
+     * @param gold number of gold tiles to place
+     * @param exits number of exits to place
+     * @return the map's tiles
+     * @throws IllegalArgumentException if the dungeon has too few free tiles for the gold and the exits
+     */
+    public TileGrid generate(int gold, int exits){
+        grid = new TileGrid(rows, columns);
+        anchors = new int[chunkRows * chunkColumns];
+        ForkJoinPool.commonPool().invoke(new ChunksTask(0, anchors.length));
+        stitch();
+        place(gold, exits);
+        return grid;
+    }
+
+    /**
+     * Returns the first row of a chunk, which is a wall between it and the chunk above.
+     * @param chunkRow row of the chunk among the chunks
+     * @return the row on the map
+     */
+    private int chunkTop(int chunkRow){
+        return chunkRow * CHUNK_SIZE;
+    }
+
+    /**
+     * Returns the row after the last one of a chunk.
+     * @param chunkRow row of the chunk among the chunks
+     * @return the row on the map
+     */
+    private int chunkBottom(int chunkRow){
+        return chunkRow == chunkRows - 1 ? rows : (chunkRow + 1) * CHUNK_SIZE;
+    }
+
+    /**
+     * Returns the first column of a chunk, which is a wall between it and the chunk on its left.
+     * @param chunkColumn column of the chunk among the chunks
+     * @return the column on the map
+     */
+    private int chunkLeft(int chunkColumn){
+        return chunkColumn * CHUNK_SIZE;
+    }
+
+    /**
+     * Returns the column after the last one of a chunk.
+     * @param chunkColumn column of the chunk among the chunks
+     * @return the column on the map
+     */
+    private int chunkRight(int chunkColumn){
+        return chunkColumn == chunkColumns - 1 ? columns : (chunkColumn + 1) * CHUNK_SIZE;
+    }
+
+    /**
+     * Fills a chunk with walls, and carves its rooms, caves or maze. The first row and column
+     * of the chunk stay walls, as do the last ones of the map, which gives every chunk its own
+     * walls and the map its enclosing one.
+     * @param chunk index of the chunk
+     */
+    private void generateChunk(int chunk){
+        int chunkRow = chunk / chunkColumns;
+        int chunkColumn = chunk % chunkColumns;
+        for(int row = chunkTop(chunkRow); row < chunkBottom(chunkRow); row++){
+            for(int column = chunkLeft(chunkColumn); column < chunkRight(chunkColumn); column++){
+                grid.set(row, column, TileGrid.WALL);
+            }
+        }
+        // the carved tiles, inclusive
+        int top = chunkTop(chunkRow) + 1;
+        int left = chunkLeft(chunkColumn) + 1;
+        int bottom = Math.min(chunkBottom(chunkRow), rows - 1) - 1;
+        int right = Math.min(chunkRight(chunkColumn), columns - 1) - 1;
+        // every chunk has its own random numbers, so the chunks can be generated in any order
+        GameRandom random = new GameRandom(new GameRandom(seed + chunk).nextLong());
+        switch (style){
+            case ROOMS: anchors[chunk] = rooms(random, top, left, bottom, right); break;
+            case CAVES: anchors[chunk] = caves(random, top, left, bottom, right); break;
+            default: anchors[chunk] = maze(random, top, left, bottom, right);
+        }
+    }
+
+    /**
+     * Splits an area in two, along its longer side, until the parts are too small to split,
+     * carves a room in each part, and joins the rooms of the two halves of every split.
+     * @param random the chunk's random numbers
+     * @param top first row of the area
+     * @param left first column of the area
+     * @param bottom last row of the area
+     * @param right last column of the area
+     * @return index of a tile of one of the area's rooms
+     */
+    private int rooms(GameRandom random, int top, int left, int bottom, int right){
+        int height = bottom - top + 1;
+        int width = right - left + 1;
+        boolean splitRows = height != width ? height > width : random.nextInt(2) == 0;
+        int length = splitRows ? height : width;
+        if(length >= 2 * MIN_LEAF){
+            int cut = MIN_LEAF + random.nextInt(length - 2 * MIN_LEAF + 1); // length of the first part
+            int first, second;
+            if(splitRows){
+                first = rooms(random, top, left, top + cut - 1, right);
+                second = rooms(random, top + cut, left, bottom, right);
+            }
+            else{
+                first = rooms(random, top, left, bottom, left + cut - 1);
+                second = rooms(random, top, left + cut, bottom, right);
+            }
+            corridor(first, second);
+            return random.nextInt(2) == 0 ? first : second;
+        }
+        // a room of at least half the part, away from its edges when there is space
+        int rowMargin = height >= 3 ? 1 : 0;
+        int columnMargin = width >= 3 ? 1 : 0;
+        int roomHeight = roomLength(random, height - 2 * rowMargin);
+        int roomWidth = roomLength(random, width - 2 * columnMargin);
+        int roomTop = top + rowMargin + random.nextInt(height - 2 * rowMargin - roomHeight + 1);
+        int roomLeft = left + columnMargin + random.nextInt(width - 2 * columnMargin - roomWidth + 1);
+        for(int row = roomTop; row < roomTop + roomHeight; row++){
+            for(int column = roomLeft; column < roomLeft + roomWidth; column++){
+                grid.set(row, column, TileGrid.FREE);
+            }
+        }
+        return grid.index(roomTop + roomHeight / 2, roomLeft + roomWidth / 2);
+    }
+
+    /**
+     * Picks the length of a side of a room.
+     * @param random the chunk's random numbers
+     * @param space the length available
+     * @return a length from half the space to all of it
+     */
+    private int roomLength(GameRandom random, int space){
+        return (space + 1) / 2 + random.nextInt(space / 2 + 1);
+    }
+
+    /**
+     * Grows caves in an area with a cellular automaton: the tiles start as walls or free
+     * at random, then become walls when most of their neighbours are walls, and free when
+     * most of them are free. Only the largest cave is kept, so the area is connected.
+     * @param random the chunk's random numbers
+     * @param top first row of the area
+     * @param left first column of the area
+     * @param bottom last row of the area
+     * @param right last column of the area
+     * @return index of the tile of the cave closest to the middle of the area
+     */
+    private int caves(GameRandom random, int top, int left, int bottom, int right){
+        int height = bottom - top + 1;
+        int width = right - left + 1;
+        boolean[] walls = new boolean[height * width];
+        boolean[] next = new boolean[height * width];
+        for(int index = 0; index < walls.length; index++){
+            walls[index] = random.nextInt(100) < CAVE_FILL_PERCENT;
+        }
+        for(int step = 0; step < CAVE_STEPS; step++){
+            for(int row = 0; row < height; row++){
+                for(int column = 0; column < width; column++){
+                    // the tiles around the area count as walls
+                    int neighbours = 0;
+                    for(int rowStep = -1; rowStep <= 1; rowStep++){
+                        for(int columnStep = -1; columnStep <= 1; columnStep++){
+                            int neighbourRow = row + rowStep;
+                            int neighbourColumn = column + columnStep;
+                            if((rowStep != 0 || columnStep != 0) && (neighbourRow < 0 || neighbourRow >= height ||
+                                    neighbourColumn < 0 || neighbourColumn >= width ||
+                                    walls[neighbourRow * width + neighbourColumn])){
+                                neighbours++;
+                            }
+                        }
+                    }
+                    int index = row * width + column;
+                    next[index] = neighbours > 4 || (neighbours == 4 && walls[index]);
+                }
+            }
+            boolean[] swap = walls;
+            walls = next;
+            next = swap;
+        }
+        // label the caves, keeping the largest one and its tile closest to the middle
+        int[] cave = new int[height * width]; // number of the cave of each free tile, 0 if not labelled yet
+        int[] queue = new int[height * width];
+        int caves = 0, largest = 0, largestSize = 0, anchor = -1;
+        for(int start = 0; start < walls.length; start++){
+            if(walls[start] || cave[start] != 0){
+                continue;
+            }
+            caves++;
+            int head = 0, tail = 0;
+            int closest = start, closestDistance = Integer.MAX_VALUE;
+            cave[start] = caves;
+            queue[tail++] = start;
+            while(head < tail){
+                int index = queue[head++];
+                int row = index / width;
+                int column = index % width;
+                int distance = Math.abs(row - height / 2) + Math.abs(column - width / 2);
+                if(distance < closestDistance){
+                    closest = index;
+                    closestDistance = distance;
+                }
+                for(int direction = 0; direction < 4; direction++){
+                    int neighbourRow = row + ROW_STEPS[direction];
+                    int neighbourColumn = column + COLUMN_STEPS[direction];
+                    if(neighbourRow >= 0 && neighbourRow < height && neighbourColumn >= 0 && neighbourColumn < width){
+                        int neighbour = neighbourRow * width + neighbourColumn;
+                        if(!walls[neighbour] && cave[neighbour] == 0){
+                            cave[neighbour] = caves;
+                            queue[tail++] = neighbour;
+                        }
+                    }
+                }
+            }
+            if(tail > largestSize){
+                largest = caves;
+                largestSize = tail;
+                anchor = closest;
+            }
+        }
+        if(anchor < 0){
+            // the automaton filled the whole area, so a single tile is left free
+            anchor = (height / 2) * width + width / 2;
+            largest = caves + 1;
+            cave[anchor] = largest;
+        }
+        for(int row = 0; row < height; row++){
+            for(int column = 0; column < width; column++){
+                if(cave[row * width + column] == largest){
+                    grid.set(top + row, left + column, TileGrid.FREE);
+                }
+            }
+        }
+        return grid.index(top + anchor / width, left + anchor % width);
+    }
+
+    /**
+     * Carves a maze in an area with a randomised depth first search. The cells of the maze are
+     * the tiles whose row and column are both odd, and the walls between them the tiles in between.
+     * @param random the chunk's random numbers
+     * @param top first row of the area, which is odd
+     * @param left first column of the area, which is odd
+     * @param bottom last row of the area
+     * @param right last column of the area
+     * @return index of the first cell of the maze
+     */
+    private int maze(GameRandom random, int top, int left, int bottom, int right){
+        int cellRows = (bottom - top) / 2 + 1;
+        int cellColumns = (right - left) / 2 + 1;
+        boolean[] visited = new boolean[cellRows * cellColumns];
+        int[] stack = new int[cellRows * cellColumns];
+        int[] choices = new int[4];
+        int size = 0;
+        int start = random.nextInt(visited.length);
+        visited[start] = true;
+        stack[size++] = start;
+        grid.set(top + 2 * (start / cellColumns), left + 2 * (start % cellColumns), TileGrid.FREE);
+        while(size > 0){
+            int cell = stack[size - 1];
+            int cellRow = cell / cellColumns;
+            int cellColumn = cell % cellColumns;
+            int options = 0;
+            for(int direction = 0; direction < 4; direction++){
+                int nextRow = cellRow + ROW_STEPS[direction];
+                int nextColumn = cellColumn + COLUMN_STEPS[direction];
+                if(nextRow >= 0 && nextRow < cellRows && nextColumn >= 0 && nextColumn < cellColumns &&
+                        !visited[nextRow * cellColumns + nextColumn]){
+                    choices[options++] = direction;
+                }
+            }
+            if(options == 0){
+                size--; // a dead end, so the search goes back
+                continue;
+            }
+            int direction = choices[random.nextInt(options)];
+            int next = (cellRow + ROW_STEPS[direction]) * cellColumns + cellColumn + COLUMN_STEPS[direction];
+            visited[next] = true;
+            stack[size++] = next;
+            // the wall between the two cells, then the new cell
+            int row = top + 2 * cellRow + ROW_STEPS[direction];
+            int column = left + 2 * cellColumn + COLUMN_STEPS[direction];
+            grid.set(row, column, TileGrid.FREE);
+            grid.set(row + ROW_STEPS[direction], column + COLUMN_STEPS[direction], TileGrid.FREE);
+        }
+        return grid.index(top, left);
+    }
+
+    /**
+     * Carves a corridor between two tiles, first along the row of the first one,
+     * then along the column of the second one.
+     * @param from index of the first tile
+     * @param to index of the second tile
+     */
+    private void corridor(int from, int to){
+        int fromRow = from / columns, fromColumn = from % columns;
+        int toRow = to / columns, toColumn = to % columns;
+        for(int column = Math.min(fromColumn, toColumn); column <= Math.max(fromColumn, toColumn); column++){
+            grid.set(fromRow, column, TileGrid.FREE);
+        }
+        for(int row = Math.min(fromRow, toRow); row <= Math.max(fromRow, toRow); row++){
+            grid.set(row, toColumn, TileGrid.FREE);
+        }
+    }
+
+    /**
+     * Joins every chunk to the chunks on its right and below it, through the walls between them.
+     * The corridors only cross the two chunks they join, and never the enclosing wall.
+     */
+    private void stitch(){
+        for(int chunk = 0; chunk < anchors.length; chunk++){
+            if(chunk % chunkColumns < chunkColumns - 1){
+                corridor(anchors[chunk], anchors[chunk + 1]);
+            }
+            if(chunk / chunkColumns < chunkRows - 1){
+                corridor(anchors[chunk], anchors[chunk + chunkColumns]);
+            }
+        }
+    }
+
+    /**
+     * Checks that every free tile can be reached, and places the gold and the exits on random free tiles.
+     * @param gold number of gold tiles
+     * @param exits number of exits
+     * @throws IllegalArgumentException if there are too few free tiles
+     * @throws IllegalStateException if a free tile cannot be reached, which would be a bug
+     */
+    private void place(int gold, int exits){
+        int free = 0;
+        for(int index = 0; index < rows * columns; index++){
+            if(grid.get(index) == TileGrid.FREE){
+                free++;
+            }
+        }
+        BreadthFirstSearch search = new BreadthFirstSearch();
+        search.start(grid);
+        search.addSource(anchors[0] / columns, anchors[0] % columns);
+        search.run(BreadthFirstSearch.UNLIMITED);
+        if(search.getReachedCount() != free){
+            throw new IllegalStateException("The generated map is not connected");
+        }
+        // the player and a bot need a free tile each
+        if(gold < 0 || exits < 1 || (long) gold + exits + 2 > free){
+            throw new IllegalArgumentException("The map has " + free + " free tiles, too few for " +
+                    gold + " gold and " + exits + " exits");
+        }
+        GameRandom random = new GameRandom(seed);
+        placeTiles(random, TileGrid.GOLD, gold);
+        placeTiles(random, TileGrid.EXIT, exits);
+    }
+
+    /**
+     * Turns random free tiles into another kind of tile.
+     * @param random the map's random numbers
+     * @param tile the kind of tile
+     * @param count number of tiles
+     */
+    private void placeTiles(GameRandom random, byte tile, int count){
+        int size = rows * columns;
+        while(count > 0){
+            int index = random.nextInt(size);
+            if(grid.get(index) == TileGrid.FREE){
+                grid.set(index, tile);
+                count--;
+            }
+        }
+    }
+
+    /**
+     * Writes a map in the text format of the Maps folder.
+     * @param file path of the file
+     * @param name name of the map
+     * @param goldToWin amount of gold needed to win
+     * @param grid the map's tiles
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(Path file, String name, int goldToWin, TileGrid grid) throws IOException {
+        try(OutputStream output = new BufferedOutputStream(Files.newOutputStream(file), 1 << 16)){
+            output.write(("name " + name + "\nwin " + goldToWin + "\n").getBytes(StandardCharsets.UTF_8));
+            byte[] line = new byte[grid.getColumns() + 1]; // reused for every row
+            line[grid.getColumns()] = '\n';
+            for(int row = 0; row < grid.getRows(); row++){
+                for(int column = 0; column < grid.getColumns(); column++){
+                    line[column] = (byte) TileGrid.toCharacter(grid.get(row, column));
+                }
+                output.write(line);
+            }
+        }
+    }
+
+    /**
+     * Main function. Usage: DungeonGenerator [rooms|caves|maze] [rows] [columns] [seed] [file]
+     * The map is written to the given file, or to the Maps folder, under a name made of its
+     * style, size and seed. The seed is random if it is not given. The gold needed to win is
+     * chosen with the "win" system property, the gold placed with "gold" and the exits with "exits",
+     * e.g. -Dwin=10 -Dgold=15 -Dexits=2, and they otherwise grow with the size of the map.
+     * @param args the command line arguments
+     */
+    public static void main(String[] args) throws IOException {
+        if(args.length < 3){
+            System.out.println("Usage: DungeonGenerator [rooms|caves|maze] [rows] [columns] [seed] [file]");
+            return;
+        }
+        Style style;
+        int rows, columns;
+        long seed;
+        try{
+            style = Style.valueOf(args[0].toUpperCase());
+            rows = Integer.parseInt(args[1]);
+            columns = Integer.parseInt(args[2]);
+            seed = args.length > 3 ? Long.parseLong(args[3]) : System.nanoTime();
+        }
+        catch (IllegalArgumentException e){
+            System.out.println("Usage: DungeonGenerator [rooms|caves|maze] [rows] [columns] [seed] [file]");
+            return;
+        }
+        long area = (long) rows * columns;
+        int win = Integer.getInteger("win", (int) Math.max(2, Math.min(area / 2000, Integer.MAX_VALUE / 2)));
+        int gold = Integer.getInteger("gold", win + win / 2);
+        int exits = Integer.getInteger("exits", (int) Math.max(1, area / 50000));
+        if(win < 0 || exits < 1){
+            System.out.println("The map needs at least one exit, and cannot need negative gold to win");
+            return;
+        }
+        if(win > gold){
+            System.out.println("The map needs at least as much gold as is needed to win");
+            return;
+        }
+        String name = "Generated " + style.name().toLowerCase() + " " + rows + "x" + columns + " (seed " + seed + ")";
+        Path file = args.length > 4 ? new File(args[4]).toPath() :
+                new File(directory, style.name().toLowerCase() + "-" + rows + "x" + columns + "-" + seed + ".txt").toPath();
+
+        long start = System.nanoTime();
+        TileGrid grid;
+        try{
+            grid = new DungeonGenerator(style, rows, columns, seed).generate(gold, exits);
+        }
+        catch (IllegalArgumentException e){
+            // the map is too small, or has too few free tiles for its gold and exits
+            System.out.println("The map cannot be generated: " + e.getMessage());
+            return;
+        }
+        long generated = System.nanoTime();
+        write(file, name, win, grid);
+        System.out.println(name + ": generated in " + (generated - start) / 1000000 + " ms, written to " + file +
+                " in " + (System.nanoTime() - generated) / 1000000 + " ms");
+    }
+}
@@ -1,4 +1,7 @@
 import java.io.File; // file manipulation
+import java.io.IOException; // writing the journal
+import java.nio.file.Paths; // location of the journal and of the snapshot
+import java.text.ParseException; // malformed snapshot files
 import java.util.ArrayList; // using array list
 import java.util.InputMismatchException; // file manipulation exception handling
 import java.util.Scanner; // user input
@@ -9,45 +12,37 @@ import java.util.Scanner; // user input
 public class DungeonsOfDoom {
 
     //Declaring fields
-    private static ArrayList<String> filePathList; // array list of all the map files' names
     private static Map map; // game map
     // directory which contains all the maps
     private static final File directory = new File(DungeonsOfDoom.class.getProtectionDomain().
                                             getCodeSource().getLocation().getPath() + "/Maps");
-    private static final File[] files = directory.listFiles();
+    private final MapCatalog catalog; // index of the maps in the directory
+    private ArrayList<MapCatalog.Entry> entries; // maps shown to the player
     private int mapNumber;
 
     /**
-     * Constructor which initializes the array list of map files' names
+     * Constructor which reads the catalog of maps, and keeps it up to date
+     * while the player chooses one
      */
     private DungeonsOfDoom() {
-        filePathList = new ArrayList<>();
-        initializeFilePath();
-    }
-    /**
-     * Create the array list of map files's names
-     */
-    private void initializeFilePath(){
-        if(files != null){
-            for(File file: files){
-                // be sure to get just the .txt files
-                if(file.getName().contains(".txt")){
-                    filePathList.add(file.getName());
-                }
-            }
+        catalog = new MapCatalog(directory);
+        try{
+            catalog.startWatching();
+        }
+        catch (IOException e){
+            // the maps shown are then the ones found at start
         }
+        entries = catalog.getEntries();
     }
     /**
-     * Print the name of each map file, without the extension
+     * Print the name of each map file, without the extension, with the name,
+     * the gold needed to win and the size of the map
      */
     private void printMaps(){
         int index = 1;
-        for(File file: files){
-            if(file.getName().contains(".txt")){
-                System.out.println(index + " --- " +
-                        file.getName().substring(0, file.getName().length() - 4));
-                index++;
-            }
+        for(MapCatalog.Entry entry: entries){
+            System.out.println(index + " --- " + entry.describe());
+            index++;
         }
     }
     /**
@@ -63,7 +58,7 @@ public class DungeonsOfDoom {
         // Check that an integer from 1 to the maximum number is entered
         try{
             mapNumber = scanner.nextInt() - 1;
-            if(mapNumber < 0 || mapNumber > filePathList.size() - 1){
+            if(mapNumber < 0 || mapNumber > entries.size() - 1){
                 invalidDifficultyMessage();
             }
         }
@@ -81,25 +76,85 @@ public class DungeonsOfDoom {
                 "current session and restart the game.");
     }
     /**
-     * Instantiate the correspondent Map object
+     * Instantiate the correspondent Map object. A map which was removed, or stopped
+     * being valid, while the player was choosing is replaced by the default map.
      */
     private void loadMap(){
-        if(mapNumber == -1){
+        MapCatalog.Entry entry = mapNumber == -1 ? null : catalog.getEntry(entries.get(mapNumber).getFileName());
+        catalog.stopWatching();
+        if(mapNumber != -1 && entry == null){
+            System.out.println("This map is no longer available. The default map is easyMap.");
+        }
+        if(entry == null){
             // default map
-            map = new Map("easyMap.txt");
+            map = catalog.load("easyMap.txt");
         }
         else{
-            map = new Map(filePathList.get(mapNumber));
+            map = catalog.load(entry);
         }
     }
     /**
      * Main function. Instantiates every aspect of the game, loads the map and starts the game.
+     * With the "journal" system property, e.g. -Djournal=game.dodj, the game is recorded
+     * in that file, so it can be played again with the GameReplayer.
+     * With the "resume" system property, e.g. -Dresume=game.dods, the game saved in that
+     * snapshot is played on instead, on the map it was saved on.
      */
     public static void main(String[] args) {
+        if(System.getProperty("resume") != null){
+            resume(System.getProperty("resume"));
+            return;
+        }
         DungeonsOfDoom DoD = new DungeonsOfDoom();
         DoD.printWelcomeMessage();
         DoD.loadMap();
         GameLogic game = new GameLogic(map);
+        GameJournal journal = null;
+        if(System.getProperty("journal") != null){
+            try{
+                journal = new GameJournal(Paths.get(System.getProperty("journal")), game);
+            }
+            catch (IOException e){
+                System.out.println("The game could not be recorded: " + e.getMessage());
+            }
+        }
         game.play();
+        if(journal != null){
+            try{
+                journal.close();
+            }
+            catch (IOException e){
+                System.out.println("The game could not be recorded: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Plays on a game saved in a GameSnapshot.
+     * @param fileName path of the snapshot file
+     */
+    private static void resume(String fileName){
+        GameSnapshot snapshot;
+        try{
+            snapshot = GameSnapshot.load(Paths.get(fileName));
+        }
+        catch (ParseException e){
+            System.out.println("Invalid snapshot " + fileName + " at " + e.getErrorOffset() + ": " + e.getMessage());
+            return;
+        }
+        catch (IOException e){
+            System.out.println("Snapshot " + fileName + " could not be read: " + e.getMessage());
+            return;
+        }
+        map = new Map(snapshot.getMapFile());
+        GameLogic game = new GameLogic(map);
+        try{
+            snapshot.restore(game);
+        }
+        catch (IllegalArgumentException e){
+            System.out.println("Invalid snapshot " + fileName + ": " + e.getMessage());
+            return;
+        }
+        game.playToEnd();
     }
 }
\ No newline at end of file
@@ -0,0 +1,291 @@
+import java.nio.ByteBuffer; // snapshots of the memory
+import java.util.Arrays; // clearing the visited tiles
+
+/**
+ * Class which represents what a bot remembers of the map: which tiles it has seen,
+ * and which of those are walls, in two bitsets, so it takes two bits per tile however
+ * large the map is. It is updated from every look, and finds the nearest frontier, a
+ * seen tile next to an unseen one, with a breadth first search over the seen tiles,
+ * bounded to a square around the bot. Its search arrays only depend on that square,
+ * and are allocated by the first search.
+ */
+public class ExploredMap {
+
+    static final int SEARCH_RADIUS = 32; // how far from the bot a frontier is searched
+    private static final int SIDE = 2 * SEARCH_RADIUS + 1; // side of the searched square
+    private static final int NONE = -1;
+
+    private final int rows, columns;
+    private final long[] seen; // one bit per tile, set once the tile has been seen
+    private final long[] walls; // one bit per tile, set if the tile was seen to be a wall
+    private int[] parent; // square index of the tile from which each tile of the square was reached
+    private int[] visited; // number of the search in which each tile of the square was last reached
+    private int search = 0; // number of the current search
+    private int[] path; // tiles of the path to the frontier, from the bot, as map indices
+    private int pathLength = 0;
+    private int pathPosition = 0; // position of the bot on the path
+
+    /**
+     * Constructor which creates the memory of a bot which has seen nothing yet.
+     * @param rows number of rows of the map
+     * @param columns number of columns of the map
+     */
+    public ExploredMap(int rows, int columns){
+        this.rows = rows;
+        this.columns = columns;
+        int words = (int) (((long) rows * columns + 63) >>> 6);
+        seen = new long[words];
+        walls = new long[words];
+    }
+
+    /**
+     * Constructor which copies another bot's memory, for a copy of its game.
+     * @param other the memory being copied
+     */
+    public ExploredMap(ExploredMap other){
+        rows = other.rows;
+        columns = other.columns;
+        seen = other.seen.clone();
+        walls = other.walls.clone();
+        path = other.path == null ? null : other.path.clone();
+        pathLength = other.pathLength;
+        pathPosition = other.pathPosition;
+    }
+
+    /**
+     * Records the tiles of a look, leaving the rest of the map as it was remembered.
+     * The tiles hidden from the bot and those outside the map are skipped.
+     * @param view grid of the tiles seen, the bot being in its centre
+     * @param row row coordinate of the bot on the map
+     * @param column column coordinate of the bot on the map
+     */
+    public void record(TileGrid view, int row, int column){
+        int radius = view.getRows() / 2;
+        int top = Math.max(0, row - radius), bottom = Math.min(rows - 1, row + radius);
+        int left = Math.max(0, column - radius), right = Math.min(columns - 1, column + radius);
+        for(int mapRow = top; mapRow <= bottom; mapRow++){
+            for(int mapColumn = left; mapColumn <= right; mapColumn++){
+                byte tile = view.get(mapRow - row + radius, mapColumn - column + radius);
+                if(tile != TileGrid.UNKNOWN){
+                    int index = mapRow * columns + mapColumn;
+                    seen[index >>> 6] |= 1L << index;
+                    if(tile == TileGrid.WALL){
+                        walls[index >>> 6] |= 1L << index;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the index of a tile on the map.
+     * @param row row coordinate
+     * @param column column coordinate
+     * @return index of the tile
+     */
+    public int index(int row, int column){
+        return row * columns + column;
+    }
+
+    /**
+     * Checks if a tile has been seen.
+     * @param index index of the tile on the map
+     * @return true if it has been seen
+     */
+    public boolean isSeen(int index){
+        return (seen[index >>> 6] & 1L << index) != 0;
+    }
+
+    /**
+     * Checks if a tile has been seen to be a wall.
+     * @param index index of the tile on the map
+     * @return true if it is a wall
+     */
+    public boolean isWall(int index){
+        return (walls[index >>> 6] & 1L << index) != 0;
+    }
+
+    /**
+     * Checks if a tile is a frontier, a seen tile which is not a wall,
+     * next to a tile of the map which has not been seen.
+     * @param row row coordinate of the tile
+     * @param column column coordinate of the tile
+     * @return true if it is a frontier
+     */
+    public boolean isFrontier(int row, int column){
+        int index = row * columns + column;
+        if(!isSeen(index) || isWall(index)){
+            return false;
+        }
+        return (row > 0 && !isSeen(index - columns)) || (row < rows - 1 && !isSeen(index + columns)) ||
+                (column > 0 && !isSeen(index - 1)) || (column < columns - 1 && !isSeen(index + 1));
+    }
+
+    /**
+     * Finds a shortest path from a tile to the nearest frontier, moving only through seen
+     * tiles which are not walls, without leaving the square of SEARCH_RADIUS around the tile.
+     * @param row row coordinate of the first tile of the path
+     * @param column column coordinate of the first tile of the path
+     * @return true if a path was found, false if there is no frontier the bot can reach in the square
+     */
+    public boolean findFrontier(int row, int column){
+        if(parent == null){
+            parent = new int[SIDE * SIDE];
+            visited = new int[SIDE * SIDE];
+            path = new int[SIDE * SIDE];
+        }
+        search++;
+        if(search == Integer.MAX_VALUE){
+            // the numbers of the searches ran out, so every tile is marked as not visited again
+            Arrays.fill(visited, 0);
+            search = 1;
+        }
+        pathLength = 0;
+        pathPosition = 0;
+        int top = row - SEARCH_RADIUS, left = column - SEARCH_RADIUS; // corner of the square
+        int start = SEARCH_RADIUS * SIDE + SEARCH_RADIUS;
+        // the path array holds the queue during the search, as the path is only built afterwards
+        int[] queue = path;
+        int head = 0, tail = 0;
+        queue[tail++] = start;
+        visited[start] = search;
+        parent[start] = NONE;
+        while(head < tail){
+            int square = queue[head++];
+            int squareRow = square / SIDE, squareColumn = square % SIDE;
+            int mapRow = top + squareRow, mapColumn = left + squareColumn;
+            if(square != start && isFrontier(mapRow, mapColumn)){
+                buildPath(square, top, left);
+                return true;
+            }
+            for(int direction = 0; direction < 4; direction++){
+                int nextRow = squareRow + (direction == 0 ? -1 : direction == 1 ? 1 : 0);
+                int nextColumn = squareColumn + (direction == 2 ? -1 : direction == 3 ? 1 : 0);
+                if(nextRow < 0 || nextColumn < 0 || nextRow >= SIDE || nextColumn >= SIDE){
+                    continue;
+                }
+                int next = nextRow * SIDE + nextColumn;
+                int nextMapRow = top + nextRow, nextMapColumn = left + nextColumn;
+                if(visited[next] == search || nextMapRow < 0 || nextMapColumn < 0 ||
+                        nextMapRow >= rows || nextMapColumn >= columns){
+                    continue;
+                }
+                int index = nextMapRow * columns + nextMapColumn;
+                if(isSeen(index) && !isWall(index)){
+                    visited[next] = search;
+                    parent[next] = square;
+                    queue[tail++] = next;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Builds the path found by the search, from the bot to the frontier.
+     * @param frontier square index of the frontier
+     * @param top row coordinate on the map of the top of the square
+     * @param left column coordinate on the map of the left of the square
+     */
+    private void buildPath(int frontier, int top, int left){
+        for(int square = frontier; square != NONE; square = parent[square]){
+            pathLength++;
+        }
+        int position = pathLength;
+        for(int square = frontier; square != NONE; square = parent[square]){
+            path[--position] = (top + square / SIDE) * columns + left + square % SIDE;
+        }
+    }
+
+    /**
+     * Checks if the path to the last frontier found can still be used, which is
+     * when the bot is on it and the end of the path is still a frontier.
+     * @param index index on the map of the tile the bot is on
+     * @return true if the path can be followed, false if a frontier has to be searched again
+     */
+    public boolean followsPath(int index){
+        // the bot is either where it was, or one step further if its last move succeeded
+        if(pathPosition + 1 < pathLength && path[pathPosition + 1] == index){
+            pathPosition++;
+        }
+        if(pathPosition + 1 >= pathLength || path[pathPosition] != index){
+            return false;
+        }
+        int frontier = path[pathLength - 1];
+        return isFrontier(frontier / columns, frontier % columns);
+    }
+
+    /**
+     * Returns the next tile of the path to the frontier, after the one the bot is on.
+     * @return index of the tile on the map
+     */
+    public int getNextTile(){
+        return path[pathPosition + 1];
+    }
+
+    /**
+     * Writes the memory to a snapshot: the number of words of the bitsets in which a tile
+     * has been seen, followed by the position (int) and the seen and wall bits (two longs)
+     * of each of those words, and then the path to the frontier, as its length, its tiles
+     * and the position of the bot on it (ints). The words nothing was seen in are left out,
+     * so a bot which explored little takes little room however large the map is.
+     * @param buffer the buffer written to
+     */
+    public void writeState(ByteBuffer buffer){
+        int countPosition = buffer.position();
+        buffer.putInt(0);
+        int count = 0;
+        for(int word = 0; word < seen.length; word++){
+            if(seen[word] != 0){
+                buffer.putInt(word).putLong(seen[word]).putLong(walls[word]);
+                count++;
+            }
+        }
+        buffer.putInt(countPosition, count);
+        buffer.putInt(pathLength);
+        for(int position = 0; position < pathLength; position++){
+            buffer.putInt(path[position]);
+        }
+        buffer.putInt(pathPosition);
+    }
+
+    /**
+     * Reads the memory from a snapshot written by writeState(), for a map of the same size.
+     * @param buffer the buffer read from
+     * @throws IllegalArgumentException if a word or a tile of the path is outside the map,
+                                        or the position on the path is outside it
+     */
+    public void readState(ByteBuffer buffer){
+        Arrays.fill(seen, 0);
+        Arrays.fill(walls, 0);
+        int count = buffer.getInt();
+        for(int word = 0; word < count; word++){
+            int position = buffer.getInt();
+            if(position < 0 || position >= seen.length){
+                throw new IllegalArgumentException("invalid word " + position + " of an explored map");
+            }
+            seen[position] = buffer.getLong();
+            walls[position] = buffer.getLong();
+        }
+        int length = buffer.getInt();
+        if(length < 0 || length > SIDE * SIDE){
+            throw new IllegalArgumentException("invalid path length " + length);
+        }
+        if(path == null){
+            path = new int[SIDE * SIDE];
+        }
+        for(int position = 0; position < length; position++){
+            int index = buffer.getInt();
+            if(index < 0 || index >= rows * columns){
+                throw new IllegalArgumentException("invalid tile " + index + " on the path to a frontier");
+            }
+            path[position] = index;
+        }
+        int position = buffer.getInt();
+        if(position < 0 || position > length){
+            throw new IllegalArgumentException("invalid position " + position + " on the path to a frontier");
+        }
+        pathLength = length;
+        pathPosition = position;
+    }
+}
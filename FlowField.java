@@ -0,0 +1,85 @@
+/**
+ * Class which represents the distances from the player to every tile of the map,
+ * computed with a single breadth first search. Any number of bots can read
+ * their next step towards the player from it, and it is only computed again
+ * once the player has moved.
+ */
+public class FlowField {
+
+    public static final int NONE = -1; // next step of the tiles from which the player cannot be reached
+
+    private BreadthFirstSearch search = new BreadthFirstSearch();
+    private TileGrid grid;
+    private Player target; // the player which the bots are chasing
+    private int targetIndex = NONE; // tile from which the distances were last computed
+    private int untilSample = GameMetrics.SAMPLE_INTERVAL; // searches until the next timed one
+
+    /**
+     * Constructor which sets the map and the player to be chased.
+     * @param grid TileGrid object on which the player is chased
+     * @param target Player object being chased
+     */
+    public FlowField(TileGrid grid, Player target){
+        this.grid = grid;
+        this.target = target;
+    }
+
+    /**
+     * Computes the distances again, if the player has moved since they were last computed.
+     */
+    private void refresh(){
+        int index = grid.index(target.getRow(), target.getColumn());
+        if(index != targetIndex){
+            targetIndex = index;
+            boolean timed = GameMetrics.ENABLED && sample();
+            long start = timed ? System.nanoTime() : 0;
+            search.start(grid);
+            search.addSource(target.getRow(), target.getColumn());
+            search.run(BreadthFirstSearch.UNLIMITED);
+            if(timed){
+                GameMetrics.PATHFINDING.record(System.nanoTime() - start);
+            }
+        }
+    }
+
+    /**
+     * Counts down to the next search to be timed, when the metrics are enabled.
+     * @return true if this one is to be timed
+     */
+    private boolean sample(){
+        if(--untilSample > 0){
+            return false;
+        }
+        untilSample = GameMetrics.nextGap();
+        return true;
+    }
+
+    /**
+     * Returns the neighbour of a tile which is one step closer to the player.
+     * @param index index of the tile
+     * @return index of the neighbour, or NONE if the player cannot be reached from the tile
+     */
+    public int nextStep(int index){
+        refresh();
+        int distance = search.getDistance(index);
+        if(distance <= 0){
+            return NONE;
+        }
+        int columns = grid.getColumns();
+        int column = index % columns;
+        // the first neighbour found one step closer to the player
+        if(index >= columns && search.getDistance(index - columns) == distance - 1){
+            return index - columns;
+        }
+        if(column < columns - 1 && search.getDistance(index + 1) == distance - 1){
+            return index + 1;
+        }
+        if(index + columns < grid.getRows() * columns && search.getDistance(index + columns) == distance - 1){
+            return index + columns;
+        }
+        if(column > 0 && search.getDistance(index - 1) == distance - 1){
+            return index - 1;
+        }
+        return NONE;
+    }
+}
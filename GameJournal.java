@@ -0,0 +1,104 @@
+import java.io.BufferedOutputStream; // collecting the records before writing them
+import java.io.Closeable; // closing the journal
+import java.io.DataOutputStream; // writing the header
+import java.io.IOException; // file manipulation exception handling
+import java.nio.file.Files; // opening the journal file
+import java.nio.file.Path; // location of the journal file
+
+/**
+ * Class which writes a journal of a game: the settings and seed the game started
+ * with, followed by every command given, in order. Replaying it with a GameReplayer
+ * plays the same game again. The file is only ever appended to.
+ * The format is:
+ *   magic "DODJ", version (int), map file (modified UTF-8), seed (long),
+ *   bot mode (byte), bots (int), look radius (int), turn limit (int)
+ * followed by a record for every command: (actor &lt;&lt; 6 | command) as a variable
+ * length number, 7 bits to a byte with the highest bit set on every byte but the last.
+ * The player's and the first bots' commands take a single byte.
+ * All the ints and longs are big-endian.
+ */
+public class GameJournal implements TurnRecorder, Closeable {
+
+    static final int MAGIC = 0x444F444A; // "DODJ"
+    static final int VERSION = 1;
+    static final int COMMAND_BITS = 6; // every command of the Command class fits in these bits
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final DataOutputStream stream;
+    private boolean closed = false;
+    private IOException error; // the first error which stopped the recording, if any
+
+    /**
+     * Constructor which creates the journal file and writes the game's settings.
+     * The game has to be set up, with its seed, but not started yet; the journal
+     * then records its commands.
+     * @param file path of the journal file
+     * @param game GameLogic object being recorded
+     * @throws IOException if the file cannot be written
+     */
+    public GameJournal(Path file, GameLogic game) throws IOException {
+        stream = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), BUFFER_SIZE));
+        stream.writeInt(MAGIC);
+        stream.writeInt(VERSION);
+        stream.writeUTF(game.getMap().getFileName());
+        stream.writeLong(game.getSeed());
+        stream.writeByte(game.getBotMode().ordinal());
+        stream.writeInt(game.getBotCount());
+        stream.writeInt(game.getLookRadius());
+        stream.writeInt(game.getTurnLimit());
+        game.setRecorder(this);
+    }
+
+    /**
+     * Appends a command to the journal.
+     * @param actor 0 for the player, or the number of the bot, starting from 1
+     * @param command the command, encoded by the Command class
+     */
+    @Override
+    public synchronized void record(int actor, int command){
+        if(closed){
+            return;
+        }
+        try{
+            long value = (long) actor << COMMAND_BITS | command;
+            while(value >= 0x80){
+                stream.writeByte((int) (value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            stream.writeByte((int) value);
+        }
+        catch (IOException e){
+            // like the console, a journal which cannot be written does not stop the game
+            error = e;
+            closeQuietly();
+        }
+    }
+
+    /**
+     * Writes the remaining records and closes the file.
+     * @throws IOException if the file cannot be written, now or while recording
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if(!closed){
+            closed = true;
+            stream.close();
+        }
+        if(error != null){
+            throw error;
+        }
+    }
+
+    /**
+     * Closes the file after an error, the error being reported by close().
+     */
+    private void closeQuietly(){
+        closed = true;
+        try{
+            stream.close();
+        }
+        catch (IOException e){
+            // the first error is the one reported
+        }
+    }
+}
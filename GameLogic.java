@@ -1,6 +1,7 @@
+import java.nio.ByteBuffer; // snapshots of the game
 import java.util.ArrayList; // using array lists
-import java.util.Random; // randomly spawning the player and the bot on the map
 import java.util.Scanner; //  getting input from the player
+import java.util.concurrent.ThreadLocalRandom; // picking the seed of a game
 
 /**
  * Class contains the game's logic
@@ -8,12 +9,29 @@ import java.util.Scanner; //  getting input from the player
 class GameLogic {
 
     private Player player;
-    private BotPlayer bot;
+    private ArrayList<BotPlayer> bots = new ArrayList<>();
+    private ArrayList<Player> players = new ArrayList<>(); // the player followed by the bots
     private int turn = 0; // counter to decide whose turn it is
     private Map map; // game map
-    private ArrayList<char[]> navigationMap; // the game map which will be used in the game logic for computation
+    private OverlayGrid navigationMap; // the game map which will be used in the game logic for computation
     private boolean gameEnded = false;
     private int goldToWin;
+    private PlayerStrategy strategy; // scripted player, or null if a human is typing the commands
+    private Renderer out; // collects the game's messages, which are sent once per turn
+    private int lookRadius; // how far the player and the bots see around them with the "look" command
+    private View playerView; // what the player sees, refilled on every "look"
+    private int turnsPlayed = 0; // number of commands given by the player so far
+    private int turnLimit = 0; // maximum number of player turns, 0 meaning no limit
+    private boolean won = false;
+    private BotMode botMode = BotMode.LOCAL; // the way in which the bots find their way to the player
+    private int botCount = 1; // number of bots chasing the player
+    private boolean caught = false; // whether a bot caught the player
+    private long seed; // seed of the random numbers, from which the game can be played again
+    private GameRandom random; // used to spawn the player and the bots, and by the bots to decide
+    private TurnRecorder recorder; // told about every command, or null
+    private int untilSample = GameMetrics.SAMPLE_INTERVAL; // commands and decisions until the next timed one
+    private static final int MIN_BOT_DISTANCE = 3; // fewest moves between the player and a spawned bot
+    private static final int SPAWN_ATTEMPTS = 32; // random picks of a bot's tile before going through them in order
 
     /**
      * Constructor which initializes the game's logic on a specified map
@@ -22,171 +40,454 @@ class GameLogic {
     GameLogic(Map map){
         this.map = map;
         this.goldToWin = map.getGold();
-        this.navigationMap = map.getMap();
+        this.navigationMap = new OverlayGrid(map.getTemplate());
+        this.lookRadius = map.getViewRadius();
+        this.out = new Renderer(new StreamSink(System.out));
+        setSeed(ThreadLocalRandom.current().nextLong());
     }
 
     /**
-     * Randomly spawn a Player object on the map.
-     * @param player Player object representing either the human player or the bot
+     * Constructor which initializes a game on a specified map, whose
+     * messages are sent to a specified sink.
+     * @param map Map object representing the DoD map
+     * @param sink OutputSink object to which the game's messages are sent
      */
-    private void generateRandomCoordinates(Player player){
-        Random random = new Random();
-        int row = random.nextInt(map.getRows());
-        int column = random.nextInt(map.getColumns());
-        // depending on whether it is the human player or the bot, spawn them differently
-        // keep trying to randomly spawn them until the Player object is placed on a valid tile
-        if(player == this.player){
-            while(navigationMap.get(row)[column] != '.' && navigationMap.get(row)[column] != 'E'){
-                row = random.nextInt(map.getRows());
-                column = random.nextInt(map.getColumns());
+    GameLogic(Map map, OutputSink sink){
+        this(map);
+        this.out = new Renderer(sink);
+    }
+
+    /**
+     * Constructor which initializes a headless game on a specified map.
+     * The player's commands are given by the strategy instead of the
+     * standard input, and nothing is printed to the console.
+     * @param map Map object representing the DoD map
+     * @param strategy PlayerStrategy object which plays instead of a human
+     */
+    GameLogic(Map map, PlayerStrategy strategy){
+        this(map);
+        this.strategy = strategy;
+        this.out = new Renderer(OutputSink.NULL);
+    }
+
+    /**
+     * Constructor used by fork(), copying another game.
+     * @param other the game being copied
+     */
+    private GameLogic(GameLogic other){
+        this.map = other.map;
+        this.goldToWin = other.goldToWin;
+        this.navigationMap = other.navigationMap.copy();
+        this.strategy = other.strategy;
+        this.out = new Renderer(OutputSink.NULL);
+        this.lookRadius = other.lookRadius;
+        this.gameEnded = other.gameEnded;
+        this.turnsPlayed = other.turnsPlayed;
+        this.turnLimit = other.turnLimit;
+        this.won = other.won;
+        this.botMode = other.botMode;
+        this.botCount = other.botCount;
+        this.caught = other.caught;
+        this.seed = other.seed;
+        // the copy goes on with the same random numbers as the game would have
+        this.random = new GameRandom(other.random);
+        if(other.player == null){
+            // the game has not started yet
+            return;
+        }
+        this.player = new Player(other.player);
+        this.playerView = new View(lookRadius, map.hasLineOfSight());
+        players.add(player);
+        FlowField flowField = botMode == BotMode.FLOW_FIELD ?
+                new FlowField(navigationMap.getTemplate(), player) : null;
+        MonteCarloSearch monteCarlo = botMode == BotMode.MONTE_CARLO ?
+                new MonteCarloSearch(navigationMap, player, goldToWin) : null;
+        for(BotPlayer otherBot: other.bots){
+            BotPlayer bot = new BotPlayer(otherBot, flowField, monteCarlo, random);
+            bots.add(bot);
+            players.add(bot);
+        }
+    }
+
+    /**
+     * Returns a headless copy of the game in its current state, which can be played
+     * on independently. The map itself is not copied, so this only costs as much as
+     * the players and the tiles changed so far.
+     * Note that the copy uses the same PlayerStrategy object, if any.
+     * @return the copy of the game
+     */
+    GameLogic fork(){
+        return new GameLogic(this);
+    }
+
+    /**
+     * Sets the seed of the game's random numbers. Two games played from the same seed
+     * with the same settings and the same commands play out exactly the same.
+     * It has to be set before the game starts.
+     * @param seed the seed
+     */
+    void setSeed(long seed){
+        this.seed = seed;
+        this.random = new GameRandom(seed);
+    }
+
+    /**
+     * Returns the seed of the game's random numbers.
+     * @return the seed
+     */
+    long getSeed(){
+        return seed;
+    }
+
+    /**
+     * Sets what is told about every command given from now on, by the player and by the bots.
+     * @param recorder TurnRecorder object, such as a GameJournal, or null to stop recording
+     */
+    void setRecorder(TurnRecorder recorder){
+        this.recorder = recorder;
+    }
+
+    /**
+     * Sets the maximum number of turns the player can play before the game
+     * is ended and counted as lost. Useful for headless games, where a
+     * scripted player might never reach an exit.
+     * @param turnLimit maximum number of player turns, 0 meaning no limit
+     */
+    void setTurnLimit(int turnLimit){
+        this.turnLimit = turnLimit;
+    }
+
+    /**
+     * Sets how far the player and the bots see around them with the "look" command,
+     * instead of the map's own radius. It has to be set before the game starts.
+     * @param lookRadius number of tiles seen in each direction, at least 1
+     */
+    void setLookRadius(int lookRadius){
+        if(lookRadius < 1){
+            throw new IllegalArgumentException("The look radius must be at least 1");
+        }
+        this.lookRadius = lookRadius;
+    }
+
+    /**
+     * Sets the way in which the bots find their way to the player.
+     * @param botMode the bots' way of finding paths
+     */
+    void setBotMode(BotMode botMode){
+        this.botMode = botMode;
+    }
+
+    /**
+     * Sets the number of bots which chase the player.
+     * @param botCount number of bots, at least 1
+     */
+    void setBotCount(int botCount){
+        if(botCount < 1){
+            throw new IllegalArgumentException("At least one bot is needed");
+        }
+        this.botCount = botCount;
+    }
+
+    /**
+     * Spawns the player on a random free tile or exit, picked in constant time from the map's TileIndex.
+     * If the map can be won, the tile must be in a component of the map from which it can be won,
+     * so a sealed pocket is never picked: a few random picks almost always find one, and otherwise
+     * the tiles are gone through in order.
+     * @throws IllegalStateException if the map has neither free tiles nor exits
+     */
+    private void spawnPlayer(){
+        TileIndex tiles = map.getTileIndex();
+        int candidates = tiles.getFreeCount() + tiles.getExitCount();
+        if(candidates == 0){
+            throw new IllegalStateException("The map has no free tile or exit to spawn the player on");
+        }
+        ConnectedComponents components = map.getComponents();
+        boolean anywhere = components == null || !map.isWinnable();
+        int pick = random.nextInt(candidates);
+        int index = pick < tiles.getFreeCount() ? tiles.getFree(pick) : tiles.getExit(pick - tiles.getFreeCount());
+        for(int attempt = 1; !anywhere && !components.canWin(components.getComponent(index), goldToWin); attempt++){
+            pick = attempt < SPAWN_ATTEMPTS ? random.nextInt(candidates) : (pick + 1) % candidates;
+            index = pick < tiles.getFreeCount() ? tiles.getFree(pick) : tiles.getExit(pick - tiles.getFreeCount());
+        }
+        place(player, index);
+    }
+
+    /**
+     * Spawns a bot on a random free tile which is not taken, from which the player can be
+     * reached, and which is at least MIN_BOT_DISTANCE moves away from the player. A few random
+     * picks almost always find one; otherwise the free tiles are gone through in order, from
+     * a random one, and both rules are dropped if no tile follows them.
+     * @param bot the BotPlayer object being spawned
+     * @param nearPlayer search around the player, from nearPlayer()
+     * @throws IllegalStateException if no free tile is left
+     */
+    private void spawnBot(BotPlayer bot, BreadthFirstSearch nearPlayer){
+        TileIndex tiles = map.getTileIndex();
+        int count = tiles.getFreeCount();
+        if(count > 0){
+            for(int attempt = 0; attempt < SPAWN_ATTEMPTS; attempt++){
+                int index = tiles.getFree(random.nextInt(count));
+                if(canSpawnBot(index, nearPlayer, true)){
+                    countSpawnRetries(attempt);
+                    place(bot, index);
+                    return;
+                }
+            }
+            int first = random.nextInt(count);
+            for(int keepAway = 1; keepAway >= 0; keepAway--){
+                for(int order = 0; order < count; order++){
+                    int index = tiles.getFree((first + order) % count);
+                    if(canSpawnBot(index, nearPlayer, keepAway == 1)){
+                        countSpawnRetries(SPAWN_ATTEMPTS + (1 - keepAway) * count + order);
+                        place(bot, index);
+                        return;
+                    }
+                }
             }
         }
-        else{
-            while(navigationMap.get(row)[column] == 'P' || navigationMap.get(row)[column] == '#'){
-                row = random.nextInt(map.getRows());
-                column = random.nextInt(map.getColumns());
+        throw new IllegalStateException("The map has no free tile left to spawn a bot on");
+    }
+
+    /**
+     * Searches the tiles around the player which are closer than MIN_BOT_DISTANCE moves.
+     * Moves can only make the distance grow, so those tiles all lie within a small square
+     * around the player, which is copied into its own grid instead of searching the map.
+     * @return the search, centered on the player
+     */
+    private BreadthFirstSearch nearPlayer(){
+        int radius = MIN_BOT_DISTANCE - 1;
+        TileGrid area = new TileGrid(2 * radius + 1, 2 * radius + 1);
+        for(int row = 0; row < area.getRows(); row++){
+            for(int column = 0; column < area.getColumns(); column++){
+                int mapRow = player.getRow() - radius + row;
+                int mapColumn = player.getColumn() - radius + column;
+                // tiles outside the map are treated as walls
+                area.set(row, column, navigationMap.getTemplate().isInside(mapRow, mapColumn) ?
+                        navigationMap.get(mapRow, mapColumn) : TileGrid.WALL);
             }
         }
-        // update the player's fields accordingly
-        player.setCurrentTile(navigationMap.get(row)[column]);
-        player.setColumn(column);
-        player.setRow(row);
+        BreadthFirstSearch search = new BreadthFirstSearch();
+        search.start(area);
+        search.addSource(radius, radius);
+        search.run(radius);
+        return search;
+    }
+
+    /**
+     * Adds the tiles rejected while spawning a bot to the metrics, if they are enabled.
+     * @param retries number of rejected tiles
+     */
+    private void countSpawnRetries(int retries){
+        if(GameMetrics.ENABLED && retries > 0){
+            GameMetrics.SPAWN_RETRIES.add(retries);
+        }
+    }
+
+    /**
+     * Checks whether a bot can spawn on a tile.
+     * @param index index of the tile
+     * @param nearPlayer search around the player, from nearPlayer()
+     * @param keepAway true if the player must be reachable from the tile, and at least MIN_BOT_DISTANCE moves away
+     * @return true if the tile is free, and the player reachable and far enough
+     */
+    private boolean canSpawnBot(int index, BreadthFirstSearch nearPlayer, boolean keepAway){
+        if(navigationMap.get(index) != TileGrid.FREE){
+            return false;
+        }
+        if(!keepAway){
+            return true;
+        }
+        if(!canReachPlayer(index)){
+            return false;
+        }
+        int radius = MIN_BOT_DISTANCE - 1;
+        int row = index / map.getColumns() - player.getRow() + radius;
+        int column = index % map.getColumns() - player.getColumn() + radius;
+        // tiles outside the square, or not reached inside it, are far enough
+        return row < 0 || column < 0 || row > 2 * radius || column > 2 * radius
+                || nearPlayer.getDistance(row, column) == BreadthFirstSearch.UNREACHED;
+    }
+
+    /**
+     * Moves a Player object onto a tile, remembering what the tile holds.
+     * @param player the Player object
+     * @param index index of the tile
+     */
+    private void place(Player player, int index){
+        player.setCurrentTile(navigationMap.get(index));
+        player.setRow(index / map.getColumns());
+        player.setColumn(index % map.getColumns());
     }
 
     /**
-     * Processes the command given by one of the Players.
-     * @param command the command
+     * Processes the command given by one of the Players, timing it if the metrics are enabled.
+     * @param command the command, encoded by the Command class
      * @param player Player who gave the command
      */
-    private void processCommand(String command, Player player){
-        // checking if it is a move command first
-        if(command.equals("move e") || command.equals("move w") ||
-                command.equals("move s") || command.equals("move n")){
-            MOVE(command.replace("move ", ""), player);
-            return;
+    private void processCommand(int command, Player player){
+        boolean timed = GameMetrics.ENABLED && sample();
+        long start = timed ? System.nanoTime() : 0;
+        runCommand(command, player);
+        if(timed){
+            GameMetrics.recordCommand(command, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Lets a bot decide on its command, timing the decision if the metrics are enabled.
+     * @param bot BotPlayer object whose turn it is
+     * @return the command, encoded by the Command class
+     */
+    private int decide(BotPlayer bot){
+        boolean timed = GameMetrics.ENABLED && sample();
+        long start = timed ? System.nanoTime() : 0;
+        int decision = bot.makeDecision();
+        if(timed){
+            GameMetrics.BOT_DECISION.record(System.nanoTime() - start);
+        }
+        return decision;
+    }
+
+    /**
+     * Counts down to the next command or decision to be timed, when the metrics are enabled.
+     * @return true if this one is to be timed
+     */
+    private boolean sample(){
+        if(--untilSample > 0){
+            return false;
         }
-        // checking for the other commands
-        switch (command) {
-            case "hello": HELLO(); return;
-            case "gold": GOLD(); return;
-            case "look": LOOK(player);return;
-            case "pickup": PICKUP();return;
-            case "quit": QUIT();return;
+        untilSample = GameMetrics.nextGap();
+        return true;
+    }
+
+    /**
+     * Carries out the command given by one of the Players.
+     * @param command the command, encoded by the Command class
+     * @param player Player who gave the command
+     */
+    private void runCommand(int command, Player player){
+        switch (Command.opcode(command)) {
+            case Command.MOVE: MOVE(Command.direction(command), player); return;
+            case Command.HELLO: HELLO(); return;
+            case Command.GOLD: GOLD(); return;
+            case Command.LOOK: LOOK(player);return;
+            case Command.PICKUP: PICKUP();return;
+            case Command.QUIT: QUIT();return;
             default:
                 // Command is not valid and the turn is wasted.
-                System.out.println("Unrecognized command.\nFAIL.");
+                out.println("Unrecognized command.\nFAIL.");
         }
     }
 
     /**
-     * Look method. Analyzes the 5*5 grid surrounding the player.
+     * Look method. Analyzes the grid surrounding the player, as far as the map's
+     * view radius and, if the map has line of sight, as far as walls let them see.
      * If it is the human player, it displays it.
      * Else, the bot calls the updateMemoryMap() method to make use
      * of the grid for its next decision.
      * @param player Player object which can be either a human player or a bot
      */
     private void LOOK(Player player){
-        boolean playerFound = false; // checking to see if the player is in sight
-        ArrayList<char[]> visibleMap = new ArrayList<>(); // the 5*5 grid which will be passed to the bot if needed
-        int visibleRowIndex;
-        int row = player.getRow();
-        int column = player.getColumn();
-        // Player is always in the centre
-        for(int rowIndex = row - 2; rowIndex <= row + 2; rowIndex++){
-            // create arrays of characters for each row, and add them to the array list
-            char[] visibleRow = new char[100];
-            visibleRowIndex = 0;
-            for(int columnIndex = column - 2; columnIndex <= column + 2; columnIndex++){
-                // Visible area outside the map
-                if(rowIndex < 0 || columnIndex < 0 ||
-                        rowIndex >= map.getRows() || columnIndex >= map.getColumns()){
-                    // checking which player called this method
-                    if(player == this.player){
-                        System.out.print('#');
-                    }
-                    else{
-                        visibleRow[visibleRowIndex] = '#';
-                        visibleRowIndex++;
-                    }
-                }
-                // Visible area inside the map
-                else {
-                    if(player == this.player){
-                        System.out.print(navigationMap.get(rowIndex)[columnIndex]);
-                    }
-                    else{
-                        // if we found the player, update the value of the boolean variable and let the bot know
-                        if(navigationMap.get(rowIndex)[columnIndex] == 'P'){
-                            this.bot.setPlayerFound(rowIndex + 2 - row, columnIndex + 2 - column);
-                            playerFound = true;
-                        }
-                        visibleRow[visibleRowIndex] = navigationMap.get(rowIndex)[columnIndex];
-                        visibleRowIndex++;
-                    }
-                }
-            }
-            if(player == this.player){
-                System.out.println();
-            }
-            if(player == this.bot){
-                visibleMap.add(visibleRow);
+        if(player == this.player){
+            renderLook();
+        }
+        else{
+            botLook((BotPlayer) player);
+        }
+    }
+
+    /**
+     * Renders the tiles around the player, the player being in the centre.
+     * Tiles outside the map are shown as walls, and hidden tiles as '?'.
+     */
+    private void renderLook(){
+        if(out.isDiscarding()){
+            return;
+        }
+        playerView.look(navigationMap, player.getRow(), player.getColumn());
+        TileGrid visibleMap = playerView.getTiles();
+        for(int row = 0; row < visibleMap.getRows(); row++){
+            for(int column = 0; column < visibleMap.getColumns(); column++){
+                out.print(TileGrid.toCharacter(visibleMap.get(row, column)));
             }
+            out.println();
         }
-        // if bot called method, pass the information further
-        if(player != this.player){
-            bot.updateMemoryMap(visibleMap);
+    }
+
+    /**
+     * Fills the bot's view, and lets it know whether the player is in sight. A player
+     * who cannot be reached from the bot is not chased, so the bot is not told about it.
+     * @param bot BotPlayer object which called the "look" command
+     */
+    private void botLook(BotPlayer bot){
+        View view = bot.getView();
+        view.look(navigationMap, bot.getRow(), bot.getColumn());
+        boolean seen = view.hasSeenPlayer() && canReachPlayer(navigationMap.index(bot.getRow(), bot.getColumn()));
+        // if we found the player, let the bot know
+        if(seen){
+            bot.setPlayerFound(view.getPlayerRow(), view.getPlayerColumn());
         }
-        // if bot called method and the player was not found, let the bot know
-        if(!playerFound && player == this.bot){
-            this.bot.lostPlayer();
+        // pass the information further
+        bot.updateMemoryMap(view.getTiles());
+        // if the player was not found, let the bot know
+        if(!seen){
+            bot.lostPlayer();
         }
     }
 
+    /**
+     * Checks in constant time whether the player can be reached from a tile, through
+     * the map's connected components.
+     * @param index index of the tile
+     * @return true if it can, or if the map's components are unknown
+     */
+    private boolean canReachPlayer(int index){
+        ConnectedComponents components = map.getComponents();
+        return components == null || components.isConnected(index, navigationMap.index(player.getRow(), player.getColumn()));
+    }
+
     /**
      * Method which moves the player who calls it
-     * @param direction direction in which the player wants to go
+     * @param direction direction in which the player wants to go, as defined in the Command class
      * @param player Player object which can be either thr human or the bot
      */
-    private void MOVE(String direction, Player player){
-        int row = player.getRow();
-        int column = player.getColumn();
+    private void MOVE(int direction, Player player){
         // Updating the coordinates based on the direction
-        switch (direction){
-            case "e": column += 1; break;
-            case "w": column -= 1; break;
-            case "n": row -= 1; break;
-            case "s": row += 1; break;
-        }
-        // Checking that the position is valid
-        char characterFromMap = navigationMap.get(row)[column];
+        int row = player.getRow() + Command.rowStep(direction);
+        int column = player.getColumn() + Command.columnStep(direction);
+        // Checking that the position is valid: stepping off the edge of the map, out of an
+        // exit on it, fails like stepping into a wall
+        byte tileFromMap = navigationMap.getTemplate().isInside(row, column) ?
+                navigationMap.get(row, column) : TileGrid.WALL;
         // bot caught the player
-        if((characterFromMap == 'P' && player == this.bot) || (characterFromMap == 'B' && player == this.player)){
-            this.player.setCurrentTile('B');
-            this.bot.setCurrentTile('P');
+        if((tileFromMap == TileGrid.PLAYER && player != this.player) || (tileFromMap == TileGrid.BOT && player == this.player)){
+            this.player.setCurrentTile(TileGrid.BOT);
+            caught = true;
             gameEnded = true;
             return;
         }
-        if(characterFromMap != '#'){
-            // assign the map 'P' or 'B' character the tile character on which the player was sitting before
-            navigationMap.get(player.getRow())[player.getColumn()] = player.getCurrentTile();
-            player.setCurrentTile(navigationMap.get(row)[column]); // get the new tile character
+        // bots cannot move onto each other
+        if(tileFromMap != TileGrid.WALL && !(tileFromMap == TileGrid.BOT && player != this.player)){
+            // assign the map 'P' or 'B' tile the tile on which the player was sitting before
+            navigationMap.set(player.getRow(), player.getColumn(), player.getCurrentTile());
+            player.setCurrentTile(tileFromMap); // get the new tile
             player.setRow(row);
             player.setColumn(column);
-            //update the map with either 'P' or 'B' characters
+            //update the map with either 'P' or 'B' tiles
             if(player == this.player){
-                navigationMap.get(row)[column] = 'P';
+                navigationMap.set(row, column, TileGrid.PLAYER);
             }
             else {
-                navigationMap.get(row)[column] = 'B';
+                navigationMap.set(row, column, TileGrid.BOT);
             }
             // print message to let the player know if it succeeded or not
             if(player == this.player){
-                System.out.println("SUCCESS");
+                out.println("SUCCESS");
             }
         }
         else {
             if(player == this.player){
-                System.out.println("FAIL");
+                out.println("FAIL");
             }
         }
     }
@@ -195,31 +496,31 @@ class GameLogic {
      * Displays the gold required to win.
      */
     private void HELLO(){
-        System.out.println("Gold to win: " + goldToWin);
+        out.print("Gold to win: ").print(goldToWin).println();
     }
 
     /**
      * Display's the gold currently owned by the player
      */
     private void GOLD(){
-        System.out.println("Gold owned: " + player.getCurrentGold());
+        out.print("Gold owned: ").print(player.getCurrentGold()).println();
     }
 
     /**
      * Attempts to pickup gold from the dungeon.
      */
     private void PICKUP(){
-        if(player.getCurrentTile() == 'G'){
+        if(player.getCurrentTile() == TileGrid.GOLD){
             player.addGold();
             /*
              * it is important to update the tile character on which
              * the player is sitting to '.' so we don't get an infinite gold bug
              */
-            player.setCurrentTile('.');
-            System.out.print("SUCCESS. ");
+            player.setCurrentTile(TileGrid.FREE);
+            out.print("SUCCESS. ");
         }
         else{
-            System.out.print("FAIL. ");
+            out.print("FAIL. ");
         }
         // display the gold owned
         GOLD();
@@ -234,42 +535,302 @@ class GameLogic {
 
     /**
      * Execute the flow of the game:
-     * Initialize and spawn the player and the bot.
+     * Initialize and spawn the player and the bots.
      * Based on the turn, process each player's commands until the game has ended.
      */
     public void play(){
-        // creating a list of the players and using the turn variable as index
-        ArrayList<Player> players = new ArrayList<>();
-        player = new Player();
-        bot = new BotPlayer();
-        players.add(player);
-        players.add(bot);
-        generateRandomCoordinates(player);
-        navigationMap.get(player.getRow())[player.getColumn()] = 'P'; // update the map tile
-        generateRandomCoordinates(bot);
-        navigationMap.get(bot.getRow())[bot.getColumn()] = 'B'; // update the map tile
-        String command;
-        Scanner userInput = new Scanner(System.in);
+        start();
+        playToEnd();
+    }
+
+    /**
+     * Processes each player's commands until the game has ended, in a game which
+     * has started or was restored from a snapshot, and displays the result.
+     */
+    void playToEnd(){
+        // headless games never read from the standard input
+        Scanner userInput = strategy == null ? new Scanner(System.in) : null;
         while (!gameEnded){
-            // get all input commands to lower case
-            if(players.get(turn) == player){
-                command = userInput.nextLine().toLowerCase();
+            if(turnLimit > 0 && turnsPlayed == turnLimit){
+                // the player ran out of turns, which counts as a loss
+                break;
+            }
+            if(strategy == null){
+                playTurn(userInput.nextLine());
             }
             else{
-                command = bot.makeDecision().toLowerCase();
+                playTurn(strategy.nextCommand(player, goldToWin));
             }
-            processCommand(command, players.get(turn));
-            turn++;
-            turn %= 2;
         }
         // when the game ended close the input stream
-        userInput.close();
-        // check if the player won or lost
-        if(player.getCurrentTile() == 'E' && player.getCurrentGold() >= goldToWin && bot.getCurrentTile() != 'P'){
-            System.out.println("WIN");
+        if(userInput != null){
+            userInput.close();
+        }
+        finish();
+    }
+
+    /**
+     * Initialize and spawn the player and the bots, so that the
+     * game is ready for the player's first command.
+     */
+    void start(){
+        createPlayer();
+        spawnPlayer();
+        navigationMap.set(player.getRow(), player.getColumn(), TileGrid.PLAYER); // update the map tile
+        createBots();
+        BreadthFirstSearch nearPlayer = nearPlayer();
+        for(BotPlayer bot: bots){
+            spawnBot(bot, nearPlayer);
+            navigationMap.set(bot.getRow(), bot.getColumn(), TileGrid.BOT); // update the map tile
+        }
+    }
+
+    /**
+     * Creates the player, without placing it on the map.
+     */
+    private void createPlayer(){
+        // creating a list of the players and using the turn variable as index
+        players.clear();
+        bots.clear();
+        player = new Player();
+        playerView = new View(lookRadius, map.hasLineOfSight());
+        players.add(player);
+    }
+
+    /**
+     * Creates the bots with the game's settings, once the player has been created,
+     * without placing them on the map.
+     */
+    private void createBots(){
+        // the bots share a single flow field in the flow field mode
+        FlowField flowField = botMode == BotMode.FLOW_FIELD ?
+                new FlowField(navigationMap.getTemplate(), player) : null;
+        // and a single search, with its table, in the Monte Carlo mode
+        MonteCarloSearch monteCarlo = botMode == BotMode.MONTE_CARLO ?
+                new MonteCarloSearch(navigationMap, player, goldToWin) : null;
+        for(int index = 0; index < botCount; index++){
+            BotPlayer bot = new BotPlayer(new View(lookRadius, map.hasLineOfSight()), random);
+            // walls never change, so the bots find their paths on the shared grid
+            bot.setMode(botMode, navigationMap.getTemplate(), flowField, monteCarlo);
+            bots.add(bot);
+            players.add(bot);
+        }
+    }
+
+    /**
+     * Writes the state of the game to a snapshot, between two turns of a game which has
+     * started: its seed and the state of its random numbers (longs), its bot mode (byte),
+     * bots, look radius, turn limit and turns played (ints), whether it ended, was won and
+     * the player was caught (a byte of flags), the tiles changed on the map, the player
+     * and then every bot. Everything else is worked out again from these.
+     * @param buffer the buffer written to
+     * @throws IllegalStateException if the game has not started
+     */
+    void writeState(ByteBuffer buffer){
+        if(player == null){
+            throw new IllegalStateException("The game has not started");
+        }
+        buffer.putLong(seed).putLong(random.getState());
+        buffer.put((byte) botMode.ordinal()).putInt(bots.size()).putInt(lookRadius).putInt(turnLimit).putInt(turnsPlayed);
+        buffer.put((byte) ((gameEnded ? 1 : 0) | (won ? 2 : 0) | (caught ? 4 : 0)));
+        navigationMap.writeChanges(buffer);
+        player.writeState(buffer);
+        for(BotPlayer bot: bots){
+            bot.writeState(buffer);
+        }
+    }
+
+    /**
+     * Puts the game back in the state written by writeState(), on the same map, so that it
+     * plays on exactly as the game written would have. The player and the bots are reused
+     * if the game has started with the same settings, and created again otherwise, so
+     * restoring a game which has not started yet takes the place of start().
+     * If the snapshot is invalid, the game must not be played on.
+     * @param buffer the buffer read from
+     * @throws IllegalArgumentException if the snapshot does not fit the map
+     */
+    void readState(ByteBuffer buffer){
+        long newSeed = buffer.getLong();
+        long state = buffer.getLong();
+        int mode = buffer.get();
+        int count = buffer.getInt();
+        int radius = buffer.getInt();
+        // every bot writes at least the tiles of its view, so a corrupt count or radius
+        // is found before the bots and their views are created
+        long side = 2L * radius + 1;
+        if(mode < 0 || mode >= BotMode.values().length || count < 1 || radius < 1 ||
+                count * side * side > buffer.remaining()){
+            throw new IllegalArgumentException("invalid settings: bot mode " + mode + ", " + count +
+                    " bots, look radius " + radius);
+        }
+        // the Monte Carlo search remembers the gold picked up, so it is always created again
+        boolean create = player == null || BotMode.values()[mode] != botMode || botMode == BotMode.MONTE_CARLO ||
+                count != bots.size() || radius != lookRadius;
+        seed = newSeed;
+        // the bots use the same random numbers, so their state is set in place
+        random.setState(state);
+        botMode = BotMode.values()[mode];
+        botCount = count;
+        lookRadius = radius;
+        turnLimit = buffer.getInt();
+        turnsPlayed = buffer.getInt();
+        int flags = buffer.get();
+        gameEnded = (flags & 1) != 0;
+        won = (flags & 2) != 0;
+        caught = (flags & 4) != 0;
+        turn = 0;
+        navigationMap.readChanges(buffer);
+        if(create){
+            createPlayer();
+        }
+        player.readState(buffer);
+        checkPosition(player);
+        if(create){
+            createBots();
+        }
+        for(BotPlayer bot: bots){
+            bot.readState(buffer);
+            checkPosition(bot);
+        }
+    }
+
+    /**
+     * Checks that a player read from a snapshot is on the map.
+     * @param player the player or a bot
+     * @throws IllegalArgumentException if it is outside the map
+     */
+    private void checkPosition(Player player){
+        if(player.getRow() < 0 || player.getColumn() < 0 ||
+                player.getRow() >= map.getRows() || player.getColumn() >= map.getColumns()){
+            throw new IllegalArgumentException("invalid position (" + player.getRow() + ", " +
+                    player.getColumn() + ")");
+        }
+    }
+
+    /**
+     * Processes a command typed by the player, and then lets every bot take
+     * its turn, until it is the player's turn again or the game has ended.
+     * @param command the player's command, in any case
+     */
+    void playTurn(String command){
+        playTurn(Command.decode(command));
+    }
+
+    /**
+     * Processes a command given by the player, and then lets every bot take
+     * its turn, until it is the player's turn again or the game has ended.
+     * @param command the player's command, encoded by the Command class
+     */
+    void playTurn(int command){
+        turnsPlayed++;
+        if(recorder != null){
+            recorder.record(0, command);
+        }
+        processCommand(command, player);
+        for(turn = 1; turn < players.size() && !gameEnded; turn++){
+            int decision = decide((BotPlayer) players.get(turn));
+            if(recorder != null){
+                recorder.record(turn, decision);
+            }
+            processCommand(decision, players.get(turn));
+        }
+        turn = 0;
+        // the whole response to the turn is sent at once
+        out.flush();
+    }
+
+    /**
+     * Check if the player won or lost, and display the result.
+     */
+    void finish(){
+        if(gameEnded && player.getCurrentTile() == TileGrid.EXIT && player.getCurrentGold() >= goldToWin && !caught){
+            won = true;
+            out.println("WIN");
         }
         else {
-            System.out.println("LOSE");
+            out.println("LOSE");
+        }
+        out.flush();
+    }
+
+    /**
+     * Returns whether the player won the game which has been played.
+     * @return true if the player won, false otherwise
+     */
+    public boolean hasWon(){
+        return won;
+    }
+
+    /**
+     * Returns whether the game ended by itself, rather than
+     * because the player ran out of turns.
+     * @return true if the game ended, false if the turn limit was reached
+     */
+    public boolean hasEnded(){
+        return gameEnded;
+    }
+
+    /**
+     * Returns the number of commands the player gave during the game.
+     * @return number of player turns
+     */
+    public int getTurnsPlayed(){
+        return turnsPlayed;
+    }
+
+    /**
+     * Describes where the player and the bots are, for inspecting a game.
+     * @return one line for the player, and one for each bot
+     */
+    String describePositions(){
+        StringBuilder description = new StringBuilder();
+        description.append("Player at row ").append(player.getRow()).append(", column ").append(player.getColumn())
+                .append(" with ").append(player.getCurrentGold()).append(" gold");
+        for(int index = 0; index < bots.size(); index++){
+            BotPlayer bot = bots.get(index);
+            description.append("\nBot ").append(index + 1).append(" at row ").append(bot.getRow())
+                    .append(", column ").append(bot.getColumn());
         }
+        return description.toString();
+    }
+
+    /**
+     * Returns the map on which the game is played.
+     * @return the Map object
+     */
+    Map getMap(){
+        return map;
+    }
+
+    /**
+     * Returns the maximum number of player turns.
+     * @return the turn limit, 0 meaning no limit
+     */
+    int getTurnLimit(){
+        return turnLimit;
+    }
+
+    /**
+     * Returns how far the player and the bots see around them with the "look" command.
+     * @return number of tiles seen in each direction
+     */
+    int getLookRadius(){
+        return lookRadius;
+    }
+
+    /**
+     * Returns the way in which the bots find their way to the player.
+     * @return the bots' way of finding paths
+     */
+    BotMode getBotMode(){
+        return botMode;
+    }
+
+    /**
+     * Returns the number of bots which chase the player.
+     * @return number of bots
+     */
+    int getBotCount(){
+        return botCount;
     }
 }
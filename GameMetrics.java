@@ -0,0 +1,240 @@
+import java.lang.management.ManagementFactory; // the platform MBean server
+import java.util.concurrent.Executors; // the thread which prints the metrics
+import java.util.concurrent.ScheduledExecutorService; // printing the metrics periodically
+import java.util.concurrent.ThreadLocalRandom; // picking the samples
+import java.util.concurrent.TimeUnit; // period of the printing
+import java.util.concurrent.atomic.LongAdder; // counting without locks
+import javax.management.JMException; // failing to register the MBean
+import javax.management.ObjectName; // name of the MBean
+
+/**
+ * Class which holds the metrics shared by every game of the process: the durations of
+ * the commands and of the bots' decisions and path finding, and counters of the work
+ * done by the bots and while spawning them.
+ * The metrics are enabled with the "metrics" system property, e.g. -Dmetrics=true, and
+ * are otherwise skipped entirely, as ENABLED is a constant. When they are enabled, one in
+ * every SAMPLE_INTERVAL commands, decisions and searches is timed (-Dmetrics.sample=N),
+ * which keeps the cost of reading the clock off most turns, while the counters count
+ * everything. Recording never locks or allocates.
+ * With -Dmetrics.dump=[seconds] the report is also printed to the standard error periodically.
+ */
+public class GameMetrics implements GameMetricsMXBean {
+
+    static final boolean ENABLED = Boolean.getBoolean("metrics");
+    static final int SAMPLE_INTERVAL = Math.max(1, Integer.getInteger("metrics.sample", 16));
+
+    // durations
+    static final LatencyHistogram LOOK = new LatencyHistogram();
+    static final LatencyHistogram MOVE = new LatencyHistogram();
+    static final LatencyHistogram PICKUP = new LatencyHistogram();
+    static final LatencyHistogram BOT_DECISION = new LatencyHistogram();
+    static final LatencyHistogram PATHFINDING = new LatencyHistogram();
+
+    // counters
+    static final LongAdder LEE_SEARCHES = new LongAdder();
+    static final LongAdder LEE_NODES_EXPANDED = new LongAdder();
+    static final LongAdder RANDOM_MOVEMENT_RETRIES = new LongAdder();
+    static final LongAdder SPAWN_RETRIES = new LongAdder();
+    static final LongAdder CHUNK_LOADS = new LongAdder();
+    static final LongAdder CHUNK_EVICTIONS = new LongAdder();
+    static final LongAdder ROLLOUTS = new LongAdder();
+
+    static {
+        if(ENABLED){
+            GameMetrics metrics = new GameMetrics();
+            try{
+                ManagementFactory.getPlatformMBeanServer().registerMBean(metrics,
+                        new ObjectName("DungeonsOfDoom:type=GameMetrics"));
+            }
+            catch (JMException e){
+                System.err.println("The metrics could not be registered: " + e.getMessage());
+            }
+            int period = Integer.getInteger("metrics.dump", 0);
+            if(period > 0){
+                ScheduledExecutorService dumper = Executors.newSingleThreadScheduledExecutor(task -> {
+                    Thread thread = new Thread(task, "metrics-dump");
+                    thread.setDaemon(true); // the dump never keeps the game running
+                    return thread;
+                });
+                dumper.scheduleAtFixedRate(() -> System.err.println(metrics.getReport()), period, period, TimeUnit.SECONDS);
+            }
+        }
+    }
+
+    /**
+     * Private constructor, as the only instance is the registered MBean.
+     */
+    private GameMetrics(){
+    }
+
+    /**
+     * Returns how many commands, decisions or searches to let go by before timing the next one.
+     * The callers count down from it, so the clock is only read for the samples. The gaps are
+     * random, SAMPLE_INTERVAL on average, as the bots alternate their commands and a fixed gap
+     * would only ever time some of them. The game's own random numbers are left alone, so
+     * that a game plays out the same whether or not the metrics are enabled.
+     * @return the gap, at least 1
+     */
+    static int nextGap(){
+        return ThreadLocalRandom.current().nextInt(2 * SAMPLE_INTERVAL) + 1;
+    }
+
+    /**
+     * Records the duration of a command, if it is one of the timed commands.
+     * @param command the command, encoded by the Command class
+     * @param nanos the duration, in nanoseconds
+     */
+    static void recordCommand(int command, long nanos){
+        switch (Command.opcode(command)){
+            case Command.LOOK: LOOK.record(nanos); return;
+            case Command.MOVE: MOVE.record(nanos); return;
+            case Command.PICKUP: PICKUP.record(nanos); return;
+            default:
+        }
+    }
+
+    /**
+     * Returns the durations of the "look" command.
+     * @return the summary of the durations
+     */
+    @Override
+    public LatencyHistogram.Snapshot getLook(){
+        return LOOK.snapshot();
+    }
+
+    /**
+     * Returns the durations of the "move" command.
+     * @return the summary of the durations
+     */
+    @Override
+    public LatencyHistogram.Snapshot getMove(){
+        return MOVE.snapshot();
+    }
+
+    /**
+     * Returns the durations of the "pickup" command.
+     * @return the summary of the durations
+     */
+    @Override
+    public LatencyHistogram.Snapshot getPickup(){
+        return PICKUP.snapshot();
+    }
+
+    /**
+     * Returns the durations of the bots' decisions.
+     * @return the summary of the durations
+     */
+    @Override
+    public LatencyHistogram.Snapshot getBotDecision(){
+        return BOT_DECISION.snapshot();
+    }
+
+    /**
+     * Returns the durations of the bots' path finding.
+     * @return the summary of the durations
+     */
+    @Override
+    public LatencyHistogram.Snapshot getPathfinding(){
+        return PATHFINDING.snapshot();
+    }
+
+    /**
+     * Returns the number of times Lee's algorithm was applied.
+     * @return the number of searches
+     */
+    @Override
+    public long getLeeSearches(){
+        return LEE_SEARCHES.sum();
+    }
+
+    /**
+     * Returns the number of tiles expanded by Lee's algorithm.
+     * @return the number of tiles
+     */
+    @Override
+    public long getLeeNodesExpanded(){
+        return LEE_NODES_EXPANDED.sum();
+    }
+
+    /**
+     * Returns the number of blocked random moves which were drawn again.
+     * @return the number of retries
+     */
+    @Override
+    public long getRandomMovementRetries(){
+        return RANDOM_MOVEMENT_RETRIES.sum();
+    }
+
+    /**
+     * Returns the number of tiles rejected while spawning the bots.
+     * @return the number of retries
+     */
+    @Override
+    public long getSpawnRetries(){
+        return SPAWN_RETRIES.sum();
+    }
+
+    /**
+     * Returns the number of chunks of large maps read from their files after they were loaded.
+     * @return the number of loads
+     */
+    @Override
+    public long getChunkLoads(){
+        return CHUNK_LOADS.sum();
+    }
+
+    /**
+     * Returns the number of chunks of large maps evicted from memory.
+     * @return the number of evictions
+     */
+    @Override
+    public long getChunkEvictions(){
+        return CHUNK_EVICTIONS.sum();
+    }
+
+    /**
+     * Returns the number of rollouts run by the Monte Carlo bots.
+     * @return the number of rollouts
+     */
+    @Override
+    public long getRollouts(){
+        return ROLLOUTS.sum();
+    }
+
+    /**
+     * Returns every metric as text, one per line.
+     * @return the report
+     */
+    @Override
+    public String getReport(){
+        return "look: " + LOOK.snapshot() +
+                "\nmove: " + MOVE.snapshot() +
+                "\npickup: " + PICKUP.snapshot() +
+                "\nbot decision: " + BOT_DECISION.snapshot() +
+                "\npathfinding: " + PATHFINDING.snapshot() +
+                "\nLee searches: " + LEE_SEARCHES.sum() + ", nodes expanded: " + LEE_NODES_EXPANDED.sum() +
+                "\nrandom movement retries: " + RANDOM_MOVEMENT_RETRIES.sum() +
+                "\nspawn retries: " + SPAWN_RETRIES.sum() +
+                "\nchunk loads: " + CHUNK_LOADS.sum() + ", evictions: " + CHUNK_EVICTIONS.sum() +
+                "\nMonte Carlo rollouts: " + ROLLOUTS.sum();
+    }
+
+    /**
+     * Forgets every metric recorded so far. Metrics recorded at the same time may be kept.
+     */
+    @Override
+    public void reset(){
+        LOOK.reset();
+        MOVE.reset();
+        PICKUP.reset();
+        BOT_DECISION.reset();
+        PATHFINDING.reset();
+        LEE_SEARCHES.reset();
+        LEE_NODES_EXPANDED.reset();
+        RANDOM_MOVEMENT_RETRIES.reset();
+        SPAWN_RETRIES.reset();
+        CHUNK_LOADS.reset();
+        CHUNK_EVICTIONS.reset();
+        ROLLOUTS.reset();
+    }
+}
@@ -0,0 +1,92 @@
+/**
+ * Management interface of the game's metrics, registered with the platform
+ * MBean server as "DungeonsOfDoom:type=GameMetrics" when the metrics are enabled.
+ * The durations are sampled, so their counts are a fraction of the commands played,
+ * while the counters count everything.
+ */
+public interface GameMetricsMXBean {
+
+    /**
+     * Returns the durations of the "look" command, of the player and of the bots.
+     * @return the summary of the durations
+     */
+    LatencyHistogram.Snapshot getLook();
+
+    /**
+     * Returns the durations of the "move" command, of the player and of the bots.
+     * @return the summary of the durations
+     */
+    LatencyHistogram.Snapshot getMove();
+
+    /**
+     * Returns the durations of the "pickup" command.
+     * @return the summary of the durations
+     */
+    LatencyHistogram.Snapshot getPickup();
+
+    /**
+     * Returns the durations of the bots' decisions, path finding included.
+     * @return the summary of the durations
+     */
+    LatencyHistogram.Snapshot getBotDecision();
+
+    /**
+     * Returns the durations of the bots' path finding: Lee's algorithm, A*, jump point search
+     * and the flow field's search.
+     * @return the summary of the durations
+     */
+    LatencyHistogram.Snapshot getPathfinding();
+
+    /**
+     * Returns the number of times Lee's algorithm was applied.
+     * @return the number of searches
+     */
+    long getLeeSearches();
+
+    /**
+     * Returns the number of tiles expanded by Lee's algorithm, over all its searches.
+     * @return the number of tiles
+     */
+    long getLeeNodesExpanded();
+
+    /**
+     * Returns the number of random moves of the bots which were drawn again because they were blocked.
+     * @return the number of retries
+     */
+    long getRandomMovementRetries();
+
+    /**
+     * Returns the number of tiles rejected while spawning the bots.
+     * @return the number of retries
+     */
+    long getSpawnRetries();
+
+    /**
+     * Returns the number of chunks of large maps read from their files after they were loaded.
+     * @return the number of loads
+     */
+    long getChunkLoads();
+
+    /**
+     * Returns the number of chunks of large maps evicted from memory.
+     * @return the number of evictions
+     */
+    long getChunkEvictions();
+
+    /**
+     * Returns the number of rollouts run by the Monte Carlo bots.
+     * @return the number of rollouts
+     */
+    long getRollouts();
+
+    /**
+     * Returns every metric as text, one per line.
+     * @return the report
+     */
+    String getReport();
+
+    /**
+     * Forgets every metric recorded so far.
+     */
+    void reset();
+}
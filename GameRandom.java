@@ -0,0 +1,80 @@
+/**
+ * Class which represents the random number generator of a game (SplitMix64).
+ * The player's spawn and every random decision of the bots come from the same
+ * generator, so a game played again from the same seed, with the same commands,
+ * plays out exactly the same. Its whole state is a single long, which can be
+ * read and restored.
+ */
+public class GameRandom {
+
+    private long state;
+
+    /**
+     * Constructor which starts the generator from a seed.
+     * @param seed the seed
+     */
+    public GameRandom(long seed){
+        this.state = seed;
+    }
+
+    /**
+     * Constructor which copies another generator, which then both give the same numbers.
+     * @param other the generator being copied
+     */
+    public GameRandom(GameRandom other){
+        this.state = other.state;
+    }
+
+    /**
+     * Returns the next random long.
+     * @return a long, from the whole range of longs
+     */
+    public long nextLong(){
+        state += 0x9E3779B97F4A7C15L;
+        long mixed = state;
+        mixed = (mixed ^ (mixed >>> 30)) * 0xBF58476D1CE4E5B9L;
+        mixed = (mixed ^ (mixed >>> 27)) * 0x94D049BB133111EBL;
+        return mixed ^ (mixed >>> 31);
+    }
+
+    /**
+     * Returns a random int between 0 (inclusive) and a bound (exclusive),
+     * each value being equally likely.
+     * @param bound the bound, at least 1
+     * @return the random int
+     */
+    public int nextInt(int bound){
+        if(bound <= 0){
+            throw new IllegalArgumentException("The bound must be positive");
+        }
+        int random = (int) (nextLong() >>> 33); // 31 random bits
+        int mask = bound - 1;
+        if((bound & mask) == 0){
+            // a power of 2, so the highest bits can be used directly
+            return (int) ((bound * (long) random) >> 31);
+        }
+        // numbers from the last, incomplete range of the bound are drawn again
+        int value = random % bound;
+        while(random - value + mask < 0){
+            random = (int) (nextLong() >>> 33);
+            value = random % bound;
+        }
+        return value;
+    }
+
+    /**
+     * Returns the state of the generator, from which it can be restored.
+     * @return the state
+     */
+    public long getState(){
+        return state;
+    }
+
+    /**
+     * Restores the state of the generator.
+     * @param state a state returned by getState()
+     */
+    public void setState(long state){
+        this.state = state;
+    }
+}
@@ -0,0 +1,234 @@
+import java.io.BufferedInputStream; // reading the header
+import java.io.DataInputStream; // reading the header
+import java.io.IOException; // file manipulation exception handling
+import java.nio.MappedByteBuffer; // reading the records straight from memory
+import java.nio.channels.FileChannel; // mapping the journal into memory
+import java.nio.file.Files; // opening the journal file
+import java.nio.file.Path; // location of the journal file
+import java.nio.file.Paths; // paths given on the command line
+import java.nio.file.StandardOpenOption; // opening the journal for reading
+import java.text.ParseException; // malformed journal files
+import java.util.HashMap; // maps shared by the journals played on them
+
+/**
+ * Class which plays a game again from its GameJournal, headless and as fast as the
+ * game logic allows. Only the player's commands are fed to the game: the bots decide
+ * for themselves, from the same seed, and every decision is checked against the one
+ * in the journal. A replay therefore tells whether the bots, as they are now, still
+ * play an archived game the way they did when it was recorded.
+ */
+public class GameReplayer implements TurnRecorder {
+
+    private final String mapFile;
+    private final long seed;
+    private final BotMode botMode;
+    private final int botCount, lookRadius, turnLimit;
+    private final MappedByteBuffer records;
+    private int position = 0; // position of the next record
+    private GameLogic game; // the game being replayed
+    private boolean diverged = false; // whether the game stopped following the journal
+    private int divergedTurn = 0; // player turn on which it did
+
+    /**
+     * Constructor which reads a journal's header, and maps its records into memory.
+     * @param file path of the journal file
+     * @throws IOException if the file cannot be read
+     * @throws ParseException if the file is not a valid journal. The error offset
+                              is the position in the file where the problem was found.
+     */
+    public GameReplayer(Path file) throws IOException, ParseException {
+        int headerLength;
+        try(DataInputStream header = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))){
+            if(header.readInt() != GameJournal.MAGIC){
+                throw new ParseException("not a game journal", 0);
+            }
+            int version = header.readInt();
+            if(version != GameJournal.VERSION){
+                throw new ParseException("unsupported version " + version, 4);
+            }
+            mapFile = header.readUTF();
+            seed = header.readLong();
+            int mode = header.readUnsignedByte();
+            if(mode >= BotMode.values().length){
+                throw new ParseException("unknown bot mode " + mode, 0);
+            }
+            botMode = BotMode.values()[mode];
+            botCount = header.readInt();
+            lookRadius = header.readInt();
+            turnLimit = header.readInt();
+            headerLength = 31 + utfLength(mapFile);
+        }
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)){
+            records = channel.map(FileChannel.MapMode.READ_ONLY, headerLength, channel.size() - headerLength);
+        }
+    }
+
+    /**
+     * Returns the length of a string written with DataOutputStream.writeUTF(), without its length.
+     * @param text the string
+     * @return number of bytes
+     */
+    static int utfLength(String text){
+        int length = 0;
+        for(int index = 0; index < text.length(); index++){
+            char character = text.charAt(index);
+            length += character >= 1 && character <= 0x7F ? 1 : character <= 0x7FF ? 2 : 3;
+        }
+        return length;
+    }
+
+    /**
+     * Returns the name of the file of the map the game was played on.
+     * @return name of the file in the Maps folder
+     */
+    public String getMapFile(){
+        return mapFile;
+    }
+
+    /**
+     * Plays the game again, up to a number of player turns.
+     * @param map Map object loaded from getMapFile()
+     * @param turns number of player turns to play, Integer.MAX_VALUE for the whole game
+     * @return the headless game, in the state it was in after those turns, and
+               finished if the whole game was played
+     */
+    public GameLogic replay(Map map, int turns){
+        game = new GameLogic(map, OutputSink.NULL);
+        game.setSeed(seed);
+        game.setBotMode(botMode);
+        game.setBotCount(botCount);
+        game.setLookRadius(lookRadius);
+        game.setTurnLimit(turnLimit);
+        game.start();
+        position = 0;
+        diverged = false;
+        game.setRecorder(this);
+        while(position < records.limit() && game.getTurnsPlayed() < turns && !diverged && !game.hasEnded()){
+            int start = position;
+            long record = readRecord();
+            position = start; // the record is read again when the game plays it
+            if(record >>> GameJournal.COMMAND_BITS != 0){
+                // the journal has a bot's command where the player's was expected
+                diverge();
+                break;
+            }
+            game.playTurn((int) record);
+        }
+        game.setRecorder(null);
+        if(turns == Integer.MAX_VALUE){
+            if(!diverged && position < records.limit()){
+                // the game ended before the journal did
+                diverge();
+            }
+            game.finish();
+        }
+        GameLogic replayed = game;
+        game = null;
+        return replayed;
+    }
+
+    /**
+     * Checks a command given in the replayed game against the next record of the journal.
+     * @param actor 0 for the player, or the number of the bot, starting from 1
+     * @param command the command, encoded by the Command class
+     */
+    @Override
+    public void record(int actor, int command){
+        if(diverged){
+            return;
+        }
+        if(position >= records.limit() || readRecord() != ((long) actor << GameJournal.COMMAND_BITS | command)){
+            diverge();
+        }
+    }
+
+    /**
+     * Notes that the game stopped following the journal on the current turn.
+     */
+    private void diverge(){
+        diverged = true;
+        divergedTurn = game.getTurnsPlayed();
+    }
+
+    /**
+     * Reads the next record.
+     * @return the actor and the command, as written by the GameJournal
+     */
+    private long readRecord(){
+        long value = 0;
+        int shift = 0;
+        byte part;
+        do{
+            part = records.get(position++);
+            value |= (long) (part & 0x7F) << shift;
+            shift += 7;
+        } while(part < 0 && position < records.limit());
+        return value;
+    }
+
+    /**
+     * Returns whether the last replay stopped following the journal.
+     * @return true if a command differed from the journal's
+     */
+    public boolean hasDiverged(){
+        return diverged;
+    }
+
+    /**
+     * Returns the player turn on which the last replay stopped following the journal.
+     * @return number of the turn, counted from 1, if hasDiverged() is true
+     */
+    public int getDivergedTurn(){
+        return divergedTurn;
+    }
+
+    /**
+     * Main function, which replays journals and reports how fast they were played, how the
+     * games ended and whether the bots still play them the same way.
+     * Usage: GameReplayer [journal files...]
+     * With the "turn" system property, e.g. -Dturn=100, every game is only played up to that
+     * player turn, and the positions of the player and the bots at that point are shown.
+     * With the "snapshot" system property as well, e.g. -Dsnapshot=true, the game is saved
+     * at that point next to its journal, with the .dods extension, so it can be resumed.
+     */
+    public static void main(String[] args) {
+        int turns = Integer.getInteger("turn", Integer.MAX_VALUE);
+        boolean saving = Boolean.getBoolean("snapshot") && turns != Integer.MAX_VALUE;
+        HashMap<String, Map> maps = new HashMap<>(); // every map is loaded only once
+        for(String fileName: args){
+            try{
+                GameReplayer replayer = new GameReplayer(Paths.get(fileName));
+                Map map = maps.computeIfAbsent(replayer.getMapFile(), Map::new);
+                long start = System.nanoTime();
+                GameLogic game = replayer.replay(map, turns);
+                long time = System.nanoTime() - start;
+                String result = game.hasWon() ? "WIN" : game.hasEnded() ? "LOSE" : "unfinished";
+                System.out.printf("%s: %d turns in %.3f ms (%.0f turns/sec), %s, %s%n", fileName,
+                        game.getTurnsPlayed(), time / 1e6, game.getTurnsPlayed() * 1e9 / Math.max(time, 1), result,
+                        replayer.hasDiverged() ? "diverged from the journal on turn " + replayer.getDivergedTurn()
+                                : "matches the journal");
+                if(turns != Integer.MAX_VALUE){
+                    System.out.println(game.describePositions());
+                }
+                if(saving && !game.hasEnded()){
+                    GameSnapshot snapshot = new GameSnapshot();
+                    snapshot.capture(game);
+                    Path snapshotFile = Paths.get(fileName.replaceFirst("\\.dodj$", "") + ".dods");
+                    try{
+                        snapshot.save(snapshotFile);
+                        System.out.println("Saved to " + snapshotFile + " (" + snapshot.size() + " bytes)");
+                    }
+                    catch (IOException e){
+                        System.out.println("Snapshot " + snapshotFile + " could not be written: " + e.getMessage());
+                    }
+                }
+            }
+            catch (ParseException e){
+                System.out.println("Invalid journal " + fileName + " at " + e.getErrorOffset() + ": " + e.getMessage());
+            }
+            catch (IOException e){
+                System.out.println("Journal " + fileName + " could not be read: " + e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,336 @@
+import java.io.File; // the Maps folder
+import java.io.IOException; // connection exception handling
+import java.net.InetSocketAddress; // address on which the server listens
+import java.nio.channels.SelectionKey; // registration of the connections with the selector
+import java.nio.channels.Selector; // waiting for the connections to be ready
+import java.nio.channels.ServerSocketChannel; // accepting connections
+import java.nio.channels.SocketChannel; // connections to the clients
+import java.nio.file.Path; // folder of the games' journals
+import java.nio.file.Paths; // folder given on the command line
+import java.util.ArrayList; // the maps of the lobby
+import java.util.HashMap; // maps loaded for the lobby
+import java.util.Iterator; // going through the ready connections
+import java.util.concurrent.ConcurrentLinkedQueue; // sessions with replies to be written
+import java.util.concurrent.ExecutorService; // the pool which plays the games
+import java.util.concurrent.Executors; // creating the pool
+
+/**
+ * Class which hosts many games at once, one for each TCP connection, speaking the same text
+ * commands as the console game. A single thread waits on a non-blocking selector for the
+ * connections to be ready, and a small pool of threads plays the commands as they arrive.
+ * Every game is either played on the same map, or, in the lobby, on the map each client
+ * chooses from a MapCatalog. The catalog watches the Maps folder, so maps added while the
+ * server runs are offered at once, and a changed map is loaded again for the games started
+ * after the change.
+ */
+public class GameServer {
+
+    // directory which contains all the maps
+    private static final File directory = new File(GameServer.class.getProtectionDomain().
+                                            getCodeSource().getLocation().getPath() + "/Maps");
+
+    private final Map map; // map of every game, or null in the lobby
+    private final MapCatalog catalog; // maps offered in the lobby, or null
+    // the maps loaded for the lobby, and the entries of the catalog they were loaded from
+    private final HashMap<String, Map> loadedMaps = new HashMap<>();
+    private final HashMap<String, MapCatalog.Entry> loadedEntries = new HashMap<>();
+    private final int maxSessions;
+    private final Selector selector;
+    private final ServerSocketChannel serverChannel;
+    private final ExecutorService pool;
+    private final ConcurrentLinkedQueue<GameSession> writeRequests = new ConcurrentLinkedQueue<>();
+    private int sessions = 0; // number of open connections, used only by the selector thread
+    private long sessionNumber = 0; // number of connections accepted so far, used only by the selector thread
+    private Path journalDirectory; // folder in which every game is recorded, or null
+    private volatile boolean running = true;
+
+    /**
+     * Constructor which opens the server's port.
+     * @param map Map object on which every game is played
+     * @param port port on which connections are accepted, 0 for any free port
+     * @param threads number of threads which play the games
+     * @param maxSessions maximum number of games at once, further connections being refused
+     * @throws IOException if the port cannot be opened
+     */
+    public GameServer(Map map, int port, int threads, int maxSessions) throws IOException {
+        this(map, null, port, threads, maxSessions);
+    }
+
+    /**
+     * Constructor which opens the server's port, with a lobby in which every client
+     * chooses the map of its game. The catalog should be watching its folder.
+     * @param catalog MapCatalog object of the maps which are offered
+     * @param port port on which connections are accepted, 0 for any free port
+     * @param threads number of threads which play the games
+     * @param maxSessions maximum number of games at once, further connections being refused
+     * @throws IOException if the port cannot be opened
+     */
+    public GameServer(MapCatalog catalog, int port, int threads, int maxSessions) throws IOException {
+        this(null, catalog, port, threads, maxSessions);
+    }
+
+    /**
+     * Constructor used by the public ones, which opens the server's port.
+     * @param map Map object on which every game is played, or null
+     * @param catalog MapCatalog object of the maps offered in the lobby, or null
+     * @param port port on which connections are accepted, 0 for any free port
+     * @param threads number of threads which play the games
+     * @param maxSessions maximum number of games at once, further connections being refused
+     * @throws IOException if the port cannot be opened
+     */
+    private GameServer(Map map, MapCatalog catalog, int port, int threads, int maxSessions) throws IOException {
+        this.map = map;
+        this.catalog = catalog;
+        this.maxSessions = maxSessions;
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port));
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        pool = Executors.newFixedThreadPool(threads);
+    }
+
+    /**
+     * Records every game started from now on in a GameJournal, in a folder.
+     * @param journalDirectory the folder, or null to stop recording
+     */
+    public void setJournalDirectory(Path journalDirectory){
+        this.journalDirectory = journalDirectory;
+    }
+
+    /**
+     * Returns the port on which the server accepts connections.
+     * @return the port
+     */
+    public int getPort(){
+        return serverChannel.socket().getLocalPort();
+    }
+
+    /**
+     * Accepts connections and serves them until the server is stopped.
+     * @throws IOException if the selector fails
+     */
+    public void serve() throws IOException {
+        while(running){
+            selector.select();
+            // write the replies which the pool has produced since the last selection
+            GameSession writer;
+            while((writer = writeRequests.poll()) != null){
+                if(writer.getChannel().isOpen()){
+                    write(writer);
+                }
+            }
+            Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+            while(keys.hasNext()){
+                SelectionKey key = keys.next();
+                keys.remove();
+                if(!key.isValid()){
+                    continue;
+                }
+                if(key.isAcceptable()){
+                    try{
+                        accept();
+                    }
+                    catch (IOException e){
+                        // the waiting connection is lost, but the server goes on
+                        System.err.println("A connection could not be accepted: " + e.getMessage());
+                    }
+                    continue;
+                }
+                GameSession session = (GameSession) key.attachment();
+                try{
+                    if(key.isReadable() && !session.read()){
+                        close(session);
+                        continue;
+                    }
+                    if(key.isValid() && key.isWritable()){
+                        write(session);
+                    }
+                }
+                catch (IOException e){
+                    close(session);
+                }
+            }
+        }
+        pool.shutdown();
+        selector.close();
+        serverChannel.close();
+    }
+
+    /**
+     * Accepts a waiting connection and starts its game. A connection whose game cannot
+     * be started is closed, without stopping the server.
+     * @throws IOException if the connection cannot be accepted
+     */
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if(channel == null){
+            return;
+        }
+        if(sessions == maxSessions){
+            closeQuietly(channel);
+            return;
+        }
+        GameSession session = null;
+        try{
+            channel.configureBlocking(false);
+            sessionNumber++;
+            Path journalFile = journalDirectory == null ? null : journalDirectory.resolve("game-" + sessionNumber + ".dodj");
+            session = new GameSession(this, channel, map, journalFile);
+            session.setKey(channel.register(selector, SelectionKey.OP_READ, session));
+            sessions++;
+            if(map == null){
+                // the maps of the lobby are shown at once
+                write(session);
+            }
+        }
+        catch (IOException | RuntimeException e){
+            System.err.println("A game could not be started for a connection: " + e.getMessage());
+            closeQuietly(channel);
+            if(session != null){
+                session.closeJournal();
+            }
+        }
+    }
+
+    /**
+     * Closes a connection which has no session.
+     * @param channel the connection
+     */
+    private static void closeQuietly(SocketChannel channel){
+        try{
+            channel.close();
+        }
+        catch (IOException e){
+            // the connection is gone either way
+        }
+    }
+
+    /**
+     * Writes a session's replies, closing the connection once its game is over.
+     * @param session the session
+     */
+    private void write(GameSession session){
+        try{
+            if(session.write()){
+                close(session);
+            }
+        }
+        catch (IOException e){
+            close(session);
+        }
+    }
+
+    /**
+     * Closes a session's connection.
+     * @param session the session
+     */
+    private void close(GameSession session){
+        try{
+            session.getChannel().close();
+        }
+        catch (IOException e){
+            // the connection is gone either way
+        }
+        session.closeJournal();
+        sessions--;
+    }
+
+    /**
+     * Describes the maps of the lobby, as they are in the catalog now.
+     * @return one line for each map, numbered from 1, between a heading and a prompt
+     */
+    String describeMaps(){
+        StringBuilder description = new StringBuilder("Please choose a map from the following:\n");
+        int index = 1;
+        for(MapCatalog.Entry entry: catalog.getEntries()){
+            description.append(index).append(" --- ").append(entry.describe()).append('\n');
+            index++;
+        }
+        return description.append("Please enter the number or the name of the map you want to play.\n").toString();
+    }
+
+    /**
+     * Finds the map chosen by a client in the lobby. A map is only loaded again once the
+     * catalog has seen its file change, so the games on the same map share it. Called by
+     * the pool's threads.
+     * @param choice the number of the map, as shown by describeMaps(), or its name
+     * @return the Map object, or null if there is no such valid map
+     */
+    synchronized Map findMap(String choice){
+        ArrayList<MapCatalog.Entry> entries = catalog.getEntries();
+        MapCatalog.Entry entry;
+        try{
+            int number = Integer.parseInt(choice);
+            entry = number >= 1 && number <= entries.size() ? entries.get(number - 1) : null;
+        }
+        catch (NumberFormatException e){
+            entry = catalog.getEntry(choice.endsWith(".txt") ? choice : choice + ".txt");
+        }
+        if(entry == null){
+            return null;
+        }
+        if(loadedEntries.get(entry.getFileName()) != entry){
+            Map loaded = catalog.load(entry);
+            if(loaded.getTemplate() == null){
+                // the file could not be loaded, though its header could be read
+                return null;
+            }
+            loadedMaps.put(entry.getFileName(), loaded);
+            loadedEntries.put(entry.getFileName(), entry);
+        }
+        return loadedMaps.get(entry.getFileName());
+    }
+
+    /**
+     * Lets a thread from the pool play a session's queued commands.
+     * @param session the session
+     */
+    void schedule(GameSession session){
+        pool.execute(session);
+    }
+
+    /**
+     * Asks the selector thread to write a session's replies.
+     * @param session the session
+     */
+    void requestWrite(GameSession session){
+        writeRequests.add(session);
+        selector.wakeup();
+    }
+
+    /**
+     * Stops the server after the current selection.
+     */
+    public void stop(){
+        running = false;
+        selector.wakeup();
+    }
+
+    /**
+     * Main function. Usage: GameServer [port] [map file] [threads] [max sessions]
+     * With the "journal" system property, e.g. -Djournal=journals, every game is
+     * recorded in that folder, so it can be played again with the GameReplayer.
+     * With the "lobby" system property, e.g. -Dlobby=true, every client chooses its map
+     * from the ones in the Maps folder, and the map file is ignored.
+     */
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 7777;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        int maxSessions = args.length > 3 ? Integer.parseInt(args[3]) : 10000;
+        GameServer server;
+        if(Boolean.getBoolean("lobby")){
+            MapCatalog catalog = new MapCatalog(directory);
+            catalog.startWatching();
+            server = new GameServer(catalog, port, threads, maxSessions);
+        }
+        else{
+            server = new GameServer(new Map(args.length > 1 ? args[1] : "easyMap.txt"), port, threads, maxSessions);
+        }
+        if(System.getProperty("journal") != null){
+            server.setJournalDirectory(Paths.get(System.getProperty("journal")));
+        }
+        System.out.println("Serving on port " + server.getPort());
+        server.serve();
+    }
+}
@@ -0,0 +1,318 @@
+import java.io.IOException; // connection exception handling
+import java.nio.ByteBuffer; // bytes read from and written to the connection
+import java.nio.channels.SelectionKey; // registration of the connection with the selector
+import java.nio.channels.SocketChannel; // connection to the client
+import java.nio.charset.StandardCharsets; // decoding the choice of a map
+import java.nio.file.Path; // location of the game's journal
+import java.util.Arrays; // copying the game's messages
+import java.util.concurrent.ConcurrentLinkedQueue; // replies waiting to be written
+import java.util.concurrent.atomic.AtomicBoolean; // making sure only one thread plays the game at a time
+import java.util.concurrent.atomic.AtomicInteger; // counting the queued replies
+
+/**
+ * Class which represents the game played over a single connection to the GameServer.
+ * The server's selector thread reads the commands, and a thread from the server's pool
+ * plays them; only one thread at a time ever plays a given session.
+ * In the server's lobby, the session starts by showing the maps, and the game only
+ * starts once the client has chosen one.
+ * A session stops reading from its connection while too many commands wait to be played,
+ * or too many replies wait for the client to read them, so a client which sends faster
+ * than it reads only holds a bounded amount of memory. The commands wait in a ring of ints
+ * written only by the selector thread and read only by the pool, so queuing one allocates nothing.
+ */
+class GameSession implements Runnable {
+
+    static final int MAX_LINE_LENGTH = 256; // longest command accepted from a client
+    /*
+     * commands, or replies, queued before the session stops reading. A single read can
+     * go over by as many commands as fit in MAX_LINE_LENGTH bytes.
+     */
+    static final int MAX_QUEUED = 64;
+    // size of the ring of commands: MAX_QUEUED, and a read of empty lines over it
+    private static final int COMMAND_RING = Integer.highestOneBit(MAX_QUEUED + MAX_LINE_LENGTH) * 2;
+
+    private final GameServer server;
+    private final SocketChannel channel;
+    private SelectionKey key;
+    private final OutputSink sink; // queues the game's replies
+    private final Path journalFile; // where the game is recorded, or null
+    private volatile GameLogic game; // null until a map is chosen, in the lobby
+    // guarded by the session: the pool creates the journal, and the selector thread may close it first
+    private GameJournal journal; // records the game, or null
+    private boolean closed = false; // whether closeJournal() was called, so no journal is kept open
+    // used only by the selector thread
+    private final ByteBuffer input = ByteBuffer.allocate(MAX_LINE_LENGTH);
+    private ByteBuffer output; // bytes which could not be written yet
+    private boolean reading = true; // whether the key is interested in reading
+    // shared between the selector thread and the pool
+    /*
+     * the commands waiting to be played, encoded by the Command class, from commandsHead,
+     * which only the pool moves, to commandsTail, which only the selector thread moves.
+     * Writing the tail after the command publishes the command to the pool.
+     */
+    private final int[] commands = new int[COMMAND_RING];
+    private volatile int commandsHead = 0, commandsTail = 0;
+    private final ConcurrentLinkedQueue<byte[]> replies = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queuedReplies = new AtomicInteger();
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+    private volatile boolean finished = false;
+    private volatile boolean choosing = false; // whether the next line chooses a map, in the lobby
+    private volatile String choice; // the map chosen, until the pool loads it
+
+    /**
+     * Constructor which starts a new game for a connection, or shows the lobby's maps.
+     * @param server GameServer object which accepted the connection
+     * @param channel connection to the client
+     * @param map Map object on which the game is played, or null to let the client choose one
+     * @param journalFile path of the file in which the game is recorded, or null
+     * @throws IllegalStateException if the game cannot start, the journal being closed
+     */
+    GameSession(GameServer server, SocketChannel channel, Map map, Path journalFile){
+        this.server = server;
+        this.channel = channel;
+        this.journalFile = journalFile;
+        // the game's response to each turn is queued as a single reply
+        sink = (bytes, length) -> {
+            replies.add(Arrays.copyOf(bytes, length));
+            queuedReplies.incrementAndGet();
+        };
+        if(map != null){
+            start(map);
+        }
+        else{
+            choosing = true;
+            reply(server.describeMaps());
+        }
+    }
+
+    /**
+     * Starts the game on a map, unless the connection was closed in the meantime.
+     * @param map Map object on which the game is played
+     * @throws IllegalStateException if the game cannot start, the journal being closed
+     */
+    private void start(Map map){
+        GameLogic newGame = new GameLogic(map, sink);
+        GameJournal newJournal = null;
+        if(journalFile != null){
+            try{
+                newJournal = new GameJournal(journalFile, newGame);
+            }
+            catch (IOException e){
+                // the game is played without being recorded
+            }
+        }
+        synchronized(this){
+            if(closed){
+                // the client left while the map was being loaded, so nothing else closes the journal
+                closeQuietly(newJournal);
+                finished = true;
+                return;
+            }
+            journal = newJournal;
+        }
+        try{
+            newGame.start();
+        }
+        catch (RuntimeException e){
+            closeJournal();
+            throw e;
+        }
+        game = newGame;
+    }
+
+    /**
+     * Queues a reply which does not come from the game.
+     * @param text the reply
+     */
+    private void reply(String text){
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        sink.write(bytes, bytes.length);
+    }
+
+    /**
+     * Sets the key with which the connection is registered with the selector.
+     * @param key the selection key
+     */
+    void setKey(SelectionKey key){
+        this.key = key;
+    }
+
+    /**
+     * Returns the connection to the client.
+     * @return the socket channel
+     */
+    SocketChannel getChannel(){
+        return channel;
+    }
+
+    /**
+     * Reads the bytes available on the connection and queues every complete command,
+     * the first line being the choice of a map in the lobby. Called by the selector thread.
+     * @return false if the connection was closed or sent a command which is too long
+     * @throws IOException if the connection cannot be read
+     */
+    boolean read() throws IOException {
+        if(channel.read(input) < 0){
+            return false;
+        }
+        input.flip();
+        int lineStart = 0;
+        for(int index = 0; index < input.limit(); index++){
+            if(input.get(index) == '\n'){
+                int lineEnd = index;
+                if(lineEnd > lineStart && input.get(lineEnd - 1) == '\r'){
+                    lineEnd--;
+                }
+                if(choosing){
+                    choice = new String(input.array(), lineStart, lineEnd - lineStart, StandardCharsets.UTF_8).trim();
+                    choosing = false;
+                }
+                else{
+                    // decoded straight from the buffer, which is backed by an array
+                    int tail = commandsTail;
+                    commands[tail & (COMMAND_RING - 1)] = Command.decode(input.array(), lineStart, lineEnd - lineStart);
+                    commandsTail = tail + 1;
+                }
+                lineStart = index + 1;
+            }
+        }
+        // keep the incomplete command for the next read
+        input.position(lineStart);
+        input.compact();
+        if(!input.hasRemaining()){
+            return false;
+        }
+        if(hasWork() && scheduled.compareAndSet(false, true)){
+            server.schedule(this);
+        }
+        updateReading();
+        return true;
+    }
+
+    /**
+     * Stops reading from the connection while too many commands or replies are queued,
+     * and starts again once they have gone down. Called by the selector thread after every
+     * read and every write; the pool asks for a write whenever it has played the commands,
+     * so reading starts again once they are played and their replies written.
+     */
+    private void updateReading(){
+        boolean full = commandsTail - commandsHead >= MAX_QUEUED || queuedReplies.get() >= MAX_QUEUED;
+        if(full == reading){
+            reading = !full;
+            key.interestOps(full ? key.interestOps() & ~SelectionKey.OP_READ : key.interestOps() | SelectionKey.OP_READ);
+        }
+    }
+
+    /**
+     * Checks whether the pool has something to do for the session.
+     * @return true if a map was chosen, or commands wait for the game
+     */
+    private boolean hasWork(){
+        return choice != null || (game != null && commandsHead != commandsTail);
+    }
+
+    /**
+     * Starts the game on the map chosen in the lobby, if any, and then plays
+     * the queued commands. Called by a thread from the server's pool.
+     * A game which fails ends its session only: the replies produced so far are
+     * written, and the connection is then closed.
+     */
+    @Override
+    public void run(){
+        try{
+            String chosen = choice;
+            if(chosen != null){
+                choice = null;
+                Map map = server.findMap(chosen);
+                if(map == null){
+                    // the commands sent after an unknown map are dropped, and the client chooses again
+                    commandsHead = commandsTail;
+                    reply("Unknown map " + chosen + "\n" + server.describeMaps());
+                    choosing = true;
+                }
+                else{
+                    start(map);
+                }
+            }
+            int head = commandsHead;
+            while(!finished && game != null && head != commandsTail){
+                int command = commands[head & (COMMAND_RING - 1)];
+                // the slot is only given back to the selector thread once the command is read
+                commandsHead = ++head;
+                game.playTurn(command);
+                if(game.hasEnded()){
+                    game.finish();
+                    finished = true;
+                    closeJournal();
+                }
+            }
+        }
+        catch (RuntimeException e){
+            System.err.println("A game failed and its connection is closed: " + e);
+            finished = true;
+            closeJournal();
+        }
+        finally{
+            server.requestWrite(this);
+            scheduled.set(false);
+        }
+        // commands which arrived while finishing must not be left waiting
+        if(!finished && hasWork() && scheduled.compareAndSet(false, true)){
+            server.schedule(this);
+        }
+    }
+
+    /**
+     * Writes the rest of the game's journal, if it is being recorded. Called when the game
+     * ends, or when the connection is closed before that, possibly before the game has started;
+     * a journal created after that is closed at once.
+     */
+    synchronized void closeJournal(){
+        closed = true;
+        closeQuietly(journal);
+        journal = null;
+    }
+
+    /**
+     * Closes a journal.
+     * @param journal the journal, or null
+     */
+    private static void closeQuietly(GameJournal journal){
+        if(journal != null){
+            try{
+                journal.close();
+            }
+            catch (IOException e){
+                // the journal is incomplete, but the game is over either way
+            }
+        }
+    }
+
+    /**
+     * Writes as many of the replies as the connection accepts. Called by the selector thread.
+     * @return true if everything has been written and the game is over, so the connection can be closed
+     * @throws IOException if the connection cannot be written
+     */
+    boolean write() throws IOException {
+        while(true){
+            if(output == null || !output.hasRemaining()){
+                byte[] reply = replies.poll();
+                if(reply == null){
+                    break;
+                }
+                queuedReplies.decrementAndGet();
+                output = ByteBuffer.wrap(reply);
+            }
+            channel.write(output);
+            if(output.hasRemaining()){
+                // the connection is full, so wait until it can be written again
+                key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+                updateReading();
+                return false;
+            }
+        }
+        key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+        updateReading();
+        return finished;
+    }
+}
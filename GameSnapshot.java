@@ -0,0 +1,164 @@
+import java.io.BufferedInputStream; // reading the snapshot file
+import java.io.BufferedOutputStream; // collecting the snapshot before writing it
+import java.io.DataInputStream; // reading the header
+import java.io.DataOutputStream; // writing the header
+import java.io.EOFException; // truncated snapshot files
+import java.io.IOException; // file manipulation exception handling
+import java.nio.BufferOverflowException; // growing the buffer
+import java.nio.BufferUnderflowException; // truncated snapshots
+import java.nio.ByteBuffer; // the state of the game
+import java.nio.file.Files; // opening the snapshot file
+import java.nio.file.Path; // location of the snapshot file
+import java.text.ParseException; // malformed snapshot files
+
+/**
+ * Class which holds a snapshot of a game between two turns: the state of its random numbers,
+ * the tiles changed on its map, the player and every bot, including what each bot remembers
+ * and the state of its searches. Restoring it into a game on the same map, whether that game
+ * is the one captured, a game further on, or a new one, puts it back in that state, and the
+ * game then plays on exactly as the captured one would have, given the same commands.
+ * A game can thus be saved and resumed, or captured once and restored many times to try
+ * different commands from the same point.
+ * Only what differs from the map is captured, so a snapshot is small and both capturing
+ * and restoring take microseconds; the buffer is reused, and only grows when a capture
+ * does not fit in it.
+ * The state of a PlayerStrategy is not part of the snapshot, and the Monte Carlo search
+ * picks its moves differently every time, so a game of that mode does not play on the same.
+ * The file format is:
+ *   magic "DODS", version (int), map file (modified UTF-8), length of the state (int)
+ * followed by the state, as written by GameLogic.writeState(). All the ints and longs
+ * are big-endian.
+ */
+public class GameSnapshot {
+
+    static final int MAGIC = 0x444F4453; // "DODS"
+    static final int VERSION = 1;
+    private static final int INITIAL_SIZE = 1 << 12;
+
+    private String mapFile; // name of the file of the map the game is played on
+    private ByteBuffer state = ByteBuffer.allocate(INITIAL_SIZE);
+
+    /**
+     * Constructor which creates an empty snapshot, to capture a game into.
+     */
+    public GameSnapshot(){
+        state.limit(0);
+    }
+
+    /**
+     * Captures the state of a game, replacing the one held before.
+     * @param game GameLogic object which has started, between two turns
+     * @throws IllegalStateException if the game has not started
+     */
+    public void capture(GameLogic game){
+        while(true){
+            state.clear();
+            try{
+                game.writeState(state);
+                break;
+            }
+            catch (BufferOverflowException e){
+                state = ByteBuffer.allocate(state.capacity() * 2);
+            }
+        }
+        state.flip();
+        mapFile = game.getMap().getFileName();
+    }
+
+    /**
+     * Puts a game back in the captured state. The game must be on the same map, and
+     * it does not need to have started: restoring then takes the place of start().
+     * @param game GameLogic object, between two turns
+     * @throws IllegalStateException if nothing has been captured
+     * @throws IllegalArgumentException if the game is on another map, or the snapshot is invalid,
+                                        in which case the game must not be played on
+     */
+    public void restore(GameLogic game){
+        if(mapFile == null){
+            throw new IllegalStateException("Nothing has been captured");
+        }
+        if(!mapFile.equals(game.getMap().getFileName())){
+            throw new IllegalArgumentException("The snapshot is of a game on " + mapFile + ", not on " +
+                    game.getMap().getFileName());
+        }
+        state.rewind();
+        try{
+            game.readState(state);
+        }
+        catch (BufferUnderflowException e){
+            throw new IllegalArgumentException("The snapshot is truncated");
+        }
+        if(state.hasRemaining()){
+            throw new IllegalArgumentException("The snapshot has " + state.remaining() + " bytes too many");
+        }
+    }
+
+    /**
+     * Returns the name of the file of the map the captured game is played on.
+     * @return name of the file in the Maps folder, or null if nothing has been captured
+     */
+    public String getMapFile(){
+        return mapFile;
+    }
+
+    /**
+     * Returns the size of the captured state.
+     * @return number of bytes, without the header of the file
+     */
+    public int size(){
+        return state.limit();
+    }
+
+    /**
+     * Writes the snapshot to a file.
+     * @param file path of the snapshot file
+     * @throws IOException if the file cannot be written
+     * @throws IllegalStateException if nothing has been captured
+     */
+    public void save(Path file) throws IOException {
+        if(mapFile == null){
+            throw new IllegalStateException("Nothing has been captured");
+        }
+        try(DataOutputStream stream = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))){
+            stream.writeInt(MAGIC);
+            stream.writeInt(VERSION);
+            stream.writeUTF(mapFile);
+            stream.writeInt(state.limit());
+            stream.write(state.array(), 0, state.limit());
+        }
+    }
+
+    /**
+     * Reads a snapshot from a file written by save().
+     * @param file path of the snapshot file
+     * @return the snapshot
+     * @throws IOException if the file cannot be read
+     * @throws ParseException if the file is not a valid snapshot. The error offset
+                              is the position in the file where the problem was found.
+     */
+    public static GameSnapshot load(Path file) throws IOException, ParseException {
+        GameSnapshot snapshot = new GameSnapshot();
+        try(DataInputStream stream = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))){
+            if(stream.readInt() != MAGIC){
+                throw new ParseException("not a game snapshot", 0);
+            }
+            int version = stream.readInt();
+            if(version != VERSION){
+                throw new ParseException("unsupported version " + version, 4);
+            }
+            String mapFile = stream.readUTF();
+            int length = stream.readInt();
+            if(length < 0 || length > Files.size(file)){
+                throw new ParseException("invalid length " + length, 8 + 2 + GameReplayer.utfLength(mapFile));
+            }
+            snapshot.state = ByteBuffer.allocate(Math.max(length, INITIAL_SIZE));
+            stream.readFully(snapshot.state.array(), 0, length);
+            snapshot.state.limit(length);
+            snapshot.mapFile = mapFile;
+        }
+        catch (EOFException e){
+            throw new ParseException("the snapshot is truncated", (int) Math.min(Files.size(file), Integer.MAX_VALUE));
+        }
+        return snapshot;
+    }
+}
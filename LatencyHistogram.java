@@ -0,0 +1,164 @@
+import java.util.concurrent.atomic.LongAccumulator; // keeping the longest duration
+import java.util.concurrent.atomic.LongAdder; // counting without locks
+
+/**
+ * Class which counts durations in buckets whose bounds are powers of two, so a duration
+ * is recorded with a single addition to one of a fixed set of LongAdder objects.
+ * Any number of threads can record at once, without locks and without allocating,
+ * and the percentiles are exact to within a factor of two.
+ */
+public class LatencyHistogram {
+
+    private static final int BUCKETS = 64; // bucket i holds the durations from 2^(i-1) to 2^i - 1 nanoseconds
+
+    private final LongAdder[] buckets = new LongAdder[BUCKETS];
+    private final LongAdder total = new LongAdder(); // sum of the durations, for the mean
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Class which holds the summary of a histogram at one point in time.
+     * Its getters are shown as the fields of a composite value over JMX.
+     */
+    public static class Snapshot {
+
+        private final long count, meanNanos, medianNanos, p90Nanos, p99Nanos, maxNanos;
+
+        /**
+         * Constructor which summarises a histogram.
+         * @param histogram the LatencyHistogram object
+         */
+        private Snapshot(LatencyHistogram histogram){
+            long[] counts = new long[BUCKETS];
+            long sum = 0;
+            for(int bucket = 0; bucket < BUCKETS; bucket++){
+                counts[bucket] = histogram.buckets[bucket].sum();
+                sum += counts[bucket];
+            }
+            count = sum;
+            maxNanos = histogram.max.get();
+            meanNanos = count == 0 ? 0 : histogram.total.sum() / count;
+            medianNanos = percentile(counts, 0.5);
+            p90Nanos = percentile(counts, 0.9);
+            p99Nanos = percentile(counts, 0.99);
+        }
+
+        /**
+         * Finds the bucket which holds a percentile of the durations.
+         * @param counts number of durations in each bucket
+         * @param fraction the percentile, between 0 and 1
+         * @return the upper bound of the bucket, or the longest duration if it is lower
+         */
+        private long percentile(long[] counts, double fraction){
+            long rank = (long) Math.ceil(count * fraction);
+            long seen = 0;
+            for(int bucket = 0; bucket < BUCKETS; bucket++){
+                seen += counts[bucket];
+                if(seen >= rank && seen > 0){
+                    return Math.min((1L << bucket) - 1, maxNanos);
+                }
+            }
+            return 0;
+        }
+
+        /**
+         * Returns the number of durations recorded.
+         * @return the count
+         */
+        public long getCount(){
+            return count;
+        }
+
+        /**
+         * Returns the mean duration.
+         * @return the mean, in nanoseconds
+         */
+        public long getMeanNanos(){
+            return meanNanos;
+        }
+
+        /**
+         * Returns the median duration, rounded up to the bound of its bucket.
+         * @return the median, in nanoseconds
+         */
+        public long getMedianNanos(){
+            return medianNanos;
+        }
+
+        /**
+         * Returns the 90th percentile, rounded up to the bound of its bucket.
+         * @return the percentile, in nanoseconds
+         */
+        public long getP90Nanos(){
+            return p90Nanos;
+        }
+
+        /**
+         * Returns the 99th percentile, rounded up to the bound of its bucket.
+         * @return the percentile, in nanoseconds
+         */
+        public long getP99Nanos(){
+            return p99Nanos;
+        }
+
+        /**
+         * Returns the longest duration.
+         * @return the maximum, in nanoseconds
+         */
+        public long getMaxNanos(){
+            return maxNanos;
+        }
+
+        /**
+         * Returns the summary as a single line of text.
+         * @return the summary
+         */
+        @Override
+        public String toString(){
+            return "count=" + count + " mean=" + meanNanos + "ns p50=" + medianNanos + "ns p90=" + p90Nanos +
+                    "ns p99=" + p99Nanos + "ns max=" + maxNanos + "ns";
+        }
+    }
+
+    /**
+     * Constructor which creates the empty buckets.
+     */
+    public LatencyHistogram(){
+        for(int bucket = 0; bucket < BUCKETS; bucket++){
+            buckets[bucket] = new LongAdder();
+        }
+    }
+
+    /**
+     * Records a duration.
+     * @param nanos the duration, in nanoseconds
+     */
+    public void record(long nanos){
+        if(nanos < 0){
+            nanos = 0; // the clock is monotonic, but a duration is never worth an exception
+        }
+        // the number of significant bits, which is below 64 for any non negative long
+        buckets[BUCKETS - Long.numberOfLeadingZeros(nanos)].increment();
+        total.add(nanos);
+        max.accumulate(nanos);
+    }
+
+    /**
+     * Summarises the durations recorded so far. Durations recorded at the same
+     * time may or may not be included.
+     * @return the Snapshot object
+     */
+    public Snapshot snapshot(){
+        return new Snapshot(this);
+    }
+
+    /**
+     * Forgets every duration recorded so far.
+     */
+    public void reset(){
+        for(LongAdder bucket : buckets){
+            bucket.reset();
+        }
+        total.reset();
+        max.reset();
+    }
+}
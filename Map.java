@@ -1,72 +1,161 @@
 import java.io.File; // library for manipulating files
-import java.io.FileNotFoundException; // file manipulation exception handling
+import java.io.IOException; // file manipulation exception handling
 import java.net.URL; // obtaining the path of a certain file
-import java.util.ArrayList; // used to implement array lists
-import java.util.Scanner; // used to read files
+import java.text.ParseException; // malformed map files
 
 /**
  * Class which represents the map of DoD
  */
 public class Map {
 
+    // most bytes of tiles kept in memory, in megabytes, larger text maps being loaded in chunks
+    private static final long BUDGET = Long.getLong("map.budget", 256) << 20;
+
+    private String fileName; // name of the file in the Maps folder
     private int goldToWin;
-    private ArrayList<String> map;
+    private int viewRadius = MapLoader.DEFAULT_VIEW_RADIUS; // how far everyone sees with the "look" command
+    private boolean lineOfSight = false; // whether walls block the view
+    private boolean winnable = true; // whether some exit is joined to enough gold
+    private TileGrid map;
+    private TileIndex tileIndex; // the free tiles, exits and gold of the map
+    private ConnectedComponents components; // the parts of the map which can be reached from each other
     private int rows, columns;
 
     /**
      * Constructor which initializes the rows and columns
      * variables with 0. It also loads the map using a filepath.
-     * @param filePath path of .txt file which contains the DoD map
+     * @param filePath path of .txt or .dodm file which contains the DoD map, in the Maps folder next to the classes
      */
     public Map(String filePath) {
+        this(filePath, find(filePath));
+    }
+
+    /**
+     * Constructor which loads the map from a file in any folder.
+     * @param file the .txt or .dodm file which contains the DoD map
+     */
+    public Map(File file) {
+        this(file.getName(), file);
+    }
+
+    /**
+     * Constructor which initializes the rows and columns
+     * variables with 0, and loads the map from its file.
+     * @param filePath name by which the map is known
+     * @param mapFile the file, or null if there is none
+     */
+    private Map(String filePath, File mapFile) {
         rows = 0;
         columns = 0;
-        load(filePath);
+        fileName = filePath;
+        load(filePath, mapFile);
+    }
+
+    /**
+     * Finds a map file in the Maps folder next to the classes.
+     * @param filePath path of the file in the Maps folder
+     * @return the file, or null if there is none
+     */
+    private static File find(String filePath){
+        // getting the path of the file and creating a File variable which represents the map file
+        URL path = DungeonsOfDoom.class.getResource("Maps/" + filePath);
+        return path == null ? null : new File(path.getFile());
     }
 
     /**
-     * Loads the map from a specified path and
+     * Loads the map from a specified file and
      * adds the map to the class variable map. It also
      * displays the name of the map.
-     * @param filePath path of .txt file which contains the DoD map
+     * @param filePath name by which the map is known, whose extension tells the format
+     * @param mapFile the .txt or .dodm file which contains the DoD map, or null if there is none
      */
-    private void load(String filePath){
-        // getting the path of the file and creating a File variable which represents the .txt file
-        URL path = DungeonsOfDoom.class.getResource("Maps/" + filePath);
-        File mapTxtFile = new File(path.getFile());
-        map = new ArrayList<>();
+    private void load(String filePath, File mapFile){
+        if(mapFile == null){
+            System.out.println("File not found sorry");
+            return;
+        }
         // using try catch for reading the file
         try{
-            Scanner sn = new Scanner(mapTxtFile);
-            // display the name of the map (first line of the file, without the "name" tag)
-            System.out.println(sn.nextLine().replace("name ", ""));
-            // getting the amount of gold required to win (second line of the file, without the "win" tag)
-            goldToWin = Integer.parseInt(sn.nextLine().replace("win ", ""));
-            // reading the map
-            while (sn.hasNextLine()){
-                map.add(sn.nextLine());
-                rows++;
+            String name;
+            TileGrid grid;
+            int tilesLine = 0; // line of the first row of tiles, for the errors of text maps
+            if(filePath.endsWith(BinaryMap.EXTENSION)){
+                BinaryMap loader = new BinaryMap(mapFile.toPath());
+                name = loader.getName();
+                goldToWin = loader.getGoldToWin();
+                viewRadius = loader.getViewRadius();
+                lineOfSight = loader.hasLineOfSight();
+                grid = loader.getGrid();
             }
-            columns = map.get(0).length();
-            sn.close();
+            else{
+                // only the header is read, so maps over the budget are never read whole
+                MapLoader loader = new MapLoader(mapFile.toPath(), true);
+                name = loader.getName();
+                goldToWin = loader.getGoldToWin();
+                viewRadius = loader.getViewRadius();
+                lineOfSight = loader.hasLineOfSight();
+                if((long) loader.getRows() * loader.getColumns() > BUDGET){
+                    grid = new ChunkedGrid(loader, BUDGET);
+                }
+                else{
+                    grid = loader.readGrid();
+                }
+                tilesLine = loader.getTilesLine();
+            }
+            // the player may only leave the map through an exit
+            int opening = ConnectedComponents.findOpening(grid);
+            if(opening >= 0){
+                int row = opening / grid.getColumns();
+                throw new ParseException("the map is not enclosed, tile (" + row + ", " + opening % grid.getColumns() +
+                        ") on its edge being neither a wall nor an exit", tilesLine + row);
+            }
+            map = grid;
+            // display the name of the map
+            System.out.println(name);
+            map.freeze();
+            tileIndex = map instanceof ChunkedGrid ? new TileIndex((ChunkedGrid) map) : new TileIndex(map);
+            // a chunked map is too large to be labelled whole, so its components are unknown
+            if(!(map instanceof ChunkedGrid)){
+                components = new ConnectedComponents(map);
+                winnable = components.isWinnable(goldToWin);
+                if(!winnable){
+                    System.out.println("This map cannot be won, since no part of it with an exit holds " + goldToWin + " gold");
+                }
+            }
+            rows = map.getRows();
+            columns = map.getColumns();
         }
-        catch (FileNotFoundException e){
+        catch (IOException e){
             System.out.println("File not found sorry");
         }
+        catch (ParseException e){
+            System.out.println("Invalid map " + filePath + " at line " + e.getErrorOffset() + ": " + e.getMessage());
+        }
     }
 
     /**
-     * Returns the map as an array list of character arrays.
-     * @return the array list of character arrays, which has been
-                obtained by converting the original array list of
-                Strings.
+     * Returns the map's grid of tiles. It is read-only and shared by every
+     * game played on the map, each game keeping its changes in an OverlayGrid.
+     * @return the shared grid
      */
-    public ArrayList<char[]> getMap() {
-        ArrayList<char[]>convertedMap = new ArrayList<>();
-        for(String string : map){
-            convertedMap.add(string.toCharArray());
-        }
-        return convertedMap;
+    public TileGrid getTemplate() {
+        return map;
+    }
+
+    /**
+     * Returns the indices of the map's free tiles, exits and gold.
+     * @return the TileIndex object
+     */
+    public TileIndex getTileIndex() {
+        return tileIndex;
+    }
+
+    /**
+     * Returns the name of the file the map was loaded from.
+     * @return name of the file in the Maps folder
+     */
+    public String getFileName() {
+        return fileName;
     }
 
     /**
@@ -78,6 +167,40 @@ public class Map {
         return this.goldToWin;
     }
 
+    /**
+     * Returns how many tiles are seen in each direction with the "look" command.
+     * @return radius of the view
+     */
+    public int getViewRadius() {
+        return viewRadius;
+    }
+
+    /**
+     * Returns whether walls block the view.
+     * @return true if they do
+     */
+    public boolean hasLineOfSight() {
+        return lineOfSight;
+    }
+
+    /**
+     * Returns the connected components of the map, labelled when it was loaded, through
+     * which it is known in constant time whether a tile can be reached from another one.
+     * @return the components, or null if the map is chunked
+     */
+    public ConnectedComponents getComponents() {
+        return components;
+    }
+
+    /**
+     * Returns whether the map can be won, which is checked when it is loaded:
+     * some component must have an exit and as much gold as is needed to win.
+     * @return true if it can be won, or if the map was too large to be checked
+     */
+    public boolean isWinnable() {
+        return winnable;
+    }
+
     /**
      * Returns the number of rows the map has.
      * @return number of rows
@@ -0,0 +1,322 @@
+import java.io.BufferedReader; // reading the index
+import java.io.BufferedWriter; // writing the index
+import java.io.File; // file manipulation
+import java.io.IOException; // file manipulation exception handling
+import java.nio.charset.StandardCharsets; // encoding of the index
+import java.nio.file.ClosedWatchServiceException; // stopping the watching thread
+import java.nio.file.Files; // reading and writing the index
+import java.nio.file.Path; // location of the maps
+import java.nio.file.StandardCopyOption; // replacing the index in one go
+import java.nio.file.StandardWatchEventKinds; // kinds of changes in the folder
+import java.nio.file.WatchEvent; // a change in the folder
+import java.nio.file.WatchKey; // the changes waiting to be handled
+import java.nio.file.WatchService; // watching the folder for changes
+import java.text.ParseException; // malformed map files
+import java.util.ArrayList; // using array lists
+import java.util.concurrent.ConcurrentSkipListMap; // the entries, sorted by file name
+
+/**
+ * Class which keeps an index of the maps in a folder: for every .txt map, its name, the gold
+ * needed to win and its size. The index is saved in the folder, so it is ready at once on the
+ * next start, and only the files which changed since are read again. The tiles themselves are
+ * only loaded when a map is chosen. Once watching, the catalog updates itself as maps are
+ * added, changed or removed.
+ */
+public class MapCatalog {
+
+    static final String INDEX_FILE = ".catalog";
+
+    /**
+     * Class which holds the information about a single map.
+     */
+    public static class Entry {
+
+        private final String fileName;
+        private final long lastModified, length;
+        private final String name;
+        private final int goldToWin, rows, columns;
+
+        /**
+         * Constructor which sets every field.
+         */
+        private Entry(String fileName, long lastModified, long length, String name,
+                      int goldToWin, int rows, int columns){
+            this.fileName = fileName;
+            this.lastModified = lastModified;
+            this.length = length;
+            this.name = name;
+            this.goldToWin = goldToWin;
+            this.rows = rows;
+            this.columns = columns;
+        }
+
+        /**
+         * Returns the name of the map's .txt file.
+         * @return name of the file
+         */
+        public String getFileName(){
+            return fileName;
+        }
+
+        /**
+         * Returns the name of the map.
+         * @return name of the map
+         */
+        public String getName(){
+            return name;
+        }
+
+        /**
+         * Returns the amount of gold needed in order to win.
+         * @return amount of gold
+         */
+        public int getGold(){
+            return goldToWin;
+        }
+
+        /**
+         * Returns the number of rows the map has.
+         * @return number of rows
+         */
+        public int getRows(){
+            return rows;
+        }
+
+        /**
+         * Returns the number of columns the map has.
+         * @return number of columns
+         */
+        public int getColumns(){
+            return columns;
+        }
+
+        /**
+         * Describes the map in a line of a menu: its file name without the
+         * extension, its name, the gold needed to win and its size.
+         * @return the description
+         */
+        public String describe(){
+            return fileName.substring(0, fileName.length() - 4) + " (" + name + ", " + goldToWin + " gold, " +
+                    rows + "x" + columns + ")";
+        }
+    }
+
+    private final File directory;
+    private final ConcurrentSkipListMap<String, Entry> entries = new ConcurrentSkipListMap<>();
+    private WatchService watchService;
+
+    /**
+     * Constructor which reads the saved index, and brings it up to date with the folder.
+     * @param directory folder which contains the maps
+     */
+    public MapCatalog(File directory){
+        this.directory = directory;
+        readIndex();
+        refresh();
+    }
+
+    /**
+     * Brings the index up to date with the folder, reading the header of every
+     * map which was added or changed since it was indexed.
+     */
+    public void refresh(){
+        File[] files = directory.listFiles((dir, fileName) -> fileName.endsWith(".txt"));
+        boolean changed = false;
+        ArrayList<String> present = new ArrayList<>();
+        if(files != null){
+            for(File file: files){
+                present.add(file.getName());
+                Entry entry = entries.get(file.getName());
+                if(entry == null || entry.lastModified != file.lastModified() || entry.length != file.length()){
+                    changed |= index(file);
+                }
+            }
+        }
+        changed |= entries.keySet().retainAll(present);
+        if(changed){
+            writeIndex();
+        }
+    }
+
+    /**
+     * Reads the header of a map and adds it to the index, replacing any older entry.
+     * Files which are not valid maps are left out.
+     * @param file the map's .txt file
+     * @return true if the index changed
+     */
+    private boolean index(File file){
+        long lastModified = file.lastModified();
+        long length = file.length();
+        try{
+            MapLoader loader = new MapLoader(file.toPath(), true);
+            entries.put(file.getName(), new Entry(file.getName(), lastModified, length, loader.getName(),
+                    loader.getGoldToWin(), loader.getRows(), loader.getColumns()));
+            return true;
+        }
+        catch (IOException | ParseException e){
+            return entries.remove(file.getName()) != null;
+        }
+    }
+
+    /**
+     * Reads the index saved in the folder, if there is one. Each line holds the fields
+     * of an entry separated by tabs, the name of the map coming last.
+     */
+    private void readIndex(){
+        Path indexFile = new File(directory, INDEX_FILE).toPath();
+        if(!Files.isRegularFile(indexFile)){
+            return;
+        }
+        try(BufferedReader reader = Files.newBufferedReader(indexFile, StandardCharsets.UTF_8)){
+            String line;
+            while((line = reader.readLine()) != null){
+                String[] fields = line.split("\t", 7);
+                if(fields.length == 7){
+                    entries.put(fields[0], new Entry(fields[0], Long.parseLong(fields[1]), Long.parseLong(fields[2]),
+                            fields[6], Integer.parseInt(fields[3]), Integer.parseInt(fields[4]),
+                            Integer.parseInt(fields[5])));
+                }
+            }
+        }
+        catch (IOException | NumberFormatException e){
+            // a damaged index is rebuilt from the files
+            entries.clear();
+        }
+    }
+
+    /**
+     * Saves the index in the folder, replacing the previous one in one go.
+     */
+    private synchronized void writeIndex(){
+        Path indexFile = new File(directory, INDEX_FILE).toPath();
+        Path temporaryFile = new File(directory, INDEX_FILE + ".tmp").toPath();
+        try{
+            try(BufferedWriter writer = Files.newBufferedWriter(temporaryFile, StandardCharsets.UTF_8)){
+                for(Entry entry: entries.values()){
+                    writer.write(entry.fileName + "\t" + entry.lastModified + "\t" + entry.length + "\t" +
+                            entry.goldToWin + "\t" + entry.rows + "\t" + entry.columns + "\t" + entry.name);
+                    writer.newLine();
+                }
+            }
+            Files.move(temporaryFile, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (IOException e){
+            // the index is only a cache, so the catalog keeps working without it
+        }
+    }
+
+    /**
+     * Starts a background thread which updates the catalog whenever
+     * maps are added, changed or removed in the folder.
+     * @throws IOException if the folder cannot be watched
+     */
+    public synchronized void startWatching() throws IOException {
+        if(watchService != null){
+            return;
+        }
+        watchService = directory.toPath().getFileSystem().newWatchService();
+        directory.toPath().register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+        Thread watcher = new Thread(this::watch, "map-catalog-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    /**
+     * Stops updating the catalog.
+     */
+    public synchronized void stopWatching(){
+        if(watchService != null){
+            try{
+                watchService.close();
+            }
+            catch (IOException e){
+                // the watching thread stops either way
+            }
+            watchService = null;
+        }
+    }
+
+    /**
+     * Waits for changes in the folder and updates the entries of the changed maps.
+     */
+    private void watch(){
+        WatchService service = watchService;
+        try{
+            while(true){
+                WatchKey key = service.take();
+                boolean changed = false;
+                for(WatchEvent<?> event: key.pollEvents()){
+                    if(event.kind() == StandardWatchEventKinds.OVERFLOW){
+                        // too many changes at once, so everything is checked
+                        refresh();
+                        continue;
+                    }
+                    String fileName = event.context().toString();
+                    if(!fileName.endsWith(".txt")){
+                        continue;
+                    }
+                    File file = new File(directory, fileName);
+                    if(event.kind() == StandardWatchEventKinds.ENTRY_DELETE || !file.isFile()){
+                        changed |= entries.remove(fileName) != null;
+                    }
+                    else{
+                        changed |= index(file);
+                    }
+                }
+                if(changed){
+                    writeIndex();
+                }
+                if(!key.reset()){
+                    return;
+                }
+            }
+        }
+        catch (InterruptedException | ClosedWatchServiceException e){
+            // the catalog stopped watching
+        }
+    }
+
+    /**
+     * Returns the current entry of a map. Once watching, a map which changed gets a new
+     * entry, so comparing entries tells whether a map loaded before is still up to date.
+     * @param fileName name of the map's .txt file
+     * @return the entry, or null if there is no such valid map in the folder
+     */
+    public Entry getEntry(String fileName){
+        return entries.get(fileName);
+    }
+
+    /**
+     * Returns the entries of the catalog, sorted by file name.
+     * @return list of the entries
+     */
+    public ArrayList<Entry> getEntries(){
+        return new ArrayList<>(entries.values());
+    }
+
+    /**
+     * Loads the tiles of a map.
+     * @param entry the map's entry
+     * @return the Map object
+     */
+    public Map load(Entry entry){
+        return load(entry.getFileName());
+    }
+
+    /**
+     * Loads the tiles of a map from the catalog's folder. The compiled binary file is used
+     * instead of the text file if there is one next to it and it is up to date, since it loads faster.
+     * @param fileName name of the map's .txt file
+     * @return the Map object
+     */
+    public Map load(String fileName){
+        String binaryName = fileName.substring(0, fileName.length() - 4) + BinaryMap.EXTENSION;
+        File binaryFile = new File(directory, binaryName);
+        File textFile = new File(directory, fileName);
+        if(binaryFile.isFile() && binaryFile.lastModified() >= textFile.lastModified()){
+            return new Map(binaryFile);
+        }
+        return new Map(textFile);
+    }
+}
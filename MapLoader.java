@@ -0,0 +1,383 @@
+import java.io.IOException; // file manipulation exception handling
+import java.nio.MappedByteBuffer; // reading the file straight from memory
+import java.nio.channels.FileChannel; // mapping the file into memory
+import java.nio.charset.StandardCharsets; // decoding the name of the map
+import java.nio.file.Path; // location of the map file
+import java.nio.file.StandardOpenOption; // opening the file for reading
+import java.text.ParseException; // reporting malformed map files
+import java.util.Arrays; // filling the table of tiles
+
+/**
+ * Class which loads a DoD map file. The file is mapped into memory and
+ * its header and tiles are parsed in a single pass, straight into a TileGrid.
+ */
+public class MapLoader {
+
+    private static final byte INVALID = -1;
+    public static final int DEFAULT_VIEW_RADIUS = 2; // radius of the view of maps without a "view" line
+    public static final int MAX_VIEW_RADIUS = 1000;
+    // tile code for each byte value, or INVALID if the byte is not a tile
+    private static final byte[] TILES = new byte[256];
+
+    static {
+        Arrays.fill(TILES, INVALID);
+        for(char character: ".#GEPB".toCharArray()){
+            TILES[character] = TileGrid.fromCharacter(character);
+        }
+    }
+
+    private MappedByteBuffer buffer;
+    private int position = 0; // index of the next byte to be read
+    private int line = 1; // line on which the next byte is
+    private String name;
+    private int goldToWin;
+    private int viewRadius = DEFAULT_VIEW_RADIUS;
+    private boolean lineOfSight = false; // whether walls block the view
+    private TileGrid grid;
+    private int rows, columns;
+    private int limit; // end of the tiles, without the line breaks at the end of the file
+    private int tilesStart; // index of the first tile
+    private int tilesLine; // line of the first row of tiles
+    private int rowLength; // length of a row, including its line break
+
+    /**
+     * Constructor which loads the map file.
+     * @param file path of the map file
+     * @throws IOException if the file cannot be read
+     * @throws ParseException if the file is not a valid map. The error offset
+                              is the line on which the problem was found.
+     */
+    public MapLoader(Path file) throws IOException, ParseException {
+        this(file, false);
+    }
+
+    /**
+     * Constructor which loads the map file, or only its header and size.
+     * Since the file is mapped, reading only the header does not read the rest of the file.
+     * @param file path of the map file
+     * @param headerOnly true to skip reading the tiles, in which case getGrid() returns null
+     * @throws IOException if the file cannot be read
+     * @throws ParseException if the file is not a valid map. The error offset
+                              is the line on which the problem was found.
+     */
+    public MapLoader(Path file, boolean headerOnly) throws IOException, ParseException {
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)){
+            if(channel.size() > Integer.MAX_VALUE){
+                throw new IOException("Map file " + file + " is larger than 2GB");
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        name = readHeader("name ");
+        goldToWin = parseGold(readHeader("win "));
+        if(position < buffer.limit() && lineEnd(position) - position >= 5 && startsWith("view ")){
+            parseView(readHeader("view "));
+        }
+        measure();
+        if(!headerOnly){
+            readTiles();
+        }
+    }
+
+    /**
+     * Reads a header line and returns its value, without the tag.
+     * @param tag tag with which the line must start
+     * @return the rest of the line
+     * @throws ParseException if the line does not start with the tag
+     */
+    private String readHeader(String tag) throws ParseException {
+        int end = lineEnd(position);
+        int length = end - position;
+        if(length < tag.length() || !startsWith(tag)){
+            throw new ParseException("expected a line starting with \"" + tag.trim() + "\"", line);
+        }
+        byte[] value = new byte[length - tag.length()];
+        buffer.get(position + tag.length(), value);
+        nextLine(end);
+        return new String(value, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Parses the amount of gold required to win.
+     * @param value value of the "win" header
+     * @return amount of gold
+     * @throws ParseException if the value is not a non-negative number
+     */
+    private int parseGold(String value) throws ParseException {
+        try{
+            int gold = Integer.parseInt(value.trim());
+            if(gold >= 0){
+                return gold;
+            }
+        }
+        catch (NumberFormatException e){
+            // reported below
+        }
+        throw new ParseException("invalid amount of gold \"" + value + "\"", line - 1);
+    }
+
+    /**
+     * Parses the optional "view" header, which holds the radius of the view
+     * and, optionally, the word "los" if walls block the view.
+     * @param value value of the "view" header
+     * @throws ParseException if the value is not a valid radius, or the option is unknown
+     */
+    private void parseView(String value) throws ParseException {
+        String[] words = value.trim().split(" +");
+        if(words.length > 2 || (words.length == 2 && !words[1].equals("los"))){
+            throw new ParseException("invalid view \"" + value + "\", expected a radius and optionally \"los\"", line - 1);
+        }
+        try{
+            viewRadius = Integer.parseInt(words[0]);
+        }
+        catch (NumberFormatException e){
+            viewRadius = 0; // reported below
+        }
+        if(viewRadius < 1 || viewRadius > MAX_VIEW_RADIUS){
+            throw new ParseException("invalid view radius \"" + words[0] + "\"", line - 1);
+        }
+        lineOfSight = words.length == 2;
+    }
+
+    /**
+     * Computes the size of the map from the size of the file and the length of
+     * the first row, so the grid can be allocated before the tiles are read.
+     * @throws ParseException if there are no tiles
+     */
+    private void measure() throws ParseException {
+        // skip empty lines between the header and the map
+        while(position < buffer.limit() && lineEnd(position) == position){
+            nextLine(position);
+        }
+        // ignore line breaks at the end of the file
+        limit = buffer.limit();
+        while(limit > position && (buffer.get(limit - 1) == '\n' || buffer.get(limit - 1) == '\r')){
+            limit--;
+        }
+        if(position >= limit){
+            throw new ParseException("the map has no tiles", line);
+        }
+        columns = lineEnd(position) - position;
+        int lineBreak = lineBreakLength(lineEnd(position));
+        rowLength = columns + lineBreak;
+        rows = (limit - position + lineBreak + rowLength - 1) / rowLength;
+        tilesStart = position;
+        tilesLine = line;
+    }
+
+    /**
+     * Reads the tiles of a loader which only read the header.
+     * @return the grid of tiles
+     * @throws ParseException if a row is ragged or contains an invalid tile
+     */
+    public TileGrid readGrid() throws ParseException {
+        if(grid == null){
+            readTiles();
+        }
+        return grid;
+    }
+
+    /**
+     * Reads a rectangle of tiles straight from the file, without reading the rest of the map.
+     * The rows are found from the length of the first one, so a row of the wrong length is
+     * only detected when the rectangle reaches the end of the row. Any number of threads can
+     * read at once, as the file is only read at absolute positions.
+     * @param top first row of the rectangle
+     * @param left first column of the rectangle
+     * @param height number of rows of the rectangle
+     * @param width number of columns of the rectangle
+     * @param tiles array which receives the tile codes, row after row
+     * @param stride distance in the array between the starts of two rows
+     * @throws ParseException if a row is ragged or contains an invalid tile
+     */
+    void readArea(int top, int left, int height, int width, byte[] tiles, int stride) throws ParseException {
+        byte[] rowTiles = new byte[width];
+        for(int row = 0; row < height; row++){
+            int start = tilesStart + (top + row) * rowLength;
+            int end = start + columns; // where the row's line break should be
+            int rowLine = tilesLine + top + row;
+            // the row's end is only checked when the rectangle reaches it
+            boolean ragged = left + width == columns && (top + row == rows - 1 ? end != limit :
+                    end >= limit || (buffer.get(end) != '\n' && buffer.get(end) != '\r'));
+            if(start + left + width > limit || ragged){
+                // an extra tile on the last row is counted as one more row, which does not start a line
+                boolean longer = top + row == rows - 1 && buffer.get(start - 1) != '\n' && buffer.get(start - 1) != '\r';
+                throw new ParseException("row is not " + columns + " tiles long, like the first one",
+                        longer ? rowLine - 1 : rowLine);
+            }
+            buffer.get(start + left, rowTiles);
+            for(int column = 0; column < width; column++){
+                byte tile = TILES[rowTiles[column] & 0xFF];
+                if(tile == INVALID){
+                    if(rowTiles[column] == '\n' || rowTiles[column] == '\r'){
+                        throw new ParseException("row is not " + columns + " tiles long, like the first one", rowLine);
+                    }
+                    throw new ParseException("invalid tile '" + (char) (rowTiles[column] & 0xFF) +
+                            "' in column " + (left + column + 1), rowLine);
+                }
+                tiles[row * stride + column] = tile;
+            }
+        }
+    }
+
+    /**
+     * Reads the rows of tiles into the grid.
+     * @throws ParseException if a row is ragged or contains an invalid tile
+     */
+    private void readTiles() throws ParseException {
+        grid = new TileGrid(rows, columns);
+        byte[] rowTiles = new byte[columns]; // reused for every row
+        int row = 0;
+        while(position < limit){
+            // rows of the right length end exactly after the expected number of tiles
+            int end = position + columns;
+            if(end > buffer.limit() || (end < buffer.limit() && buffer.get(end) != '\n' && buffer.get(end) != '\r')){
+                throw raggedRow(columns);
+            }
+            if(row == rows){
+                throw new ParseException("inconsistent line breaks", line);
+            }
+            buffer.get(position, rowTiles);
+            for(int column = 0; column < columns; column++){
+                byte tile = TILES[rowTiles[column] & 0xFF];
+                if(tile == INVALID){
+                    if(rowTiles[column] == '\n' || rowTiles[column] == '\r'){
+                        throw raggedRow(columns);
+                    }
+                    throw new ParseException("invalid tile '" + (char) (rowTiles[column] & 0xFF) +
+                            "' in column " + (column + 1), line);
+                }
+                rowTiles[column] = tile;
+            }
+            grid.setRow(row++, rowTiles);
+            nextLine(end);
+        }
+        if(row != rows){
+            throw new ParseException("inconsistent line breaks", line);
+        }
+    }
+
+    /**
+     * Creates the exception for a row of the wrong length.
+     * @param columns number of tiles every row must have
+     * @return the exception, reported on the current line
+     */
+    private ParseException raggedRow(int columns){
+        return new ParseException("row has " + (lineEnd(position) - position) +
+                " tiles instead of " + columns, line);
+    }
+
+    /**
+     * Checks if the current line starts with a tag.
+     * @param tag the tag
+     * @return true if it does, false otherwise
+     */
+    private boolean startsWith(String tag){
+        for(int index = 0; index < tag.length(); index++){
+            if(buffer.get(position + index) != tag.charAt(index)){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the index at which a line ends, without its line break.
+     * @param start index of the first byte of the line
+     * @return index of the '\r' or '\n' ending the line, or of the end of the file
+     */
+    private int lineEnd(int start){
+        int end = start;
+        while(end < buffer.limit() && buffer.get(end) != '\n' && buffer.get(end) != '\r'){
+            end++;
+        }
+        return end;
+    }
+
+    /**
+     * Returns the length of the line break at an index.
+     * @param index index at which a line ends
+     * @return 2 for "\r\n", 1 for '\n' or '\r', 0 at the end of the file
+     */
+    private int lineBreakLength(int index){
+        if(index >= buffer.limit()){
+            return 0;
+        }
+        if(buffer.get(index) == '\r' && index + 1 < buffer.limit() && buffer.get(index + 1) == '\n'){
+            return 2;
+        }
+        return 1;
+    }
+
+    /**
+     * Moves to the beginning of the next line.
+     * @param end index at which the current line ends
+     */
+    private void nextLine(int end){
+        position = end + lineBreakLength(end);
+        line++;
+    }
+
+    /**
+     * Returns the name of the map.
+     * @return name of the map
+     */
+    public String getName(){
+        return name;
+    }
+
+    /**
+     * Returns the amount of gold the player must have in order to win.
+     * @return amount of gold which is necessary for winning
+     */
+    public int getGoldToWin(){
+        return goldToWin;
+    }
+
+    /**
+     * Returns how many tiles are seen in each direction with the "look" command.
+     * @return radius of the view
+     */
+    public int getViewRadius(){
+        return viewRadius;
+    }
+
+    /**
+     * Returns whether walls block the view.
+     * @return true if they do
+     */
+    public boolean hasLineOfSight(){
+        return lineOfSight;
+    }
+
+    /**
+     * Returns the grid of tiles which has been read.
+     * @return the grid of tiles, or null if only the header was read
+     */
+    public TileGrid getGrid(){
+        return grid;
+    }
+
+    /**
+     * Returns the line of the file on which the first row of tiles is.
+     * @return number of the line
+     */
+    public int getTilesLine(){
+        return tilesLine;
+    }
+
+    /**
+     * Returns the number of rows of the map.
+     * @return number of rows
+     */
+    public int getRows(){
+        return rows;
+    }
+
+    /**
+     * Returns the number of columns of the map.
+     * @return number of columns
+     */
+    public int getColumns(){
+        return columns;
+    }
+}
@@ -0,0 +1,613 @@
+import java.io.File; // the map files
+import java.io.IOException; // file manipulation exception handling
+import java.lang.ref.SoftReference; // keeping the costs for the next map while memory allows
+import java.text.ParseException; // malformed map files
+import java.util.ArrayList; // the components from which the map can be won
+import java.util.Arrays; // filling the costs
+import java.util.BitSet; // the gold already on the route
+import java.util.concurrent.ForkJoinPool; // running the searches on all the cores
+import java.util.concurrent.RecursiveAction; // splitting the searches between the cores
+
+/**
+ * Class which checks whether a map can be won, and finds the shortest route which does it:
+ * picking up the gold needed to win and then reaching an exit. Since the player spawns on a
+ * random tile, the route starts on its first gold tile, and its length is the number of moves
+ * from there to the exit. A map which needs no gold is won by reaching any exit, so its route
+ * is an exit alone, of length 0. The map can only be won in a component of it with an exit and enough
+ * gold. The distances between the gold tiles and to the exits are found by a breadth
+ * first search from each gold tile, run in parallel. With few gold tiles, the best route is
+ * found by dynamic programming over the sets of gold tiles picked up. With more, a route is
+ * built from the exits backwards, each time going to the nearest gold tile not yet on it,
+ * and then shortened by reversing parts of it for as long as that helps.
+ */
+public class MapSolver {
+
+    public static final int UNREACHABLE = -1; // length of the route of a map which cannot be won
+
+    /*
+     * most gold tiles for which the best route is found, as the costs take 2^n * n ints:
+     * about 84 MB at the default of 20, and 370 MB at the most allowed, 22
+     */
+    private static final int EXACT_LIMIT = Math.min(Integer.getInteger("solver.exact", 20), 22);
+    private static final int IMPROVE_LIMIT = 1000; // longest route which is shortened, as it takes n^2 distances
+    private static final int INFINITE = Integer.MAX_VALUE;
+    private static final int FIRST_RADIUS = 16; // the searches go further only if they have not found everything
+    // the costs of the last exact solution, reused by the next one unless the memory was needed
+    private static SoftReference<int[]> spareCosts = new SoftReference<>(null);
+
+    private final TileGrid grid;
+    private final int goldToWin;
+    private final int[] gold, exits; // indices of the gold tiles and the exits
+    private final int size;
+    // the components from which the map can be won: their exits and their gold tiles
+    private ArrayList<int[]> winningExits, winningGold;
+    private int reachableGold; // most gold in a component with an exit
+    private int[] route; // the gold tiles in the order they are picked up, and then the exit
+    private int length = UNREACHABLE;
+    private boolean exact;
+
+    /**
+     * Class which finds the distances from a range of sources to every target,
+     * splitting the range in halves until it is short enough for a single search.
+     */
+    private class DistancesTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int[] sources, targets;
+        private final int[][] distances;
+        private final int first, last, batch; // the sources from first to last - 1, and the most a single search takes
+
+        /**
+         * Constructor which sets the range of sources.
+         * @param sources indices of every source tile
+         * @param targets indices of the target tiles
+         * @param distances the distances, one row for each source
+         * @param first index of the first source
+         * @param last index after the last source
+         * @param batch most sources searched by a single task
+         */
+        private DistancesTask(int[] sources, int[] targets, int[][] distances, int first, int last, int batch){
+            this.sources = sources;
+            this.targets = targets;
+            this.distances = distances;
+            this.first = first;
+            this.last = last;
+            this.batch = batch;
+        }
+
+        /**
+         * Searches from the sources, or splits them into two tasks.
+         */
+        @Override
+        protected void compute(){
+            if(last - first <= batch){
+                // one search for the whole range, so its arrays are only allocated once
+                BreadthFirstSearch search = new BreadthFirstSearch();
+                for(int source = first; source < last; source++){
+                    distances[source] = measure(search, sources[source], targets);
+                }
+                return;
+            }
+            int middle = (first + last) >>> 1;
+            invokeAll(new DistancesTask(sources, targets, distances, first, middle, batch),
+                    new DistancesTask(sources, targets, distances, middle, last, batch));
+        }
+    }
+
+    /**
+     * Constructor which collects the gold tiles and exits of a map.
+     * @param grid the map's tiles
+     * @param tileIndex the map's tiles by kind
+     * @param goldToWin amount of gold needed in order to win
+     */
+    public MapSolver(TileGrid grid, TileIndex tileIndex, int goldToWin){
+        this.grid = grid;
+        this.goldToWin = goldToWin;
+        size = grid.getRows() * grid.getColumns();
+        gold = new int[tileIndex.getGoldCount()];
+        for(int order = 0; order < gold.length; order++){
+            gold[order] = tileIndex.getGold(order);
+        }
+        exits = new int[tileIndex.getExitCount()];
+        for(int order = 0; order < exits.length; order++){
+            exits[order] = tileIndex.getExit(order);
+        }
+    }
+
+    /**
+     * Checks whether the map can be won, which only takes labelling the map's components.
+     * @return true if some component has an exit and enough gold
+     */
+    public boolean isWinnable(){
+        if(winningExits == null){
+            findParts();
+        }
+        return !winningExits.isEmpty();
+    }
+
+    /**
+     * Returns the most gold which can be picked up before reaching an exit.
+     * @return amount of gold
+     */
+    public int getReachableGold(){
+        isWinnable();
+        return reachableGold;
+    }
+
+    /**
+     * Labels the components of the map, and keeps the exits and gold tiles
+     * of those from which it can be won.
+     */
+    private void findParts(){
+        winningExits = new ArrayList<>();
+        winningGold = new ArrayList<>();
+        ConnectedComponents components = new ConnectedComponents(grid);
+        reachableGold = Math.max(0, components.getMostGold());
+        for(int component = 1; component <= components.getComponentCount(); component++){
+            if(!components.canWin(component, goldToWin)){
+                continue;
+            }
+            int[] partExits = new int[components.getExitCount(component)];
+            int[] partGold = new int[components.getGoldCount(component)];
+            int exitCount = 0, goldCount = 0;
+            for(int tile: exits){
+                if(components.getComponent(tile) == component){
+                    partExits[exitCount++] = tile;
+                }
+            }
+            for(int tile: gold){
+                if(components.getComponent(tile) == component){
+                    partGold[goldCount++] = tile;
+                }
+            }
+            winningExits.add(partExits);
+            winningGold.add(partGold);
+        }
+    }
+
+    /**
+     * Finds the shortest route which wins the map, or a short one if the map
+     * has too much gold for the shortest to be found.
+     * @return true if the map can be won
+     */
+    public boolean solve(){
+        if(!isWinnable()){
+            return false;
+        }
+        if(goldToWin == 0){
+            // the player only has to reach an exit, wherever that is
+            route = new int[]{winningExits.get(0)[0]};
+            length = 0;
+            exact = true;
+            return true;
+        }
+        int goldCount = 0;
+        for(int[] partGold: winningGold){
+            goldCount += partGold.length;
+        }
+        exact = goldCount <= EXACT_LIMIT;
+        if(exact){
+            // the components are solved together, since no distance joins them
+            int[] sources = new int[goldCount];
+            int exitCount = 0;
+            goldCount = 0;
+            for(int part = 0; part < winningGold.size(); part++){
+                for(int tile: winningGold.get(part)){
+                    sources[goldCount++] = tile;
+                }
+                exitCount += winningExits.get(part).length;
+            }
+            int[] partExits = new int[exitCount];
+            exitCount = 0;
+            for(int[] exitsOfPart: winningExits){
+                for(int tile: exitsOfPart){
+                    partExits[exitCount++] = tile;
+                }
+            }
+            solveExactly(sources, partExits);
+        }
+        else{
+            for(int part = 0; part < winningGold.size(); part++){
+                solveGreedily(winningExits.get(part));
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Finds the shortest route through some of the gold tiles, for each set of gold tiles and each
+     * of them being picked up last keeping the shortest route which picks up that set in that way.
+     * The sets are numbered by the bits of their gold tiles, so a set always comes after its subsets.
+     * @param sources the gold tiles
+     * @param partExits the exits
+     */
+    private void solveExactly(int[] sources, int[] partExits){
+        int count = sources.length;
+        int[][] distances = distances(sources, partExits);
+        int[] exitDistance = new int[count];
+        for(int source = 0; source < count; source++){
+            exitDistance[source] = INFINITE;
+            for(int exit = 0; exit < partExits.length; exit++){
+                int distance = distances[source][count + exit];
+                if(distance != BreadthFirstSearch.UNREACHED && distance < exitDistance[source]){
+                    exitDistance[source] = distance;
+                }
+            }
+        }
+        int[] cost = takeCosts((1 << count) * count); // shortest route through a set, ending on one of its tiles
+        Arrays.fill(cost, 0, (1 << count) * count, INFINITE);
+        for(int source = 0; source < count; source++){
+            cost[(1 << source) * count + source] = 0;
+        }
+        int bestSet = 0, bestLast = 0;
+        int all = (1 << count) - 1;
+        for(int set = 1; set <= all; set++){
+            int picked = Integer.bitCount(set);
+            if(picked > goldToWin){
+                continue;
+            }
+            // going through the bits of the set, and then of the tiles left out of it
+            for(int members = set; members != 0; members &= members - 1){
+                int last = Integer.numberOfTrailingZeros(members);
+                int soFar = cost[set * count + last];
+                if(soFar == INFINITE){
+                    continue;
+                }
+                if(picked == goldToWin){
+                    if(exitDistance[last] != INFINITE &&
+                            (length == UNREACHABLE || soFar + exitDistance[last] < length)){
+                        length = soFar + exitDistance[last];
+                        bestSet = set;
+                        bestLast = last;
+                    }
+                    continue;
+                }
+                int[] fromLast = distances[last];
+                for(int others = all & ~set; others != 0; others &= others - 1){
+                    int next = Integer.numberOfTrailingZeros(others);
+                    int distance = fromLast[next];
+                    if(distance == BreadthFirstSearch.UNREACHED){
+                        continue;
+                    }
+                    int index = (set | 1 << next) * count + next;
+                    if(soFar + distance < cost[index]){
+                        cost[index] = soFar + distance;
+                    }
+                }
+            }
+        }
+        // going back from the end of the best route, through the tiles whose costs add up
+        route = new int[goldToWin + 1];
+        route[goldToWin] = nearestExit(distances[bestLast], count, partExits);
+        int set = bestSet, last = bestLast;
+        for(int position = goldToWin - 1; position > 0; position--){
+            route[position] = sources[last];
+            int previousSet = set & ~(1 << last);
+            for(int previous = 0; previous < count; previous++){
+                int soFar = cost[previousSet * count + previous];
+                if((previousSet & 1 << previous) != 0 && soFar != INFINITE &&
+                        distances[previous][last] != BreadthFirstSearch.UNREACHED &&
+                        soFar + distances[previous][last] == cost[set * count + last]){
+                    set = previousSet;
+                    last = previous;
+                    break;
+                }
+            }
+        }
+        route[0] = sources[last];
+        synchronized(MapSolver.class){
+            spareCosts = new SoftReference<>(cost);
+        }
+    }
+
+    /**
+     * Takes the costs left by the last exact solution if they are large enough,
+     * so that solving many maps does not allocate them again for each one.
+     * @param size number of costs needed
+     * @return the costs, whose values are left over
+     */
+    private static synchronized int[] takeCosts(int size){
+        int[] cost = spareCosts.get();
+        spareCosts = new SoftReference<>(null);
+        return cost != null && cost.length >= size ? cost : new int[size];
+    }
+
+    /**
+     * Builds a route in a component of the map from its exits backwards, each time going to the nearest
+     * gold tile not yet on the route, and then shortens it. The route is kept if it is the shortest
+     * found so far.
+     * @param partExits the exits of the component
+     */
+    private void solveGreedily(int[] partExits){
+        BreadthFirstSearch search = new BreadthFirstSearch();
+        BitSet taken = new BitSet(size);
+        int[] order = new int[goldToWin];
+        int[] distances = new int[goldToWin]; // from each gold tile to the next one, or to the exit
+        search.start(grid);
+        for(int exit: partExits){
+            addSource(search, exit);
+        }
+        for(int picked = 0; picked < goldToWin; picked++){
+            int tile = nearest(search, TileGrid.GOLD, taken);
+            order[goldToWin - 1 - picked] = tile;
+            distances[goldToWin - 1 - picked] = search.getDistance(tile);
+            taken.set(tile);
+            search.start(grid);
+            addSource(search, tile);
+        }
+        int exit;
+        if(goldToWin <= IMPROVE_LIMIT){
+            int[][] fromGold = distances(order, partExits);
+            improve(order, fromGold, partExits);
+            for(int position = 0; position < goldToWin - 1; position++){
+                distances[position] = fromGold[position][position + 1];
+            }
+            int column = nearestExitColumn(fromGold[goldToWin - 1], goldToWin, partExits);
+            exit = partExits[column - goldToWin];
+            distances[goldToWin - 1] = fromGold[goldToWin - 1][column];
+        }
+        else{
+            // the route is too long to be shortened, and the search from its last gold tile finds its exit
+            search.start(grid);
+            addSource(search, order[goldToWin - 1]);
+            exit = nearest(search, TileGrid.EXIT, null);
+        }
+        int total = 0;
+        for(int distance: distances){
+            total += distance;
+        }
+        if(length == UNREACHABLE || total < length){
+            length = total;
+            route = Arrays.copyOf(order, goldToWin + 1);
+            route[goldToWin] = exit;
+        }
+    }
+
+    /**
+     * Shortens a route by reversing the parts of it which make it shorter when reversed,
+     * until no part does.
+     * @param order the gold tiles in the order they are picked up, changed in place
+     * @param distances the distances from each of them, in the same order, to the others and to the exits
+     * @param partExits the exits
+     */
+    private void improve(int[] order, int[][] distances, int[] partExits){
+        int count = order.length;
+        int[] row = new int[count]; // row of the distances of each position on the route
+        int[] exitDistance = new int[count];
+        for(int index = 0; index < count; index++){
+            row[index] = index;
+            exitDistance[index] = distances[index][nearestExitColumn(distances[index], count, partExits)];
+        }
+        boolean improved = true;
+        while(improved){
+            improved = false;
+            for(int first = 0; first < count - 1; first++){
+                for(int last = first + 1; last < count; last++){
+                    int before = first > 0 ? row[first - 1] : -1;
+                    int after = last < count - 1 ? row[last + 1] : -1;
+                    long change = 0;
+                    if(before >= 0){
+                        change += distances[before][row[last]] - distances[before][row[first]];
+                    }
+                    if(after >= 0){
+                        change += distances[row[first]][after] - distances[row[last]][after];
+                    }
+                    else{
+                        change += exitDistance[row[first]] - exitDistance[row[last]];
+                    }
+                    if(change < 0){
+                        for(int left = first, right = last; left < right; left++, right--){
+                            int swapped = row[left];
+                            row[left] = row[right];
+                            row[right] = swapped;
+                        }
+                        improved = true;
+                    }
+                }
+            }
+        }
+        // putting the tiles and their distances in the order of the route
+        int[] tiles = order.clone();
+        int[][] rows = distances.clone();
+        for(int index = 0; index < count; index++){
+            order[index] = tiles[row[index]];
+            int[] reordered = rows[row[index]].clone();
+            for(int column = 0; column < count; column++){
+                reordered[column] = rows[row[index]][row[column]];
+            }
+            distances[index] = reordered;
+        }
+    }
+
+    /**
+     * Finds the distances from each source to each of the sources and then to each of the targets,
+     * searching from the sources on all the cores.
+     * @param sources indices of the source tiles
+     * @param partExits indices of the other targets
+     * @return one row for each source, UNREACHED marking the targets it cannot reach
+     */
+    private int[][] distances(int[] sources, int[] partExits){
+        int[] targets = Arrays.copyOf(sources, sources.length + partExits.length);
+        System.arraycopy(partExits, 0, targets, sources.length, partExits.length);
+        int[][] distances = new int[sources.length][];
+        int workers = ForkJoinPool.commonPool().getParallelism();
+        int batch = Math.max(1, (sources.length + workers - 1) / workers);
+        ForkJoinPool.commonPool().invoke(new DistancesTask(sources, targets, distances, 0, sources.length, batch));
+        return distances;
+    }
+
+    /**
+     * Searches from a tile until every target is reached, or until the search cannot go further.
+     * @param search the search to use
+     * @param source index of the source tile
+     * @param targets indices of the targets
+     * @return the distance to each target
+     */
+    private int[] measure(BreadthFirstSearch search, int source, int[] targets){
+        search.start(grid);
+        addSource(search, source);
+        int[] distances = new int[targets.length];
+        int radius = FIRST_RADIUS;
+        while(true){
+            search.run(radius);
+            int missing = 0;
+            for(int target = 0; target < targets.length; target++){
+                distances[target] = search.getDistance(targets[target]);
+                if(distances[target] == BreadthFirstSearch.UNREACHED){
+                    missing++;
+                }
+            }
+            if(missing == 0 || radius >= size){
+                return distances;
+            }
+            radius = (int) Math.min(2L * radius, size);
+        }
+    }
+
+    /**
+     * Finds the nearest tile of a kind, making the search go further only until it finds one.
+     * @param search the search, started from the sources
+     * @param kind tile code of the tiles looked for
+     * @param taken tiles which are left out, or null
+     * @return index of the nearest tile, or -1 if the search cannot reach one
+     */
+    private int nearest(BreadthFirstSearch search, byte kind, BitSet taken){
+        int scanned = 0;
+        int radius = FIRST_RADIUS;
+        while(true){
+            search.run(radius);
+            // the tiles are reached in order of distance, so the first one found is the nearest
+            for(; scanned < search.getReachedCount(); scanned++){
+                int tile = search.getReached(scanned);
+                if(grid.get(tile) == kind && (taken == null || !taken.get(tile))){
+                    return tile;
+                }
+            }
+            if(radius >= size){
+                return -1;
+            }
+            radius = (int) Math.min(2L * radius, size);
+        }
+    }
+
+    /**
+     * Returns the exit nearest to a source.
+     * @param distances the distances from the source, the exits' starting at the given column
+     * @param firstExit column of the first exit
+     * @param partExits the exits
+     * @return index of the exit
+     */
+    private static int nearestExit(int[] distances, int firstExit, int[] partExits){
+        return partExits[nearestExitColumn(distances, firstExit, partExits) - firstExit];
+    }
+
+    /**
+     * Returns the column of the exit nearest to a source.
+     * @param distances the distances from the source, the exits' starting at the given column
+     * @param firstExit column of the first exit
+     * @param partExits the exits
+     * @return column of the exit in the distances
+     */
+    private static int nearestExitColumn(int[] distances, int firstExit, int[] partExits){
+        int best = firstExit;
+        for(int column = firstExit; column < firstExit + partExits.length; column++){
+            if(distances[column] != BreadthFirstSearch.UNREACHED &&
+                    (distances[best] == BreadthFirstSearch.UNREACHED || distances[column] < distances[best])){
+                best = column;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Adds a tile to a search as a source.
+     * @param search the search
+     * @param tile index of the tile
+     */
+    private void addSource(BreadthFirstSearch search, int tile){
+        search.addSource(tile / grid.getColumns(), tile % grid.getColumns());
+    }
+
+    /**
+     * Returns the route found by solve(): the gold tiles in the order they are picked up,
+     * and then the exit, which is all there is when no gold is needed.
+     * @return indices of the tiles, or null if the map cannot be won
+     */
+    public int[] getRoute(){
+        return route;
+    }
+
+    /**
+     * Returns the number of moves of the route found by solve(), from its first gold tile to its exit.
+     * @return number of moves, or UNREACHABLE if the map cannot be won
+     */
+    public int getLength(){
+        return length;
+    }
+
+    /**
+     * Returns whether the route found by solve() is the shortest one.
+     * @return true if it is
+     */
+    public boolean isExact(){
+        return exact;
+    }
+
+    /**
+     * Main function, which checks that maps can be won and prints their shortest routes.
+     * Usage: MapSolver [map files...]
+     * If no files are given, every .txt map in the Maps folder is solved. With -Droute=true
+     * the tiles of each route are printed as well.
+     */
+    public static void main(String[] args) throws IOException {
+        File[] files;
+        if(args.length > 0){
+            files = new File[args.length];
+            for(int index = 0; index < args.length; index++){
+                files[index] = new File(args[index]);
+            }
+        }
+        else{
+            File directory = new File(MapSolver.class.getProtectionDomain().
+                    getCodeSource().getLocation().getPath() + "/Maps");
+            files = directory.listFiles((dir, fileName) -> fileName.endsWith(".txt"));
+            if(files == null){
+                files = new File[0];
+            }
+            Arrays.sort(files);
+        }
+        boolean printRoute = Boolean.getBoolean("route");
+        for(File file: files){
+            try{
+                MapLoader loader = new MapLoader(file.toPath());
+                TileGrid grid = loader.getGrid();
+                TileIndex tileIndex = new TileIndex(grid);
+                long start = System.nanoTime();
+                MapSolver solver = new MapSolver(grid, tileIndex, loader.getGoldToWin());
+                boolean winnable = solver.solve();
+                long time = (System.nanoTime() - start) / 1000000;
+                String summary = file.getName() + " (" + loader.getName() + ", " + loader.getGoldToWin() + " of " +
+                        tileIndex.getGoldCount() + " gold, " + tileIndex.getExitCount() + " exits): ";
+                if(!winnable){
+                    System.out.println(summary + "cannot be won, at most " + solver.getReachableGold() +
+                            " gold being in a part of the map with an exit");
+                    continue;
+                }
+                System.out.println(summary + (solver.isExact() ? "shortest" : "heuristic") + " route of " +
+                        solver.getLength() + " moves, found in " + time + " ms");
+                if(printRoute){
+                    StringBuilder line = new StringBuilder();
+                    for(int tile: solver.getRoute()){
+                        line.append(line.length() == 0 ? "  " : " -> ").append('(').append(tile / grid.getColumns())
+                                .append(", ").append(tile % grid.getColumns()).append(')');
+                    }
+                    System.out.println(line);
+                }
+            }
+            catch (ParseException e){
+                System.out.println("Invalid map " + file + " at line " + e.getErrorOffset() + ": " + e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,570 @@
+import java.util.concurrent.ForkJoinPool; // running the rollouts on all the cores
+import java.util.concurrent.RecursiveAction; // splitting the workers between the cores
+import java.util.concurrent.atomic.AtomicInteger; // counting the used entries of the table
+import java.util.concurrent.atomic.AtomicLongArray; // the table shared by the workers without locks
+
+/**
+ * Class which picks the bots' moves with a Monte Carlo tree search over the chase: the
+ * positions of a bot and of the player, and the gold picked up by the player. The player
+ * is played by a model which picks up gold, leaves through an exit once it has enough
+ * gold, and otherwise runs away from the bot half of the time and moves randomly the
+ * rest of it. The bot knows where the player is, like in the flow field mode.
+ * The tree is held in a transposition table keyed by the state reached after a bot's
+ * move, so states reached in different ways, and on earlier turns, share their results.
+ * The table is shared by all the workers without locks: each entry packs its visits and
+ * its total reward in a single long, which is added to atomically, and a worker adds a
+ * visit as it passes through an entry, so the others are steered away from it until
+ * its reward is known. The table is only allocated by the first search, small, and grows
+ * before a search whenever the states added by the last one would fill more than half of it,
+ * up to its largest size, after which it is cleared instead, so a game, or a fork of it,
+ * only holds as much memory as its searches use.
+ * The workers run rollouts on every core until the time given to
+ * a decision is spent, so the moves depend on the speed of the machine, and games in
+ * this mode cannot be replayed.
+ */
+public class MonteCarloSearch {
+
+    public static final int NONE = -1; // move of a bot which cannot move
+
+    // milliseconds given to each decision, and number of entries of the table
+    private static final long BUDGET = Long.getLong("mcts.budget", 10);
+    private static final int TABLE_SIZE = Integer.highestOneBit(Math.max(1024, Integer.getInteger("mcts.table", 1 << 20)));
+    private static final int INITIAL_TABLE_SIZE = 1 << 12; // entries of the table allocated by the first search
+    private static final int WORKERS = Integer.getInteger("mcts.threads", ForkJoinPool.commonPool().getParallelism());
+    private static final int TREE_DEPTH = 24; // most bot moves chosen from the table in a rollout
+    private static final int ROLLOUT_DEPTH = 64; // most bot moves of a whole rollout
+    private static final double EXPLORATION = 0.7; // weight of the less visited moves
+    private static final int PROBES = 8; // slots of the table tried for a state
+    private static final long VISIT = 1L << 32; // a visit, in the high half of an entry
+    private static final long REWARD_MASK = VISIT - 1; // the total reward, in the low half
+    private static final int REWARD_SCALE = 255; // reward of a capture on the first move
+    private static final long MAX_VISITS = 1 << 22; // visits after which the table is cleared, before the rewards overflow
+
+    private final OverlayGrid map; // the game's map, read while nobody moves
+    private final TileGrid grid; // the shared grid, whose walls never change
+    private final Player target; // the player which the bots are chasing
+    private final int goldToWin;
+    private final int columns;
+    private final BreadthFirstSearch field = new BreadthFirstSearch(); // distances to the player
+    private int fieldIndex = NONE; // tile from which the distances were last computed
+    // set only while no worker runs
+    private AtomicLongArray keys; // state held by each entry, or 0, null until the first search
+    private AtomicLongArray entries; // visits and total reward
+    private final AtomicInteger used = new AtomicInteger(); // number of entries holding a state
+    private boolean full = false; // whether the table is to be cleared before the next search
+    private final Worker[] workers;
+    // the state from which the current search starts
+    private int rootBot, rootPlayer, rootGold;
+    private byte rootPlayerTile;
+    private long rootGoldKey; // the gold picked up so far, hashed
+    private int lastGold; // gold of the player when its picked up gold was last hashed
+    private long rollouts = 0; // number of rollouts of all the searches
+    private long lastRollouts = 0; // number of rollouts of the last search, each adding a state at most
+
+    /**
+     * Constructor which sets the game in which the player is chased.
+     * @param map the game's map
+     * @param target Player object being chased
+     * @param goldToWin amount of gold the player needs in order to win
+     */
+    public MonteCarloSearch(OverlayGrid map, Player target, int goldToWin){
+        this.map = map;
+        this.grid = map.getTemplate();
+        this.target = target;
+        this.goldToWin = goldToWin;
+        this.columns = grid.getColumns();
+        lastGold = target.getCurrentGold();
+        workers = new Worker[Math.max(1, WORKERS)];
+        for(int index = 0; index < workers.length; index++){
+            workers[index] = new Worker();
+        }
+    }
+
+    /**
+     * Searches for the best move of a bot, running rollouts on every core for the time
+     * given to a decision.
+     * @param bot index of the tile the bot is on
+     * @param seed seed of the workers' random numbers, taken from the game's random numbers
+     * @return index of the neighbour the bot should move to, or NONE if it cannot move or cannot reach the player
+     */
+    public int bestMove(int bot, long seed){
+        prepare(bot);
+        if(field.getDistance(bot) == BreadthFirstSearch.UNREACHED){
+            // no rollout could ever catch the player, so the time is not spent
+            return NONE;
+        }
+        long deadline = System.nanoTime() + BUDGET * 1_000_000;
+        for(int index = 0; index < workers.length; index++){
+            workers[index].random = new GameRandom(seed + index * 0x9E3779B97F4A7C15L);
+        }
+        WorkersTask task = new WorkersTask(0, workers.length, deadline);
+        if(workers.length == 1){
+            task.compute();
+        }
+        else{
+            ForkJoinPool.commonPool().invoke(task);
+        }
+        long count = 0;
+        for(Worker worker: workers){
+            count += worker.rollouts;
+            worker.rollouts = 0;
+        }
+        rollouts += count;
+        lastRollouts = count;
+        if(GameMetrics.ENABLED){
+            GameMetrics.ROLLOUTS.add(count);
+        }
+        // the most visited move, whose value is the best known
+        int best = NONE;
+        long bestVisits = -1;
+        for(int direction = 0; direction < 4; direction++){
+            int next = neighbour(bot, direction);
+            if(next == NONE){
+                continue;
+            }
+            int slot = find(key(next, rootPlayer, rootGoldKey), false);
+            long visits = slot == NONE ? 0 : entries.get(slot) >>> 32;
+            if(visits > bestVisits){
+                best = next;
+                bestVisits = visits;
+            }
+            full |= visits >= MAX_VISITS;
+        }
+        return best;
+    }
+
+    /**
+     * Takes the state of the game as the root of the search, and allocates the table,
+     * grows it or clears it if it filled up.
+     * @param bot index of the tile the bot is on
+     */
+    private void prepare(int bot){
+        rootBot = bot;
+        rootPlayer = grid.index(target.getRow(), target.getColumn());
+        rootPlayerTile = target.getCurrentTile();
+        rootGold = target.getCurrentGold();
+        if(rootGold > lastGold){
+            // the player picked up the gold of the tile it stands on
+            rootGoldKey ^= goldHash(rootPlayer);
+            lastGold = rootGold;
+        }
+        if(rootPlayer != fieldIndex){
+            fieldIndex = rootPlayer;
+            field.start(grid);
+            field.addSource(target.getRow(), target.getColumn());
+            field.run(BreadthFirstSearch.UNLIMITED);
+        }
+        if(keys == null){
+            keys = new AtomicLongArray(Math.min(INITIAL_TABLE_SIZE, TABLE_SIZE));
+            entries = new AtomicLongArray(keys.length());
+        }
+        long needed = 2 * (used.get() + lastRollouts);
+        if(!full && needed > keys.length() && keys.length() < TABLE_SIZE){
+            int size = keys.length();
+            while(size < needed && size < TABLE_SIZE){
+                size *= 2;
+            }
+            grow(size);
+        }
+        else if(full || used.get() > keys.length() / 2){
+            // the rewards would overflow, or the table cannot grow, so the results are dropped
+            for(int slot = 0; slot < keys.length(); slot++){
+                keys.set(slot, 0);
+                entries.set(slot, 0);
+            }
+            used.set(0);
+            full = false;
+        }
+    }
+
+    /**
+     * Moves the entries of the table into a larger one.
+     * @param size number of entries of the new table, a power of two
+     */
+    private void grow(int size){
+        AtomicLongArray oldKeys = keys, oldEntries = entries;
+        keys = new AtomicLongArray(size);
+        entries = new AtomicLongArray(size);
+        used.set(0);
+        for(int slot = 0; slot < oldKeys.length(); slot++){
+            long key = oldKeys.get(slot);
+            if(key != 0){
+                // an entry which finds no room is dropped
+                int newSlot = find(key, true);
+                if(newSlot != NONE){
+                    entries.set(newSlot, oldEntries.get(slot));
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the number of rollouts run by every search so far.
+     * @return number of rollouts
+     */
+    public long getRolloutCount(){
+        return rollouts;
+    }
+
+    /**
+     * Class which holds what a worker needs to run rollouts, so that it allocates nothing.
+     */
+    private class Worker {
+
+        private GameRandom random;
+        private final int[] path = new int[TREE_DEPTH]; // entries of the table passed through
+        private final int[] picked = new int[ROLLOUT_DEPTH]; // gold picked up in the rollout, once per turn at most
+        private final long[] visits = new long[4]; // visits of each move, while one is selected
+        private final long[] rewards = new long[4]; // total reward of each move, while one is selected
+        private int pickedCount;
+        private int bot, player, gold;
+        private long goldKey;
+        private long rollouts = 0;
+
+        /**
+         * Runs rollouts until the deadline.
+         * @param deadline value of System.nanoTime() at which to stop
+         */
+        private void run(long deadline){
+            do{
+                rollout();
+                rollouts++;
+            } while(System.nanoTime() < deadline);
+        }
+
+        /**
+         * Runs a rollout: moves picked from the table while the states reached are known,
+         * then moves picked by a quick policy, and adds the reward to every entry passed.
+         */
+        private void rollout(){
+            bot = rootBot;
+            player = rootPlayer;
+            gold = rootGold;
+            goldKey = rootGoldKey;
+            pickedCount = 0;
+            int pathLength = 0;
+            double reward = -1;
+            int depth = 0;
+            while(depth < TREE_DEPTH){
+                int next = select();
+                if(next == NONE){
+                    break;
+                }
+                bot = next;
+                depth++;
+                int slot = find(key(bot, player, goldKey), true);
+                long before = 0;
+                if(slot != NONE){
+                    before = entries.getAndAdd(slot, VISIT);
+                    path[pathLength++] = slot;
+                }
+                if(bot == player){
+                    reward = captured(depth);
+                    break;
+                }
+                int outcome = playerTurn();
+                if(outcome != 0){
+                    reward = outcome > 0 ? captured(depth) : 0;
+                    break;
+                }
+                if(before == 0){
+                    break; // a new state, which the quick policy goes on from
+                }
+            }
+            if(reward < 0){
+                reward = playOut(depth);
+            }
+            long scaled = Math.round(reward * REWARD_SCALE);
+            for(int position = 0; position < pathLength; position++){
+                entries.getAndAdd(path[position], scaled);
+            }
+        }
+
+        /**
+         * Picks the bot's move from the table, trying every move once before
+         * favouring the ones with the best rewards (UCT).
+         * @return index of the tile to move to, or NONE if the bot cannot move
+         */
+        private int select(){
+            int best = NONE;
+            double bestScore = -1;
+            long total = 0;
+            int unvisited = 0;
+            for(int direction = 0; direction < 4; direction++){
+                int next = neighbour(bot, direction);
+                visits[direction] = -1;
+                if(next == NONE){
+                    continue;
+                }
+                int slot = find(key(next, player, goldKey), false);
+                long entry = slot == NONE ? 0 : entries.get(slot);
+                visits[direction] = entry >>> 32;
+                rewards[direction] = entry & REWARD_MASK;
+                total += visits[direction];
+                if(visits[direction] == 0 && random.nextInt(++unvisited) == 0){
+                    best = next; // one of the moves never tried, each being equally likely
+                }
+            }
+            if(unvisited > 0){
+                return best;
+            }
+            double logTotal = Math.log(total);
+            for(int direction = 0; direction < 4; direction++){
+                if(visits[direction] <= 0){
+                    continue;
+                }
+                double score = rewards[direction] / (double) (visits[direction] * REWARD_SCALE) +
+                        EXPLORATION * Math.sqrt(logTotal / visits[direction]);
+                if(score > bestScore){
+                    best = neighbour(bot, direction);
+                    bestScore = score;
+                }
+            }
+            return best;
+        }
+
+        /**
+         * Plays the rest of a rollout with a quick policy: the bot mostly steps towards
+         * where the player was at the root, and the player is played by its model.
+         * @param depth number of bot moves made so far
+         * @return the reward of the rollout
+         */
+        private double playOut(int depth){
+            for(; depth < ROLLOUT_DEPTH; depth++){
+                int next = random.nextInt(4) == 0 ? neighbour(bot, random.nextInt(4)) : closer(bot);
+                if(next != NONE){
+                    bot = next;
+                }
+                if(bot == player){
+                    return captured(depth + 1);
+                }
+                int outcome = playerTurn();
+                if(outcome != 0){
+                    return outcome > 0 ? captured(depth + 1) : 0;
+                }
+            }
+            // not over yet: the closer the bot is to the player, the better
+            int distance = field.getDistance(bot);
+            if(distance == BreadthFirstSearch.UNREACHED){
+                return 0;
+            }
+            distance += manhattan(player, rootPlayer);
+            return 0.5 * 4 / (4 + distance);
+        }
+
+        /**
+         * Plays the player's command, as its model would.
+         * @return 1 if the player walked into the bot, -1 if it left through an exit, 0 otherwise
+         */
+        private int playerTurn(){
+            if(hasGold(player)){
+                picked[pickedCount++] = player;
+                gold++;
+                goldKey ^= goldHash(player);
+                return 0;
+            }
+            if(grid.get(player) == TileGrid.EXIT && gold >= goldToWin){
+                return -1;
+            }
+            int next;
+            if(random.nextInt(2) == 0){
+                // runs away, to the neighbour furthest from the bot
+                next = NONE;
+                int furthest = -1;
+                for(int direction = 0; direction < 4; direction++){
+                    int candidate = neighbour(player, direction);
+                    if(candidate != NONE && manhattan(candidate, bot) > furthest){
+                        next = candidate;
+                        furthest = manhattan(candidate, bot);
+                    }
+                }
+            }
+            else{
+                next = neighbour(player, random.nextInt(4));
+            }
+            if(next == NONE){
+                return 0; // the move failed
+            }
+            if(next == bot){
+                return 1;
+            }
+            player = next;
+            return 0;
+        }
+
+        /**
+         * Checks if a tile still holds gold in the rollout. Gold under a bot
+         * is taken to be there, as the map does not tell.
+         * @param index index of the tile
+         * @return true if the player can pick up gold on it
+         */
+        private boolean hasGold(int index){
+            for(int order = 0; order < pickedCount; order++){
+                if(picked[order] == index){
+                    return false;
+                }
+            }
+            if(index == rootPlayer){
+                return rootPlayerTile == TileGrid.GOLD;
+            }
+            byte tile = map.get(index);
+            return tile == TileGrid.GOLD || (tile == TileGrid.BOT && grid.get(index) == TileGrid.GOLD);
+        }
+    }
+
+    /**
+     * Class which runs a range of workers, splitting it in halves until a single one is left.
+     */
+    private class WorkersTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int first, count;
+        private final long deadline;
+
+        /**
+         * Constructor which sets the workers to be run.
+         * @param first index of the first worker
+         * @param count number of workers
+         * @param deadline value of System.nanoTime() at which the workers stop
+         */
+        private WorkersTask(int first, int count, long deadline){
+            this.first = first;
+            this.count = count;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Runs the worker, or splits the workers into two tasks.
+         */
+        @Override
+        protected void compute(){
+            if(count == 1){
+                workers[first].run(deadline);
+                return;
+            }
+            invokeAll(new WorkersTask(first, count / 2, deadline),
+                    new WorkersTask(first + count / 2, count - count / 2, deadline));
+        }
+    }
+
+    /**
+     * Returns the reward of catching the player, which is higher the sooner it happens.
+     * @param depth number of bot moves made until then
+     * @return the reward, between 0.5 and 1
+     */
+    private static double captured(int depth){
+        return 1 - 0.5 * depth / ROLLOUT_DEPTH;
+    }
+
+    /**
+     * Returns the neighbour of a tile on which the bot gets closer to where the player was at the root.
+     * @param index index of the tile
+     * @return index of the neighbour, or NONE if the player cannot be reached
+     */
+    private int closer(int index){
+        int distance = field.getDistance(index);
+        for(int direction = 0; direction < 4; direction++){
+            int next = neighbour(index, direction);
+            if(next != NONE && field.getDistance(next) == distance - 1){
+                return next;
+            }
+        }
+        return NONE;
+    }
+
+    /**
+     * Returns the neighbour of a tile in a direction, if it is not a wall.
+     * @param index index of the tile
+     * @param direction 0 to 3, for north, east, south and west
+     * @return index of the neighbour, or NONE if it is a wall or outside the map
+     */
+    private int neighbour(int index, int direction){
+        int row = index / columns, column = index % columns;
+        switch (direction){
+            case 0: row--; break;
+            case 1: column++; break;
+            case 2: row++; break;
+            default: column--; break;
+        }
+        if(!grid.isInside(row, column)){
+            return NONE;
+        }
+        int next = row * columns + column;
+        return grid.get(next) == TileGrid.WALL ? NONE : next;
+    }
+
+    /**
+     * Finds the entry of the table holding a state, linear probing from its hash.
+     * @param key the state, as returned by key()
+     * @param insert true to claim an empty entry if the state is not in the table
+     * @return index of the entry, or NONE if the state is not in the table, or could not be added
+     */
+    private int find(long key, boolean insert){
+        int mask = keys.length() - 1;
+        int slot = (int) (key ^ (key >>> 32)) & mask;
+        for(int probe = 0; probe < PROBES; probe++, slot = (slot + 1) & mask){
+            long held = keys.get(slot);
+            if(held == key){
+                return slot;
+            }
+            if(held == 0){
+                if(!insert){
+                    return NONE;
+                }
+                if(keys.compareAndSet(slot, 0, key)){
+                    used.incrementAndGet();
+                    return slot;
+                }
+                if(keys.get(slot) == key){
+                    return slot; // another worker added the same state
+                }
+            }
+        }
+        return NONE;
+    }
+
+    /**
+     * Returns the key of a state of the chase, which is never 0.
+     * @param bot index of the tile the bot is on
+     * @param player index of the tile the player is on
+     * @param goldKey the gold picked up, hashed
+     * @return the key
+     */
+    private static long key(int bot, int player, long goldKey){
+        long key = mix(((long) bot << 32 | (player & 0xFFFFFFFFL)) ^ goldKey);
+        return key == 0 ? 1 : key;
+    }
+
+    /**
+     * Mixes the bits of a number (the finalizer of SplitMix64), to hash
+     * the states and the tiles whose gold was picked up.
+     * @param value the number
+     * @return the hash
+     */
+    private static long mix(long value){
+        value = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+        value = (value ^ (value >>> 27)) * 0x94D049BB133111EBL;
+        return value ^ (value >>> 31);
+    }
+
+    /**
+     * Returns the hash of a tile whose gold was picked up. The hashes of all the
+     * tiles picked up are combined with exclusive or, whatever their order.
+     * @param index index of the tile
+     * @return the hash
+     */
+    private static long goldHash(int index){
+        return mix(index + 0x9E3779B97F4A7C15L);
+    }
+
+    /**
+     * Returns the number of moves between two tiles on a map without walls.
+     * @param from index of the first tile
+     * @param to index of the second tile
+     * @return the Manhattan distance
+     */
+    private int manhattan(int from, int to){
+        return Math.abs(from / columns - to / columns) + Math.abs(from % columns - to % columns);
+    }
+}
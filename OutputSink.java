@@ -0,0 +1,18 @@
+/**
+ * Interface which represents the place where a game's messages end up,
+ * such as the console, a network connection, or nowhere at all.
+ * The Renderer hands it the whole response to a turn at once.
+ */
+public interface OutputSink {
+
+    // sink which discards everything, used by headless games
+    OutputSink NULL = (bytes, length) -> { };
+
+    /**
+     * Writes a block of bytes. The array is reused once this returns,
+     * so a sink which keeps the bytes has to copy them.
+     * @param bytes array holding the bytes
+     * @param length number of bytes to write, from the start of the array
+     */
+    void write(byte[] bytes, int length);
+}
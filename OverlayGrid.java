@@ -0,0 +1,293 @@
+import java.nio.ByteBuffer; // snapshots of the changed tiles
+import java.util.Arrays; // copying and clearing the overlay
+
+/**
+ * Class which represents the map of a single game, on top of a TileGrid shared by
+ * every game played on the same map. The shared grid is never modified: the tiles
+ * changed by this game (the player, the bots, picked up gold) are kept in a small
+ * hash table instead, so a game only costs memory for what it changed.
+ * Copies share the hash table until one of them changes a tile.
+ */
+public class OverlayGrid {
+
+    private static final int EMPTY = -1; // key of the unused slots
+    private static final int FILTER_MASK = 63;
+
+    private final TileGrid template;
+    private int[] keys; // index of the changed tile held by each slot, or EMPTY
+    private byte[] values; // tile held by each slot
+    /*
+     * number of changed tiles for each value of (index & FILTER_MASK). Most tiles
+     * read have no changed tile with the same low bits, so they skip the hash table.
+     */
+    private int[] filter;
+    private int size = 0; // number of changed tiles
+    private boolean shared = false; // whether the hash table is shared with a copy
+
+    /**
+     * Constructor which creates an overlay without any changes.
+     * @param template the shared grid, which must not be modified afterwards
+     */
+    public OverlayGrid(TileGrid template){
+        this.template = template;
+        keys = new int[16];
+        values = new byte[16];
+        filter = new int[FILTER_MASK + 1];
+        Arrays.fill(keys, EMPTY);
+    }
+
+    /**
+     * Returns a copy of this overlay, in constant time. The copy and this
+     * overlay share their hash table until either of them changes a tile.
+     * @return the copy
+     */
+    public OverlayGrid copy(){
+        OverlayGrid copy = new OverlayGrid(template, keys, values, filter, size);
+        shared = true;
+        return copy;
+    }
+
+    /**
+     * Constructor used by copy(), sharing a hash table.
+     * @param template the shared grid
+     * @param keys the keys of the hash table
+     * @param values the values of the hash table
+     * @param filter the counts of changed tiles by their low bits
+     * @param size number of changed tiles
+     */
+    private OverlayGrid(TileGrid template, int[] keys, byte[] values, int[] filter, int size){
+        this.template = template;
+        this.keys = keys;
+        this.values = values;
+        this.filter = filter;
+        this.size = size;
+        this.shared = true;
+    }
+
+    /**
+     * Returns the tile at the specified index.
+     * @param index index of the tile, as returned by index()
+     * @return tile code
+     */
+    public byte get(int index){
+        if(filter[index & FILTER_MASK] == 0){
+            return template.get(index);
+        }
+        return lookup(index);
+    }
+
+    /**
+     * Looks a tile up in the hash table, falling back to the shared grid.
+     * Kept apart from get() so that the common case stays small.
+     * @param index index of the tile
+     * @return tile code
+     */
+    private byte lookup(int index){
+        int mask = keys.length - 1;
+        for(int slot = hash(index) & mask; keys[slot] != EMPTY; slot = (slot + 1) & mask){
+            if(keys[slot] == index){
+                return values[slot];
+            }
+        }
+        return template.get(index);
+    }
+
+    /**
+     * Returns the tile at the specified coordinates.
+     * @param row row coordinate
+     * @param column column coordinate
+     * @return tile code
+     */
+    public byte get(int row, int column){
+        return get(template.index(row, column));
+    }
+
+    /**
+     * Changes the tile at the specified index. Setting a tile back to its value in the
+     * shared grid removes it from the overlay.
+     * @param index index of the tile, as returned by index()
+     * @param tile new tile code
+     */
+    public void set(int index, byte tile){
+        if(shared){
+            // copy on write
+            keys = keys.clone();
+            values = values.clone();
+            filter = filter.clone();
+            shared = false;
+        }
+        int mask = keys.length - 1;
+        int slot = hash(index) & mask;
+        while(keys[slot] != EMPTY && keys[slot] != index){
+            slot = (slot + 1) & mask;
+        }
+        if(tile == template.get(index)){
+            if(keys[slot] == index){
+                remove(slot);
+            }
+            return;
+        }
+        if(keys[slot] == EMPTY){
+            keys[slot] = index;
+            filter[index & FILTER_MASK]++;
+            size++;
+        }
+        values[slot] = tile;
+        if(size * 2 > keys.length){
+            grow();
+        }
+    }
+
+    /**
+     * Changes the tile at the specified coordinates.
+     * @param row row coordinate
+     * @param column column coordinate
+     * @param tile new tile code
+     */
+    public void set(int row, int column, byte tile){
+        set(template.index(row, column), tile);
+    }
+
+    /**
+     * Empties a slot, moving back the entries which were placed after it
+     * because of collisions, so that every entry can still be found.
+     * @param slot the slot
+     */
+    private void remove(int slot){
+        int mask = keys.length - 1;
+        filter[keys[slot] & FILTER_MASK]--;
+        keys[slot] = EMPTY;
+        size--;
+        int next = (slot + 1) & mask;
+        while(keys[next] != EMPTY){
+            int home = hash(keys[next]) & mask;
+            // move the entry if the emptied slot lies between its home slot and its current slot
+            if(((next - home) & mask) >= ((next - slot) & mask)){
+                keys[slot] = keys[next];
+                values[slot] = values[next];
+                keys[next] = EMPTY;
+                slot = next;
+            }
+            next = (next + 1) & mask;
+        }
+    }
+
+    /**
+     * Doubles the size of the hash table.
+     */
+    private void grow(){
+        int[] oldKeys = keys;
+        byte[] oldValues = values;
+        keys = new int[oldKeys.length * 2];
+        values = new byte[oldKeys.length * 2];
+        Arrays.fill(keys, EMPTY);
+        int mask = keys.length - 1;
+        for(int oldSlot = 0; oldSlot < oldKeys.length; oldSlot++){
+            if(oldKeys[oldSlot] != EMPTY){
+                int slot = hash(oldKeys[oldSlot]) & mask;
+                while(keys[slot] != EMPTY){
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[oldSlot];
+                values[slot] = oldValues[oldSlot];
+            }
+        }
+    }
+
+    /**
+     * Spreads the bits of a tile index, so nearby tiles land in different slots.
+     * @param index index of the tile
+     * @return the hash
+     */
+    private static int hash(int index){
+        int hash = index * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Writes the tiles which differ from the shared grid to a snapshot: their number,
+     * followed by the index (int) and the tile code (byte) of each of them.
+     * @param buffer the buffer written to
+     */
+    public void writeChanges(ByteBuffer buffer){
+        buffer.putInt(size);
+        for(int slot = 0; slot < keys.length; slot++){
+            if(keys[slot] != EMPTY){
+                buffer.putInt(keys[slot]).put(values[slot]);
+            }
+        }
+    }
+
+    /**
+     * Replaces the changed tiles by the ones written by writeChanges(). The hash table
+     * is cleared in place, unless it is shared with a copy.
+     * @param buffer the buffer read from
+     * @throws IllegalArgumentException if a tile is outside the grid or has no tile code
+     */
+    public void readChanges(ByteBuffer buffer){
+        int count = buffer.getInt();
+        if(shared){
+            keys = new int[keys.length];
+            values = new byte[values.length];
+            filter = new int[FILTER_MASK + 1];
+            shared = false;
+        }
+        else{
+            Arrays.fill(filter, 0);
+        }
+        Arrays.fill(keys, EMPTY);
+        size = 0;
+        int tiles = template.getRows() * template.getColumns();
+        for(int change = 0; change < count; change++){
+            int index = buffer.getInt();
+            byte tile = buffer.get();
+            if(index < 0 || index >= tiles || tile < TileGrid.FREE || tile > TileGrid.BOT){
+                throw new IllegalArgumentException("invalid tile " + tile + " at index " + index);
+            }
+            set(index, tile);
+        }
+    }
+
+    /**
+     * Returns the shared grid under the overlay. Walls are never changed
+     * by a game, so it can be used to find paths.
+     * @return the shared grid
+     */
+    public TileGrid getTemplate(){
+        return template;
+    }
+
+    /**
+     * Returns the number of tiles which differ from the shared grid.
+     * @return number of changed tiles
+     */
+    public int getChangedCount(){
+        return size;
+    }
+
+    /**
+     * Returns the index of a tile in the row-major order of the grid.
+     * @param row row coordinate
+     * @param column column coordinate
+     * @return index of the tile
+     */
+    public int index(int row, int column){
+        return template.index(row, column);
+    }
+
+    /**
+     * Returns the number of rows the grid has.
+     * @return number of rows
+     */
+    public int getRows(){
+        return template.getRows();
+    }
+
+    /**
+     * Returns the number of columns the grid has.
+     * @return number of columns
+     */
+    public int getColumns(){
+        return template.getColumns();
+    }
+}
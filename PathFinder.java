@@ -0,0 +1,360 @@
+import java.util.Arrays; // growing the arrays
+
+/**
+ * Class which finds shortest paths between two tiles of a TileGrid, using
+ * the A* algorithm with a binary heap. Optionally, it uses jump point search,
+ * which skips over the tiles of open rooms instead of adding each of them to
+ * the heap. Its arrays are reused from one search to the next.
+ */
+public class PathFinder {
+
+    private static final int NONE = -1;
+
+    private boolean jumpPoints; // whether jump point search is used
+    private TileGrid grid;
+    private int columns;
+    private int goal;
+    private int[] cost = new int[0]; // number of moves from the start to each tile
+    private int[] parent = new int[0]; // tile from which each tile was reached
+    private int[] reached = new int[0]; // number of the search in which each tile was last reached
+    private int[] closed = new int[0]; // number of the search in which each tile was last expanded
+    private int search = 0; // number of the current search
+    /*
+     * the heap holds (estimated length << 32 | MAX_VALUE - moves so far) keys, so
+     * the shortest estimates come first and, among them, the tiles closest to the
+     * goal. heapTiles holds the tile index of each key. A tile is added again when
+     * a shorter way to it is found, and its older entries are skipped once it is closed.
+     */
+    private long[] heap = new long[64];
+    private int[] heapTiles = new int[64];
+    private int heapSize;
+    private int[] path = new int[64]; // tiles of the last path found, from the start to the goal
+    private int pathLength;
+    private int expanded; // number of tiles expanded by the last search
+
+    /**
+     * Constructor which chooses between plain A* and jump point search.
+     * @param jumpPoints true to use jump point search
+     */
+    public PathFinder(boolean jumpPoints){
+        this.jumpPoints = jumpPoints;
+    }
+
+    /**
+     * Finds a shortest path between two tiles, moving only through tiles which are not walls.
+     * @param grid TileGrid object on which the path is searched
+     * @param start index of the first tile of the path
+     * @param goal index of the last tile of the path
+     * @return true if a path was found, false if the goal cannot be reached
+     */
+    public boolean findPath(TileGrid grid, int start, int goal){
+        prepare(grid);
+        this.goal = goal;
+        pathLength = 0;
+        expanded = 0;
+        if(grid.get(start) == TileGrid.WALL || grid.get(goal) == TileGrid.WALL){
+            return false;
+        }
+        reach(start, 0, NONE);
+        while(heapSize > 0){
+            int index = pop();
+            if(closed[index] == search){
+                // an older entry of a tile which has been expanded already
+                continue;
+            }
+            closed[index] = search;
+            expanded++;
+            if(index == goal){
+                buildPath(start);
+                return true;
+            }
+            if(jumpPoints){
+                expandJumpPoints(index);
+            }
+            else{
+                expandNeighbours(index);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Prepares the arrays for a new search on a grid.
+     * @param grid TileGrid object on which the path is searched
+     */
+    private void prepare(TileGrid grid){
+        this.grid = grid;
+        this.columns = grid.getColumns();
+        int size = grid.getRows() * columns;
+        if(cost.length < size){
+            cost = new int[size];
+            parent = new int[size];
+            reached = new int[size];
+            closed = new int[size];
+            search = 0;
+        }
+        search++;
+        if(search == Integer.MAX_VALUE){
+            // the numbers of the searches ran out, so every tile is marked as not reached again
+            Arrays.fill(reached, 0);
+            Arrays.fill(closed, 0);
+            search = 1;
+        }
+        heapSize = 0;
+    }
+
+    /**
+     * Adds the 4 neighbours of a tile which are not walls.
+     * @param index index of the tile being expanded
+     */
+    private void expandNeighbours(int index){
+        int row = index / columns;
+        int column = index % columns;
+        int nextCost = cost[index] + 1;
+        if(isFree(row - 1, column)){
+            reach(index - columns, nextCost, index);
+        }
+        if(isFree(row, column + 1)){
+            reach(index + 1, nextCost, index);
+        }
+        if(isFree(row + 1, column)){
+            reach(index + columns, nextCost, index);
+        }
+        if(isFree(row, column - 1)){
+            reach(index - 1, nextCost, index);
+        }
+    }
+
+    /**
+     * Adds the jump points which can be reached in a straight line from a tile.
+     * A tile reached horizontally continues in the same direction or turns
+     * vertically, and a tile reached vertically continues in the same direction
+     * or turns horizontally. The start tile goes in all 4 directions.
+     * @param index index of the jump point being expanded
+     */
+    private void expandJumpPoints(int index){
+        int row = index / columns;
+        int column = index % columns;
+        int rowDirection = 0, columnDirection = 0; // direction from which the tile was reached
+        if(parent[index] != NONE){
+            rowDirection = Integer.signum(row - parent[index] / columns);
+            columnDirection = Integer.signum(column - parent[index] % columns);
+        }
+        if(rowDirection == 0){
+            // the start, or reached horizontally
+            jumpVertical(index, row, column, -1);
+            jumpVertical(index, row, column, 1);
+            if(columnDirection != -1){
+                jumpHorizontalFrom(index, row, column, 1);
+            }
+            if(columnDirection != 1){
+                jumpHorizontalFrom(index, row, column, -1);
+            }
+        }
+        else{
+            jumpVertical(index, row, column, rowDirection);
+            jumpHorizontalFrom(index, row, column, 1);
+            jumpHorizontalFrom(index, row, column, -1);
+        }
+    }
+
+    /**
+     * Adds the jump point found by moving horizontally from a tile, if any.
+     * @param index index of the tile being expanded
+     * @param row row coordinate of the tile
+     * @param column column coordinate of the tile
+     * @param direction 1 for east, -1 for west
+     */
+    private void jumpHorizontalFrom(int index, int row, int column, int direction){
+        int jumpColumn = jumpHorizontal(row, column, direction);
+        if(jumpColumn != NONE){
+            reach(index + jumpColumn - column, cost[index] + Math.abs(jumpColumn - column), index);
+        }
+    }
+
+    /**
+     * Moves horizontally from a tile until reaching the goal, a wall, or a tile next
+     * to which a vertical passage opens up.
+     * @param row row coordinate of the starting tile
+     * @param column column coordinate of the starting tile
+     * @param direction 1 for east, -1 for west
+     * @return column of the jump point, or NONE if a wall was reached first
+     */
+    private int jumpHorizontal(int row, int column, int direction){
+        while(true){
+            column += direction;
+            if(!isFree(row, column)){
+                return NONE;
+            }
+            if(row * columns + column == goal){
+                return column;
+            }
+            if((isFree(row - 1, column) && !isFree(row - 1, column - direction)) ||
+                    (isFree(row + 1, column) && !isFree(row + 1, column - direction))){
+                return column;
+            }
+        }
+    }
+
+    /**
+     * Moves vertically from a tile until reaching the goal, a wall, or a tile from
+     * which a horizontal move leads to a jump point, and adds that tile.
+     * @param index index of the tile being expanded
+     * @param row row coordinate of the tile
+     * @param column column coordinate of the tile
+     * @param direction 1 for south, -1 for north
+     */
+    private void jumpVertical(int index, int row, int column, int direction){
+        int jumpRow = row;
+        while(true){
+            jumpRow += direction;
+            if(!isFree(jumpRow, column)){
+                return;
+            }
+            int jumpIndex = jumpRow * columns + column;
+            if(jumpIndex == goal ||
+                    (isFree(jumpRow, column - 1) && !isFree(jumpRow - direction, column - 1)) ||
+                    (isFree(jumpRow, column + 1) && !isFree(jumpRow - direction, column + 1)) ||
+                    jumpHorizontal(jumpRow, column, 1) != NONE ||
+                    jumpHorizontal(jumpRow, column, -1) != NONE){
+                reach(jumpIndex, cost[index] + Math.abs(jumpRow - row), index);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Checks if a tile is inside the grid and is not a wall.
+     * @param row row coordinate
+     * @param column column coordinate
+     * @return true if the tile can be walked on, false otherwise
+     */
+    private boolean isFree(int row, int column){
+        return grid.isInside(row, column) && grid.get(row * columns + column) != TileGrid.WALL;
+    }
+
+    /**
+     * Records a way of reaching a tile, if it is shorter than the ones known so far,
+     * and adds the tile to the heap.
+     * @param index index of the tile
+     * @param tileCost number of moves from the start to the tile
+     * @param from index of the tile from which it is reached
+     */
+    private void reach(int index, int tileCost, int from){
+        if(reached[index] == search && cost[index] <= tileCost){
+            return;
+        }
+        reached[index] = search;
+        cost[index] = tileCost;
+        parent[index] = from;
+        // Manhattan distance to the goal never overestimates the remaining moves
+        int estimate = tileCost + Math.abs(index / columns - goal / columns) +
+                Math.abs(index % columns - goal % columns);
+        push(((long) estimate << 32) | (Integer.MAX_VALUE - tileCost), index);
+    }
+
+    /**
+     * Adds a tile to the heap.
+     * @param key key of the tile
+     * @param index index of the tile
+     */
+    private void push(long key, int index){
+        if(heapSize == heap.length){
+            heap = Arrays.copyOf(heap, heapSize * 2);
+            heapTiles = Arrays.copyOf(heapTiles, heapSize * 2);
+        }
+        int position = heapSize++;
+        // move the key up until its parent is smaller
+        while(position > 0){
+            int parentPosition = (position - 1) / 2;
+            if(heap[parentPosition] <= key){
+                break;
+            }
+            heap[position] = heap[parentPosition];
+            heapTiles[position] = heapTiles[parentPosition];
+            position = parentPosition;
+        }
+        heap[position] = key;
+        heapTiles[position] = index;
+    }
+
+    /**
+     * Removes the tile with the smallest key from the heap.
+     * @return index of the tile
+     */
+    private int pop(){
+        int smallest = heapTiles[0];
+        long last = heap[--heapSize];
+        int lastTile = heapTiles[heapSize];
+        int position = 0;
+        // move the last key down from the top until its children are larger
+        while(true){
+            int child = 2 * position + 1;
+            if(child >= heapSize){
+                break;
+            }
+            if(child + 1 < heapSize && heap[child + 1] < heap[child]){
+                child++;
+            }
+            if(heap[child] >= last){
+                break;
+            }
+            heap[position] = heap[child];
+            heapTiles[position] = heapTiles[child];
+            position = child;
+        }
+        heap[position] = last;
+        heapTiles[position] = lastTile;
+        return smallest;
+    }
+
+    /**
+     * Builds the path from the start to the goal, by going back through the parents.
+     * Jump points are joined by straight lines, so the tiles between them are filled in.
+     * @param start index of the first tile of the path
+     */
+    private void buildPath(int start){
+        pathLength = cost[goal] + 1;
+        if(path.length < pathLength){
+            path = new int[Math.max(pathLength, path.length * 2)];
+        }
+        int position = pathLength - 1;
+        int index = goal;
+        path[position] = index;
+        while(index != start){
+            int from = parent[index];
+            // one step towards the parent, along the straight line between them
+            int step = Math.abs(from - index) < columns ? Integer.signum(from - index)
+                                                         : Integer.signum(from - index) * columns;
+            while(index != from){
+                index += step;
+                path[--position] = index;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of tiles of the last path found, including both ends.
+     * @return length of the path, or 0 if no path was found
+     */
+    public int getPathLength(){
+        return pathLength;
+    }
+
+    /**
+     * Returns a tile of the last path found.
+     * @param position position on the path, 0 being the start
+     * @return index of the tile
+     */
+    public int getPathTile(int position){
+        return path[position];
+    }
+
+    /**
+     * Returns the number of tiles expanded by the last search.
+     * @return number of expanded tiles
+     */
+    public int getExpanded(){
+        return expanded;
+    }
+}
@@ -1,3 +1,5 @@
+import java.nio.ByteBuffer; // snapshots of the player
+
 /**
  * class which represents the Player with its basic methods
  */
@@ -6,7 +8,7 @@ public class Player {
     private int currentGold;
     private int row;
     private int column;
-    private char currentTile;
+    private byte currentTile;
 
     /**
      * Constructor which also sets the
@@ -16,6 +18,37 @@ public class Player {
         currentGold = 0;
     }
 
+    /**
+     * Constructor which copies another player,
+     * for a copy of its game.
+     * @param other the player being copied
+     */
+    public Player (Player other){
+        currentGold = other.currentGold;
+        row = other.row;
+        column = other.column;
+        currentTile = other.currentTile;
+    }
+
+    /**
+     * Writes the player's position, tile and gold to a snapshot.
+     * @param buffer the buffer written to
+     */
+    public void writeState(ByteBuffer buffer){
+        buffer.putInt(row).putInt(column).put(currentTile).putInt(currentGold);
+    }
+
+    /**
+     * Reads the player's position, tile and gold from a snapshot written by writeState().
+     * @param buffer the buffer read from
+     */
+    public void readState(ByteBuffer buffer){
+        row = buffer.getInt();
+        column = buffer.getInt();
+        currentTile = buffer.get();
+        currentGold = buffer.getInt();
+    }
+
     /**
      * Increases the gold value
      * the player has by 1.
@@ -45,10 +78,10 @@ public class Player {
     /**
      * Sets the tile on which the player
      * is currently sitting.
-     * @param tile character from map on which player
+     * @param tile tile code from map on which player
                     is currently sitting
      */
-    public void setCurrentTile(char tile){
+    public void setCurrentTile(byte tile){
         currentTile = tile;
     }
 
@@ -62,10 +95,10 @@ public class Player {
 
     /**
      * Returns the tile on which the player is.
-     * @return character from map on which player
+     * @return tile code from map on which player
                 is currently sitting
      */
-    public char getCurrentTile(){
+    public byte getCurrentTile(){
         return currentTile;
     }
 
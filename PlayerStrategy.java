@@ -0,0 +1,14 @@
+/**
+ * Interface which represents a scripted way of playing the game,
+ * used instead of a human typing the commands.
+ */
+public interface PlayerStrategy {
+
+    /**
+     * Returns the next command the player wants to give.
+     * @param player Player object controlled by this strategy
+     * @param goldToWin amount of gold needed in order to win on the current map
+     * @return the command, encoded by the Command class
+     */
+    int nextCommand(Player player, int goldToWin);
+}
@@ -0,0 +1,36 @@
+import java.util.Random; // used to get random decisions
+
+/**
+ * Class which represents a simple scripted player. It picks up gold
+ * whenever it stands on it, quits when it stands on an exit with enough
+ * gold, and otherwise moves in a random direction.
+ */
+public class RandomPlayerStrategy implements PlayerStrategy {
+
+    private static final int[] MOVES = {Command.MOVE_NORTH, Command.MOVE_EAST, Command.MOVE_SOUTH, Command.MOVE_WEST};
+    private Random random;
+
+    /**
+     * Constructor which initializes the random number generator.
+     */
+    public RandomPlayerStrategy(){
+        random = new Random();
+    }
+
+    /**
+     * Decides the next command based on the tile the player is sitting on.
+     * @param player Player object controlled by this strategy
+     * @param goldToWin amount of gold needed in order to win on the current map
+     * @return the next command
+     */
+    @Override
+    public int nextCommand(Player player, int goldToWin){
+        if(player.getCurrentTile() == TileGrid.GOLD){
+            return Command.PICKUP;
+        }
+        if(player.getCurrentTile() == TileGrid.EXIT && player.getCurrentGold() >= goldToWin){
+            return Command.QUIT;
+        }
+        return MOVES[random.nextInt(MOVES.length)];
+    }
+}
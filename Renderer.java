@@ -0,0 +1,126 @@
+import java.util.Arrays; // growing the buffer
+
+/**
+ * Class which collects a game's messages in a reusable buffer of bytes, and hands
+ * them to an OutputSink in one go when flushed, instead of writing every tile and
+ * line separately. Nothing is collected when the sink is OutputSink.NULL, so
+ * headless games spend no time on their messages.
+ * The messages are ASCII, so every character takes a single byte.
+ */
+public class Renderer {
+
+    private final OutputSink sink;
+    private final boolean discarding; // whether the messages are thrown away
+    private byte[] buffer = new byte[256];
+    private int size = 0; // number of bytes collected since the last flush
+
+    /**
+     * Constructor which sets the sink the messages are sent to.
+     * @param sink the OutputSink object
+     */
+    public Renderer(OutputSink sink){
+        this.sink = sink;
+        this.discarding = sink == OutputSink.NULL;
+    }
+
+    /**
+     * Returns whether the messages are thrown away, in which case they do not need to be rendered.
+     * @return true if nothing is collected
+     */
+    public boolean isDiscarding(){
+        return discarding;
+    }
+
+    /**
+     * Adds a character.
+     * @param character the character
+     * @return this Renderer object
+     */
+    public Renderer print(char character){
+        if(!discarding){
+            ensureCapacity(1);
+            buffer[size++] = (byte) character;
+        }
+        return this;
+    }
+
+    /**
+     * Adds a text.
+     * @param text the text
+     * @return this Renderer object
+     */
+    public Renderer print(String text){
+        if(!discarding){
+            int length = text.length();
+            ensureCapacity(length);
+            for(int index = 0; index < length; index++){
+                buffer[size++] = (byte) text.charAt(index);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Adds a number, in decimal.
+     * @param number the number
+     * @return this Renderer object
+     */
+    public Renderer print(int number){
+        if(!discarding){
+            long value = number; // a long, so that the smallest int can be negated
+            ensureCapacity(11);
+            if(value < 0){
+                buffer[size++] = '-';
+                value = -value;
+            }
+            // the digits are written from the last one, after counting them
+            int digits = 1;
+            for(long rest = value / 10; rest > 0; rest /= 10){
+                digits++;
+            }
+            for(int index = size + digits - 1; index >= size; index--){
+                buffer[index] = (byte) ('0' + value % 10);
+                value /= 10;
+            }
+            size += digits;
+        }
+        return this;
+    }
+
+    /**
+     * Ends the current line.
+     * @return this Renderer object
+     */
+    public Renderer println(){
+        return print('\n');
+    }
+
+    /**
+     * Adds a text, and ends the line.
+     * @param text the text
+     * @return this Renderer object
+     */
+    public Renderer println(String text){
+        return print(text).print('\n');
+    }
+
+    /**
+     * Hands everything collected since the last flush to the sink.
+     */
+    public void flush(){
+        if(size > 0){
+            sink.write(buffer, size);
+            size = 0;
+        }
+    }
+
+    /**
+     * Makes sure the buffer can hold a number of additional bytes.
+     * @param length number of bytes about to be added
+     */
+    private void ensureCapacity(int length){
+        if(size + length > buffer.length){
+            buffer = Arrays.copyOf(buffer, Math.max(size + length, buffer.length * 2));
+        }
+    }
+}
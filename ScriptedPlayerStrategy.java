@@ -0,0 +1,37 @@
+/**
+ * Class which represents a player who gives a fixed list of commands,
+ * starting over from the first one once the list has been used up.
+ */
+public class ScriptedPlayerStrategy implements PlayerStrategy {
+
+    private int[] commands; // the commands, encoded by the Command class
+    private int index = 0; // index of the next command to be given
+
+    /**
+     * Constructor which sets the list of commands to be given.
+     * @param commands the commands, in the same text format a human would type them
+     */
+    public ScriptedPlayerStrategy(String... commands){
+        if(commands.length == 0){
+            throw new IllegalArgumentException("A scripted player needs at least one command");
+        }
+        // the commands are decoded once, instead of every time they are given
+        this.commands = new int[commands.length];
+        for(int position = 0; position < commands.length; position++){
+            this.commands[position] = Command.decode(commands[position]);
+        }
+    }
+
+    /**
+     * Returns the next command from the list.
+     * @param player Player object controlled by this strategy
+     * @param goldToWin amount of gold needed in order to win on the current map
+     * @return the next command
+     */
+    @Override
+    public int nextCommand(Player player, int goldToWin){
+        int command = commands[index];
+        index = (index + 1) % commands.length;
+        return command;
+    }
+}
@@ -0,0 +1,169 @@
+import java.io.File; // file manipulation
+import java.util.ArrayList; // using array lists
+import java.util.concurrent.ForkJoinPool; // running the games on all the cores
+import java.util.concurrent.RecursiveTask; // splitting the games between the cores
+
+/**
+ * Class which plays many headless games back to back, on every core,
+ * and reports how the bot performs on each map.
+ */
+public class Simulation {
+
+    private static final int DEFAULT_GAMES = 10000;
+    private static final int DEFAULT_TURN_LIMIT = 10000;
+    // a task plays its games itself once there are at most this many of them
+    private static final int GAMES_PER_TASK = 256;
+    // directory which contains all the maps
+    private static final File directory = new File(Simulation.class.getProtectionDomain().
+                                            getCodeSource().getLocation().getPath() + "/Maps");
+
+    /**
+     * Class which holds the results of a number of games.
+     */
+    static class Result {
+
+        private long games, wins, losses, timeouts, turns;
+
+        /**
+         * Adds the result of a finished game.
+         * @param game GameLogic object whose game has been played
+         */
+        private void add(GameLogic game){
+            games++;
+            turns += game.getTurnsPlayed();
+            if(game.hasWon()){
+                wins++;
+            }
+            else if(game.hasEnded()){
+                losses++;
+            }
+            else{
+                timeouts++;
+            }
+        }
+
+        /**
+         * Adds the results of another group of games to these ones.
+         * @param other the other results
+         * @return this object
+         */
+        private Result merge(Result other){
+            games += other.games;
+            wins += other.wins;
+            losses += other.losses;
+            timeouts += other.timeouts;
+            turns += other.turns;
+            return this;
+        }
+    }
+
+    /**
+     * Class which plays a range of games, splitting it in halves
+     * until the ranges are small enough.
+     */
+    private static class GamesTask extends RecursiveTask<Result> {
+
+        private static final long serialVersionUID = 1L;
+
+        private Map map;
+        private int games;
+        private int turnLimit;
+        private BotMode botMode;
+        private int botCount;
+
+        /**
+         * Constructor which sets the map and the number of games to be played.
+         * @param map Map object on which the games are played
+         * @param games number of games
+         * @param turnLimit maximum number of player turns per game
+         * @param botMode the bots' way of finding paths
+         * @param botCount number of bots per game
+         */
+        private GamesTask(Map map, int games, int turnLimit, BotMode botMode, int botCount){
+            this.map = map;
+            this.games = games;
+            this.turnLimit = turnLimit;
+            this.botMode = botMode;
+            this.botCount = botCount;
+        }
+
+        /**
+         * Plays the games, or splits them into two tasks.
+         * @return the results of the games
+         */
+        @Override
+        protected Result compute(){
+            if(games <= GAMES_PER_TASK){
+                Result result = new Result();
+                for(int index = 0; index < games; index++){
+                    GameLogic game = new GameLogic(map, new RandomPlayerStrategy());
+                    game.setTurnLimit(turnLimit);
+                    game.setBotMode(botMode);
+                    game.setBotCount(botCount);
+                    game.play();
+                    result.add(game);
+                }
+                return result;
+            }
+            GamesTask firstHalf = new GamesTask(map, games / 2, turnLimit, botMode, botCount);
+            GamesTask secondHalf = new GamesTask(map, games - games / 2, turnLimit, botMode, botCount);
+            firstHalf.fork();
+            return secondHalf.compute().merge(firstHalf.join());
+        }
+    }
+
+    /**
+     * Plays a number of games on a map, using every core.
+     * @param map Map object on which the games are played
+     * @param games number of games
+     * @param turnLimit maximum number of player turns per game
+     * @param botMode the bots' way of finding paths
+     * @param botCount number of bots per game
+     * @return the results of the games
+     */
+    static Result run(Map map, int games, int turnLimit, BotMode botMode, int botCount){
+        return ForkJoinPool.commonPool().invoke(new GamesTask(map, games, turnLimit, botMode, botCount));
+    }
+
+    /**
+     * Main function. Usage: Simulation [games per map] [turn limit] [map files...]
+     * If no map files are given, every map in the Maps folder is simulated.
+     * The bots' mode is chosen with the "bot" system property, e.g. -Dbot=global,
+     * and their number with the "bots" system property, e.g. -Dbots=10
+     */
+    public static void main(String[] args){
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_GAMES;
+        int turnLimit = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_TURN_LIMIT;
+        BotMode botMode = BotMode.valueOf(System.getProperty("bot", "local").toUpperCase());
+        int botCount = Integer.getInteger("bots", 1);
+        ArrayList<String> mapFiles = new ArrayList<>();
+        for(int index = 2; index < args.length; index++){
+            mapFiles.add(args[index]);
+        }
+        if(mapFiles.isEmpty()){
+            File[] files = directory.listFiles();
+            if(files != null){
+                for(File file: files){
+                    // be sure to get just the .txt files
+                    if(file.getName().endsWith(".txt")){
+                        mapFiles.add(file.getName());
+                    }
+                }
+            }
+        }
+        System.out.println("Running " + games + " games per map on " +
+                ForkJoinPool.commonPool().getParallelism() + " threads, " + botCount + " bot(s) in mode " + botMode);
+        for(String mapFile: mapFiles){
+            Map map = new Map(mapFile);
+            long start = System.nanoTime();
+            Result result = run(map, games, turnLimit, botMode, botCount);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("%s: %.0f games/sec, win %.4f, lose %.4f, timeout %.4f, average turns %.1f%n",
+                    mapFile, result.games / seconds,
+                    (double) result.wins / result.games,
+                    (double) result.losses / result.games,
+                    (double) result.timeouts / result.games,
+                    (double) result.turns / result.games);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+import java.io.IOException; // stream exception handling
+import java.io.OutputStream; // stream the messages are written to
+
+/**
+ * Class which represents a sink writing to an output stream, such as the console.
+ * Every block is written and flushed with a single call.
+ */
+public class StreamSink implements OutputSink {
+
+    private final OutputStream stream;
+
+    /**
+     * Constructor which sets the stream the bytes are written to.
+     * @param stream the output stream
+     */
+    public StreamSink(OutputStream stream){
+        this.stream = stream;
+    }
+
+    /**
+     * Writes a block of bytes to the stream and flushes it.
+     * @param bytes array holding the bytes
+     * @param length number of bytes to write, from the start of the array
+     */
+    @Override
+    public void write(byte[] bytes, int length){
+        try{
+            stream.write(bytes, 0, length);
+            stream.flush();
+        }
+        catch (IOException e){
+            // like System.out, a stream which cannot be written does not stop the game
+        }
+    }
+}
@@ -0,0 +1,203 @@
+/**
+ * Class which represents a rectangular grid of tiles, such as the DoD map.
+ * The tiles are stored row after row in a single array of bytes,
+ * each tile being encoded as one of the small constants below.
+ */
+public class TileGrid {
+
+    // tile codes
+    public static final byte FREE = 0;
+    public static final byte WALL = 1;
+    public static final byte GOLD = 2;
+    public static final byte EXIT = 3;
+    public static final byte PLAYER = 4;
+    public static final byte BOT = 5;
+    public static final byte UNKNOWN = 6; // a tile hidden from view, never found on a map
+    // the character which represents each tile code, indexed by the code
+    private static final char[] CHARACTERS = {'.', '#', 'G', 'E', 'P', 'B', '?'};
+
+    private final byte[] tiles;
+    private final int rows, columns;
+    private boolean frozen = false; // whether the tiles can no longer be changed
+
+    /**
+     * Constructor which creates a grid of free tiles.
+     * @param rows number of rows
+     * @param columns number of columns
+     */
+    public TileGrid(int rows, int columns) {
+        if(rows < 0 || columns < 0 || (long) rows * columns > Integer.MAX_VALUE){
+            throw new IllegalArgumentException("Invalid grid size " + rows + "x" + columns);
+        }
+        this.rows = rows;
+        this.columns = columns;
+        this.tiles = new byte[rows * columns];
+    }
+
+    /**
+     * Constructor for subclasses which keep their tiles in some other way,
+     * and override every method which reads them.
+     * @param rows number of rows
+     * @param columns number of columns
+     * @param tiles the tiles, row after row, or null
+     */
+    protected TileGrid(int rows, int columns, byte[] tiles) {
+        if(rows < 0 || columns < 0 || (long) rows * columns > Integer.MAX_VALUE){
+            throw new IllegalArgumentException("Invalid grid size " + rows + "x" + columns);
+        }
+        this.rows = rows;
+        this.columns = columns;
+        this.tiles = tiles;
+    }
+
+    /**
+     * Returns the tile code for a map character.
+     * @param character character from a map file
+     * @return the tile code
+     * @throws IllegalArgumentException if the character is not a valid tile
+     */
+    public static byte fromCharacter(char character) {
+        switch (character) {
+            case '.': return FREE;
+            case '#': return WALL;
+            case 'G': return GOLD;
+            case 'E': return EXIT;
+            case 'P': return PLAYER;
+            case 'B': return BOT;
+            default: throw new IllegalArgumentException("Invalid tile '" + character + "'");
+        }
+    }
+
+    /**
+     * Returns the map character for a tile code.
+     * @param tile tile code
+     * @return the character which represents the tile
+     */
+    public static char toCharacter(byte tile) {
+        return CHARACTERS[tile];
+    }
+
+    /**
+     * Checks if a tile cannot be moved through, which is the case for walls,
+     * and for hidden tiles since nothing is known about them.
+     * @param tile tile code
+     * @return true if the tile blocks movement
+     */
+    public static boolean isBlocking(byte tile) {
+        return tile == WALL || tile == UNKNOWN;
+    }
+
+    /**
+     * Returns the index of a tile in the row-major order of the grid.
+     * @param row row coordinate
+     * @param column column coordinate
+     * @return index of the tile
+     */
+    public int index(int row, int column) {
+        return row * columns + column;
+    }
+
+    /**
+     * Checks if the coordinates are inside the grid.
+     * @param row row coordinate
+     * @param column column coordinate
+     * @return true if the tile exists, false otherwise
+     */
+    public boolean isInside(int row, int column) {
+        return row >= 0 && column >= 0 && row < rows && column < columns;
+    }
+
+    /**
+     * Returns the tile at the specified coordinates.
+     * @param row row coordinate
+     * @param column column coordinate
+     * @return tile code
+     */
+    public byte get(int row, int column) {
+        return tiles[row * columns + column];
+    }
+
+    /**
+     * Returns the tile at the specified index.
+     * @param index index of the tile, as returned by index()
+     * @return tile code
+     */
+    public byte get(int index) {
+        return tiles[index];
+    }
+
+    /**
+     * Changes the tile at the specified coordinates.
+     * @param row row coordinate
+     * @param column column coordinate
+     * @param tile new tile code
+     */
+    public void set(int row, int column, byte tile) {
+        checkNotFrozen();
+        tiles[row * columns + column] = tile;
+    }
+
+    /**
+     * Changes the tile at the specified index.
+     * @param index index of the tile, as returned by index()
+     * @param tile new tile code
+     */
+    public void set(int index, byte tile) {
+        checkNotFrozen();
+        tiles[index] = tile;
+    }
+
+    /**
+     * Changes a whole row of tiles at once.
+     * @param row row coordinate
+     * @param rowTiles tile codes of the row, one for each column
+     */
+    public void setRow(int row, byte[] rowTiles) {
+        checkNotFrozen();
+        System.arraycopy(rowTiles, 0, tiles, row * columns, columns);
+    }
+
+    /**
+     * Makes the grid read-only, so it can be shared safely, for
+     * example by all the games played on the same map.
+     */
+    public void freeze() {
+        frozen = true;
+    }
+
+    /**
+     * Makes sure the grid can still be changed.
+     * @throws IllegalStateException if the grid is read-only
+     */
+    private void checkNotFrozen() {
+        if(frozen){
+            throw new IllegalStateException("The grid is read-only");
+        }
+    }
+
+    /**
+     * Returns a copy of the grid, which can be modified independently.
+     * @return the copy
+     */
+    public TileGrid copy() {
+        TileGrid copy = new TileGrid(rows, columns);
+        System.arraycopy(tiles, 0, copy.tiles, 0, tiles.length);
+        return copy;
+    }
+
+    /**
+     * Returns the number of rows the grid has.
+     * @return number of rows
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * Returns the number of columns the grid has.
+     * @return number of columns
+     */
+    public int getColumns() {
+        return columns;
+    }
+}
@@ -0,0 +1,149 @@
+/**
+ * Class which holds the indices of the free tiles, exits and gold of a map,
+ * each kind in its own compact array. It is built once when the map is loaded,
+ * so a random tile of a given kind can be picked in constant time, however
+ * large the map is and however few of its tiles are not walls.
+ * For a ChunkedGrid, only the number of tiles of each kind before every chunk is
+ * held, and a tile is found by searching for its chunk and then scanning that chunk,
+ * so the tiles are in the order of their chunks rather than of the map's rows.
+ */
+public class TileIndex {
+
+    private final int[] free, exits, gold;
+    private final ChunkedGrid chunked; // the grid, if the tiles are indexed by chunk
+    private final int[] freeBefore, exitsBefore, goldBefore; // number of tiles before each chunk, and in total
+
+    /**
+     * Constructor which collects the tiles of a grid by kind.
+     * @param grid TileGrid object whose tiles are collected
+     */
+    public TileIndex(TileGrid grid){
+        int size = grid.getRows() * grid.getColumns();
+        // counting first, so the arrays are allocated with their exact sizes
+        int freeCount = 0, exitCount = 0, goldCount = 0;
+        for(int index = 0; index < size; index++){
+            switch (grid.get(index)){
+                case TileGrid.FREE: freeCount++; break;
+                case TileGrid.EXIT: exitCount++; break;
+                case TileGrid.GOLD: goldCount++; break;
+                default: break;
+            }
+        }
+        free = new int[freeCount];
+        exits = new int[exitCount];
+        gold = new int[goldCount];
+        freeCount = 0;
+        exitCount = 0;
+        goldCount = 0;
+        for(int index = 0; index < size; index++){
+            switch (grid.get(index)){
+                case TileGrid.FREE: free[freeCount++] = index; break;
+                case TileGrid.EXIT: exits[exitCount++] = index; break;
+                case TileGrid.GOLD: gold[goldCount++] = index; break;
+                default: break;
+            }
+        }
+        chunked = null;
+        freeBefore = null;
+        exitsBefore = null;
+        goldBefore = null;
+    }
+
+    /**
+     * Constructor which indexes the tiles of a chunked grid by chunk,
+     * from the numbers of tiles it counted while it was loaded.
+     * @param grid ChunkedGrid object whose tiles are indexed
+     */
+    public TileIndex(ChunkedGrid grid){
+        chunked = grid;
+        int chunkCount = grid.getChunkCount();
+        freeBefore = new int[chunkCount + 1];
+        exitsBefore = new int[chunkCount + 1];
+        goldBefore = new int[chunkCount + 1];
+        for(int chunk = 0; chunk < chunkCount; chunk++){
+            freeBefore[chunk + 1] = freeBefore[chunk] + grid.countTiles(chunk, TileGrid.FREE);
+            exitsBefore[chunk + 1] = exitsBefore[chunk] + grid.countTiles(chunk, TileGrid.EXIT);
+            goldBefore[chunk + 1] = goldBefore[chunk] + grid.countTiles(chunk, TileGrid.GOLD);
+        }
+        free = null;
+        exits = null;
+        gold = null;
+    }
+
+    /**
+     * Finds a tile of some kind in a chunked grid.
+     * @param before number of tiles of that kind before each chunk
+     * @param tile kind of tile
+     * @param order number of the tile
+     * @return index of the tile
+     */
+    private int find(int[] before, byte tile, int order){
+        if(order < 0 || order >= before[before.length - 1]){
+            throw new IndexOutOfBoundsException("No tile number " + order);
+        }
+        // the last chunk with at most order tiles before it, which holds the tile
+        int low = 0, high = before.length - 2;
+        while(low < high){
+            int middle = (low + high + 1) >>> 1;
+            if(before[middle] <= order){
+                low = middle;
+            }
+            else{
+                high = middle - 1;
+            }
+        }
+        return chunked.findTile(low, tile, order - before[low]);
+    }
+
+    /**
+     * Returns the number of free tiles.
+     * @return number of free tiles
+     */
+    public int getFreeCount(){
+        return chunked == null ? free.length : freeBefore[freeBefore.length - 1];
+    }
+
+    /**
+     * Returns one of the free tiles, in the order in which they appear on the map
+     * (or in its chunks, for a ChunkedGrid).
+     * @param order number of the tile, from 0 to getFreeCount() - 1
+     * @return index of the tile
+     */
+    public int getFree(int order){
+        return chunked == null ? free[order] : find(freeBefore, TileGrid.FREE, order);
+    }
+
+    /**
+     * Returns the number of exits.
+     * @return number of exits
+     */
+    public int getExitCount(){
+        return chunked == null ? exits.length : exitsBefore[exitsBefore.length - 1];
+    }
+
+    /**
+     * Returns one of the exits, in the order in which they appear on the map.
+     * @param order number of the exit, from 0 to getExitCount() - 1
+     * @return index of the exit
+     */
+    public int getExit(int order){
+        return chunked == null ? exits[order] : find(exitsBefore, TileGrid.EXIT, order);
+    }
+
+    /**
+     * Returns the number of gold tiles.
+     * @return number of gold tiles
+     */
+    public int getGoldCount(){
+        return chunked == null ? gold.length : goldBefore[goldBefore.length - 1];
+    }
+
+    /**
+     * Returns one of the gold tiles, in the order in which they appear on the map.
+     * @param order number of the gold tile, from 0 to getGoldCount() - 1
+     * @return index of the gold tile
+     */
+    public int getGold(int order){
+        return chunked == null ? gold[order] : find(goldBefore, TileGrid.GOLD, order);
+    }
+}
@@ -0,0 +1,13 @@
+/**
+ * Interface which represents something told about every command given in a game,
+ * in the order in which they are given, such as a GameJournal.
+ */
+public interface TurnRecorder {
+
+    /**
+     * Records a command.
+     * @param actor 0 for the player, or the number of the bot, starting from 1
+     * @param command the command, encoded by the Command class
+     */
+    void record(int actor, int command);
+}
@@ -0,0 +1,253 @@
+import java.nio.ByteBuffer; // snapshots of the view
+
+/**
+ * Class which represents what a player or a bot sees around itself with the "look"
+ * command: a square of tiles with the viewer in the centre, radius tiles in every
+ * direction. Tiles outside the map are seen as walls. With line of sight, walls block
+ * the view, and the tiles behind them are hidden (TileGrid.UNKNOWN); the visible tiles
+ * are found with recursive shadowcasting, which only visits tiles that can be seen.
+ * The grid of tiles is allocated once and refilled on every look, so looking
+ * allocates nothing.
+ */
+public class View {
+
+    // how the coordinates of each of the 8 octants are turned into offsets from the centre
+    private static final int[][] OCTANTS = {
+            {1, 0, 0, 1}, {0, 1, 1, 0}, {0, -1, 1, 0}, {-1, 0, 0, 1},
+            {-1, 0, 0, -1}, {0, -1, -1, 0}, {0, 1, -1, 0}, {1, 0, 0, -1}
+    };
+
+    private final int radius;
+    private final boolean lineOfSight;
+    private final TileGrid tiles; // the tiles seen in the last look
+    private final int[] seen; // indices of the tiles revealed in the last look, with line of sight
+    private int seenCount = 0;
+    private OverlayGrid map; // the map being looked at, during a look
+    private int centreRow, centreColumn; // the viewer's position on the map, during a look
+    private int playerRow = -1, playerColumn = -1; // where the player was seen, or -1
+
+    /**
+     * Constructor which allocates the grid of tiles.
+     * @param radius number of tiles seen in each direction, at least 1
+     * @param lineOfSight true if walls block the view
+     */
+    public View(int radius, boolean lineOfSight){
+        if(radius < 1){
+            throw new IllegalArgumentException("The view radius must be at least 1");
+        }
+        this.radius = radius;
+        this.lineOfSight = lineOfSight;
+        tiles = new TileGrid(2 * radius + 1, 2 * radius + 1);
+        seen = lineOfSight ? new int[tiles.getRows() * tiles.getColumns()] : null;
+        if(lineOfSight){
+            for(int index = 0; index < seen.length; index++){
+                tiles.set(index, TileGrid.UNKNOWN);
+            }
+        }
+    }
+
+    /**
+     * Constructor which copies another view, including the tiles it last saw.
+     * @param other the view being copied
+     */
+    public View(View other){
+        this.radius = other.radius;
+        this.lineOfSight = other.lineOfSight;
+        this.tiles = other.tiles.copy();
+        this.seen = other.seen == null ? null : other.seen.clone();
+        this.seenCount = other.seenCount;
+        this.playerRow = other.playerRow;
+        this.playerColumn = other.playerColumn;
+    }
+
+    /**
+     * Looks at the map from a tile, replacing what was seen before.
+     * @param map the map being looked at
+     * @param row row coordinate of the viewer
+     * @param column column coordinate of the viewer
+     */
+    public void look(OverlayGrid map, int row, int column){
+        this.map = map;
+        centreRow = row;
+        centreColumn = column;
+        playerRow = -1;
+        playerColumn = -1;
+        if(!lineOfSight){
+            for(int viewRow = 0; viewRow < tiles.getRows(); viewRow++){
+                for(int viewColumn = 0; viewColumn < tiles.getColumns(); viewColumn++){
+                    reveal(viewRow, viewColumn);
+                }
+            }
+        }
+        else{
+            // only the tiles seen last time have to be hidden again
+            for(int index = 0; index < seenCount; index++){
+                tiles.set(seen[index], TileGrid.UNKNOWN);
+            }
+            seenCount = 0;
+            reveal(radius, radius);
+            for(int[] octant: OCTANTS){
+                castLight(1, 1.0, 0.0, octant[0], octant[1], octant[2], octant[3]);
+            }
+        }
+        this.map = null;
+    }
+
+    /**
+     * Reveals the tiles of one octant which can be seen through the slopes between start
+     * and end, row after row going away from the centre. Each wall casts a shadow which
+     * narrows the slopes of the following rows, and the light passing on the far side
+     * of a wall is followed with a recursive call.
+     * @param distance number of the first row, counted from the centre
+     * @param start slope at which the light starts
+     * @param end slope at which the light ends
+     * @param xx how the column in the octant changes the column offset
+     * @param xy how the row in the octant changes the column offset
+     * @param yx how the column in the octant changes the row offset
+     * @param yy how the row in the octant changes the row offset
+     */
+    private void castLight(int distance, double start, double end, int xx, int xy, int yx, int yy){
+        if(start < end){
+            return;
+        }
+        double newStart = 0.0;
+        for(int octantRow = distance; octantRow <= radius; octantRow++){
+            boolean blocked = false;
+            for(int octantColumn = -octantRow; octantColumn <= 0; octantColumn++){
+                double leftSlope = (octantColumn - 0.5) / (-octantRow + 0.5);
+                double rightSlope = (octantColumn + 0.5) / (-octantRow - 0.5);
+                if(start < rightSlope){
+                    continue;
+                }
+                if(end > leftSlope){
+                    break;
+                }
+                int viewColumn = radius + octantColumn * xx - octantRow * xy;
+                int viewRow = radius + octantColumn * yx - octantRow * yy;
+                boolean wall = reveal(viewRow, viewColumn) == TileGrid.WALL;
+                if(blocked){
+                    if(wall){
+                        newStart = rightSlope;
+                    }
+                    else{
+                        blocked = false;
+                        start = newStart;
+                    }
+                }
+                else if(wall && octantRow < radius){
+                    // the light going past this wall is followed separately
+                    blocked = true;
+                    castLight(octantRow + 1, start, leftSlope, xx, xy, yx, yy);
+                    newStart = rightSlope;
+                }
+            }
+            if(blocked){
+                return;
+            }
+        }
+    }
+
+    /**
+     * Copies a tile from the map into the view, and notes it if it holds the player.
+     * @param viewRow row coordinate in the view
+     * @param viewColumn column coordinate in the view
+     * @return the tile
+     */
+    private byte reveal(int viewRow, int viewColumn){
+        int row = centreRow - radius + viewRow;
+        int column = centreColumn - radius + viewColumn;
+        byte tile = row < 0 || column < 0 || row >= map.getRows() || column >= map.getColumns() ?
+                TileGrid.WALL : map.get(row, column);
+        int index = tiles.index(viewRow, viewColumn);
+        if(lineOfSight){
+            // tiles on the diagonals belong to two octants, but are only noted once
+            if(tiles.get(index) != TileGrid.UNKNOWN){
+                return tile;
+            }
+            seen[seenCount++] = index;
+        }
+        tiles.set(index, tile);
+        if(tile == TileGrid.PLAYER){
+            playerRow = viewRow;
+            playerColumn = viewColumn;
+        }
+        return tile;
+    }
+
+    /**
+     * Writes the tiles seen in the last look to a snapshot, a byte for each of them
+     * row after row, followed by where the player was seen (two ints).
+     * @param buffer the buffer written to
+     */
+    public void writeState(ByteBuffer buffer){
+        int size = tiles.getRows() * tiles.getColumns();
+        for(int index = 0; index < size; index++){
+            buffer.put(tiles.get(index));
+        }
+        buffer.putInt(playerRow).putInt(playerColumn);
+    }
+
+    /**
+     * Reads the tiles seen in the last look from a snapshot written by writeState(), by a
+     * view of the same radius. With line of sight, the tiles seen are noted again, so that
+     * the next look hides them.
+     * @param buffer the buffer read from
+     * @throws IllegalArgumentException if a tile has no tile code
+     */
+    public void readState(ByteBuffer buffer){
+        int size = tiles.getRows() * tiles.getColumns();
+        seenCount = 0;
+        for(int index = 0; index < size; index++){
+            byte tile = buffer.get();
+            if(tile < TileGrid.FREE || tile > TileGrid.UNKNOWN){
+                throw new IllegalArgumentException("invalid tile " + tile + " in a view");
+            }
+            tiles.set(index, tile);
+            if(lineOfSight && tile != TileGrid.UNKNOWN){
+                seen[seenCount++] = index;
+            }
+        }
+        playerRow = buffer.getInt();
+        playerColumn = buffer.getInt();
+    }
+
+    /**
+     * Returns the tiles seen in the last look. The grid is refilled by the next look.
+     * @return the grid of tiles, the viewer being in its centre
+     */
+    public TileGrid getTiles(){
+        return tiles;
+    }
+
+    /**
+     * Returns the number of tiles seen in each direction.
+     * @return the radius
+     */
+    public int getRadius(){
+        return radius;
+    }
+
+    /**
+     * Checks if the player was seen in the last look.
+     * @return true if the player was seen
+     */
+    public boolean hasSeenPlayer(){
+        return playerRow >= 0;
+    }
+
+    /**
+     * Returns the row on which the player was seen in the last look.
+     * @return row coordinate in the view
+     */
+    public int getPlayerRow(){
+        return playerRow;
+    }
+
+    /**
+     * Returns the column on which the player was seen in the last look.
+     * @return column coordinate in the view
+     */
+    public int getPlayerColumn(){
+        return playerColumn;
+    }
+}
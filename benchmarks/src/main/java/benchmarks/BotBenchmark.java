@@ -0,0 +1,70 @@
+package benchmarks;
+
+import java.util.ArrayList; // the game's bots
+import java.util.concurrent.TimeUnit; // unit of the results
+
+import org.openjdk.jmh.annotations.Benchmark; // marking the benchmarks
+import org.openjdk.jmh.annotations.BenchmarkMode; // measuring the average time
+import org.openjdk.jmh.annotations.Level; // a new game for every iteration
+import org.openjdk.jmh.annotations.Mode; // measuring the average time
+import org.openjdk.jmh.annotations.OutputTimeUnit; // unit of the results
+import org.openjdk.jmh.annotations.Param; // benchmarking every map and bot mode
+import org.openjdk.jmh.annotations.Scope; // state shared by the benchmark's thread
+import org.openjdk.jmh.annotations.Setup; // starting the game
+import org.openjdk.jmh.annotations.State; // state shared by the benchmark's thread
+
+/**
+ * Benchmark of the bot's decisions. The game is played for a few turns first,
+ * so that the bot has looked around and planned with what it saw.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class BotBenchmark {
+
+    private static final long SEED = 1;
+    private static final int WARM_UP_TURNS = 8;
+
+    @Param({"easyMap.txt", "hardMap.txt"})
+    public String mapFile;
+
+    @Param({"LOCAL", "GLOBAL", "JUMP_POINT", "FLOW_FIELD", "D_STAR_LITE"})
+    public String botMode;
+
+    private Object map;
+    private Object bot;
+
+    /**
+     * Loads the map.
+     */
+    @Setup
+    public void loadMap() throws Throwable {
+        map = Dod.loadMap(mapFile);
+    }
+
+    /**
+     * Starts a new game with a fixed seed, in which the player only looks,
+     * and lets the bot play a few turns.
+     */
+    @Setup(Level.Iteration)
+    public void startGame() throws Throwable {
+        Object game = (Object) Dod.NEW_GAME.invokeExact(map, (Object) Dod.NULL_SINK.invokeExact());
+        Dod.GAME_SET_SEED.invokeExact(game, SEED);
+        Dod.GAME_SET_BOT_MODE.invokeExact(game, Dod.botMode(botMode));
+        Dod.GAME_START.invokeExact(game);
+        for(int turn = 0; turn < WARM_UP_TURNS; turn++){
+            Dod.GAME_PLAY_TURN.invokeExact(game, Dod.LOOK);
+        }
+        bot = ((ArrayList<?>) (Object) Dod.GAME_BOTS.invokeExact(game)).get(0);
+    }
+
+    /**
+     * Makes two decisions, as the bot alternates between looking and moving.
+     * The decisions are not carried out, so the bot keeps planning from the same tile.
+     * @return the sum of the decisions
+     */
+    @Benchmark
+    public int makeDecision() throws Throwable {
+        return (int) Dod.BOT_MAKE_DECISION.invokeExact(bot) + (int) Dod.BOT_MAKE_DECISION.invokeExact(bot);
+    }
+}
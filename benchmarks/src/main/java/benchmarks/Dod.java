@@ -0,0 +1,250 @@
+package benchmarks;
+
+import java.io.OutputStream; // discarding what the game prints
+import java.io.PrintStream; // muting the standard output
+import java.lang.invoke.MethodHandle; // calling into the game
+import java.lang.invoke.MethodHandles; // looking up the game's methods
+import java.lang.invoke.MethodType; // signatures of the game's methods
+import java.nio.file.Path; // location of the map files
+import java.nio.file.Paths; // converting the maps' URLs
+
+/**
+ * Class which gives the benchmarks access to the game. The game's classes are in the
+ * default package, which cannot be imported, and JMH cannot generate benchmarks for
+ * classes in the default package, so the benchmarks call the game through method handles.
+ * The handles are static and final, so the JIT compiles them into direct calls and they
+ * do not add to the measurements. The game's objects are passed around as Objects.
+ */
+final class Dod {
+
+    // the game's classes
+    static final Class<?> MAP = type("Map");
+    static final Class<?> TILE_GRID = type("TileGrid");
+    static final Class<?> OVERLAY_GRID = type("OverlayGrid");
+    static final Class<?> GAME_LOGIC = type("GameLogic");
+    static final Class<?> PLAYER = type("Player");
+    static final Class<?> BOT_MODE = type("BotMode");
+
+    // maps
+    static final MethodHandle NEW_MAP = constructor(MAP, String.class);
+    static final MethodHandle MAP_TEMPLATE = method(MAP, "getTemplate", TILE_GRID);
+    static final MethodHandle NEW_MAP_LOADER = constructor(type("MapLoader"), Path.class);
+    static final MethodHandle MAP_LOADER_NAME = method(type("MapLoader"), "getName", String.class);
+    static final MethodHandle MAP_LOADER_GOLD = method(type("MapLoader"), "getGoldToWin", int.class);
+    static final MethodHandle MAP_LOADER_VIEW_RADIUS = method(type("MapLoader"), "getViewRadius", int.class);
+    static final MethodHandle MAP_LOADER_LINE_OF_SIGHT = method(type("MapLoader"), "hasLineOfSight", boolean.class);
+    static final MethodHandle MAP_LOADER_GRID = method(type("MapLoader"), "getGrid", TILE_GRID);
+    static final MethodHandle NEW_BINARY_MAP = constructor(type("BinaryMap"), Path.class);
+    static final MethodHandle WRITE_BINARY_MAP = staticMethod(type("BinaryMap"), "write", void.class,
+            Path.class, String.class, int.class, int.class, boolean.class, TILE_GRID);
+    static final MethodHandle NEW_OVERLAY_GRID = constructor(OVERLAY_GRID, TILE_GRID);
+
+    // views and paths
+    static final MethodHandle NEW_VIEW = constructor(type("View"), int.class, boolean.class);
+    static final MethodHandle VIEW_LOOK = method(type("View"), "look", void.class, OVERLAY_GRID, int.class, int.class);
+    static final MethodHandle VIEW_TILES = method(type("View"), "getTiles", TILE_GRID);
+    static final MethodHandle NEW_LEE = constructor(type("Lee"), TILE_GRID);
+    static final MethodHandle LEE_UPDATE = method(type("Lee"), "update", void.class, TILE_GRID);
+
+    // games
+    static final MethodHandle NEW_GAME = constructor(GAME_LOGIC, MAP, type("OutputSink"));
+    static final MethodHandle NEW_SCRIPTED_GAME = constructor(GAME_LOGIC, MAP, type("PlayerStrategy"));
+    static final MethodHandle NEW_RANDOM_PLAYER = constructor(type("RandomPlayerStrategy"));
+    static final MethodHandle NULL_SINK = staticGetter(type("OutputSink"), "NULL");
+    static final MethodHandle NEW_STREAM_SINK = constructor(type("StreamSink"), OutputStream.class);
+    static final MethodHandle RENDERER_FLUSH = method(type("Renderer"), "flush", void.class);
+    static final MethodHandle GAME_SET_SEED = method(GAME_LOGIC, "setSeed", void.class, long.class);
+    static final MethodHandle GAME_SET_TURN_LIMIT = method(GAME_LOGIC, "setTurnLimit", void.class, int.class);
+    static final MethodHandle GAME_SET_BOT_MODE = method(GAME_LOGIC, "setBotMode", void.class, BOT_MODE);
+    static final MethodHandle GAME_START = method(GAME_LOGIC, "start", void.class);
+    static final MethodHandle GAME_PLAY = method(GAME_LOGIC, "play", void.class);
+    static final MethodHandle GAME_PLAY_TURN = method(GAME_LOGIC, "playTurn", void.class, int.class);
+    static final MethodHandle GAME_TURNS_PLAYED = method(GAME_LOGIC, "getTurnsPlayed", int.class);
+    static final MethodHandle GAME_LOOK = method(GAME_LOGIC, "LOOK", void.class, PLAYER);
+    static final MethodHandle GAME_MOVE = method(GAME_LOGIC, "MOVE", void.class, int.class, PLAYER);
+    static final MethodHandle GAME_PLAYER = getter(GAME_LOGIC, "player", PLAYER);
+    static final MethodHandle GAME_OUT = getter(GAME_LOGIC, "out", type("Renderer"));
+    static final MethodHandle GAME_BOTS = getter(GAME_LOGIC, "bots", java.util.ArrayList.class);
+    static final MethodHandle BOT_MAKE_DECISION = method(type("BotPlayer"), "makeDecision", int.class);
+
+    // commands
+    static final int LOOK = constant("LOOK");
+    static final int EAST = constant("EAST");
+    static final int WEST = constant("WEST");
+
+    /**
+     * Private constructor, as the class only has static members.
+     */
+    private Dod(){
+    }
+
+    /**
+     * Returns the path of a map file in the Maps folder next to the game's classes.
+     * @param fileName name of the map file
+     * @return the path
+     */
+    static Path mapPath(String fileName){
+        try{
+            return Paths.get(MAP.getResource("/Maps/" + fileName).toURI());
+        }
+        catch (Exception e){
+            throw new IllegalStateException("Map " + fileName + " not found, is game/target/classes on the class path?", e);
+        }
+    }
+
+    /**
+     * Loads a map from the Maps folder, without printing its name.
+     * @param fileName name of the map file
+     * @return the Map object
+     */
+    static Object loadMap(String fileName) throws Throwable {
+        PrintStream console = System.out;
+        System.setOut(muted());
+        try{
+            return (Object) NEW_MAP.invokeExact((Object) fileName);
+        }
+        finally{
+            System.setOut(console);
+        }
+    }
+
+    /**
+     * Returns a print stream which discards everything printed to it.
+     * @return the print stream
+     */
+    static PrintStream muted(){
+        return new PrintStream(OutputStream.nullOutputStream());
+    }
+
+    /**
+     * Returns a value of the BotMode enum.
+     * @param name name of the value
+     * @return the value
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    static Object botMode(String name){
+        return Enum.valueOf((Class) BOT_MODE, name);
+    }
+
+    /**
+     * Loads one of the game's classes.
+     * @param name name of the class
+     * @return the class
+     */
+    private static Class<?> type(String name){
+        try{
+            return Class.forName(name);
+        }
+        catch (ClassNotFoundException e){
+            throw new IllegalStateException("The game's classes are not on the class path", e);
+        }
+    }
+
+    /**
+     * Returns a lookup with full access to one of the game's classes, private members included.
+     * @param type the class
+     * @return the lookup
+     */
+    private static MethodHandles.Lookup lookup(Class<?> type) throws IllegalAccessException {
+        return MethodHandles.privateLookupIn(type, MethodHandles.lookup());
+    }
+
+    /**
+     * Returns the handle of a constructor, taking and returning Objects instead of the game's classes.
+     * @param type the class
+     * @param parameters types of the parameters
+     * @return the handle
+     */
+    private static MethodHandle constructor(Class<?> type, Class<?>... parameters){
+        try{
+            MethodHandle handle = lookup(type).findConstructor(type, MethodType.methodType(void.class, parameters));
+            return handle.asType(handle.type().erase());
+        }
+        catch (ReflectiveOperationException e){
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Returns the handle of an instance method, taking and returning Objects instead of the game's classes.
+     * @param type the class
+     * @param name name of the method
+     * @param returnType type of the result
+     * @param parameters types of the parameters
+     * @return the handle, whose first parameter is the object
+     */
+    private static MethodHandle method(Class<?> type, String name, Class<?> returnType, Class<?>... parameters){
+        try{
+            MethodHandle handle = lookup(type).findVirtual(type, name, MethodType.methodType(returnType, parameters));
+            return handle.asType(handle.type().erase());
+        }
+        catch (ReflectiveOperationException e){
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Returns the handle of a static method, taking and returning Objects instead of the game's classes.
+     * @param type the class
+     * @param name name of the method
+     * @param returnType type of the result
+     * @param parameters types of the parameters
+     * @return the handle
+     */
+    private static MethodHandle staticMethod(Class<?> type, String name, Class<?> returnType, Class<?>... parameters){
+        try{
+            MethodHandle handle = lookup(type).findStatic(type, name, MethodType.methodType(returnType, parameters));
+            return handle.asType(handle.type().erase());
+        }
+        catch (ReflectiveOperationException e){
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Returns the handle which reads an instance field, returning an Object.
+     * @param type the class
+     * @param name name of the field
+     * @param fieldType type of the field
+     * @return the handle
+     */
+    private static MethodHandle getter(Class<?> type, String name, Class<?> fieldType){
+        try{
+            MethodHandle handle = lookup(type).findGetter(type, name, fieldType);
+            return handle.asType(handle.type().erase());
+        }
+        catch (ReflectiveOperationException e){
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Returns the handle which reads a static field, returning an Object.
+     * @param type the class
+     * @param name name of the field
+     * @return the handle
+     */
+    private static MethodHandle staticGetter(Class<?> type, String name){
+        try{
+            MethodHandle handle = lookup(type).findStaticGetter(type, name, type);
+            return handle.asType(handle.type().erase());
+        }
+        catch (ReflectiveOperationException e){
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Reads one of the Command class' constants.
+     * @param name name of the constant
+     * @return its value
+     */
+    private static int constant(String name){
+        try{
+            return type("Command").getField(name).getInt(null);
+        }
+        catch (ReflectiveOperationException e){
+            throw new IllegalStateException(e);
+        }
+    }
+}
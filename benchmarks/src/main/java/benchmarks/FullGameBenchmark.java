@@ -0,0 +1,52 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit; // unit of the results
+
+import org.openjdk.jmh.annotations.Benchmark; // marking the benchmarks
+import org.openjdk.jmh.annotations.BenchmarkMode; // measuring the throughput
+import org.openjdk.jmh.annotations.Mode; // measuring the throughput
+import org.openjdk.jmh.annotations.OutputTimeUnit; // unit of the results
+import org.openjdk.jmh.annotations.Param; // benchmarking every map
+import org.openjdk.jmh.annotations.Scope; // state shared by the benchmark's thread
+import org.openjdk.jmh.annotations.Setup; // loading the map
+import org.openjdk.jmh.annotations.State; // state shared by the benchmark's thread
+
+/**
+ * Benchmark of whole headless games, played by a random player against the bot,
+ * as the Simulation class plays them. Every game has its own seed, and the
+ * sequence of seeds is the same in every run.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class FullGameBenchmark {
+
+    private static final int TURN_LIMIT = 10000;
+
+    @Param({"easyMap.txt", "mediumMap.txt", "hardMap.txt", "myOwnMap.txt"})
+    public String mapFile;
+
+    private Object map;
+    private long seed;
+
+    /**
+     * Loads the map.
+     */
+    @Setup
+    public void loadMap() throws Throwable {
+        map = Dod.loadMap(mapFile);
+    }
+
+    /**
+     * Plays a game until it is won, lost, or reaches the turn limit.
+     * @return the number of turns played
+     */
+    @Benchmark
+    public int play() throws Throwable {
+        Object game = (Object) Dod.NEW_SCRIPTED_GAME.invokeExact(map, (Object) Dod.NEW_RANDOM_PLAYER.invokeExact());
+        Dod.GAME_SET_SEED.invokeExact(game, seed++);
+        Dod.GAME_SET_TURN_LIMIT.invokeExact(game, TURN_LIMIT);
+        Dod.GAME_PLAY.invokeExact(game);
+        return (int) Dod.GAME_TURNS_PLAYED.invokeExact(game);
+    }
+}
@@ -0,0 +1,60 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit; // unit of the results
+
+import org.openjdk.jmh.annotations.Benchmark; // marking the benchmarks
+import org.openjdk.jmh.annotations.BenchmarkMode; // measuring the average time
+import org.openjdk.jmh.annotations.Mode; // measuring the average time
+import org.openjdk.jmh.annotations.OutputTimeUnit; // unit of the results
+import org.openjdk.jmh.annotations.Param; // benchmarking several view sizes
+import org.openjdk.jmh.annotations.Scope; // state shared by the benchmark's thread
+import org.openjdk.jmh.annotations.Setup; // preparing the view
+import org.openjdk.jmh.annotations.State; // state shared by the benchmark's thread
+
+/**
+ * Benchmarks of Lee's algorithm over a bot's view, both creating a new Lee
+ * object and updating an existing one, as the bot does after its first look.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class LeeBenchmark {
+
+    @Param({"2", "8"})
+    public int radius;
+
+    private Object tiles;
+    private Object lee;
+
+    /**
+     * Looks around the middle of the hard map, which has the most walls.
+     */
+    @Setup
+    public void setUp() throws Throwable {
+        Object template = (Object) Dod.MAP_TEMPLATE.invokeExact(Dod.loadMap("hardMap.txt"));
+        Object map = (Object) Dod.NEW_OVERLAY_GRID.invokeExact(template);
+        Object view = (Object) Dod.NEW_VIEW.invokeExact(radius, false);
+        Dod.VIEW_LOOK.invokeExact(view, map, 4, 9);
+        tiles = (Object) Dod.VIEW_TILES.invokeExact(view);
+        lee = (Object) Dod.NEW_LEE.invokeExact(tiles);
+    }
+
+    /**
+     * Creates a new Lee object, computing the distances from the centre.
+     * @return the Lee object
+     */
+    @Benchmark
+    public Object create() throws Throwable {
+        return (Object) Dod.NEW_LEE.invokeExact(tiles);
+    }
+
+    /**
+     * Recomputes the distances with an existing Lee object.
+     * @return the Lee object
+     */
+    @Benchmark
+    public Object update() throws Throwable {
+        Dod.LEE_UPDATE.invokeExact(lee, tiles);
+        return lee;
+    }
+}
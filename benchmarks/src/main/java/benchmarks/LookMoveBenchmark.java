@@ -0,0 +1,76 @@
+package benchmarks;
+
+import java.io.OutputStream; // discarding the rendered messages
+import java.util.concurrent.TimeUnit; // unit of the results
+
+import org.openjdk.jmh.annotations.Benchmark; // marking the benchmarks
+import org.openjdk.jmh.annotations.BenchmarkMode; // measuring the average time
+import org.openjdk.jmh.annotations.Level; // a new game for every iteration
+import org.openjdk.jmh.annotations.Mode; // measuring the average time
+import org.openjdk.jmh.annotations.OutputTimeUnit; // unit of the results
+import org.openjdk.jmh.annotations.Param; // benchmarking every map
+import org.openjdk.jmh.annotations.Scope; // state shared by the benchmark's thread
+import org.openjdk.jmh.annotations.Setup; // starting the game
+import org.openjdk.jmh.annotations.State; // state shared by the benchmark's thread
+
+/**
+ * Benchmarks of the player's "look" and "move" commands, on a started game.
+ * The messages are rendered and flushed after every command, as at the end of
+ * a turn, to a stream which discards them. The player walks back and forth between two tiles.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class LookMoveBenchmark {
+
+    private static final long SEED = 1;
+
+    @Param({"easyMap.txt", "mediumMap.txt", "hardMap.txt", "myOwnMap.txt"})
+    public String mapFile;
+
+    private Object map;
+    private Object game;
+    private Object player;
+    private Object out;
+    private int direction;
+
+    /**
+     * Loads the map.
+     */
+    @Setup
+    public void loadMap() throws Throwable {
+        map = Dod.loadMap(mapFile);
+    }
+
+    /**
+     * Starts a new game with a fixed seed, so that every run benchmarks the same positions.
+     */
+    @Setup(Level.Iteration)
+    public void startGame() throws Throwable {
+        game = (Object) Dod.NEW_GAME.invokeExact(map, (Object) Dod.NEW_STREAM_SINK.invokeExact((Object) OutputStream.nullOutputStream()));
+        Dod.GAME_SET_SEED.invokeExact(game, SEED);
+        Dod.GAME_START.invokeExact(game);
+        player = (Object) Dod.GAME_PLAYER.invokeExact(game);
+        out = (Object) Dod.GAME_OUT.invokeExact(game);
+        direction = Dod.EAST;
+    }
+
+    /**
+     * Renders what the player sees.
+     */
+    @Benchmark
+    public void look() throws Throwable {
+        Dod.GAME_LOOK.invokeExact(game, player);
+        Dod.RENDERER_FLUSH.invokeExact(out);
+    }
+
+    /**
+     * Moves the player one tile, alternating between east and west.
+     */
+    @Benchmark
+    public void move() throws Throwable {
+        Dod.GAME_MOVE.invokeExact(game, direction, player);
+        Dod.RENDERER_FLUSH.invokeExact(out);
+        direction = direction == Dod.EAST ? Dod.WEST : Dod.EAST;
+    }
+}
@@ -0,0 +1,85 @@
+package benchmarks;
+
+import java.io.PrintStream; // restoring the standard output
+import java.nio.file.Files; // the temporary binary map
+import java.nio.file.Path; // location of the map files
+import java.util.concurrent.TimeUnit; // unit of the results
+
+import org.openjdk.jmh.annotations.Benchmark; // marking the benchmarks
+import org.openjdk.jmh.annotations.BenchmarkMode; // measuring the average time
+import org.openjdk.jmh.annotations.Mode; // measuring the average time
+import org.openjdk.jmh.annotations.OutputTimeUnit; // unit of the results
+import org.openjdk.jmh.annotations.Param; // benchmarking every map
+import org.openjdk.jmh.annotations.Scope; // state shared by the benchmark's thread
+import org.openjdk.jmh.annotations.Setup; // preparing the files
+import org.openjdk.jmh.annotations.State; // state shared by the benchmark's thread
+import org.openjdk.jmh.annotations.TearDown; // cleaning up the files
+
+/**
+ * Benchmarks of loading a map: parsing the text format, reading the binary
+ * format, and building a Map object the way the game does.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MapLoadBenchmark {
+
+    @Param({"easyMap.txt", "mediumMap.txt", "hardMap.txt", "myOwnMap.txt"})
+    public String mapFile;
+
+    private Path textFile;
+    private Path binaryFile;
+    private PrintStream console;
+
+    /**
+     * Writes the map in the binary format to a temporary file, and mutes the
+     * standard output, to which the Map class prints the map's name.
+     */
+    @Setup
+    public void setUp() throws Throwable {
+        textFile = Dod.mapPath(mapFile);
+        Object loader = (Object) Dod.NEW_MAP_LOADER.invokeExact((Object) textFile);
+        binaryFile = Files.createTempFile("benchmark", ".dodm");
+        Dod.WRITE_BINARY_MAP.invokeExact((Object) binaryFile, (Object) Dod.MAP_LOADER_NAME.invokeExact(loader),
+                (int) Dod.MAP_LOADER_GOLD.invokeExact(loader), (int) Dod.MAP_LOADER_VIEW_RADIUS.invokeExact(loader),
+                (boolean) Dod.MAP_LOADER_LINE_OF_SIGHT.invokeExact(loader), (Object) Dod.MAP_LOADER_GRID.invokeExact(loader));
+        console = System.out;
+        System.setOut(Dod.muted());
+    }
+
+    /**
+     * Deletes the temporary file and restores the standard output.
+     */
+    @TearDown
+    public void tearDown() throws Exception {
+        System.setOut(console);
+        Files.deleteIfExists(binaryFile);
+    }
+
+    /**
+     * Parses the map's text file.
+     * @return the parsed grid
+     */
+    @Benchmark
+    public Object parseText() throws Throwable {
+        return (Object) Dod.MAP_LOADER_GRID.invokeExact((Object) Dod.NEW_MAP_LOADER.invokeExact((Object) textFile));
+    }
+
+    /**
+     * Reads the map's binary file.
+     * @return the BinaryMap object
+     */
+    @Benchmark
+    public Object readBinary() throws Throwable {
+        return (Object) Dod.NEW_BINARY_MAP.invokeExact((Object) binaryFile);
+    }
+
+    /**
+     * Builds a Map object, as the game does when it starts.
+     * @return the Map object
+     */
+    @Benchmark
+    public Object newMap() throws Throwable {
+        return (Object) Dod.NEW_MAP.invokeExact((Object) mapFile);
+    }
+}
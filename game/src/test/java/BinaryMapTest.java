@@ -0,0 +1,107 @@
+import static org.junit.jupiter.api.Assertions.assertEquals; // checking the maps read back
+import static org.junit.jupiter.api.Assertions.assertFalse; // checking the files converted
+import static org.junit.jupiter.api.Assertions.assertThrows; // checking the invalid files
+import static org.junit.jupiter.api.Assertions.assertTrue; // checking the files converted
+
+import java.io.IOException; // file manipulation exception handling
+import java.nio.ByteBuffer; // corrupting the header
+import java.nio.file.Files; // writing the maps
+import java.nio.file.Path; // the folder of the maps
+import java.text.ParseException; // malformed map files
+import java.util.Arrays; // truncating the files
+
+import org.junit.jupiter.api.Test; // the test methods
+import org.junit.jupiter.api.io.TempDir; // the folder of the maps
+
+/**
+ * Class which checks that a map written in the binary format is read back the same, that
+ * truncated or corrupt files are rejected with a ParseException rather than anything else,
+ * and that converting a batch of maps goes on past the ones which cannot be converted.
+ */
+class BinaryMapTest {
+
+    @TempDir
+    Path directory;
+
+    /**
+     * Checks that the header and every tile are read back as they were written.
+     * @throws IOException if the file cannot be written or read
+     * @throws ParseException if the file written is invalid
+     */
+    @Test
+    void readsBackWhatWasWritten() throws IOException, ParseException {
+        TileGrid grid = new TileGrid(7, 9);
+        byte[] kinds = {TileGrid.FREE, TileGrid.WALL, TileGrid.GOLD, TileGrid.EXIT};
+        for(int index = 0; index < 63; index++){
+            grid.set(index, kinds[index * 7 % 4]);
+        }
+        Path file = directory.resolve("map" + BinaryMap.EXTENSION);
+        BinaryMap.write(file, "Dungeon é", 3, 4, true, grid);
+        BinaryMap map = new BinaryMap(file);
+        assertEquals("Dungeon é", map.getName());
+        assertEquals(3, map.getGoldToWin());
+        assertEquals(4, map.getViewRadius());
+        assertTrue(map.hasLineOfSight());
+        assertEquals(7, map.getGrid().getRows());
+        assertEquals(9, map.getGrid().getColumns());
+        int[] counts = new int[4];
+        for(int index = 0; index < 63; index++){
+            assertEquals(grid.get(index), map.getGrid().get(index), "tile " + index);
+            counts[grid.get(index)]++;
+        }
+        assertEquals(counts[TileGrid.GOLD], map.getGoldCount());
+        assertEquals(counts[TileGrid.EXIT], map.getExitCount());
+        assertEquals(counts[TileGrid.FREE], map.getFreeCount());
+    }
+
+    /**
+     * Checks that every truncation of a valid file is rejected.
+     * @throws IOException if the files cannot be written
+     */
+    @Test
+    void rejectsTruncatedFiles() throws IOException {
+        Path file = directory.resolve("map" + BinaryMap.EXTENSION);
+        BinaryMap.write(file, "Dungeon", 1, 2, false, new TileGrid(5, 5));
+        byte[] bytes = Files.readAllBytes(file);
+        for(int length = 0; length < bytes.length; length++){
+            Files.write(file, Arrays.copyOf(bytes, length));
+            assertThrows(ParseException.class, () -> new BinaryMap(file), "truncated to " + length + " bytes");
+        }
+    }
+
+    /**
+     * Checks that corrupt headers are rejected before anything is allocated from them.
+     * @throws IOException if the files cannot be written
+     */
+    @Test
+    void rejectsCorruptHeaders() throws IOException {
+        Path file = directory.resolve("map" + BinaryMap.EXTENSION);
+        BinaryMap.write(file, "Dungeon", 1, 2, false, new TileGrid(5, 5));
+        byte[] bytes = Files.readAllBytes(file);
+        int nameLength = 8, rows = 12 + 7 + 9, columns = rows + 4;
+        int[][] corruptions = {{0, 0x12345678}, {4, 99}, {nameLength, -1}, {nameLength, Integer.MAX_VALUE},
+                {rows, 0}, {rows, -5}, {rows, Integer.MAX_VALUE}, {columns, Integer.MAX_VALUE}, {rows, 6}};
+        for(int[] corruption: corruptions){
+            byte[] corrupt = bytes.clone();
+            ByteBuffer.wrap(corrupt).putInt(corruption[0], corruption[1]);
+            Files.write(file, corrupt);
+            assertThrows(ParseException.class, () -> new BinaryMap(file),
+                    corruption[1] + " at byte " + corruption[0]);
+        }
+    }
+
+    /**
+     * Checks that the conversion of a batch of maps reports the maps it cannot convert and goes on.
+     * @throws IOException if the maps cannot be written
+     */
+    @Test
+    void convertsTheRestOfABatch() throws IOException {
+        Path withPlayer = directory.resolve("withPlayer.txt");
+        Files.writeString(withPlayer, "name Player\nwin 1\n#####\n#GPE#\n#####\n");
+        Path valid = directory.resolve("valid.txt");
+        Files.writeString(valid, "name Valid\nwin 1\n#####\n#G.E#\n#####\n");
+        BinaryMap.main(new String[]{withPlayer.toString(), valid.toString()});
+        assertFalse(Files.exists(directory.resolve("withPlayer" + BinaryMap.EXTENSION)));
+        assertTrue(Files.exists(directory.resolve("valid" + BinaryMap.EXTENSION)));
+    }
+}
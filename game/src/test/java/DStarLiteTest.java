@@ -0,0 +1,184 @@
+import static org.junit.jupiter.api.Assertions.assertEquals; // comparing the path lengths
+import static org.junit.jupiter.api.Assertions.assertTrue; // checking the steps taken
+
+import java.util.ArrayDeque; // the queue of the reference search
+import java.util.Arrays; // clearing the reference distances
+import java.util.Random; // the maps and moves, the same on every run
+
+import org.junit.jupiter.api.Test; // the test methods
+
+/**
+ * Class which checks the paths kept by DStarLite against a plain breadth first search,
+ * run from scratch after every change, on random maps on which the bot follows its path,
+ * the target wanders and sometimes jumps away, and tiles become walls or stop being ones.
+ */
+class DStarLiteTest {
+
+    private static final int UNREACHED = Integer.MAX_VALUE; // the path length of DStarLite when there is no path
+
+    /**
+     * Checks the length of the path and the bot's next step after every change,
+     * on maps with few and with many walls.
+     */
+    @Test
+    void keepsShortestPaths(){
+        for(int seed = 0; seed < 40; seed++){
+            Random random = new Random(seed);
+            int rows = 8 + random.nextInt(25), columns = 8 + random.nextInt(25);
+            checkGame(random, rows, columns, seed % 2 == 0 ? 0.15 : 0.35, 300);
+        }
+    }
+
+    /**
+     * Plays a random chase on a random map, checking DStarLite against the reference after every update.
+     * @param random the random numbers of the map and the moves
+     * @param rows number of rows of the map
+     * @param columns number of columns of the map
+     * @param walls share of the tiles which are walls
+     * @param steps number of updates
+     */
+    private static void checkGame(Random random, int rows, int columns, double walls, int steps){
+        TileGrid grid = new TileGrid(rows, columns);
+        for(int index = 0; index < rows * columns; index++){
+            grid.set(index, random.nextDouble() < walls ? TileGrid.WALL : TileGrid.FREE);
+        }
+        int bot = openTile(grid, random), target = openTile(grid, random);
+        DStarLite search = new DStarLite(grid);
+        for(int step = 0; step < steps; step++){
+            boolean reachable = search.update(bot, target);
+            int expected = distance(grid, bot, target);
+            assertEquals(expected != UNREACHED, reachable, "reachable, step " + step);
+            assertEquals(expected, search.getPathLength(), "path length, step " + step);
+            if(reachable && bot != target){
+                int next = search.getNextTile();
+                assertEquals(1, manhattan(bot, next, columns), "the next tile is a neighbour, step " + step);
+                assertEquals(expected - 1, distance(grid, next, target), "the next tile is closer, step " + step);
+                bot = next;
+            }
+            int change = random.nextInt(10);
+            if(change < 5){
+                target = wander(grid, target, random);
+            }
+            else if(change == 5){
+                // far enough for a new search, sometimes
+                target = openTile(grid, random);
+            }
+            else if(change < 9){
+                int index = random.nextInt(rows * columns);
+                if(index != bot && index != target){
+                    grid.set(index, grid.get(index) == TileGrid.WALL ? TileGrid.FREE : TileGrid.WALL);
+                    search.tileChanged(index);
+                }
+            }
+            else if(bot == target){
+                bot = openTile(grid, random);
+            }
+        }
+    }
+
+    /**
+     * Checks that a copy of a search goes on exactly like the original.
+     */
+    @Test
+    void copiesTakeTheSameSteps(){
+        Random random = new Random(7);
+        TileGrid grid = new TileGrid(20, 20);
+        for(int index = 0; index < 400; index++){
+            grid.set(index, random.nextDouble() < 0.25 ? TileGrid.WALL : TileGrid.FREE);
+        }
+        int bot = openTile(grid, random), target = openTile(grid, random);
+        DStarLite search = new DStarLite(grid);
+        search.update(bot, target);
+        DStarLite copy = new DStarLite(search);
+        for(int step = 0; step < 50; step++){
+            target = wander(grid, target, random);
+            assertEquals(search.update(bot, target), copy.update(bot, target));
+            assertEquals(search.getPathLength(), copy.getPathLength());
+            if(search.getPathLength() != UNREACHED && bot != target){
+                assertEquals(search.getNextTile(), copy.getNextTile());
+                bot = search.getNextTile();
+            }
+        }
+        assertTrue(search.getExpandedCount() > 0);
+    }
+
+    /**
+     * Picks a random tile which is not a wall, making one free if there is none.
+     * @param grid the map
+     * @param random the random numbers
+     * @return index of the tile
+     */
+    private static int openTile(TileGrid grid, Random random){
+        int size = grid.getRows() * grid.getColumns();
+        for(int attempt = 0; attempt < 1000; attempt++){
+            int index = random.nextInt(size);
+            if(grid.get(index) != TileGrid.WALL){
+                return index;
+            }
+        }
+        int index = random.nextInt(size);
+        grid.set(index, TileGrid.FREE);
+        return index;
+    }
+
+    /**
+     * Moves the target to a random neighbour which is not a wall, if the one picked is not.
+     * @param grid the map
+     * @param target index of the tile the target is on
+     * @param random the random numbers
+     * @return index of the tile the target is on after the move
+     */
+    private static int wander(TileGrid grid, int target, Random random){
+        int columns = grid.getColumns();
+        int row = target / columns + (random.nextInt(3) - 1), column = target % columns + (random.nextInt(3) - 1);
+        if(!grid.isInside(row, column) || grid.get(row, column) == TileGrid.WALL){
+            return target;
+        }
+        return grid.index(row, column);
+    }
+
+    /**
+     * Finds the number of moves between two tiles with a breadth first search.
+     * @param grid the map
+     * @param from index of the first tile
+     * @param to index of the second tile
+     * @return number of moves, or UNREACHED if there is no path
+     */
+    private static int distance(TileGrid grid, int from, int to){
+        int rows = grid.getRows(), columns = grid.getColumns();
+        int[] distances = new int[rows * columns];
+        Arrays.fill(distances, UNREACHED);
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        distances[from] = 0;
+        queue.add(from);
+        while(!queue.isEmpty()){
+            int tile = queue.poll();
+            if(tile == to){
+                return distances[tile];
+            }
+            int row = tile / columns, column = tile % columns;
+            int[][] neighbours = {{row - 1, column}, {row + 1, column}, {row, column - 1}, {row, column + 1}};
+            for(int[] neighbour: neighbours){
+                if(grid.isInside(neighbour[0], neighbour[1]) && grid.get(neighbour[0], neighbour[1]) != TileGrid.WALL){
+                    int next = grid.index(neighbour[0], neighbour[1]);
+                    if(distances[next] == UNREACHED){
+                        distances[next] = distances[tile] + 1;
+                        queue.add(next);
+                    }
+                }
+            }
+        }
+        return UNREACHED;
+    }
+
+    /**
+     * Returns the number of moves between two tiles on a map without walls.
+     * @param from index of the first tile
+     * @param to index of the second tile
+     * @param columns number of columns of the map
+     * @return the Manhattan distance
+     */
+    private static int manhattan(int from, int to, int columns){
+        return Math.abs(from / columns - to / columns) + Math.abs(from % columns - to % columns);
+    }
+}
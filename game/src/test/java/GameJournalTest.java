@@ -0,0 +1,115 @@
+import static org.junit.jupiter.api.Assertions.assertEquals; // comparing the games replayed
+import static org.junit.jupiter.api.Assertions.assertFalse; // checking the games replayed
+import static org.junit.jupiter.api.Assertions.assertTrue; // checking the divergent journals
+
+import java.io.IOException; // file manipulation exception handling
+import java.nio.file.Files; // altering the journals
+import java.nio.file.Path; // the folder of the journals
+import java.text.ParseException; // malformed journal files
+import java.util.Arrays; // lengthening the journals
+import java.util.Random; // the commands, the same on every run
+
+import org.junit.jupiter.api.Test; // the test methods
+import org.junit.jupiter.api.io.TempDir; // the folder of the journals
+
+/**
+ * Class which checks that a game recorded in a GameJournal is replayed by a GameReplayer to
+ * the same end, matching the journal, and that journals in which a bot played differently,
+ * or which go on after the game ended, are found to have diverged.
+ */
+class GameJournalTest {
+
+    private static final int TURNS = 150;
+
+    @TempDir
+    Path directory;
+
+    /**
+     * Checks that a game is replayed to the same end for every bot mode but the
+     * Monte Carlo one, whose moves differ from one game to the next.
+     * @throws IOException if the journal cannot be written or read
+     * @throws ParseException if the journal written is invalid
+     */
+    @Test
+    void replaysRecordedGames() throws IOException, ParseException {
+        Map map = new Map("hardMap.txt");
+        for(BotMode mode: BotMode.values()){
+            if(mode == BotMode.MONTE_CARLO){
+                continue;
+            }
+            Path file = directory.resolve(mode + ".dodj");
+            GameLogic recorded = record(map, mode, file);
+            GameReplayer replayer = new GameReplayer(file);
+            assertEquals(map.getFileName(), replayer.getMapFile());
+            GameLogic replayed = replayer.replay(map, Integer.MAX_VALUE);
+            assertFalse(replayer.hasDiverged(), mode + " matches the journal");
+            assertEquals(recorded.getTurnsPlayed(), replayed.getTurnsPlayed(), mode + " turns played");
+            assertEquals(recorded.hasEnded(), replayed.hasEnded(), mode + " ended");
+            assertEquals(recorded.hasWon(), replayed.hasWon(), mode + " won");
+            assertEquals(recorded.describePositions(), replayed.describePositions(), mode + " positions");
+        }
+    }
+
+    /**
+     * Checks that a journal in which the bot gave another command is found to diverge on that turn,
+     * and so is one with records after the end of the game.
+     * @throws IOException if the journal cannot be written or read
+     * @throws ParseException if the journal written is invalid
+     */
+    @Test
+    void findsDivergentJournals() throws IOException, ParseException {
+        Map map = new Map("hardMap.txt");
+        Path file = directory.resolve("game.dodj");
+        GameLogic recorded = record(map, BotMode.GLOBAL, file);
+        assertTrue(recorded.hasEnded(), "the bot caught the player");
+        byte[] bytes = Files.readAllBytes(file);
+        // with a single bot every record takes a byte, the player's and the bot's in turn
+        int records = 31 + GameReplayer.utfLength(map.getFileName());
+        int turn = Math.min(10, recorded.getTurnsPlayed() - 1);
+        int botRecord = records + 2 * (turn - 1) + 1;
+        byte[] altered = bytes.clone();
+        altered[botRecord] = (byte) (1 << GameJournal.COMMAND_BITS |
+                ((altered[botRecord] & 0x3F) == Command.LOOK ? Command.MOVE_NORTH : Command.LOOK));
+        Files.write(file, altered);
+        GameReplayer replayer = new GameReplayer(file);
+        replayer.replay(map, Integer.MAX_VALUE);
+        assertTrue(replayer.hasDiverged(), "a bot played differently");
+        assertEquals(turn, replayer.getDivergedTurn());
+
+        byte[] longer = Arrays.copyOf(bytes, bytes.length + 2);
+        longer[bytes.length] = Command.LOOK;
+        longer[bytes.length + 1] = (byte) (1 << GameJournal.COMMAND_BITS | Command.LOOK);
+        Files.write(file, longer);
+        replayer = new GameReplayer(file);
+        replayer.replay(map, Integer.MAX_VALUE);
+        assertTrue(replayer.hasDiverged(), "the journal goes on after the game ended");
+    }
+
+    /**
+     * Plays a seeded game with a single bot and random commands, recording it.
+     * @param map the map
+     * @param mode the bot's way of finding paths
+     * @param file path of the journal file
+     * @return the game, as it was at the end
+     * @throws IOException if the journal cannot be written
+     */
+    private static GameLogic record(Map map, BotMode mode, Path file) throws IOException {
+        GameLogic game = new GameLogic(map, OutputSink.NULL);
+        game.setSeed(7 + mode.ordinal());
+        game.setBotMode(mode);
+        game.setBotCount(1);
+        int[] choices = {Command.MOVE_NORTH, Command.MOVE_EAST, Command.MOVE_SOUTH, Command.MOVE_WEST,
+                Command.PICKUP, Command.LOOK};
+        Random random = new Random(mode.ordinal());
+        try(GameJournal journal = new GameJournal(file, game)){
+            game.start();
+            for(int turn = 0; turn < TURNS && !game.hasEnded(); turn++){
+                game.playTurn(choices[random.nextInt(choices.length)]);
+            }
+            if(game.hasEnded()){
+                game.finish();
+            }
+        }
+        return game;
+    }
+}
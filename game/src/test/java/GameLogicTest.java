@@ -0,0 +1,108 @@
+import static org.junit.jupiter.api.Assertions.assertEquals; // comparing the replies and positions
+import static org.junit.jupiter.api.Assertions.assertFalse; // checking the game goes on
+
+import java.io.IOException; // file manipulation exception handling
+import java.nio.charset.StandardCharsets; // decoding the replies
+import java.nio.file.Files; // writing the map
+import java.nio.file.Path; // the folder of the map
+
+import org.junit.jupiter.api.Test; // the test methods
+import org.junit.jupiter.api.io.TempDir; // the folder of the map
+
+/**
+ * Class which checks that moving outwards from an exit on the edge of the map fails like moving
+ * into a wall, on every side of the map, instead of leaving the map or reading outside it.
+ */
+class GameLogicTest {
+
+    /*
+     * exits on every side, joined by gold so the player spawns on one of them, and the
+     * only free tiles sealed off, so the bot spawns there and cannot get in the way
+     */
+    private static final String MAP = "name Edge Exits\nwin 1\n" +
+            "####E####\n" +
+            "#..#G####\n" +
+            "####G####\n" +
+            "###GGG###\n" +
+            "EGGGGGGGE\n" +
+            "###GGG###\n" +
+            "####G####\n" +
+            "####G####\n" +
+            "####E####\n";
+    private static final int CENTRE = 4;
+
+    @TempDir
+    Path directory;
+
+    private final StringBuilder replies = new StringBuilder(); // the replies to the last turn
+    private final OutputSink sink = (bytes, length) -> replies.append(new String(bytes, 0, length, StandardCharsets.UTF_8));
+
+    /**
+     * Walks the player onto each exit in turn and tries to move off the map through it.
+     * @throws IOException if the map cannot be written
+     */
+    @Test
+    void movingOffTheEdgeFailsLikeIntoAWall() throws IOException {
+        Path file = directory.resolve("edgeMap.txt");
+        Files.writeString(file, MAP);
+        GameLogic game = new GameLogic(new Map(file.toFile()), sink);
+        game.setSeed(5);
+        game.setBotCount(1);
+        game.start();
+
+        walkTo(game, CENTRE, CENTRE);
+        walkTo(game, 2, CENTRE);
+        String intoWall = move(game, Command.MOVE_WEST);
+        assertEquals("FAIL\n", intoWall, "moving into a wall");
+        assertEquals(CENTRE, position(game)[1]);
+
+        int[][] exits = {{0, CENTRE, Command.MOVE_NORTH}, {CENTRE, 8, Command.MOVE_EAST},
+                {8, CENTRE, Command.MOVE_SOUTH}, {CENTRE, 0, Command.MOVE_WEST}};
+        for(int[] exit: exits){
+            walkTo(game, CENTRE, CENTRE);
+            walkTo(game, exit[0], exit[1]);
+            assertEquals(intoWall, move(game, exit[2]), "moving off the map from (" + exit[0] + ", " + exit[1] + ")");
+            assertEquals(exit[0], position(game)[0], "row after the move");
+            assertEquals(exit[1], position(game)[1], "column after the move");
+            assertFalse(game.hasEnded());
+        }
+    }
+
+    /**
+     * Moves the player along its column and then along its row, each move having to succeed.
+     * @param game the game
+     * @param row row of the tile to walk to
+     * @param column column of the tile to walk to
+     */
+    private void walkTo(GameLogic game, int row, int column){
+        while(position(game)[0] != row){
+            assertEquals("SUCCESS\n", move(game, position(game)[0] < row ? Command.MOVE_SOUTH : Command.MOVE_NORTH));
+        }
+        while(position(game)[1] != column){
+            assertEquals("SUCCESS\n", move(game, position(game)[1] < column ? Command.MOVE_EAST : Command.MOVE_WEST));
+        }
+    }
+
+    /**
+     * Plays a move.
+     * @param game the game
+     * @param command the move, encoded by the Command class
+     * @return the reply to the move
+     */
+    private String move(GameLogic game, int command){
+        replies.setLength(0);
+        game.playTurn(command);
+        return replies.toString();
+    }
+
+    /**
+     * Finds where the player is.
+     * @param game the game
+     * @return the row and the column of the player
+     */
+    private static int[] position(GameLogic game){
+        // "Player at row R, column C with G gold"
+        String[] words = game.describePositions().split("\n")[0].split("[ ,]+");
+        return new int[]{Integer.parseInt(words[3]), Integer.parseInt(words[5])};
+    }
+}
@@ -0,0 +1,207 @@
+import static org.junit.jupiter.api.Assertions.assertEquals; // checking the journals
+import static org.junit.jupiter.api.Assertions.assertTrue; // checking the replies
+
+import java.io.File; // the Maps folder
+import java.io.IOException; // connection exception handling
+import java.io.InputStream; // the replies of the server
+import java.net.Socket; // the clients
+import java.nio.charset.StandardCharsets; // encoding the commands and decoding the replies
+import java.nio.file.Files; // the journals written
+import java.nio.file.Path; // folder of the journals
+import java.util.stream.Stream; // listing the journals
+
+import org.junit.jupiter.api.AfterEach; // stopping the server
+import org.junit.jupiter.api.BeforeEach; // starting the server
+import org.junit.jupiter.api.Test; // the test methods
+import org.junit.jupiter.api.io.TempDir; // folder of the journals
+
+/**
+ * Class which checks the server's lobby: the maps are shown to every client, a map is chosen
+ * by its number or its name, an unknown map is asked for again, and clients which leave
+ * while choosing do not stop the others from playing, nor leave their journals open.
+ */
+class GameServerTest {
+
+    private static final String PROMPT = "Please enter the number or the name of the map you want to play.\n";
+
+    private MapCatalog catalog;
+    private GameServer server;
+    private Thread serving;
+    @TempDir
+    Path journals;
+
+    /**
+     * Starts a server with a lobby over the maps next to the classes.
+     * @throws IOException if the port cannot be opened
+     */
+    @BeforeEach
+    void startServer() throws IOException {
+        catalog = new MapCatalog(new File(GameServer.class.getProtectionDomain().
+                getCodeSource().getLocation().getPath() + "/Maps"));
+        server = new GameServer(catalog, 0, 2, 100);
+        server.setJournalDirectory(journals);
+        serving = new Thread(() -> {
+            try{
+                server.serve();
+            }
+            catch (IOException e){
+                throw new IllegalStateException(e);
+            }
+        });
+        serving.start();
+    }
+
+    /**
+     * Stops the server.
+     * @throws InterruptedException if interrupted while waiting for the server
+     */
+    @AfterEach
+    void stopServer() throws InterruptedException {
+        server.stop();
+        serving.join(5000);
+    }
+
+    /**
+     * Checks that every map of the catalog is shown, and that a map can be chosen by its number.
+     * @throws IOException if the connection fails
+     */
+    @Test
+    void choosesMapByNumber() throws IOException {
+        try(Socket client = connect()){
+            String maps = readUntil(client, PROMPT);
+            for(MapCatalog.Entry entry: catalog.getEntries()){
+                assertTrue(maps.contains(entry.describe()), maps);
+            }
+            MapCatalog.Entry second = catalog.getEntries().get(1);
+            send(client, "2\nHELLO\n");
+            readUntil(client, "Gold to win: " + second.getGold() + "\n");
+        }
+    }
+
+    /**
+     * Checks that a map can be chosen by its name, with or without its extension.
+     * @throws IOException if the connection fails
+     */
+    @Test
+    void choosesMapByName() throws IOException {
+        MapCatalog.Entry last = catalog.getEntries().get(catalog.getEntries().size() - 1);
+        String fileName = last.getFileName();
+        for(String choice: new String[]{fileName, fileName.substring(0, fileName.length() - 4)}){
+            try(Socket client = connect()){
+                readUntil(client, PROMPT);
+                send(client, choice + "\nHELLO\n");
+                readUntil(client, "Gold to win: " + last.getGold() + "\n");
+            }
+        }
+    }
+
+    /**
+     * Checks that an unknown map is refused and the maps are shown again, so another can be chosen.
+     * @throws IOException if the connection fails
+     */
+    @Test
+    void asksAgainForUnknownMap() throws IOException {
+        try(Socket client = connect()){
+            readUntil(client, PROMPT);
+            send(client, "noSuchMap\n");
+            readUntil(client, "Unknown map noSuchMap\n");
+            readUntil(client, PROMPT);
+            send(client, "0\n");
+            readUntil(client, "Unknown map 0\n");
+            readUntil(client, PROMPT);
+            send(client, "1\nHELLO\n");
+            readUntil(client, "Gold to win: " + catalog.getEntries().get(0).getGold() + "\n");
+        }
+    }
+
+    /**
+     * Checks that clients which leave while or right after choosing a map
+     * do not stop the server from serving the next ones.
+     * @throws IOException if the connection fails
+     */
+    @Test
+    void servesOthersAfterClientsLeaveWhileChoosing() throws IOException {
+        for(int client = 0; client < 20; client++){
+            try(Socket leaving = connect()){
+                if(client % 2 == 0){
+                    send(leaving, "1\n");
+                }
+            }
+        }
+        try(Socket client = connect()){
+            readUntil(client, PROMPT);
+            send(client, "1\nHELLO\n");
+            readUntil(client, "Gold to win: " + catalog.getEntries().get(0).getGold() + "\n");
+        }
+    }
+
+    /**
+     * Checks that the journal of every client which leaves right after choosing its map is
+     * closed, whether the connection is closed before or after the game starts.
+     * @throws IOException if the connection fails
+     * @throws InterruptedException if interrupted while waiting for the journals
+     */
+    @Test
+    void closesJournalsOfClientsLeavingAfterChoosing() throws IOException, InterruptedException {
+        int clients = 30;
+        for(int client = 0; client < clients; client++){
+            try(Socket leaving = connect()){
+                send(leaving, "1\n");
+            }
+        }
+        // an unclosed journal keeps its header in its buffer, so its file stays empty
+        long deadline = System.currentTimeMillis() + 5000;
+        long complete;
+        do{
+            Thread.sleep(20);
+            try(Stream<Path> files = Files.list(journals)){
+                complete = files.filter(file -> file.toFile().length() > 0).count();
+            }
+        } while(complete < clients && System.currentTimeMillis() < deadline);
+        try(Stream<Path> files = Files.list(journals)){
+            assertEquals(files.count(), complete, "every journal created is closed");
+        }
+    }
+
+    /**
+     * Connects a client to the server.
+     * @return the connection, which gives up reading after a few seconds
+     * @throws IOException if the connection fails
+     */
+    private Socket connect() throws IOException {
+        Socket client = new Socket("localhost", server.getPort());
+        client.setSoTimeout(5000);
+        return client;
+    }
+
+    /**
+     * Sends commands to the server.
+     * @param client the connection
+     * @param text the commands, each ending with a new line
+     * @throws IOException if the connection fails
+     */
+    private static void send(Socket client, String text) throws IOException {
+        client.getOutputStream().write(text.getBytes(StandardCharsets.UTF_8));
+        client.getOutputStream().flush();
+    }
+
+    /**
+     * Reads the replies of the server until a text has been read.
+     * @param client the connection
+     * @param end the text
+     * @return what was read, ending with the text
+     * @throws IOException if the connection fails, or the text is not read in time
+     */
+    private static String readUntil(Socket client, String end) throws IOException {
+        InputStream input = client.getInputStream();
+        StringBuilder read = new StringBuilder();
+        while(read.indexOf(end) < 0){
+            int next = input.read();
+            if(next < 0){
+                throw new IOException("The connection was closed after " + read);
+            }
+            read.append((char) next);
+        }
+        return read.toString();
+    }
+}
@@ -0,0 +1,209 @@
+import static org.junit.jupiter.api.Assertions.assertEquals; // comparing the games played on
+import static org.junit.jupiter.api.Assertions.assertThrows; // checking the invalid snapshots
+import static org.junit.jupiter.api.Assertions.assertTrue; // checking the games played on
+
+import java.io.IOException; // file manipulation exception handling
+import java.nio.ByteBuffer; // corrupting the state
+import java.nio.file.Files; // writing the snapshots
+import java.nio.file.Path; // the folder of the snapshots
+import java.text.ParseException; // malformed snapshot files
+import java.util.Arrays; // truncating the files
+import java.util.Random; // the commands, the same on every run
+
+import org.junit.jupiter.api.Test; // the test methods
+import org.junit.jupiter.api.io.TempDir; // the folder of the snapshots
+
+/**
+ * Class which checks that a game captured at some turn and restored, in place, into a new game
+ * or from a file, plays on exactly as the captured game did given the same commands, and that
+ * snapshots which are truncated, corrupt or of another map are rejected.
+ */
+class GameSnapshotTest {
+
+    private static final int CAPTURED_TURN = 25; // turn at which the games are captured, unless they end before
+    private static final int TURNS_AFTER = 60;
+
+    @TempDir
+    Path directory;
+
+    /**
+     * Checks every bot mode but the Monte Carlo one, whose moves differ from one game to the next.
+     * The bots of some modes catch the player within a few turns, so those games are captured halfway.
+     * @throws IOException if the snapshot cannot be written or read
+     * @throws ParseException if the snapshot written is invalid
+     */
+    @Test
+    void playsOnAsTheCapturedGame() throws IOException, ParseException {
+        Map map = new Map("mediumMap.txt");
+        for(BotMode mode: BotMode.values()){
+            if(mode == BotMode.MONTE_CARLO){
+                continue;
+            }
+            int[] commands = commands(new Random(mode.ordinal()), CAPTURED_TURN + TURNS_AFTER);
+            GameLogic game = newGame(map, mode);
+            game.start();
+            GameLogic whole = game.fork();
+            play(whole, commands, 0, commands.length);
+            int captured = Math.min(CAPTURED_TURN, whole.getTurnsPlayed() / 2);
+            play(game, commands, 0, captured);
+            GameSnapshot snapshot = new GameSnapshot();
+            snapshot.capture(game);
+            String expected = play(game, commands, captured, commands.length);
+
+            snapshot.restore(game);
+            assertEquals(expected, play(game, commands, captured, commands.length), mode + " restored in place");
+            GameLogic fresh = newGame(map, mode);
+            snapshot.restore(fresh);
+            assertEquals(expected, play(fresh, commands, captured, commands.length), mode + " restored into a new game");
+            Path file = directory.resolve(mode + ".dods");
+            snapshot.save(file);
+            GameLogic resumed = new GameLogic(map, OutputSink.NULL);
+            GameSnapshot.load(file).restore(resumed);
+            assertEquals(expected, play(resumed, commands, captured, commands.length), mode + " loaded from a file");
+        }
+    }
+
+    /**
+     * Checks that a snapshot cut short anywhere is rejected, when it is loaded or when it is restored.
+     * @throws IOException if the files cannot be written
+     */
+    @Test
+    void rejectsTruncatedSnapshots() throws IOException {
+        Map map = new Map("easyMap.txt");
+        Path file = directory.resolve("game.dods");
+        GameSnapshot snapshot = captured(map);
+        snapshot.save(file);
+        byte[] bytes = Files.readAllBytes(file);
+        for(int length = 0; length < bytes.length; length++){
+            Files.write(file, Arrays.copyOf(bytes, length));
+            assertThrows(ParseException.class, () -> GameSnapshot.load(file), "truncated to " + length + " bytes");
+        }
+        // a state cut short, whose length says so
+        int stateStart = bytes.length - snapshot.size();
+        for(int length = 0; length < snapshot.size(); length++){
+            byte[] truncated = Arrays.copyOf(bytes, stateStart + length);
+            ByteBuffer.wrap(truncated).putInt(stateStart - 4, length);
+            Files.write(file, truncated);
+            assertThrows(IllegalArgumentException.class, () -> GameSnapshot.load(file).restore(newGame(map, BotMode.LOCAL)),
+                    "state of " + length + " bytes");
+        }
+    }
+
+    /**
+     * Checks that corrupt headers and settings are rejected, and so is a state followed by more bytes.
+     * @throws IOException if the files cannot be written
+     */
+    @Test
+    void rejectsCorruptSnapshots() throws IOException {
+        Map map = new Map("easyMap.txt");
+        Path file = directory.resolve("game.dods");
+        GameSnapshot snapshot = captured(map);
+        snapshot.save(file);
+        byte[] bytes = Files.readAllBytes(file);
+        int stateStart = bytes.length - snapshot.size();
+        int[][] headers = {{0, 0x12345678}, {4, 99}, {stateStart - 4, -1}, {stateStart - 4, Integer.MAX_VALUE}};
+        for(int[] corruption: headers){
+            byte[] corrupt = bytes.clone();
+            ByteBuffer.wrap(corrupt).putInt(corruption[0], corruption[1]);
+            Files.write(file, corrupt);
+            assertThrows(ParseException.class, () -> GameSnapshot.load(file), corruption[1] + " at byte " + corruption[0]);
+        }
+        // the bot mode is the byte after the seed and the random numbers, followed by the bots and the look radius
+        int mode = stateStart + 16, bots = mode + 1, radius = bots + 4;
+        int[][] settings = {{bots, 0}, {bots, -3}, {bots, Integer.MAX_VALUE}, {radius, 0}, {radius, Integer.MAX_VALUE}};
+        for(int[] corruption: settings){
+            byte[] corrupt = bytes.clone();
+            ByteBuffer.wrap(corrupt).putInt(corruption[0], corruption[1]);
+            Files.write(file, corrupt);
+            assertThrows(IllegalArgumentException.class, () -> GameSnapshot.load(file).restore(newGame(map, BotMode.LOCAL)),
+                    corruption[1] + " at byte " + corruption[0]);
+        }
+        byte[] corrupt = bytes.clone();
+        corrupt[mode] = 99;
+        Files.write(file, corrupt);
+        assertThrows(IllegalArgumentException.class, () -> GameSnapshot.load(file).restore(newGame(map, BotMode.LOCAL)),
+                "bot mode 99");
+        byte[] longer = Arrays.copyOf(bytes, bytes.length + 3);
+        ByteBuffer.wrap(longer).putInt(stateStart - 4, snapshot.size() + 3);
+        Files.write(file, longer);
+        assertThrows(IllegalArgumentException.class, () -> GameSnapshot.load(file).restore(newGame(map, BotMode.LOCAL)),
+                "state with bytes too many");
+    }
+
+    /**
+     * Checks that a snapshot is not restored into a game on another map, and that nothing is restored before a capture.
+     */
+    @Test
+    void rejectsOtherMapsAndEmptySnapshots(){
+        GameSnapshot snapshot = captured(new Map("easyMap.txt"));
+        GameLogic other = newGame(new Map("hardMap.txt"), BotMode.LOCAL);
+        assertThrows(IllegalArgumentException.class, () -> snapshot.restore(other));
+        GameLogic game = newGame(new Map("easyMap.txt"), BotMode.LOCAL);
+        assertThrows(IllegalStateException.class, () -> new GameSnapshot().restore(game));
+        assertThrows(IllegalStateException.class, () -> new GameSnapshot().save(directory.resolve("empty.dods")));
+    }
+
+    /**
+     * Creates a headless game with a fixed seed and two bots, which has not started.
+     * @param map the map
+     * @param mode the bots' way of finding paths
+     * @return the game
+     */
+    private static GameLogic newGame(Map map, BotMode mode){
+        GameLogic game = new GameLogic(map, OutputSink.NULL);
+        game.setSeed(42);
+        game.setBotMode(mode);
+        game.setBotCount(2);
+        return game;
+    }
+
+    /**
+     * Captures a game played for a few turns.
+     * @param map the map
+     * @return the snapshot
+     */
+    private static GameSnapshot captured(Map map){
+        GameLogic game = newGame(map, BotMode.LOCAL);
+        game.start();
+        play(game, commands(new Random(1), 5), 0, 5);
+        GameSnapshot snapshot = new GameSnapshot();
+        snapshot.capture(game);
+        return snapshot;
+    }
+
+    /**
+     * Picks random commands, mostly moves.
+     * @param random the random numbers
+     * @param count number of commands
+     * @return the commands, encoded by the Command class
+     */
+    private static int[] commands(Random random, int count){
+        int[] choices = {Command.MOVE_NORTH, Command.MOVE_EAST, Command.MOVE_SOUTH, Command.MOVE_WEST,
+                Command.PICKUP, Command.LOOK};
+        int[] commands = new int[count];
+        for(int index = 0; index < count; index++){
+            commands[index] = choices[random.nextInt(choices.length)];
+        }
+        return commands;
+    }
+
+    /**
+     * Plays commands until they run out or the game ends, noting every command given by the player and the bots.
+     * @param game the game, which has started
+     * @param commands the player's commands
+     * @param from index of the first command played
+     * @param to index after the last command played
+     * @return the commands given, followed by the positions and the state of the game at the end
+     */
+    private static String play(GameLogic game, int[] commands, int from, int to){
+        StringBuilder played = new StringBuilder();
+        game.setRecorder((actor, command) -> played.append(actor).append(':').append(command).append(' '));
+        for(int index = from; index < to && !game.hasEnded(); index++){
+            game.playTurn(commands[index]);
+        }
+        game.setRecorder(null);
+        assertTrue(played.length() > 0, "the game played on");
+        return played.append('\n').append(game.describePositions()).append("\nturn ").append(game.getTurnsPlayed())
+                .append(game.hasEnded() ? ", ended" : "").toString();
+    }
+}
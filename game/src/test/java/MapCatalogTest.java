@@ -0,0 +1,59 @@
+import static org.junit.jupiter.api.Assertions.assertEquals; // checking the maps loaded
+import static org.junit.jupiter.api.Assertions.assertNotNull; // checking the maps loaded
+
+import java.io.IOException; // file manipulation exception handling
+import java.nio.file.Files; // writing the maps
+import java.nio.file.Path; // the folder of the maps
+import java.text.ParseException; // malformed map files
+
+import org.junit.jupiter.api.Test; // the test methods
+import org.junit.jupiter.api.io.TempDir; // the folder of the maps
+
+/**
+ * Class which checks that a catalog over any folder, not only the Maps folder next to the
+ * classes, lists its maps and loads them from that folder, preferring an up to date binary map.
+ */
+class MapCatalogTest {
+
+    private static final String MAP = "name Test Dungeon\nwin 1\n#####\n#G.E#\n#...#\n#####\n";
+
+    @TempDir
+    Path directory;
+
+    /**
+     * Checks that a map found in the folder is listed and loaded from it.
+     * @throws IOException if the map cannot be written
+     */
+    @Test
+    void loadsMapsFromItsFolder() throws IOException {
+        Files.writeString(directory.resolve("testMap.txt"), MAP);
+        MapCatalog catalog = new MapCatalog(directory.toFile());
+        assertEquals(1, catalog.getEntries().size());
+        MapCatalog.Entry entry = catalog.getEntry("testMap.txt");
+        assertEquals("testMap (Test Dungeon, 1 gold, 4x5)", entry.describe());
+        Map map = catalog.load(entry);
+        assertNotNull(map.getTemplate());
+        assertEquals("testMap.txt", map.getFileName());
+        assertEquals(4, map.getTemplate().getRows());
+        assertEquals(1, map.getGold());
+    }
+
+    /**
+     * Checks that a compiled binary map next to the text map is loaded instead of it.
+     * @throws IOException if the maps cannot be written
+     * @throws ParseException if the text map is invalid
+     */
+    @Test
+    void prefersUpToDateBinaryMap() throws IOException, ParseException {
+        Path textFile = directory.resolve("testMap.txt");
+        Files.writeString(textFile, MAP);
+        MapLoader loader = new MapLoader(textFile);
+        BinaryMap.write(directory.resolve("testMap" + BinaryMap.EXTENSION), loader.getName(), loader.getGoldToWin(),
+                loader.getViewRadius(), loader.hasLineOfSight(), loader.getGrid());
+        MapCatalog catalog = new MapCatalog(directory.toFile());
+        Map map = catalog.load("testMap.txt");
+        assertNotNull(map.getTemplate());
+        assertEquals("testMap" + BinaryMap.EXTENSION, map.getFileName());
+        assertEquals(5, map.getTemplate().getColumns());
+    }
+}
@@ -0,0 +1,243 @@
+import static org.junit.jupiter.api.Assertions.assertEquals; // comparing the routes
+import static org.junit.jupiter.api.Assertions.assertFalse; // checking the heuristic routes
+import static org.junit.jupiter.api.Assertions.assertNotEquals; // checking the tiles of the routes
+import static org.junit.jupiter.api.Assertions.assertTrue; // checking the routes and their lengths
+
+import java.util.ArrayDeque; // the queue of the reference search
+import java.util.Arrays; // clearing the reference distances
+import java.util.Random; // the maps, the same on every run
+
+import org.junit.jupiter.api.Test; // the test methods
+
+/**
+ * Class which checks the routes found by MapSolver against a brute force search, which tries
+ * every order of every choice of gold tiles, on small random maps. The heuristic routes of maps
+ * with too much gold for the exact solver are checked to be valid routes, never shorter than
+ * the shortest one.
+ */
+class MapSolverTest {
+
+    private static final int UNREACHED = -1; // distance between tiles with no path between them
+
+    /**
+     * Checks that the exact solver finds the shortest route on small maps with a few gold tiles.
+     */
+    @Test
+    void findsShortestRoutes(){
+        for(int seed = 0; seed < 300; seed++){
+            Random random = new Random(seed);
+            TileGrid grid = randomMap(random, 4 + random.nextInt(8), 4 + random.nextInt(8),
+                    1 + random.nextInt(7), 1 + random.nextInt(3));
+            int goldCount = new TileIndex(grid).getGoldCount();
+            int goldToWin = random.nextInt(goldCount + 2);
+            MapSolver solver = new MapSolver(grid, new TileIndex(grid), goldToWin);
+            int shortest = bruteForce(grid, goldToWin);
+            assertEquals(shortest != UNREACHED, solver.solve(), "winnable, seed " + seed);
+            assertEquals(shortest, solver.getLength(), "length, seed " + seed);
+            if(shortest != UNREACHED){
+                assertTrue(solver.isExact(), "exact, seed " + seed);
+                checkRoute(grid, solver, goldToWin, "seed " + seed);
+            }
+        }
+    }
+
+    /**
+     * Checks the heuristic routes of maps with more gold than the exact solver takes,
+     * against the shortest routes when few gold tiles are needed.
+     */
+    @Test
+    void findsValidHeuristicRoutes(){
+        for(int seed = 0; seed < 40; seed++){
+            Random random = new Random(seed);
+            TileGrid grid = randomMap(random, 12 + random.nextInt(10), 12 + random.nextInt(10),
+                    25 + random.nextInt(15), 1 + random.nextInt(3));
+            int goldCount = new TileIndex(grid).getGoldCount();
+            int goldToWin = seed % 2 == 0 ? 1 + random.nextInt(3) : 1 + random.nextInt(goldCount);
+            MapSolver solver = new MapSolver(grid, new TileIndex(grid), goldToWin);
+            if(!solver.solve()){
+                continue;
+            }
+            assertFalse(solver.isExact(), "heuristic, seed " + seed);
+            checkRoute(grid, solver, goldToWin, "seed " + seed);
+            if(goldToWin <= 3){
+                assertTrue(solver.getLength() >= bruteForce(grid, goldToWin), "no shorter than the shortest, seed " + seed);
+            }
+        }
+    }
+
+    /**
+     * Checks that a route picks up enough different gold tiles, ends on an exit, and is as long as it claims.
+     * @param grid the map
+     * @param solver MapSolver object which found the route
+     * @param goldToWin amount of gold needed in order to win
+     * @param context what the failures are reported with
+     */
+    private static void checkRoute(TileGrid grid, MapSolver solver, int goldToWin, String context){
+        int[] route = solver.getRoute();
+        assertEquals(goldToWin + 1, route.length, "route size, " + context);
+        int length = 0;
+        for(int position = 0; position < goldToWin; position++){
+            assertEquals(TileGrid.GOLD, grid.get(route[position]), "gold tile, " + context);
+            for(int other = 0; other < position; other++){
+                assertNotEquals(route[other], route[position], "gold picked up twice, " + context);
+            }
+            int distance = distance(grid, route[position], route[position + 1]);
+            assertNotEquals(UNREACHED, distance, "reachable, " + context);
+            length += distance;
+        }
+        assertEquals(TileGrid.EXIT, grid.get(route[goldToWin]), "exit, " + context);
+        assertEquals(length, solver.getLength(), "length of the route, " + context);
+    }
+
+    /**
+     * Builds a random map of free tiles and walls, with gold tiles and exits.
+     * @param random the random numbers
+     * @param rows number of rows
+     * @param columns number of columns
+     * @param gold number of gold tiles
+     * @param exits number of exits
+     * @return the map
+     */
+    private static TileGrid randomMap(Random random, int rows, int columns, int gold, int exits){
+        TileGrid grid = new TileGrid(rows, columns);
+        for(int index = 0; index < rows * columns; index++){
+            grid.set(index, random.nextInt(4) == 0 ? TileGrid.WALL : TileGrid.FREE);
+        }
+        place(grid, random, TileGrid.GOLD, Math.min(gold, rows * columns / 3));
+        place(grid, random, TileGrid.EXIT, exits);
+        return grid;
+    }
+
+    /**
+     * Puts tiles of a kind on random tiles which are free.
+     * @param grid the map
+     * @param random the random numbers
+     * @param tile the kind of tile
+     * @param count number of tiles
+     */
+    private static void place(TileGrid grid, Random random, byte tile, int count){
+        int size = grid.getRows() * grid.getColumns();
+        for(int placed = 0; placed < count; ){
+            int index = random.nextInt(size);
+            if(grid.get(index) == TileGrid.FREE || grid.get(index) == TileGrid.WALL){
+                grid.set(index, tile);
+                placed++;
+            }
+        }
+    }
+
+    /**
+     * Finds the length of the shortest route by trying every order of every choice of gold tiles.
+     * @param grid the map
+     * @param goldToWin amount of gold needed in order to win
+     * @return number of moves from the first gold tile to the exit, or UNREACHED if the map cannot be won
+     */
+    private static int bruteForce(TileGrid grid, int goldToWin){
+        TileIndex tileIndex = new TileIndex(grid);
+        int[] gold = new int[tileIndex.getGoldCount()];
+        for(int order = 0; order < gold.length; order++){
+            gold[order] = tileIndex.getGold(order);
+        }
+        int[] exits = new int[tileIndex.getExitCount()];
+        for(int order = 0; order < exits.length; order++){
+            exits[order] = tileIndex.getExit(order);
+        }
+        if(goldToWin == 0){
+            return exits.length > 0 ? 0 : UNREACHED;
+        }
+        if(goldToWin > gold.length){
+            return UNREACHED;
+        }
+        int[][] distances = new int[gold.length][];
+        for(int from = 0; from < gold.length; from++){
+            distances[from] = distances(grid, gold[from]);
+        }
+        int[] exitDistances = new int[gold.length];
+        for(int from = 0; from < gold.length; from++){
+            exitDistances[from] = UNREACHED;
+            for(int exit: exits){
+                int distance = distances[from][exit];
+                if(distance != UNREACHED && (exitDistances[from] == UNREACHED || distance < exitDistances[from])){
+                    exitDistances[from] = distance;
+                }
+            }
+        }
+        return shortest(gold, distances, exitDistances, new boolean[gold.length], goldToWin, -1, 0);
+    }
+
+    /**
+     * Tries every gold tile not picked up yet as the next one on the route.
+     * @param gold the gold tiles
+     * @param distances the distances from each gold tile to every tile
+     * @param exitDistances the distance from each gold tile to the nearest exit, or UNREACHED
+     * @param taken which gold tiles are on the route
+     * @param left amount of gold still to pick up
+     * @param last order of the last gold tile on the route, or -1 if there is none
+     * @param soFar length of the route so far
+     * @return length of the shortest route going on from there, or UNREACHED if there is none
+     */
+    private static int shortest(int[] gold, int[][] distances, int[] exitDistances, boolean[] taken,
+                                int left, int last, int soFar){
+        if(left == 0){
+            return exitDistances[last] == UNREACHED ? UNREACHED : soFar + exitDistances[last];
+        }
+        int best = UNREACHED;
+        for(int next = 0; next < gold.length; next++){
+            if(taken[next]){
+                continue;
+            }
+            int step = last == -1 ? 0 : distances[last][gold[next]];
+            if(step == UNREACHED){
+                continue;
+            }
+            taken[next] = true;
+            int length = shortest(gold, distances, exitDistances, taken, left - 1, next, soFar + step);
+            taken[next] = false;
+            if(length != UNREACHED && (best == UNREACHED || length < best)){
+                best = length;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Finds the number of moves between two tiles with a breadth first search.
+     * @param grid the map
+     * @param from index of the first tile
+     * @param to index of the second tile
+     * @return number of moves, or UNREACHED if there is no path
+     */
+    private static int distance(TileGrid grid, int from, int to){
+        return distances(grid, from)[to];
+    }
+
+    /**
+     * Finds the number of moves from a tile to every tile with a breadth first search.
+     * @param grid the map
+     * @param from index of the tile
+     * @return number of moves to each tile, or UNREACHED if there is no path to it
+     */
+    private static int[] distances(TileGrid grid, int from){
+        int columns = grid.getColumns();
+        int[] distances = new int[grid.getRows() * columns];
+        Arrays.fill(distances, UNREACHED);
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        distances[from] = 0;
+        queue.add(from);
+        while(!queue.isEmpty()){
+            int tile = queue.poll();
+            int row = tile / columns, column = tile % columns;
+            int[][] neighbours = {{row - 1, column}, {row + 1, column}, {row, column - 1}, {row, column + 1}};
+            for(int[] neighbour: neighbours){
+                if(grid.isInside(neighbour[0], neighbour[1]) && grid.get(neighbour[0], neighbour[1]) != TileGrid.WALL){
+                    int next = grid.index(neighbour[0], neighbour[1]);
+                    if(distances[next] == UNREACHED){
+                        distances[next] = distances[tile] + 1;
+                        queue.add(next);
+                    }
+                }
+            }
+        }
+        return distances;
+    }
+}
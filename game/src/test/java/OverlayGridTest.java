@@ -0,0 +1,150 @@
+import static org.junit.jupiter.api.Assertions.assertEquals; // comparing the tiles
+import static org.junit.jupiter.api.Assertions.assertThrows; // checking the frozen grid
+
+import java.nio.ByteBuffer; // snapshots of the changed tiles
+import java.util.ArrayList; // the overlays and their expected tiles
+import java.util.Random; // the changes, the same on every run
+
+import org.junit.jupiter.api.Test; // the test methods
+
+/**
+ * Class which checks that overlays over a frozen grid each keep their own changes, against
+ * a plain array of tiles for each of them, while they are copied, changed, and changed back
+ * to the tiles of the grid, and that the frozen grid itself is never changed.
+ */
+class OverlayGridTest {
+
+    private static final byte[] TILES = {TileGrid.FREE, TileGrid.WALL, TileGrid.GOLD,
+            TileGrid.EXIT, TileGrid.PLAYER, TileGrid.BOT};
+
+    /**
+     * Checks that writes to an overlay, or to any of its copies, are only seen by that overlay.
+     */
+    @Test
+    void copiesKeepTheirOwnChanges(){
+        for(int seed = 0; seed < 20; seed++){
+            Random random = new Random(seed);
+            TileGrid template = randomGrid(random, 5 + random.nextInt(30), 5 + random.nextInt(30));
+            byte[] original = tiles(template);
+            ArrayList<OverlayGrid> overlays = new ArrayList<>();
+            ArrayList<byte[]> expected = new ArrayList<>();
+            overlays.add(new OverlayGrid(template));
+            expected.add(original.clone());
+            for(int step = 0; step < 2000; step++){
+                int which = random.nextInt(overlays.size());
+                int change = random.nextInt(20);
+                if(change == 0 && overlays.size() < 8){
+                    overlays.add(overlays.get(which).copy());
+                    expected.add(expected.get(which).clone());
+                }
+                else if(change == 1){
+                    // changed back to the tile of the grid, which removes it from the overlay
+                    int index = random.nextInt(original.length);
+                    overlays.get(which).set(index, original[index]);
+                    expected.get(which)[index] = original[index];
+                }
+                else{
+                    int index = random.nextInt(original.length);
+                    byte tile = TILES[random.nextInt(TILES.length)];
+                    overlays.get(which).set(index, tile);
+                    expected.get(which)[index] = tile;
+                }
+                if(step % 100 == 0){
+                    for(int overlay = 0; overlay < overlays.size(); overlay++){
+                        check(overlays.get(overlay), expected.get(overlay), original, "seed " + seed + ", step " + step);
+                    }
+                }
+            }
+            for(int overlay = 0; overlay < overlays.size(); overlay++){
+                check(overlays.get(overlay), expected.get(overlay), original, "seed " + seed);
+            }
+            for(int index = 0; index < original.length; index++){
+                assertEquals(original[index], template.get(index), "the grid is unchanged, seed " + seed);
+            }
+        }
+    }
+
+    /**
+     * Checks that the grid cannot be written to once frozen, while overlays over it can,
+     * and that the changes read back from a snapshot into a copy leave the original alone.
+     */
+    @Test
+    void writesOverAFrozenGrid(){
+        TileGrid template = randomGrid(new Random(3), 12, 17);
+        byte[] original = tiles(template);
+        assertThrows(IllegalStateException.class, () -> template.set(0, TileGrid.GOLD));
+        assertThrows(IllegalStateException.class, () -> template.set(1, 1, TileGrid.GOLD));
+        OverlayGrid overlay = new OverlayGrid(template);
+        byte[] expected = original.clone();
+        for(int index = 0; index < original.length; index += 3){
+            byte tile = original[index] == TileGrid.BOT ? TileGrid.PLAYER : TileGrid.BOT;
+            overlay.set(index, tile);
+            expected[index] = tile;
+        }
+        check(overlay, expected, original, "after the writes");
+        OverlayGrid copy = overlay.copy();
+        ByteBuffer buffer = ByteBuffer.allocate(5 * original.length + 4);
+        new OverlayGrid(template).writeChanges(buffer);
+        buffer.flip();
+        copy.readChanges(buffer);
+        check(copy, original, original, "the copy read back without changes");
+        check(overlay, expected, original, "the original after its copy was read back");
+        buffer.clear();
+        overlay.writeChanges(buffer);
+        buffer.flip();
+        copy.readChanges(buffer);
+        check(copy, expected, original, "the copy read back with the changes");
+        for(int index = 0; index < original.length; index++){
+            overlay.set(index, original[index]);
+        }
+        check(overlay, original, original, "after the writes were undone");
+        check(copy, expected, original, "the copy after the writes were undone");
+    }
+
+    /**
+     * Checks every tile of an overlay, and its number of changed tiles.
+     * @param overlay the overlay
+     * @param expected the tiles it should hold
+     * @param original the tiles of the grid under it
+     * @param context what the failures are reported with
+     */
+    private static void check(OverlayGrid overlay, byte[] expected, byte[] original, String context){
+        int changed = 0;
+        for(int index = 0; index < expected.length; index++){
+            assertEquals(expected[index], overlay.get(index), "tile " + index + ", " + context);
+            if(expected[index] != original[index]){
+                changed++;
+            }
+        }
+        assertEquals(changed, overlay.getChangedCount(), "changed tiles, " + context);
+    }
+
+    /**
+     * Builds a frozen grid of random tiles, mostly free.
+     * @param random the random numbers
+     * @param rows number of rows
+     * @param columns number of columns
+     * @return the grid
+     */
+    private static TileGrid randomGrid(Random random, int rows, int columns){
+        TileGrid grid = new TileGrid(rows, columns);
+        for(int index = 0; index < rows * columns; index++){
+            grid.set(index, random.nextInt(3) == 0 ? TILES[random.nextInt(4)] : TileGrid.FREE);
+        }
+        grid.freeze();
+        return grid;
+    }
+
+    /**
+     * Copies the tiles of a grid.
+     * @param grid the grid
+     * @return the tiles, by index
+     */
+    private static byte[] tiles(TileGrid grid){
+        byte[] tiles = new byte[grid.getRows() * grid.getColumns()];
+        for(int index = 0; index < tiles.length; index++){
+            tiles[index] = grid.get(index);
+        }
+        return tiles;
+    }
+}